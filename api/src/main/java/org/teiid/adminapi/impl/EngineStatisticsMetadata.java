@@ -33,6 +33,8 @@ public class EngineStatisticsMetadata extends AdminObjectImpl implements EngineS
     private int activePlanCount;
     private int waitPlanCount;
     private int maxWaitPlanCount;
+    private long averagePlanWaitTime;
+    private long maxPlanWaitTime;
 
     @Override
     public int getSessionCount() {
@@ -133,6 +135,28 @@ public class EngineStatisticsMetadata extends AdminObjectImpl implements EngineS
         this.maxWaitPlanCount = maxWaitPlanCount;
     }
 
+    /**
+     * @return the average time in milliseconds that queued plans waited to become active
+     */
+    public long getAveragePlanWaitTime() {
+        return averagePlanWaitTime;
+    }
+
+    public void setAveragePlanWaitTime(long averagePlanWaitTime) {
+        this.averagePlanWaitTime = averagePlanWaitTime;
+    }
+
+    /**
+     * @return the max time in milliseconds that a queued plan waited to become active
+     */
+    public long getMaxPlanWaitTime() {
+        return maxPlanWaitTime;
+    }
+
+    public void setMaxPlanWaitTime(long maxPlanWaitTime) {
+        this.maxPlanWaitTime = maxPlanWaitTime;
+    }
+
     public String toString() {
         StringBuilder sb = new StringBuilder();
         sb.append("EngineStatistics:"); //$NON-NLS-1$
@@ -147,6 +171,8 @@ public class EngineStatisticsMetadata extends AdminObjectImpl implements EngineS
         sb.append("; activePlanCount ").append(activePlanCount); //$NON-NLS-1$
         sb.append("; waitPlanCount ").append(waitPlanCount); //$NON-NLS-1$
         sb.append("; maxWaitPlanCount ").append(maxWaitPlanCount); //$NON-NLS-1$
+        sb.append("; averagePlanWaitTime ").append(averagePlanWaitTime); //$NON-NLS-1$
+        sb.append("; maxPlanWaitTime ").append(maxPlanWaitTime); //$NON-NLS-1$
         return sb.toString();
     }
 
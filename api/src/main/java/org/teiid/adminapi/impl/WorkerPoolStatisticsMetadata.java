@@ -35,6 +35,9 @@ public class WorkerPoolStatisticsMetadata extends AdminObjectImpl implements Wor
     private int highestActiveThreads;
     private long totalSubmitted;
     private long totalCompleted;
+    private long queueWaitTimeMedian;
+    private long queueWaitTime95;
+    private long queueWaitTime99;
 
     @Override
     public int getActiveThreads() {
@@ -104,6 +107,39 @@ public class WorkerPoolStatisticsMetadata extends AdminObjectImpl implements Wor
         this.totalCompleted = totalCompleted;
     }
 
+    /**
+     * @return the approximate median time in milliseconds that work waited to execute
+     */
+    public long getQueueWaitTimeMedian() {
+        return queueWaitTimeMedian;
+    }
+
+    public void setQueueWaitTimeMedian(long queueWaitTimeMedian) {
+        this.queueWaitTimeMedian = queueWaitTimeMedian;
+    }
+
+    /**
+     * @return the approximate 95th percentile time in milliseconds that work waited to execute
+     */
+    public long getQueueWaitTime95() {
+        return queueWaitTime95;
+    }
+
+    public void setQueueWaitTime95(long queueWaitTime95) {
+        this.queueWaitTime95 = queueWaitTime95;
+    }
+
+    /**
+     * @return the approximate 99th percentile time in milliseconds that work waited to execute
+     */
+    public long getQueueWaitTime99() {
+        return queueWaitTime99;
+    }
+
+    public void setQueueWaitTime99(long queueWaitTime99) {
+        this.queueWaitTime99 = queueWaitTime99;
+    }
+
     public void setQueueName(String name) {
         setName(name);
     }
@@ -120,6 +156,9 @@ public class WorkerPoolStatisticsMetadata extends AdminObjectImpl implements Wor
         str.append("; highestActiveThreads = " + highestActiveThreads);     //$NON-NLS-1$
         str.append("; totalSubmitted = " + totalSubmitted);     //$NON-NLS-1$
         str.append("; totalCompleted = " + totalCompleted);     //$NON-NLS-1$
+        str.append("; queueWaitTimeMedian = " + queueWaitTimeMedian);     //$NON-NLS-1$
+        str.append("; queueWaitTime95 = " + queueWaitTime95);     //$NON-NLS-1$
+        str.append("; queueWaitTime99 = " + queueWaitTime99);     //$NON-NLS-1$
         return str.toString();
     }
 
@@ -1060,6 +1060,19 @@ public class BaseDelegatingExecutionFactory<F, C> extends ExecutionFactory<F, C>
         supportsDependentJoins = value;
     }
 
+    Boolean supportsDependentJoinBloomFilter;
+    @TranslatorProperty(display="Supports Dependent Join Bloom Filter", advanced=true)
+    @Override
+    public boolean supportsDependentJoinBloomFilter() {
+        if (supportsDependentJoinBloomFilter != null) {
+            return supportsDependentJoinBloomFilter;
+        }
+        return delegate.supportsDependentJoinBloomFilter();
+    }
+    public void setSupportsDependentJoinBloomFilter(boolean value) {
+        supportsDependentJoinBloomFilter = value;
+    }
+
     Boolean supportsOnlyLiteralComparison;
     @TranslatorProperty(display="Supports Only Literal Comparision", advanced=true)
     @Override
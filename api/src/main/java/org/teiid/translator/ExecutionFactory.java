@@ -1155,6 +1155,18 @@ public class ExecutionFactory<F, C> {
         return false;
     }
 
+    /**
+     * When the dependent join key set is too large to push as IN predicates, a Bloom filter of the keys
+     * may be pushed instead as a criteria of the form
+     * {@link SourceSystemFunctions#BLOOM_FILTER_CONTAINS}(filter varbinary, hashFunctions integer, key) = TRUE.
+     * The key will be an {@link org.teiid.language.Array} for composite keys.  The source must supply a function
+     * implementing the hashing described by the engine's BloomFilter.
+     * @return true if dependent join Bloom filter pushdown is supported
+     */
+    public boolean supportsDependentJoinBloomFilter() {
+        return false;
+    }
+
     public enum Format {
         NUMBER,
         DATE
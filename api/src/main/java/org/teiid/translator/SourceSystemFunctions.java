@@ -257,4 +257,10 @@ public class SourceSystemFunctions {
     //geography
     public static final String ST_GEOGFROMWKB = "st_geogfromwkb"; //$NON-NLS-1$
     public static final String ST_GEOGFROMTEXT = "st_geogfromtext"; //$NON-NLS-1$
+
+    //dependent join
+    /**
+     * See {@link ExecutionFactory#supportsDependentJoinBloomFilter()}
+     */
+    public static final String BLOOM_FILTER_CONTAINS = "bloom_filter_contains"; //$NON-NLS-1$
 }
@@ -43,6 +43,7 @@ import org.teiid.jdbc.RequestOptions;
 public class RequestMessage implements Externalizable {
 
     private static final String SPAN_CONTEXT = "spanContext"; //$NON-NLS-1$
+    private static final String RESULTS_WINDOW = "resultsWindow"; //$NON-NLS-1$
 
     private static final RequestOptions DEFAULT_REQUEST_OPTIONS = new RequestOptions();
 
@@ -457,4 +458,34 @@ public class RequestMessage implements Externalizable {
         return this.properties.get(SPAN_CONTEXT);
     }
 
+    /**
+     * Set the number of result batches the server may hold ahead of the client
+     * for a forward only cursor.  0 uses the server default.
+     */
+    public void setResultsWindow(int batches) {
+        if (this.properties == null) {
+            this.properties = new HashMap<String, String>();
+        }
+        if (batches <= 0) {
+            this.properties.remove(RESULTS_WINDOW);
+        } else {
+            properties.put(RESULTS_WINDOW, String.valueOf(batches));
+        }
+    }
+
+    public int getResultsWindow() {
+        if (this.properties == null) {
+            return 0;
+        }
+        String value = this.properties.get(RESULTS_WINDOW);
+        if (value == null) {
+            return 0;
+        }
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
 }
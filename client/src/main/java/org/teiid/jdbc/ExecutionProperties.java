@@ -100,6 +100,12 @@ public interface ExecutionProperties {
 
     public static final String QUERYTIMEOUT = "QUERYTIMEOUT"; //$NON-NLS-1$
 
+    /**
+     * The number of result batches the server may produce ahead of a forward only
+     * result set.  Defaults to the server setting.
+     */
+    public static final String RESULTS_WINDOW = "resultsWindow"; //$NON-NLS-1$
+
     /**
      * TEIID-1651
      * A change was made in JDBC4 so that when an 'Alias' is used it will
@@ -1009,6 +1009,15 @@ public class StatementImpl extends WrapperImpl implements TeiidStatement {
         if (noExec != null) {
             res.setNoExec(noExec.equalsIgnoreCase("ON")); //$NON-NLS-1$
         }
+        String resultsWindow = getExecutionProperty(ExecutionProperties.RESULTS_WINDOW);
+        if (resultsWindow != null) {
+            try {
+                res.setResultsWindow(Integer.parseInt(resultsWindow));
+            } catch (NumberFormatException e) {
+                //the window is only a hint, so fall back to the default
+                logger.log(Level.WARNING, JDBCPlugin.Util.getString("MMStatement.Invalid_results_window", resultsWindow), e); //$NON-NLS-1$
+            }
+        }
     }
 
     /**
@@ -61,6 +61,7 @@ public class TestRequestMessage {
         message.setReturnAutoGeneratedKeys(true);
         message.setDelaySerialization(true);
         message.setSpanContext("foo");
+        message.setResultsWindow(2);
         return message;
     }
 
@@ -85,6 +86,7 @@ public class TestRequestMessage {
         assertTrue(copy.isReturnAutoGeneratedKeys());
         assertTrue(copy.isDelaySerialization());
         assertEquals("foo", copy.getSpanContext());
+        assertEquals(2, copy.getResultsWindow());
     }
 
     @Test public void testInvalidTxnAutoWrap() {
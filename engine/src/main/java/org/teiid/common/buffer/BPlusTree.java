@@ -0,0 +1,291 @@
+/*
+ * Copyright Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags and
+ * the COPYRIGHT.txt file distributed with this work.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.teiid.common.buffer;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.teiid.common.buffer.LobManager.ReferenceMode;
+import org.teiid.common.buffer.SPage.SearchResult;
+import org.teiid.core.TeiidComponentException;
+import org.teiid.query.processor.relational.ListNestedSortComparator;
+
+/**
+ * An {@link STree} that is maintained as a B+tree rather than with random skip list levels.
+ *
+ * The page layout is the same as the {@link STree} so that {@link TupleBrowser} and
+ * the storage logic are shared.  The difference is that a level only grows when a page
+ * in the level below splits, so that every page is referenced from its parent and
+ * the height is the minimal log of the row count.  Ordered inserts, such as the ones
+ * performed under {@link #setBatchInsert(boolean)} or by {@link #readValuesFrom(java.io.ObjectInputStream)},
+ * fill each page completely and build the index levels bottom up.
+ *
+ * Searches do not take the update lock or repair parent pointers.  Instead they validate
+ * against a version that is changed by each structural modification and are repeated
+ * under the lock only if a concurrent modification was detected.
+ *
+ * Removals use the {@link STree} logic, which leaves the structure searchable but
+ * may leave pages that are only reachable from their previous sibling.
+ */
+@SuppressWarnings("unchecked")
+public class BPlusTree extends STree {
+
+    private volatile long version;
+    private AtomicLong lockedSearches = new AtomicLong();
+
+    public BPlusTree(BatchManager manager,
+            BatchManager leafManager,
+            final ListNestedSortComparator comparator,
+            int pageSize,
+            int leafSize,
+            int keyLength,
+            LobManager lobManager) {
+        super(manager, leafManager, comparator, pageSize, leafSize, keyLength, lobManager);
+    }
+
+    @Override
+    public BPlusTree clone() {
+        BPlusTree clone = (BPlusTree) super.clone();
+        clone.lockedSearches = new AtomicLong();
+        return clone;
+    }
+
+    /**
+     * Optimistically search without the update lock.
+     */
+    @Override
+    List find(List n, List<SearchResult> places) throws TeiidComponentException {
+        if (updateLock.isHeldByCurrentThread()) {
+            return find(n, places, false);
+        }
+        long stamp = version;
+        if ((stamp & 1) == 0) {
+            int size = places == null ? 0 : places.size();
+            try {
+                List result = find(n, places, false);
+                if (stamp == version) {
+                    return result;
+                }
+            } catch (TeiidComponentException | RuntimeException e) {
+                if (stamp == version) {
+                    throw e;
+                }
+                //the failure was due to a concurrent modification
+            }
+            if (places != null) {
+                places.subList(size, places.size()).clear();
+            }
+        }
+        lockedSearches.getAndIncrement();
+        updateLock.lock();
+        try {
+            return find(n, places, false);
+        } finally {
+            updateLock.unlock();
+        }
+    }
+
+    @Override
+    public List insert(List tuple, InsertMode mode, int sizeHint) throws TeiidComponentException {
+        if (tuple.size() != this.leafManager.getTypes().length) {
+            throw new AssertionError("Invalid tuple."); //$NON-NLS-1$
+        }
+        if (this.lobManager != null) {
+            this.lobManager.updateReferences(tuple, ReferenceMode.CREATE);
+        }
+        boolean ordered = mode == InsertMode.ORDERED;
+        LinkedList<SearchResult> places = new LinkedList<SearchResult>();
+        updateLock.lock();
+        try {
+            if (ordered) {
+                SPage last = null;
+                while (last == null || last.children != null) {
+                    last = findChildTail(last);
+                    List<List<?>> batch = last.getValues();
+                    places.add(new SearchResult(-batch.size() -1, last, batch));
+                }
+            } else {
+                List match = find(tuple, places, false);
+                if (match != null) {
+                    if (mode != InsertMode.UPDATE) {
+                        return match;
+                    }
+                    SearchResult last = places.getLast();
+                    own(last);
+                    beginWrite();
+                    try {
+                        last.values.set(last.index, tuple);
+                        last.page.setValues(last.values);
+                    } finally {
+                        endWrite();
+                    }
+                    if (this.lobManager != null) {
+                        this.lobManager.updateReferences(tuple, ReferenceMode.REMOVE);
+                    }
+                    return match;
+                }
+            }
+            own(places);
+            beginWrite();
+            try {
+                insert(tuple, places, ordered);
+            } finally {
+                endWrite();
+            }
+            return null;
+        } finally {
+            updateLock.unlock();
+        }
+    }
+
+    /**
+     * Insert into the leaf and propagate any split up the tree
+     */
+    private void insert(List tuple, LinkedList<SearchResult> places, boolean ordered) throws TeiidComponentException {
+        SearchResult result = places.removeLast();
+        boolean newMin = !ordered && result.index == -1 && result.page == header[0];
+        rowCount.addAndGet(1);
+        List key = extractKey(tuple);
+        Object value = tuple;
+        for (;;) {
+            SPage page = result.page;
+            SPage next = page.next;
+            insert(key, result, places.peekLast(), value, ordered);
+            if (page.next == next) {
+                break;
+            }
+            SPage split = page.next;
+            key = getFirstKey(split);
+            value = split;
+            if (places.isEmpty()) {
+                //grow a new root
+                SPage head = header[header.length - 1];
+                SPage root = new SPage(this, false);
+                List<List<?>> batch = root.getValues();
+                batch.add(getFirstKey(head));
+                root.children.add(head);
+                batch.add(key);
+                root.children.add(split);
+                root.setValues(batch);
+                header = Arrays.copyOf(header, header.length + 1);
+                header[header.length - 1] = root;
+                break;
+            }
+            result = places.removeLast();
+            if (!ordered) {
+                //reposition by the separator key rather than the inserted key
+                int index = Collections.binarySearch(result.values, key, comparator);
+                if (index >= 0) {
+                    index = -index - 2;
+                }
+                result = new SearchResult(index, result.page, result.values);
+            }
+        }
+        if (newMin) {
+            //keep the leftmost keys exact so that searches need not restart at the head
+            for (int i = 1; i < header.length; i++) {
+                if (local(header[i].children.get(0)) != header[i - 1]) {
+                    break;
+                }
+                SPage head = own(header[i]);
+                List<List<?>> batch = head.getValues();
+                batch.set(0, extractKey(tuple));
+                head.setValues(batch);
+            }
+        }
+    }
+
+    private List getFirstKey(SPage page) throws TeiidComponentException {
+        List first = page.getValues().get(0);
+        if (page.children == null) {
+            return extractKey(first);
+        }
+        return first;
+    }
+
+    @Override
+    public List remove(List key) throws TeiidComponentException {
+        updateLock.lock();
+        try {
+            beginWrite();
+            try {
+                return super.remove(key);
+            } finally {
+                endWrite();
+            }
+        } finally {
+            updateLock.unlock();
+        }
+    }
+
+    @Override
+    public long truncate(boolean force) {
+        updateLock.lock();
+        try {
+            beginWrite();
+            try {
+                return super.truncate(force);
+            } finally {
+                endWrite();
+            }
+        } finally {
+            updateLock.unlock();
+        }
+    }
+
+    @Override
+    public void compact() {
+        updateLock.lock();
+        try {
+            beginWrite();
+            try {
+                super.compact();
+            } finally {
+                endWrite();
+            }
+        } finally {
+            updateLock.unlock();
+        }
+    }
+
+    /*
+     * the version is odd while a modification is in progress.
+     * only called while holding the update lock.
+     */
+
+    private void beginWrite() {
+        version++;
+    }
+
+    private void endWrite() {
+        version++;
+    }
+
+    /**
+     * Get the number of searches that had to be performed under the update lock
+     * due to a concurrent modification
+     */
+    public long getLockedSearches() {
+        return lockedSearches.get();
+    }
+
+}
@@ -30,6 +30,13 @@ public interface BatchManager {
 
     List<List<?>> getBatch(Long batch, boolean retain) throws TeiidComponentException;
 
+    /**
+     * Hint that the batch will be read soon.  Implementations may load it into memory
+     * asynchronously so that a subsequent {@link #getBatch(Long, boolean)} does not wait on storage.
+     * @param batch
+     */
+    void prefetch(Long batch);
+
     void remove(Long batch);
 
     void setPrefersMemory(boolean prefers);
@@ -113,6 +113,12 @@ public interface BufferManager extends StorageManager, TupleBufferCache {
 
     STree createSTree(List<? extends Expression> elements, String groupName, int keyLength);
 
+    /**
+     * Create an {@link STree} that is maintained as a B+tree.  It has a minimal and deterministic
+     * height and is better suited to indexes that are loaded in bulk and then mostly searched.
+     */
+    STree createBPlusTree(List<? extends Expression> elements, String groupName, int keyLength);
+
     void addTupleBuffer(TupleBuffer tb);
 
     /**
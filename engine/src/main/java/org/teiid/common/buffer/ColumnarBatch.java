@@ -0,0 +1,612 @@
+/*
+ * Copyright Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags and
+ * the COPYRIGHT.txt file distributed with this work.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.teiid.common.buffer;
+
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+import java.sql.Date;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+
+import org.teiid.client.BatchSerializer;
+import org.teiid.common.buffer.impl.SizeUtility;
+import org.teiid.core.types.DataTypeManager;
+
+/**
+ * A read-only columnar representation of a batch of rows.
+ * <br>
+ * Fixed width types are held in primitive arrays with a null bitmap and strings
+ * are dictionary encoded, so that the heap cost of a batch is close to its raw size
+ * rather than that of a boxed value and list per cell.  Other types are held in an
+ * Object[] per column.
+ * <br>
+ * Rows are exposed as lightweight views that are created on access and are not retained.
+ */
+public final class ColumnarBatch extends AbstractList<List<?>> implements RandomAccess {
+
+    static final byte OBJECT = 0;
+    static final byte INT = 1;
+    static final byte SHORT = 2;
+    static final byte BYTE = 3;
+    static final byte CHAR = 4;
+    static final byte LONG = 5;
+    static final byte DATE = 6;
+    static final byte TIME = 7;
+    static final byte TIMESTAMP = 8;
+    static final byte DOUBLE = 9;
+    static final byte FLOAT = 10;
+    static final byte BOOLEAN = 11;
+    static final byte STRING = 12;
+
+    private static final int MAX_UTF = 0xFFFF/3;
+
+    private static final class Row extends AbstractList<Object> implements RandomAccess {
+        private final ColumnarBatch batch;
+        private final int row;
+
+        Row(ColumnarBatch batch, int row) {
+            this.batch = batch;
+            this.row = row;
+        }
+
+        @Override
+        public Object get(int index) {
+            return batch.getValue(row, index);
+        }
+
+        @Override
+        public int size() {
+            return batch.columns.length;
+        }
+    }
+
+    /**
+     * A single column vector.  Only the arrays required by the kind are populated.
+     */
+    static final class Column {
+        byte kind;
+        long[] nulls;
+        int[] ints;
+        long[] longs;
+        double[] doubles;
+        String[] dictionary;
+        Object[] objects;
+
+        boolean isNull(int row) {
+            return nulls != null && (nulls[row >> 6] & (1L << row)) != 0;
+        }
+    }
+
+    private final Column[] columns;
+    private final int rowCount;
+
+    private ColumnarBatch(Column[] columns, int rowCount) {
+        this.columns = columns;
+        this.rowCount = rowCount;
+    }
+
+    static byte getKind(Class<?> type) {
+        if (type == DataTypeManager.DefaultDataClasses.INTEGER) {
+            return INT;
+        }
+        if (type == DataTypeManager.DefaultDataClasses.LONG) {
+            return LONG;
+        }
+        if (type == DataTypeManager.DefaultDataClasses.DOUBLE) {
+            return DOUBLE;
+        }
+        if (type == DataTypeManager.DefaultDataClasses.STRING) {
+            return STRING;
+        }
+        if (type == DataTypeManager.DefaultDataClasses.TIMESTAMP) {
+            return TIMESTAMP;
+        }
+        if (type == DataTypeManager.DefaultDataClasses.DATE) {
+            return DATE;
+        }
+        if (type == DataTypeManager.DefaultDataClasses.TIME) {
+            return TIME;
+        }
+        if (type == DataTypeManager.DefaultDataClasses.BOOLEAN) {
+            return BOOLEAN;
+        }
+        if (type == DataTypeManager.DefaultDataClasses.FLOAT) {
+            return FLOAT;
+        }
+        if (type == DataTypeManager.DefaultDataClasses.SHORT) {
+            return SHORT;
+        }
+        if (type == DataTypeManager.DefaultDataClasses.BYTE) {
+            return BYTE;
+        }
+        if (type == DataTypeManager.DefaultDataClasses.CHAR) {
+            return CHAR;
+        }
+        return OBJECT;
+    }
+
+    /**
+     * Return true if at least one of the types can be held in a specialized column
+     */
+    public static boolean isColumnarType(Class<?>[] types) {
+        for (Class<?> type : types) {
+            if (getKind(type) != OBJECT) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Create a columnar copy of the given rows.
+     * @return the new batch or null if no column could be specialized
+     */
+    public static ColumnarBatch create(Class<?>[] types, List<? extends List<?>> rows) {
+        if (rows instanceof ColumnarBatch) {
+            return (ColumnarBatch)rows;
+        }
+        int rowCount = rows.size();
+        Column[] columns = new Column[types.length];
+        boolean specialized = false;
+        for (int col = 0; col < types.length; col++) {
+            Column column = createColumn(getKind(types[col]), types[col], col, rows);
+            if (column.kind != OBJECT) {
+                specialized = true;
+            }
+            columns[col] = column;
+        }
+        if (!specialized) {
+            return null;
+        }
+        return new ColumnarBatch(columns, rowCount);
+    }
+
+    private static Column createColumn(byte kind, Class<?> type, int col, List<? extends List<?>> rows) {
+        int rowCount = rows.size();
+        Column column = new Column();
+        column.kind = kind;
+        if (kind != OBJECT) {
+            for (int row = 0; row < rowCount; row++) {
+                Object value = rows.get(row).get(col);
+                if (value == null) {
+                    if (column.nulls == null) {
+                        column.nulls = new long[(rowCount + 63) >> 6];
+                    }
+                    column.nulls[row >> 6] |= 1L << row;
+                } else if (value.getClass() != type) {
+                    //unexpected subclass, just keep the values as is
+                    column.kind = kind = OBJECT;
+                    column.nulls = null;
+                    break;
+                }
+            }
+        }
+        switch (kind) {
+        case INT:
+        case SHORT:
+        case BYTE:
+        case CHAR:
+            column.ints = new int[rowCount];
+            for (int row = 0; row < rowCount; row++) {
+                Object value = rows.get(row).get(col);
+                if (value == null) {
+                    continue;
+                }
+                if (kind == CHAR) {
+                    column.ints[row] = ((Character)value).charValue();
+                } else {
+                    column.ints[row] = ((Number)value).intValue();
+                }
+            }
+            break;
+        case LONG:
+        case DATE:
+        case TIME:
+        case TIMESTAMP:
+            column.longs = new long[rowCount];
+            if (kind == TIMESTAMP) {
+                column.ints = new int[rowCount];
+            }
+            for (int row = 0; row < rowCount; row++) {
+                Object value = rows.get(row).get(col);
+                if (value == null) {
+                    continue;
+                }
+                if (kind == LONG) {
+                    column.longs[row] = ((Long)value).longValue();
+                } else {
+                    column.longs[row] = ((java.util.Date)value).getTime();
+                    if (kind == TIMESTAMP) {
+                        column.ints[row] = ((Timestamp)value).getNanos();
+                    }
+                }
+            }
+            break;
+        case DOUBLE:
+        case FLOAT:
+            column.doubles = new double[rowCount];
+            for (int row = 0; row < rowCount; row++) {
+                Object value = rows.get(row).get(col);
+                if (value != null) {
+                    column.doubles[row] = ((Number)value).doubleValue();
+                }
+            }
+            break;
+        case BOOLEAN:
+            column.longs = new long[(rowCount + 63) >> 6];
+            for (int row = 0; row < rowCount; row++) {
+                if (Boolean.TRUE.equals(rows.get(row).get(col))) {
+                    column.longs[row >> 6] |= 1L << row;
+                }
+            }
+            break;
+        case STRING:
+            column.ints = new int[rowCount];
+            Map<String, Integer> codes = new HashMap<String, Integer>();
+            List<String> dictionary = new ArrayList<String>();
+            for (int row = 0; row < rowCount; row++) {
+                String value = (String)rows.get(row).get(col);
+                if (value == null) {
+                    continue;
+                }
+                Integer code = codes.get(value);
+                if (code == null) {
+                    code = dictionary.size();
+                    codes.put(value, code);
+                    dictionary.add(value);
+                }
+                column.ints[row] = code;
+            }
+            column.dictionary = dictionary.toArray(new String[dictionary.size()]);
+            break;
+        default:
+            column.objects = new Object[rowCount];
+            for (int row = 0; row < rowCount; row++) {
+                column.objects[row] = rows.get(row).get(col);
+            }
+            break;
+        }
+        return column;
+    }
+
+    Object getValue(int row, int col) {
+        Column column = columns[col];
+        if (column.isNull(row)) {
+            return null;
+        }
+        switch (column.kind) {
+        case INT:
+            return column.ints[row];
+        case SHORT:
+            return (short)column.ints[row];
+        case BYTE:
+            return (byte)column.ints[row];
+        case CHAR:
+            return (char)column.ints[row];
+        case LONG:
+            return column.longs[row];
+        case DATE:
+            return new Date(column.longs[row]);
+        case TIME:
+            return new Time(column.longs[row]);
+        case TIMESTAMP:
+            Timestamp ts = new Timestamp(column.longs[row]);
+            ts.setNanos(column.ints[row]);
+            return ts;
+        case DOUBLE:
+            return column.doubles[row];
+        case FLOAT:
+            return (float)column.doubles[row];
+        case BOOLEAN:
+            return (column.longs[row >> 6] & (1L << row)) != 0;
+        case STRING:
+            return column.dictionary[column.ints[row]];
+        default:
+            return column.objects[row];
+        }
+    }
+
+    @Override
+    public List<?> get(int index) {
+        if (index < 0 || index >= rowCount) {
+            throw new IndexOutOfBoundsException(String.valueOf(index));
+        }
+        return new Row(this, index);
+    }
+
+    @Override
+    public int size() {
+        return rowCount;
+    }
+
+    /**
+     * Primitive access to int, short, byte, and char columns.  The value is undefined for nulls.
+     */
+    public int getInt(int row, int col) {
+        return columns[col].ints[row];
+    }
+
+    /**
+     * Primitive access to long, date, time, and timestamp (millisecond) columns.  The value is undefined for nulls.
+     */
+    public long getLong(int row, int col) {
+        return columns[col].longs[row];
+    }
+
+    /**
+     * Primitive access to double and float columns.  The value is undefined for nulls.
+     */
+    public double getDouble(int row, int col) {
+        return columns[col].doubles[row];
+    }
+
+    /**
+     * Return true if the column holds values of the given type in a primitive vector
+     * accessible via {@link #getInt(int, int)}, {@link #getLong(int, int)}, or {@link #getDouble(int, int)}
+     */
+    public boolean isSpecialized(int col, Class<?> type) {
+        byte kind = columns[col].kind;
+        return kind != OBJECT && kind == getKind(type);
+    }
+
+    public boolean isNull(int row, int col) {
+        Column column = columns[col];
+        if (column.kind == OBJECT) {
+            return column.objects[row] == null;
+        }
+        return column.isNull(row);
+    }
+
+    /**
+     * Get the heap size of this batch.  Unlike the row based estimate this is
+     * exact for all specialized columns.
+     */
+    public long getSizeEstimate(boolean accountForValueCache) {
+        long size = 32 + alignMemory(16 + columns.length * SizeUtility.REFERENCE_SIZE);
+        for (Column column : columns) {
+            size += 48;
+            if (column.nulls != null) {
+                size += 16 + alignMemory(column.nulls.length * 8L);
+            }
+            if (column.ints != null) {
+                size += 16 + alignMemory(column.ints.length * 4L);
+            }
+            if (column.longs != null) {
+                size += 16 + alignMemory(column.longs.length * 8L);
+            }
+            if (column.doubles != null) {
+                size += 16 + alignMemory(column.doubles.length * 8L);
+            }
+            if (column.dictionary != null) {
+                size += 16 + alignMemory(column.dictionary.length * (long)SizeUtility.REFERENCE_SIZE);
+                for (String value : column.dictionary) {
+                    size += SizeUtility.getSize(value, accountForValueCache);
+                }
+            }
+            if (column.objects != null) {
+                size += 16 + alignMemory(column.objects.length * (long)SizeUtility.REFERENCE_SIZE);
+                int rowsSampled = 0;
+                long estimatedSize = 0;
+                for (int row = 0; row < rowCount; row=(row*2)+1) {
+                    rowsSampled++;
+                    estimatedSize += SizeUtility.getSize(column.objects[row], accountForValueCache);
+                }
+                if (rowsSampled > 0) {
+                    size += estimatedSize/(float)rowsSampled * rowCount;
+                }
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Write the batch in a columnar format.  Object columns use the {@link BatchSerializer}
+     * format for the column type.
+     */
+    public void writeBatch(ObjectOutput out, String[] types) throws IOException {
+        out.writeInt(rowCount);
+        for (int col = 0; col < columns.length; col++) {
+            final Column column = columns[col];
+            out.writeByte(column.kind);
+            if (column.kind != OBJECT) {
+                writeLongs(out, column.nulls);
+            }
+            switch (column.kind) {
+            case INT:
+            case SHORT:
+            case BYTE:
+            case CHAR:
+                for (int row = 0; row < rowCount; row++) {
+                    out.writeInt(column.ints[row]);
+                }
+                break;
+            case LONG:
+            case DATE:
+            case TIME:
+            case TIMESTAMP:
+                for (int row = 0; row < rowCount; row++) {
+                    out.writeLong(column.longs[row]);
+                }
+                if (column.kind == TIMESTAMP) {
+                    for (int row = 0; row < rowCount; row++) {
+                        out.writeInt(column.ints[row]);
+                    }
+                }
+                break;
+            case DOUBLE:
+            case FLOAT:
+                for (int row = 0; row < rowCount; row++) {
+                    out.writeDouble(column.doubles[row]);
+                }
+                break;
+            case BOOLEAN:
+                writeLongs(out, column.longs);
+                break;
+            case STRING:
+                out.writeInt(column.dictionary.length);
+                for (String value : column.dictionary) {
+                    if (value.length() <= MAX_UTF) {
+                        out.writeBoolean(true);
+                        out.writeUTF(value);
+                    } else {
+                        out.writeBoolean(false);
+                        out.writeObject(value);
+                    }
+                }
+                boolean small = column.dictionary.length <= 256;
+                for (int row = 0; row < rowCount; row++) {
+                    if (small) {
+                        out.writeByte(column.ints[row]);
+                    } else {
+                        out.writeInt(column.ints[row]);
+                    }
+                }
+                break;
+            default:
+                BatchSerializer.writeBatch(out, new String[] {types[col]}, new AbstractList<List<?>>() {
+                    @Override
+                    public List<?> get(int index) {
+                        return Collections.singletonList(column.objects[index]);
+                    }
+
+                    @Override
+                    public int size() {
+                        return rowCount;
+                    }
+                });
+                break;
+            }
+        }
+    }
+
+    /**
+     * Read a batch written by {@link #writeBatch(ObjectOutput, String[])}
+     */
+    public static ColumnarBatch readBatch(ObjectInput in, String[] types) throws IOException, ClassNotFoundException {
+        int rowCount = in.readInt();
+        Column[] columns = new Column[types.length];
+        for (int col = 0; col < types.length; col++) {
+            Column column = new Column();
+            columns[col] = column;
+            column.kind = in.readByte();
+            if (column.kind != OBJECT) {
+                column.nulls = readLongs(in);
+            }
+            switch (column.kind) {
+            case INT:
+            case SHORT:
+            case BYTE:
+            case CHAR:
+                column.ints = new int[rowCount];
+                for (int row = 0; row < rowCount; row++) {
+                    column.ints[row] = in.readInt();
+                }
+                break;
+            case LONG:
+            case DATE:
+            case TIME:
+            case TIMESTAMP:
+                column.longs = new long[rowCount];
+                for (int row = 0; row < rowCount; row++) {
+                    column.longs[row] = in.readLong();
+                }
+                if (column.kind == TIMESTAMP) {
+                    column.ints = new int[rowCount];
+                    for (int row = 0; row < rowCount; row++) {
+                        column.ints[row] = in.readInt();
+                    }
+                }
+                break;
+            case DOUBLE:
+            case FLOAT:
+                column.doubles = new double[rowCount];
+                for (int row = 0; row < rowCount; row++) {
+                    column.doubles[row] = in.readDouble();
+                }
+                break;
+            case BOOLEAN:
+                column.longs = readLongs(in);
+                break;
+            case STRING:
+                column.dictionary = new String[in.readInt()];
+                for (int i = 0; i < column.dictionary.length; i++) {
+                    if (in.readBoolean()) {
+                        column.dictionary[i] = in.readUTF();
+                    } else {
+                        column.dictionary[i] = (String)in.readObject();
+                    }
+                }
+                boolean small = column.dictionary.length <= 256;
+                column.ints = new int[rowCount];
+                for (int row = 0; row < rowCount; row++) {
+                    if (small) {
+                        column.ints[row] = in.readUnsignedByte();
+                    } else {
+                        column.ints[row] = in.readInt();
+                    }
+                }
+                break;
+            default:
+                List<List<Object>> values = BatchSerializer.readBatch(in, new String[] {types[col]});
+                column.objects = new Object[rowCount];
+                for (int row = 0; row < rowCount; row++) {
+                    column.objects[row] = values.get(row).get(0);
+                }
+                break;
+            }
+        }
+        return new ColumnarBatch(columns, rowCount);
+    }
+
+    private static long alignMemory(long numBytes) {
+        return (numBytes + 7) & ~7L;
+    }
+
+    private static void writeLongs(ObjectOutput out, long[] longs) throws IOException {
+        if (longs == null) {
+            out.writeInt(-1);
+            return;
+        }
+        out.writeInt(longs.length);
+        for (long l : longs) {
+            out.writeLong(l);
+        }
+    }
+
+    private static long[] readLongs(ObjectInput in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+        long[] result = new long[length];
+        for (int i = 0; i < length; i++) {
+            result[i] = in.readLong();
+        }
+        return result;
+    }
+
+}
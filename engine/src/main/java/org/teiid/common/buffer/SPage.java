@@ -37,7 +37,9 @@ import org.teiid.query.QueryPlugin;
 /**
  * A linked list Page entry in the tree
  *
- * State cloning allows a single storage reference to be shared in many trees.
+ * Pages are shared by cloned trees and are copied by a tree only when it first
+ * modifies them - see {@link STree#own(SPage)}.  State cloning allows a single
+ * storage reference to be shared in many trees.
  * A phantom reference is used for proper cleanup once cloned.
  *
  * TODO: a better purging strategy for managedbatchs.
@@ -93,11 +95,13 @@ class SPage implements Cloneable {
     protected Object trackingObject;
     protected List<List<?>> values;
     protected List<SPage> children;
+    protected Object generation;
 
     SPage(STree stree, boolean leaf) {
         this.stree = stree;
         this.id = counter.getAndIncrement();
-        stree.pages.put(this.id, this);
+        this.generation = stree.generation;
+        stree.pages.put(this);
         this.values = new ResizingArrayList<List<?>>();
         if (!leaf) {
             children = new ResizingArrayList<SPage>();
@@ -106,13 +110,10 @@ class SPage implements Cloneable {
 
     public SPage clone(STree tree) {
         try {
-            if (this.managedBatch != null && trackingObject == null) {
-                this.trackingObject = new Object();
-                CleanupReference managedBatchReference  = new CleanupReference(trackingObject, managedBatch, stree.getBatchManager(children == null).getBatchManagerReference());
-                REFERENCES.put(managedBatch, managedBatchReference);
-            }
+            track();
             SPage clone = (SPage) super.clone();
             clone.stree = tree;
+            clone.generation = tree.generation;
             if (children != null) {
                 clone.children = new ResizingArrayList<SPage>(children);
             }
@@ -129,32 +130,57 @@ class SPage implements Cloneable {
         return id;
     }
 
-    static SearchResult search(SPage page, List k, List<SearchResult> parent) throws TeiidComponentException {
+    /**
+     * Ensure that the managed batch will be cleaned up once no page references it,
+     * rather than being removed directly by a modification.
+     */
+    synchronized void track() {
+        if (this.managedBatch != null && trackingObject == null) {
+            this.trackingObject = new Object();
+            CleanupReference managedBatchReference  = new CleanupReference(trackingObject, managedBatch, stree.getBatchManager(children == null).getBatchManagerReference());
+            REFERENCES.put(managedBatch, managedBatchReference);
+        }
+    }
+
+    /**
+     * Release this page from the given tree.  A page shared with a clone is left
+     * intact and cleaned up once it is no longer referenced.
+     */
+    void release(STree tree, boolean force) {
+        if (generation == tree.generation) {
+            remove(force);
+        } else {
+            track();
+        }
+    }
+
+    static SearchResult search(STree tree, SPage page, List k, List<SearchResult> parent) throws TeiidComponentException {
         List<List<?>> previousValues = null;
         for (;;) {
             List<List<?>> values = page.getValues();
-            int index = Collections.binarySearch(values, k, page.stree.comparator);
+            int index = Collections.binarySearch(values, k, tree.comparator);
             int flippedIndex = - index - 1;
             if (previousValues != null) {
                 if (flippedIndex == 0) {
                     //systemic weakness of the algorithm
-                    return new SearchResult(-previousValues.size() - 1, page.prev, previousValues);
+                    return new SearchResult(-previousValues.size() - 1, tree.local(page.prev), previousValues);
                 }
                 if (parent != null && index != 0) {
-                    page.stree.updateLock.lock();
+                    tree.updateLock.lock();
                     try {
-                        index = Collections.binarySearch(values, k, page.stree.comparator);
+                        index = Collections.binarySearch(values, k, tree.comparator);
                         if (index != 0) {
                             //for non-matches move the previous pointer over to this page
                             SPage childPage = page;
                             List oldKey = null;
-                            List newKey = page.stree.extractKey(values.get(0));
+                            List newKey = tree.extractKey(values.get(0));
                             for (ListIterator<SearchResult> desc = parent.listIterator(); desc.hasPrevious();) {
                                 SearchResult sr = desc.previous();
+                                tree.own(sr);
                                 int parentIndex = Math.max(0, -sr.index - 2);
                                 if (oldKey == null) {
                                     oldKey = sr.values.set(parentIndex, newKey);
-                                } else if (page.stree.comparator.compare(oldKey, sr.values.get(parentIndex)) == 0 ) {
+                                } else if (tree.comparator.compare(oldKey, sr.values.get(parentIndex)) == 0 ) {
                                     sr.values.set(parentIndex, newKey);
                                 } else {
                                     break;
@@ -165,7 +191,7 @@ class SPage implements Cloneable {
                             }
                         }
                     } finally {
-                        page.stree.updateLock.unlock();
+                        tree.updateLock.unlock();
                     }
                 }
             }
@@ -173,7 +199,7 @@ class SPage implements Cloneable {
                 return new SearchResult(index, page, values);
             }
             previousValues = values;
-            page = page.next;
+            page = tree.local(page.next);
         }
     }
 
@@ -242,16 +268,18 @@ class SPage implements Cloneable {
 
     static void merge(LinkedList<SearchResult> places, List<List<?>> nextValues, SPage current, List<List<?>> currentValues)
     throws TeiidComponentException {
+        STree tree = current.stree;
+        SPage next = tree.own(current.next);
         SearchResult parent = places.peekLast();
         if (parent != null) {
-            correctParents(parent.page, nextValues.get(0), current.next, current);
+            correctParents(parent.page, nextValues.get(0), next, current);
         }
         currentValues.addAll(nextValues);
         if (current.children != null) {
-            current.children.addAll(current.next.children);
+            current.children.addAll(next.children);
         }
-        current.next.remove(false);
-        current.next = current.next.next;
+        current.next = tree.own(next.next);
+        next.remove(false);
         if (current.next != null) {
             current.next.prev = current;
         }
@@ -266,10 +294,11 @@ class SPage implements Cloneable {
      * @throws TeiidComponentException
      */
     static void correctParents(SPage parent, List key, SPage page, SPage nextPage) throws TeiidComponentException {
-        SearchResult location = SPage.search(parent, key, null);
+        STree tree = nextPage.stree;
+        SearchResult location = SPage.search(tree, parent, key, null);
         while (location.index == -1 && location.page.prev != null ) {
-            parent = location.page.prev;
-            location = SPage.search(parent, key, null);
+            parent = tree.local(location.page.prev);
+            location = SPage.search(tree, parent, key, null);
         }
         parent = location.page;
         int index = location.index;
@@ -278,13 +307,14 @@ class SPage implements Cloneable {
         }
         while (parent != null) {
             while (index < parent.children.size()) {
-                if (parent.children.get(index) != page) {
+                if (tree.local(parent.children.get(index)) != page) {
                     return;
                 }
+                parent = tree.own(parent);
                 parent.children.set(index++, nextPage);
             }
             index = 0;
-            parent = parent.next;
+            parent = tree.local(parent.next);
         }
     }
 
@@ -23,11 +23,15 @@ import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.ReentrantLock;
 
@@ -51,13 +55,74 @@ public class STree implements Cloneable {
 
     public enum InsertMode {ORDERED, NEW, UPDATE}
 
+    /**
+     * Maps page ids to the version of the page visible to a tree.  Clones share the
+     * frozen table of their source as a parent and record only their own copies.
+     */
+    static class PageTable {
+        private static final int MAX_DEPTH = 8;
+
+        private final PageTable parent;
+        private final int depth;
+        private final ConcurrentHashMap<Long, SPage> pages = new ConcurrentHashMap<Long, SPage>();
+
+        PageTable(PageTable parent) {
+            this.parent = parent;
+            this.depth = parent == null ? 0 : parent.depth + 1;
+        }
+
+        SPage get(long id) {
+            for (PageTable table = this; table != null; table = table.parent) {
+                SPage page = table.pages.get(id);
+                if (page != null) {
+                    return page;
+                }
+            }
+            return null;
+        }
+
+        void put(SPage page) {
+            pages.put(page.getId(), page);
+        }
+
+        Collection<SPage> values() {
+            if (parent == null) {
+                return pages.values();
+            }
+            Map<Long, SPage> result = new HashMap<Long, SPage>();
+            collect(result);
+            return result.values();
+        }
+
+        private void collect(Map<Long, SPage> result) {
+            if (parent != null) {
+                parent.collect(result);
+            }
+            result.putAll(pages);
+        }
+
+        /**
+         * Return a table to be shared as the parent of clones.  The chain is
+         * flattened once it is too deep to keep lookups short.
+         */
+        PageTable freeze() {
+            if (depth < MAX_DEPTH) {
+                return this;
+            }
+            PageTable result = new PageTable(null);
+            collect(result.pages);
+            return result;
+        }
+    }
+
     private static final Random seedGenerator = new Random(0);
 
     protected int randomSeed;
     private int mask = 1;
     private int shift = 1;
 
-    protected HashMap<Long, SPage> pages = new HashMap<Long, SPage>();
+    protected PageTable pages = new PageTable(null);
+    protected Object generation = new Object();
     protected volatile SPage[] header = new SPage[] {new SPage(this, true)};
     protected BatchManager keyManager;
     protected BatchManager leafManager;
@@ -73,7 +138,7 @@ public class STree implements Cloneable {
 
     protected ReentrantLock updateLock = new ReentrantLock();
 
-    private AtomicLong rowCount = new AtomicLong();
+    protected AtomicLong rowCount = new AtomicLong();
 
     public STree(BatchManager manager,
             BatchManager leafManager,
@@ -103,6 +168,11 @@ public class STree implements Cloneable {
         this.minStorageSize = this.pageSize>>2;
     }
 
+    /**
+     * Clone the tree.  The pages are shared rather than copied - both this tree
+     * and the clone will copy only the pages that they subsequently modify, so that
+     * the cost is proportional to the changes rather than to the size of the tree.
+     */
     public STree clone() {
         updateLock.lock();
         try {
@@ -112,26 +182,13 @@ public class STree implements Cloneable {
             }
             clone.updateLock = new ReentrantLock();
             clone.rowCount = new AtomicLong(rowCount.get());
-            //clone the pages
-            clone.pages = new HashMap<Long, SPage>(pages);
-            for (Map.Entry<Long, SPage> entry : clone.pages.entrySet()) {
-                entry.setValue(entry.getValue().clone(clone));
-            }
-            //reset the pointers
-            for (Map.Entry<Long, SPage> entry : clone.pages.entrySet()) {
-                SPage clonePage = entry.getValue();
-                clonePage.next = clone.getPage(clonePage.next);
-                clonePage.prev = clone.getPage(clonePage.prev);
-                if (clonePage.children != null) {
-                    for (int i = 0; i < clonePage.children.size(); i++) {
-                        clonePage.children.set(i, clone.getPage(clonePage.children.get(i)));
-                    }
-                }
-            }
+            //freeze the current page versions and start new generations
+            PageTable base = pages.freeze();
+            this.pages = new PageTable(base);
+            clone.pages = new PageTable(base);
+            this.generation = new Object();
+            clone.generation = new Object();
             clone.header = Arrays.copyOf(header, header.length);
-            for (int i = 0; i < header.length; i++) {
-                clone.header[i] = clone.pages.get(header[i].getId());
-            }
             return clone;
         } catch (CloneNotSupportedException e) {
              throw new TeiidRuntimeException(QueryPlugin.Event.TEIID30039, e);
@@ -140,11 +197,61 @@ public class STree implements Cloneable {
         }
     }
 
-    private SPage getPage(SPage page) {
-        if (page == null) {
+    /**
+     * Get the version of the page visible to this tree
+     */
+    SPage local(SPage page) {
+        if (page == null || page.generation == generation) {
+            return page;
+        }
+        SPage result = pages.get(page.getId());
+        if (result == null) {
             return page;
         }
-        return pages.get(page.getId());
+        return result;
+    }
+
+    /**
+     * Get a version of the page that may be modified by this tree.  If the page
+     * is shared with a clone, then a copy is made.
+     */
+    SPage own(SPage page) {
+        page = local(page);
+        if (page == null || page.generation == generation) {
+            return page;
+        }
+        updateLock.lock();
+        try {
+            page = local(page);
+            if (page.generation == generation) {
+                return page;
+            }
+            SPage copy = page.clone(this);
+            pages.put(copy);
+            SPage[] levels = header;
+            for (int i = 0; i < levels.length; i++) {
+                if (levels[i] == page) {
+                    levels[i] = copy;
+                }
+            }
+            return copy;
+        } finally {
+            updateLock.unlock();
+        }
+    }
+
+    void own(SearchResult result) throws TeiidComponentException {
+        SPage page = own(result.page);
+        if (page != result.page) {
+            result.page = page;
+            result.values = page.getValues();
+        }
+    }
+
+    void own(List<SearchResult> places) throws TeiidComponentException {
+        for (SearchResult result : places) {
+            own(result);
+        }
     }
 
     public void writeValuesTo(ObjectOutputStream oos) throws TeiidComponentException, IOException {
@@ -156,7 +263,7 @@ public class STree implements Cloneable {
             if (page.next == null) {
                 break;
             }
-            page = page.next;
+            page = local(page.next);
         }
     }
 
@@ -168,7 +275,7 @@ public class STree implements Cloneable {
         if (batchInsert || incompleteInsert == null) {
             return;
         }
-        SPage toFlush = incompleteInsert;
+        SPage toFlush = own(incompleteInsert);
         incompleteInsert = null;
         if (toFlush.managedBatch != null || toFlush.values == null) {
             return;
@@ -193,14 +300,14 @@ public class STree implements Cloneable {
         if (page == null) {
             page = header[header.length - 1];
             while (page.next != null) {
-                page = page.next;
+                page = local(page.next);
             }
             return page;
         }
         if (page.children != null) {
-            page = page.children.get(page.children.size() - 1);
+            page = local(page.children.get(page.children.size() - 1));
             while (page.next != null) {
-                page = page.next;
+                page = local(page.next);
             }
         }
         return page;
@@ -238,12 +345,20 @@ public class STree implements Cloneable {
      * @throws TeiidComponentException
      */
     List find(List n, List<SearchResult> places) throws TeiidComponentException {
+        return find(n, places, places != null);
+    }
+
+    /**
+     * @param correctParents true if stale parent pointers found during the search
+     * should be fixed - which requires the update lock
+     */
+    List find(List n, List<SearchResult> places, boolean correctParents) throws TeiidComponentException {
         SPage x = null;
         for (int i = header.length - 1; i >= 0; i--) {
             if (x == null) {
                 x = header[i];
             }
-            SearchResult s = SPage.search(x, n, places);
+            SearchResult s = SPage.search(this, x, n, correctParents ? places : null);
             if (places != null) {
                 places.add(s);
             }
@@ -264,7 +379,7 @@ public class STree implements Cloneable {
                 }
                 return s.values.get(index);
             }
-            x = x.children.get(index);
+            x = local(x.children.get(index));
         }
         return null;
     }
@@ -297,6 +412,7 @@ public class STree implements Cloneable {
                     return match;
                 }
                 SearchResult last = places.getLast();
+                own(last);
                 SPage page = last.page;
                 last.values.set(last.index, tuple);
                 page.setValues(last.values);
@@ -306,6 +422,7 @@ public class STree implements Cloneable {
                 return match;
             }
         }
+        own(places);
         List key = extractKey(tuple);
         int level = 0;
         if (mode != InsertMode.ORDERED) {
@@ -371,7 +488,7 @@ public class STree implements Cloneable {
         if (result.values.size() == getPageSize(leaf)) {
             SPage nextPage = new SPage(this, leaf);
             List<List<?>> nextValues = nextPage.getValues();
-            nextPage.next = page.next;
+            nextPage.next = own(page.next);
             nextPage.prev = page;
             if (nextPage.next != null) {
                 nextPage.next.prev = nextPage;
@@ -428,6 +545,7 @@ public class STree implements Cloneable {
             return null;
         }
         rowCount.addAndGet(-1);
+        own(places);
         for (int i = 0; i < header.length; i++) {
             SearchResult searchResult = places.removeLast();
             if (searchResult.index < 0) {
@@ -444,16 +562,16 @@ public class STree implements Cloneable {
                 if (header[i] != searchResult.page) {
                     searchResult.page.remove(false);
                     if (searchResult.page.next != null) {
-                        searchResult.page.next.prev = searchResult.page.prev;
+                        own(searchResult.page.next).prev = local(searchResult.page.prev);
                     }
-                    searchResult.page.prev.next = searchResult.page.next;
+                    own(searchResult.page.prev).next = local(searchResult.page.next);
                     searchResult.page.next = header[i];
                     searchResult.page.prev = null;
                     continue;
                 }
                 header[i].remove(false);
                 if (header[i].next != null) {
-                    header[i] = header[i].next;
+                    header[i] = own(header[i].next);
                     header[i].prev = null;
                 } else {
                     if (i != 0) {
@@ -466,16 +584,18 @@ public class STree implements Cloneable {
             } else if (size < getPageSize(leaf)/2) {
                 //check for merge
                 if (searchResult.page.next != null) {
-                    List<List<?>> nextValues = searchResult.page.next.getValues();
+                    List<List<?>> nextValues = local(searchResult.page.next).getValues();
                     if (nextValues.size() < getPageSize(leaf)/4) {
                         SPage.merge(places, nextValues, searchResult.page, searchResult.values);
                         continue;
                     }
                 }
                 if (searchResult.page.prev != null) {
-                    List<List<?>> prevValues = searchResult.page.prev.getValues();
+                    SPage prev = local(searchResult.page.prev);
+                    List<List<?>> prevValues = prev.getValues();
                     if (prevValues.size() < getPageSize(leaf)/4) {
-                        SPage.merge(places, searchResult.values, searchResult.page.prev, prevValues);
+                        prev = own(prev);
+                        SPage.merge(places, searchResult.values, prev, prev.getValues());
                         continue;
                     }
                 }
@@ -506,8 +626,8 @@ public class STree implements Cloneable {
         for (int i = 0; i < header.length; i++) {
             SPage page = header[i];
             while (page != null) {
-                page.remove(force);
-                page = page.next;
+                page.release(this, force);
+                page = local(page.next);
             }
         }
         header = new SPage[] {new SPage(this, true)};
@@ -527,7 +647,7 @@ public class STree implements Cloneable {
             while (page != null) {
                 result.append(page);
                 result.append(", "); //$NON-NLS-1$
-                page = page.next;
+                page = local(page.next);
             }
             result.append("\n"); //$NON-NLS-1$
         }
@@ -575,17 +695,34 @@ public class STree implements Cloneable {
         this.comparator.setSortParameters(sortParameters);
     }
 
+    /**
+     * Stop tracking the batches of pages that are owned exclusively by this tree.
+     * Pages visible through the parent table, and copies that still share a batch
+     * with them, may be in use by other clones and are left as is.
+     */
     public void clearClonedFlags() {
-        for (SPage page : pages.values()) {
-            if (page.trackingObject != null) {
-                Long val = page.managedBatch;
-                if (val != null) {
-                    SPage.REFERENCES.remove(val);
+        Set<Long> shared = new HashSet<Long>();
+        if (pages.parent != null) {
+            for (SPage page : pages.parent.values()) {
+                if (page.managedBatch != null) {
+                    shared.add(page.managedBatch);
+                }
+            }
+        }
+        for (SPage page : pages.pages.values()) {
+            if (page.generation != generation || page.trackingObject == null) {
+                continue;
+            }
+            Long val = page.managedBatch;
+            if (val != null) {
+                if (shared.contains(val)) {
+                    continue;
                 }
-                page.trackingObject = null;
-                //we don't really care about using synchronization or a volatile here
-                //since the worst case is that we'll just use gc cleanup
+                SPage.REFERENCES.remove(val);
             }
+            page.trackingObject = null;
+            //we don't really care about using synchronization or a volatile here
+            //since the worst case is that we'll just use gc cleanup
         }
     }
 
@@ -623,7 +760,7 @@ public class STree implements Cloneable {
                         current.remove(true);
                     }
                     values = null;
-                    current = current.next;
+                    current = local(current.next);
                     if (current == null) {
                         return null;
                     }
@@ -68,7 +68,12 @@ public class TupleBatch {
      */
     public TupleBatch(long beginRow, List<? extends List<?>> listOfTupleLists) {
         this.rowOffset = beginRow;
-        this.tuples = new ArrayList<List<?>>(listOfTupleLists);
+        if (listOfTupleLists instanceof ColumnarBatch) {
+            //read-only, so there's no need to copy
+            this.tuples = (ColumnarBatch)listOfTupleLists;
+        } else {
+            this.tuples = new ArrayList<List<?>>(listOfTupleLists);
+        }
     }
 
     /**
@@ -114,6 +119,17 @@ public class TupleBatch {
         return tuples;
     }
 
+    /**
+     * Add a tuple to the end of this batch.  A read-only {@link ColumnarBatch}
+     * is first copied.
+     */
+    public void addTuple(List<?> tuple) {
+        if (tuples instanceof ColumnarBatch) {
+            tuples = new ArrayList<List<?>>(tuples);
+        }
+        tuples.add(tuple);
+    }
+
     /**
      * Get all tuples
      * @return All tuples
@@ -251,9 +251,9 @@ public class TupleBrowser implements TupleSource {
             }
             resetState();
             if (direction) {
-                page = page.next;
+                page = tree.local(page.next);
             } else {
-                page = page.prev;
+                page = tree.local(page.prev);
             }
             if (atBound) {
                 page = null;
@@ -268,7 +268,7 @@ public class TupleBrowser implements TupleSource {
 
     private void resetState() throws TeiidComponentException {
         if (updated) {
-            page.setValues(values);
+            tree.own(page).setValues(values);
         }
         updated = false;
         setValues(null);
@@ -306,7 +306,8 @@ public class TupleBrowser implements TupleSource {
         index-=getOffset();
         List<?> lowerBound = values.remove(index);
         //check if the page has been removed
-        if (page != null && page.managedBatch == null && page.values == null) {
+        SPage current = tree.local(page);
+        if (current != null && current.managedBatch == null && current.values == null) {
             setPageAfterRemove(lowerBound);
         }
         if (index == values.size() && page != null) {
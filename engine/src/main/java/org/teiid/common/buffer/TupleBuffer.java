@@ -130,6 +130,11 @@ public class TupleBuffer {
     private LobManager lobManager;
     private String uuid;
 
+    //read-ahead state
+    private int readAheadBatches;
+    private long lastReadEndRow = -1;
+    private long prefetchedThrough;
+
     public TupleBuffer(BatchManager manager, String id, List<? extends Expression> schema, LobManager lobManager, int batchSize) {
         this.manager = manager;
         this.tupleSourceID = id;
@@ -282,8 +287,12 @@ public class TupleBuffer {
             Map.Entry<Long, Long> entry = batches.floorEntry(row);
             Assertion.isNotNull(entry);
             Long batch = entry.getValue();
+            if (readAheadBatches > 0) {
+                readAhead(entry.getKey());
+            }
             List<List<?>> rows = manager.getBatch(batch, !forwardOnly);
             result = new TupleBatch(entry.getKey(), rows);
+            lastReadEndRow = result.getEndRow();
             if (isFinal && result.getEndRow() == rowCount) {
                 result.setTerminationFlag(true);
             }
@@ -297,6 +306,43 @@ public class TupleBuffer {
         return result;
     }
 
+    /**
+     * Issue prefetches for the batches following a sequential read
+     */
+    private void readAhead(long beginRow) {
+        boolean sequential = beginRow == lastReadEndRow + 1;
+        if (!sequential && beginRow != batches.firstKey()) {
+            prefetchedThrough = beginRow;
+            return;
+        }
+        if (!sequential || prefetchedThrough < beginRow) {
+            //starting a new scan
+            prefetchedThrough = beginRow;
+        }
+        int count = 0;
+        for (Map.Entry<Long, Long> next : batches.tailMap(beginRow, false).entrySet()) {
+            if (++count > readAheadBatches) {
+                break;
+            }
+            if (next.getKey() > prefetchedThrough) {
+                manager.prefetch(next.getValue());
+                prefetchedThrough = next.getKey();
+            }
+        }
+    }
+
+    /**
+     * Set the number of batches to read ahead when the buffer is being read sequentially.
+     * 0 disables read ahead.
+     */
+    public void setReadAheadBatches(int readAheadBatches) {
+        this.readAheadBatches = readAheadBatches;
+    }
+
+    public int getReadAheadBatches() {
+        return readAheadBatches;
+    }
+
     public void remove() {
         if (!removed) {
             if (LogManager.isMessageToBeRecorded(LogConstants.CTX_BUFFER_MGR, MessageLevel.DETAIL)) {
@@ -0,0 +1,48 @@
+/*
+ * Copyright Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags and
+ * the COPYRIGHT.txt file distributed with this work.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.teiid.common.buffer.impl;
+
+import java.io.IOException;
+
+/**
+ * A codec applied to the serialized form of storage objects in the
+ * {@link BufferFrontedFileStoreCache}.  Implementations must be thread safe.
+ */
+public interface BlockCodec {
+
+    /**
+     * @return the maximum compressed size of the given number of bytes
+     */
+    int maxCompressedLength(int length);
+
+    /**
+     * Compress the source bytes into dest, which must have at least
+     * {@link #maxCompressedLength(int)} bytes available.
+     * @return the compressed length
+     */
+    int compress(byte[] src, int srcOff, int length, byte[] dest, int destOff);
+
+    /**
+     * Decompress the source bytes into dest
+     * @param rawLength the expected decompressed length
+     * @throws IOException if the data is not valid
+     */
+    void decompress(byte[] src, int srcOff, int length, byte[] dest, int destOff, int rawLength) throws IOException;
+
+}
@@ -552,6 +552,10 @@ public class BufferFrontedFileStoreCache implements Cache<PhysicalInfo> {
     private AtomicLong storageWrites = new AtomicLong();
     private AtomicLong storageReads = new AtomicLong();
 
+    private BlockCodec blockCodec;
+    private AtomicLong bytesBeforeCompression = new AtomicLong();
+    private AtomicLong bytesAfterCompression = new AtomicLong();
+
     private long minDefrag = DEFAULT_MIN_DEFRAG;
     private BufferManagerImpl bufferManager;
 
@@ -664,7 +668,13 @@ public class BufferFrontedFileStoreCache implements Cache<PhysicalInfo> {
             BlockOutputStream bos = new BlockOutputStream(blockManager, memoryBlocks);
             bos.writeLong(s.getId());
             bos.writeLong(entry.getId());
-            ObjectOutput dos = new ObjectOutputStream(bos);
+            CompressedOutputStream cos = null;
+            OutputStream os = bos;
+            if (blockCodec != null) {
+                cos = new CompressedOutputStream(bos, blockCodec);
+                os = cos;
+            }
+            ObjectOutput dos = new ObjectOutputStream(os);
             s.serialize(entry.getObject(), dos);
             dos.close();
             //synchronized to ensure proper cleanup from a concurrent removal
@@ -681,6 +691,10 @@ public class BufferFrontedFileStoreCache implements Cache<PhysicalInfo> {
                         memoryBufferEntries.add(info);
                     }
                     success = true;
+                    if (cos != null) {
+                        bytesBeforeCompression.addAndGet(cos.getRawBytes());
+                        bytesAfterCompression.addAndGet(cos.getStoredBytes());
+                    }
                 } else {
                     if (LogManager.isMessageToBeRecorded(LogConstants.CTX_BUFFER_MGR, MessageLevel.DETAIL)) {
                         LogManager.logDetail(LogConstants.CTX_BUFFER_MGR, "removed during add", s.getId(), entry.getId()); //$NON-NLS-1$
@@ -825,6 +839,9 @@ public class BufferFrontedFileStoreCache implements Cache<PhysicalInfo> {
             for (int i = 0; i < HEADER_BYTES; i++) {
                 is.read();
             }
+            if (blockCodec != null) {
+                is = new CompressedInputStream(is, blockCodec);
+            }
             ObjectInput dis = new ObjectInputStream(is);
             CacheEntry ce = new CacheEntry(new CacheKey(oid, 1, 1), info.sizeEstimate, serializer.deserialize(dis), ref, true);
             return ce;
@@ -864,12 +881,10 @@ public class BufferFrontedFileStoreCache implements Cache<PhysicalInfo> {
             fileLock.lock();
             locked = true;
             ExtensibleBufferedOutputStream os = new BlockOutputStream(manager, -1);
-            //TODO: there is still an extra buffer being created here, we could FileChannels to do better
+            //the buffers may be views of a file mapping, in which case this is the only copy
             ByteBuffer bb = null;
             while ((bb = is.getBuffer()) != null) {
-                byte[] array = bb.array();
-                os.write(array, bb.position() + bb.arrayOffset(), bb.remaining());
-                bb.position(bb.position()+bb.remaining());
+                os.write(bb);
             }
             fileLock.unlock();
             os.close();
@@ -1258,6 +1273,34 @@ public class BufferFrontedFileStoreCache implements Cache<PhysicalInfo> {
         return storageWrites.get();
     }
 
+    /**
+     * Set the codec used to compress the serialized form of objects prior to placing them
+     * in the memory buffer - which then also reduces the size of what is written to storage.
+     * Should be set prior to initialization.  A null value, the default, disables compression.
+     * @param blockCodec
+     */
+    public void setBlockCodec(BlockCodec blockCodec) {
+        this.blockCodec = blockCodec;
+    }
+
+    public BlockCodec getBlockCodec() {
+        return blockCodec;
+    }
+
+    /**
+     * @return the serialized bytes of objects added before compression
+     */
+    public long getBytesBeforeCompression() {
+        return bytesBeforeCompression.get();
+    }
+
+    /**
+     * @return the serialized bytes of objects added after compression
+     */
+    public long getBytesAfterCompression() {
+        return bytesAfterCompression.get();
+    }
+
     public long getMemoryBufferSpace() {
         return memoryBufferSpace;
     }
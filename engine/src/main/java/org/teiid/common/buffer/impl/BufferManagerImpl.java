@@ -35,6 +35,7 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.ListIterator;
@@ -42,8 +43,12 @@ import java.util.Map;
 import java.util.Timer;
 import java.util.TimerTask;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.Condition;
 import java.util.concurrent.locks.ReentrantLock;
@@ -54,12 +59,14 @@ import org.teiid.client.ResizingArrayList;
 import org.teiid.client.util.ExceptionUtil;
 import org.teiid.common.buffer.AutoCleanupUtil;
 import org.teiid.common.buffer.AutoCleanupUtil.Removable;
+import org.teiid.common.buffer.BPlusTree;
 import org.teiid.common.buffer.BatchManager;
 import org.teiid.common.buffer.BlockedException;
 import org.teiid.common.buffer.BufferManager;
 import org.teiid.common.buffer.Cache;
 import org.teiid.common.buffer.CacheEntry;
 import org.teiid.common.buffer.CacheKey;
+import org.teiid.common.buffer.ColumnarBatch;
 import org.teiid.common.buffer.FileStore;
 import org.teiid.common.buffer.LobManager;
 import org.teiid.common.buffer.LobManager.ReferenceMode;
@@ -74,6 +81,7 @@ import org.teiid.core.types.DataTypeManager;
 import org.teiid.core.types.DataTypeManager.WeakReferenceHashedValueCache;
 import org.teiid.core.types.Streamable;
 import org.teiid.core.util.Assertion;
+import org.teiid.core.util.ExecutorUtils;
 import org.teiid.dqp.internal.process.DQPConfiguration;
 import org.teiid.dqp.internal.process.RequestWorkItem;
 import org.teiid.dqp.service.SessionService;
@@ -161,7 +169,7 @@ public class BufferManagerImpl implements BufferManager, ReplicatedObject<String
         }
 
         private void checkForOrphanedMemoryEntries(BufferManagerImpl impl) {
-            if (impl.memoryEntries.size() <= impl.evictionQueue.getSize() + impl.initialEvictionQueue.getSize() + CONCURRENCY_LEVEL) {
+            if (impl.memoryEntries.size() <= impl.evictionQueue.getSize() + impl.initialEvictionQueue.getSize() + impl.pendingSpills.size() + CONCURRENCY_LEVEL) {
                 return;
             }
             int count = 0;
@@ -205,6 +213,65 @@ public class BufferManagerImpl implements BufferManager, ReplicatedObject<String
         }
     }
 
+    /**
+     * An eviction that has been handed off to the write-behind spill thread
+     */
+    private static final class PendingSpill {
+        final CacheEntry entry;
+        final CacheKey key;
+        final LrfuEvictionQueue<CacheEntry> queue;
+        final long gid;
+        final long queued = System.nanoTime();
+
+        PendingSpill(CacheEntry entry, LrfuEvictionQueue<CacheEntry> queue) {
+            this.entry = entry;
+            this.key = entry.getKey();
+            this.queue = queue;
+            Serializer<?> s = entry.getSerializer();
+            this.gid = s != null ? s.getId() : -1;
+        }
+    }
+
+    /**
+     * Orders spills so that the batches of the same buffer are written together
+     */
+    private static final Comparator<PendingSpill> SPILL_ORDER = new Comparator<PendingSpill>() {
+        @Override
+        public int compare(PendingSpill o1, PendingSpill o2) {
+            int result = Long.compare(o1.gid, o2.gid);
+            if (result == 0) {
+                result = o1.entry.getId().compareTo(o2.entry.getId());
+            }
+            return result;
+        }
+    };
+
+    /**
+     * Drains the write-behind queue.  Only a single instance runs at a time.
+     */
+    private final class SpillTask implements Runnable {
+        @Override
+        public void run() {
+            List<PendingSpill> spills = new ArrayList<PendingSpill>(MAX_SPILL_GROUP);
+            while (true) {
+                pendingSpills.drainTo(spills, MAX_SPILL_GROUP);
+                if (spills.isEmpty()) {
+                    spilling.set(false);
+                    //recheck for a concurrent add
+                    if (pendingSpills.isEmpty() || !spilling.compareAndSet(false, true)) {
+                        return;
+                    }
+                    continue;
+                }
+                Collections.sort(spills, SPILL_ORDER);
+                for (PendingSpill spill : spills) {
+                    spill(spill);
+                }
+                spills.clear();
+            }
+        }
+    }
+
     /**
      * This estimate is based upon adding the value to 2/3 maps and having CacheEntry/PhysicalInfo keys
      */
@@ -217,6 +284,8 @@ public class BufferManagerImpl implements BufferManager, ReplicatedObject<String
         private PhantomReference<Object> cleanup;
         AtomicBoolean prefersMemory = new AtomicBoolean();
         String[] types;
+        private Class<?>[] typeClasses;
+        private boolean columnar;
         private LobManager lobManager;
         private long totalSize;
         private long currentSize;
@@ -227,6 +296,7 @@ public class BufferManagerImpl implements BufferManager, ReplicatedObject<String
         private BatchManagerImpl(Long newID, Class<?>[] types) {
             this.id = newID;
             this.sizeUtility = new SizeUtility(types);
+            this.typeClasses = types;
             this.types = new String[types.length];
             for (int i = 0; i < types.length; i++) {
                 this.types[i] = DataTypeManager.getDataTypeName(types[i]);
@@ -242,6 +312,15 @@ public class BufferManagerImpl implements BufferManager, ReplicatedObject<String
             this.lobManager = lobManager;
         }
 
+        /**
+         * Hold batches in a {@link ColumnarBatch} form.  Should be set prior to
+         * adding batches and is only valid for managers whose batches are not modified in place
+         * and do not have lobs.
+         */
+        void setColumnar(boolean columnar) {
+            this.columnar = columnar && lobManager == null && ColumnarBatch.isColumnarType(typeClasses);
+        }
+
         @Override
         public String[] getTypes() {
             return types;
@@ -279,6 +358,12 @@ public class BufferManagerImpl implements BufferManager, ReplicatedObject<String
                 cache.createCacheGroup(id);
                 cleanup = AutoCleanupUtil.setCleanupReference(this, new Remover(id, prefersMemory));
             }
+            if (columnar) {
+                ColumnarBatch columnarBatch = ColumnarBatch.create(typeClasses, batch);
+                if (columnarBatch != null) {
+                    batch = columnarBatch;
+                }
+            }
             CacheEntry old = null;
             if (previous != null) {
                 old = fastGet(previous, prefersMemory.get(), true);
@@ -344,6 +429,9 @@ public class BufferManagerImpl implements BufferManager, ReplicatedObject<String
         @Override
         public List<? extends List<?>> deserialize(ObjectInput ois)
                 throws IOException, ClassNotFoundException {
+            if (columnar && ois.readBoolean()) {
+                return ColumnarBatch.readBatch(ois, types);
+            }
             List<? extends List<?>> batch = BatchSerializer.readBatch(ois, types);
             if (lobManager != null) {
                 for (int i = batch.size() - 1; i >= 0; i--) {
@@ -365,6 +453,14 @@ public class BufferManagerImpl implements BufferManager, ReplicatedObject<String
                 list = (ResizingArrayList<?>)obj;
             }
             try {
+                if (columnar) {
+                    boolean isColumnar = obj instanceof ColumnarBatch;
+                    oos.writeBoolean(isColumnar);
+                    if (isColumnar) {
+                        ((ColumnarBatch)obj).writeBatch(oos, types);
+                        return;
+                    }
+                }
                 //it's expected that the containing structure has updated the lob manager
                 BatchSerializer.writeBatch(oos, types, obj);
             } catch (RuntimeException e) {
@@ -384,6 +480,64 @@ public class BufferManagerImpl implements BufferManager, ReplicatedObject<String
             return (int) Math.max(1, sizeUtility.getBatchSize(DataTypeManager.isValueCacheEnabled(), obj));
         }
 
+        @Override
+        public void prefetch(final Long batch) {
+            final ExecutorService executor = prefetchExecutor;
+            if (executor == null || removed || memoryEntries.containsKey(batch)) {
+                return;
+            }
+            //don't prefetch if that would just cause more evictions
+            if (activeBatchBytes.get() + overheadBytes.get() > reserveBatchBytes.get()) {
+                return;
+            }
+            if (prefetchesInFlight.incrementAndGet() > MAX_PREFETCHES) {
+                prefetchesInFlight.decrementAndGet();
+                return;
+            }
+            try {
+                executor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            load(batch);
+                        } finally {
+                            prefetchesInFlight.decrementAndGet();
+                        }
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                prefetchesInFlight.decrementAndGet();
+            }
+        }
+
+        /**
+         * Load the batch from storage into memory if it's not already present
+         */
+        void load(Long batch) {
+            Cache c = cache;
+            if (removed || c == null || memoryEntries.containsKey(batch)) {
+                return;
+            }
+            Object o = c.lockForLoad(batch, this);
+            try {
+                if (removed || memoryEntries.containsKey(batch)) {
+                    return;
+                }
+                CacheEntry ce = c.get(o, batch, this.ref);
+                if (ce == null) {
+                    return; //removed or read concurrently
+                }
+                readCount.incrementAndGet();
+                prefetchCount.incrementAndGet();
+                addMemoryEntry(ce);
+            } catch (Throwable e) {
+                //just a hint, a read will report the error
+                LogManager.logDetail(LogConstants.CTX_BUFFER_MGR, e, "Could not prefetch batch", id, batch); //$NON-NLS-1$
+            } finally {
+                c.unlockForLoad(o);
+            }
+        }
+
         @SuppressWarnings("unchecked")
         @Override
         public List<List<?>> getBatch(Long batch, boolean retain)
@@ -491,7 +645,24 @@ public class BufferManagerImpl implements BufferManager, ReplicatedObject<String
         }
     }
 
+    private final class SoftCacheStripe extends LinkedHashMap<Long, BatchSoftReference> {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long,BatchSoftReference> eldest) {
+            if (size() > Math.max(1, maxSoftReferences/softCache.length)) {
+                BatchSoftReference bsr = eldest.getValue();
+                clearSoftReference(bsr);
+                return true;
+            }
+            return false;
+        }
+    }
+
     static final int CONCURRENCY_LEVEL = 32; //TODO: make this configurable since it is roughly the same as max active plans
+    static final int EVICTION_STRIPES = Math.min(CONCURRENCY_LEVEL, Runtime.getRuntime().availableProcessors());
+    private static final int MAX_SPILL_GROUP = 64;
+    private static final int MAX_PREFETCHES = CONCURRENCY_LEVEL;
     private static final int TARGET_BYTES_PER_ROW = 1 << 11; //2k bytes per row
     private static ReferenceQueue<CacheEntry> SOFT_QUEUE = new ReferenceQueue<CacheEntry>();
 
@@ -512,30 +683,21 @@ public class BufferManagerImpl implements BufferManager, ReplicatedObject<String
 
     private ReentrantLock lock = new ReentrantLock();
     private Condition batchesFreed = lock.newCondition();
+    //the number of threads that may be waiting on batchesFreed
+    private AtomicInteger reserveWaiters = new AtomicInteger();
 
     AtomicLong activeBatchBytes = new AtomicLong();
 
     private AtomicLong readAttempts = new AtomicLong();
     //TODO: consider the size estimate in the weighting function
-    LrfuEvictionQueue<CacheEntry> evictionQueue = new LrfuEvictionQueue<CacheEntry>(readAttempts);
-    LrfuEvictionQueue<CacheEntry> initialEvictionQueue = new LrfuEvictionQueue<CacheEntry>(readAttempts);
+    LrfuEvictionQueue<CacheEntry> evictionQueue = new StripedLrfuEvictionQueue<CacheEntry>(readAttempts, EVICTION_STRIPES);
+    LrfuEvictionQueue<CacheEntry> initialEvictionQueue = new StripedLrfuEvictionQueue<CacheEntry>(readAttempts, EVICTION_STRIPES);
     ConcurrentHashMap<Long, CacheEntry> memoryEntries = new ConcurrentHashMap<Long, CacheEntry>(16, .75f, CONCURRENCY_LEVEL);
 
     //limited size reference caches based upon the memory settings
     private WeakReferenceHashedValueCache<CacheEntry> weakReferenceCache;
-    private Map<Long, BatchSoftReference> softCache = Collections.synchronizedMap(new LinkedHashMap<Long, BatchSoftReference>(16, .75f, false) {
-        private static final long serialVersionUID = 1L;
-
-        protected boolean removeEldestEntry(Map.Entry<Long,BatchSoftReference> eldest) {
-            if (size() > maxSoftReferences) {
-                BatchSoftReference bsr = eldest.getValue();
-                clearSoftReference(bsr);
-                return true;
-            }
-            return false;
-        }
-
-    });
+    //striped by batch id, each stripe holds an equal share of the max soft references
+    private SoftCacheStripe[] softCache = new SoftCacheStripe[EVICTION_STRIPES];
 
     private Cache cache;
     private StorageManager storageManager;
@@ -555,6 +717,25 @@ public class BufferManagerImpl implements BufferManager, ReplicatedObject<String
     private Cleaner cleaner;
     private AtomicBoolean cleaning = new AtomicBoolean();
 
+    //write-behind spilling
+    private boolean writeBehind;
+    private int maxWriteBehindKB = -1;
+    private long maxWriteBehindBytes;
+    private ExecutorService spillExecutor;
+    LinkedBlockingQueue<PendingSpill> pendingSpills = new LinkedBlockingQueue<PendingSpill>();
+    AtomicLong pendingSpillBytes = new AtomicLong();
+    private AtomicBoolean spilling = new AtomicBoolean();
+    private AtomicLong spillCount = new AtomicLong();
+    private AtomicLong spillLatencyNanos = new AtomicLong();
+    private AtomicLong maxSpillLatencyNanos = new AtomicLong();
+    private AtomicLong spillRejections = new AtomicLong();
+
+    //read-ahead
+    private int readAheadBatches;
+    private ExecutorService prefetchExecutor;
+    private AtomicInteger prefetchesInFlight = new AtomicInteger();
+    private AtomicLong prefetchCount = new AtomicLong();
+
     private long maxFileStoreLength = Long.MAX_VALUE;
     private long maxBatchManagerSizeEstimate = Long.MAX_VALUE;
     private boolean enforceMaxBatchManagerSizeEstimate = false;
@@ -567,6 +748,9 @@ public class BufferManagerImpl implements BufferManager, ReplicatedObject<String
     }
 
     public BufferManagerImpl(boolean sharedTimer) {
+        for (int i = 0; i < softCache.length; i++) {
+            softCache[i] = new SoftCacheStripe();
+        }
         this.cleaner = new Cleaner(this);
         if (sharedTimer) {
             if (SHARED_TIMER == null) {
@@ -611,6 +795,82 @@ public class BufferManagerImpl implements BufferManager, ReplicatedObject<String
         return readAttempts.get();
     }
 
+    /**
+     * Spill evictions from processing threads to storage on a background thread.
+     * Must be set prior to {@link #initialize()}
+     */
+    public void setWriteBehind(boolean writeBehind) {
+        this.writeBehind = writeBehind;
+    }
+
+    public boolean isWriteBehind() {
+        return writeBehind;
+    }
+
+    /**
+     * Set the max size of the batches awaiting write-behind, -1 determines the value automatically
+     */
+    public void setMaxWriteBehindKB(int maxWriteBehindKB) {
+        this.maxWriteBehindKB = maxWriteBehindKB;
+    }
+
+    public long getMaxWriteBehindBytes() {
+        return maxWriteBehindBytes;
+    }
+
+    public int getWriteBehindQueueSize() {
+        return pendingSpills.size();
+    }
+
+    public long getWriteBehindQueueBytes() {
+        return pendingSpillBytes.get();
+    }
+
+    public long getWriteBehindCount() {
+        return spillCount.get();
+    }
+
+    /**
+     * @return the number of evictions performed by the calling thread because the write-behind queue was full
+     */
+    public long getWriteBehindRejections() {
+        return spillRejections.get();
+    }
+
+    /**
+     * @return the average time in milliseconds from queuing a spill to its completion
+     */
+    public double getAverageWriteBehindLatency() {
+        long count = spillCount.get();
+        if (count == 0) {
+            return 0;
+        }
+        return spillLatencyNanos.get() / (count * 1000000d);
+    }
+
+    public double getMaxWriteBehindLatency() {
+        return maxSpillLatencyNanos.get() / 1000000d;
+    }
+
+    /**
+     * Set the number of batches that sequential reads of a {@link TupleBuffer} will
+     * asynchronously load ahead of the current batch.  Must be set prior to {@link #initialize()}
+     */
+    public void setReadAheadBatches(int readAheadBatches) {
+        this.readAheadBatches = readAheadBatches;
+    }
+
+    public int getReadAheadBatches() {
+        return readAheadBatches;
+    }
+
+    /**
+     * @return the number of batches loaded from storage by read ahead
+     */
+    public long getPrefetchCount() {
+        return prefetchCount.get();
+    }
+
     @Override
     public int getMaxProcessingSize() {
         return maxProcessingBytes;
@@ -650,15 +910,26 @@ public class BufferManagerImpl implements BufferManager, ReplicatedObject<String
             lobManager = new LobManager(lobIndexes, lobStore);
             batchManager.setLobManager(lobManager);
         }
+        batchManager.setColumnar(getOptions().isColumnarBatches());
         TupleBuffer tupleBuffer = new TupleBuffer(batchManager, String.valueOf(newID), elements, lobManager, getProcessorBatchSize(elements));
         if (LogManager.isMessageToBeRecorded(LogConstants.CTX_BUFFER_MGR, MessageLevel.DETAIL)) {
             LogManager.logDetail(LogConstants.CTX_BUFFER_MGR, "Creating TupleBuffer:", newID, elements, Arrays.toString(types), "batch size", tupleBuffer.getBatchSize(), "of type", tupleSourceType); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
         }
         tupleBuffer.setInlineLobs(inlineLobs);
+        tupleBuffer.setReadAheadBatches(readAheadBatches);
         return tupleBuffer;
     }
 
     public STree createSTree(final List<? extends Expression> elements, String groupName, int keyLength) {
+        return createSTree(elements, keyLength, false);
+    }
+
+    @Override
+    public STree createBPlusTree(List<? extends Expression> elements, String groupName, int keyLength) {
+        return createSTree(elements, keyLength, true);
+    }
+
+    private STree createSTree(final List<? extends Expression> elements, int keyLength, boolean bplus) {
         Long newID = this.tsId.getAndIncrement();
         int[] lobIndexes = LobManager.getLobIndexes(elements);
         Class<?>[] types = getTypeClasses(elements);
@@ -674,9 +945,13 @@ public class BufferManagerImpl implements BufferManager, ReplicatedObject<String
             compareIndexes[i] = i;
         }
         if (LogManager.isMessageToBeRecorded(LogConstants.CTX_BUFFER_MGR, MessageLevel.DETAIL)) {
-            LogManager.logDetail(LogConstants.CTX_BUFFER_MGR, "Creating STree:", newID, keyLength, elements); //$NON-NLS-1$
+            LogManager.logDetail(LogConstants.CTX_BUFFER_MGR, bplus?"Creating BPlusTree:":"Creating STree:", newID, keyLength, elements); //$NON-NLS-1$ //$NON-NLS-2$
+        }
+        ListNestedSortComparator comparator = new ListNestedSortComparator(compareIndexes).defaultNullOrder(getOptions().getDefaultNullOrder());
+        if (bplus) {
+            return new BPlusTree(keyManager, bm, comparator, getProcessorBatchSize(elements.subList(0, keyLength)), getProcessorBatchSize(elements), keyLength, lobManager);
         }
-        return new STree(keyManager, bm, new ListNestedSortComparator(compareIndexes).defaultNullOrder(getOptions().getDefaultNullOrder()), getProcessorBatchSize(elements.subList(0, keyLength)), getProcessorBatchSize(elements), keyLength, lobManager);
+        return new STree(keyManager, bm, comparator, getProcessorBatchSize(elements.subList(0, keyLength)), getProcessorBatchSize(elements), keyLength, lobManager);
     }
 
     private static Class<?>[] getTypeClasses(final List<? extends Expression> elements) {
@@ -791,6 +1066,18 @@ public class BufferManagerImpl implements BufferManager, ReplicatedObject<String
         }
         this.maxSoftReferences = 1 << Math.min(30, logSize);
         this.nominalProcessingMemoryMax = (int)Math.max(Math.min(this.maxReserveBytes, 2*this.maxProcessingBytes), Math.min(Integer.MAX_VALUE, 2*this.maxReserveBytes/maxActivePlans));
+        if (maxWriteBehindKB < 0) {
+            //allow roughly a processing batch per active plan to be in flight
+            this.maxWriteBehindBytes = Math.max(this.maxProcessingBytes, this.maxReserveBytes/8);
+        } else {
+            this.maxWriteBehindBytes = ((long)maxWriteBehindKB)<<10;
+        }
+        if (writeBehind && spillExecutor == null) {
+            spillExecutor = ExecutorUtils.newFixedThreadPool(1, "BufferManager Spill"); //$NON-NLS-1$
+        }
+        if (readAheadBatches > 0 && prefetchExecutor == null) {
+            prefetchExecutor = ExecutorUtils.newFixedThreadPool(Math.min(4, Runtime.getRuntime().availableProcessors()), "BufferManager Prefetch"); //$NON-NLS-1$
+        }
     }
 
     void setNominalProcessingMemoryMax(int nominalProcessingMemoryMax) {
@@ -824,12 +1111,15 @@ public class BufferManagerImpl implements BufferManager, ReplicatedObject<String
                 LogManager.logTrace(LogConstants.CTX_BUFFER_MGR, "Releasing orphaned buffer space", count); //$NON-NLS-1$
             }
         }
-        lock.lock();
-        try {
-            this.reserveBatchBytes.addAndGet(count);
-            batchesFreed.signalAll();
-        } finally {
-            lock.unlock();
+        this.reserveBatchBytes.addAndGet(count);
+        //only contend for the lock if there may be a blocked reserver
+        if (reserveWaiters.get() > 0) {
+            lock.lock();
+            try {
+                batchesFreed.signalAll();
+            } finally {
+                lock.unlock();
+            }
         }
     }
 
@@ -847,13 +1137,9 @@ public class BufferManagerImpl implements BufferManager, ReplicatedObject<String
         if (mode == BufferReserveMode.FORCE) {
             reserve(count, context);
         } else {
-            lock.lock();
-            try {
-                count = Math.min(count, nominalProcessingMemoryMax - existing);
-                result = noWaitReserve(count, false, context);
-            } finally {
-                lock.unlock();
-            }
+            //noWaitReserve is safe to call concurrently
+            count = Math.min(count, nominalProcessingMemoryMax - existing);
+            result = noWaitReserve(count, false, context);
         }
         persistBatchReferences(result);
         return result;
@@ -896,6 +1182,7 @@ public class BufferManagerImpl implements BufferManager, ReplicatedObject<String
             if (val[1] > 1) {
                 long last = val[1];
                 val[1] = System.currentTimeMillis();
+                reserveWaiters.incrementAndGet();
                 try {
                     lock.lock();
                     if (val[1] - last < 10) {
@@ -928,6 +1215,7 @@ public class BufferManagerImpl implements BufferManager, ReplicatedObject<String
                     throw new TeiidRuntimeException(e);
                 } finally {
                     lock.unlock();
+                    reserveWaiters.decrementAndGet();
                 }
             }
             if (result == 0) {
@@ -1028,8 +1316,8 @@ public class BufferManagerImpl implements BufferManager, ReplicatedObject<String
         long freed = 0;
         while (freed <= maxToFree && (
                 ageOut
-                || (queue == evictionQueue && activeBatchBytes.get() + overheadBytes.get() + this.maxReserveBytes/2 > reserveBatchBytes.get()) //nominal cleaning criterion
-                || (queue != evictionQueue && activeBatchBytes.get() + overheadBytes.get() + 3*this.maxReserveBytes/4 > reserveBatchBytes.get()))) { //assume that basically all initial batches will need to be written out at some point
+                || (queue == evictionQueue && activeBatchBytes.get() - pendingSpillBytes.get() + overheadBytes.get() + this.maxReserveBytes/2 > reserveBatchBytes.get()) //nominal cleaning criterion
+                || (queue != evictionQueue && activeBatchBytes.get() - pendingSpillBytes.get() + overheadBytes.get() + 3*this.maxReserveBytes/4 > reserveBatchBytes.get()))) { //assume that basically all initial batches will need to be written out at some point
             CacheEntry ce = queue.firstEntry(!ageOut);
             if (ce == null) {
                 break;
@@ -1052,24 +1340,39 @@ public class BufferManagerImpl implements BufferManager, ReplicatedObject<String
                 }
                 queue.remove(ce);
             }
-            boolean evicted = true;
-            try {
-                evicted = evict(ce);
-            } catch (Throwable e) {
-                LogManager.logError(LogConstants.CTX_BUFFER_MGR, e, QueryPlugin.Util.gs(QueryPlugin.Event.TEIID30017, ce.getId() ));
-            } finally {
-                if (evicted) {
-                    synchronized (ce) {
-                        if (memoryEntries.remove(ce.getId()) != null) {
-                            Serializer<?> s = ce.getSerializer();
-                            if (LogManager.isMessageToBeRecorded(LogConstants.CTX_BUFFER_MGR, MessageLevel.TRACE)) {
-                                LogManager.logTrace(LogConstants.CTX_BUFFER_MGR, "Removing batch from heap cache", s!=null?s.getId():null, ce.getId()); //$NON-NLS-1$
-                            }
-                            freed += ce.getSizeEstimate();
-                            long result = activeBatchBytes.addAndGet(-ce.getSizeEstimate());
-                            assert result >= 0 || !LrfuEvictionQueue.isSuspectSize(activeBatchBytes);
-                            queue.remove(ce); //ensures that an intervening get will still be cleaned
+            if (!ageOut && queueSpill(ce, queue)) {
+                //count the bytes as freed so that the caller can proceed, they are accounted for in pendingSpillBytes
+                freed += ce.getSizeEstimate();
+                continue;
+            }
+            freed += evictAndRemove(ce, queue);
+        }
+        return freed;
+    }
+
+    /**
+     * Evict and remove the entry from memory
+     * @return the bytes freed
+     */
+    private long evictAndRemove(CacheEntry ce, LrfuEvictionQueue<CacheEntry> queue) {
+        long freed = 0;
+        boolean evicted = true;
+        try {
+            evicted = evict(ce);
+        } catch (Throwable e) {
+            LogManager.logError(LogConstants.CTX_BUFFER_MGR, e, QueryPlugin.Util.gs(QueryPlugin.Event.TEIID30017, ce.getId() ));
+        } finally {
+            if (evicted) {
+                synchronized (ce) {
+                    if (memoryEntries.remove(ce.getId()) != null) {
+                        Serializer<?> s = ce.getSerializer();
+                        if (LogManager.isMessageToBeRecorded(LogConstants.CTX_BUFFER_MGR, MessageLevel.TRACE)) {
+                            LogManager.logTrace(LogConstants.CTX_BUFFER_MGR, "Removing batch from heap cache", s!=null?s.getId():null, ce.getId()); //$NON-NLS-1$
                         }
+                        freed += ce.getSizeEstimate();
+                        long result = activeBatchBytes.addAndGet(-ce.getSizeEstimate());
+                        assert result >= 0 || !LrfuEvictionQueue.isSuspectSize(activeBatchBytes);
+                        queue.remove(ce); //ensures that an intervening get will still be cleaned
                     }
                 }
             }
@@ -1077,6 +1380,66 @@ public class BufferManagerImpl implements BufferManager, ReplicatedObject<String
         return freed;
     }
 
+    /**
+     * Hand off the eviction to the spill thread.
+     * @return false if the write-behind queue is full, in which case the caller must perform the eviction
+     * - which is the back pressure on processing threads reserving or adding batches
+     */
+    private boolean queueSpill(CacheEntry ce, LrfuEvictionQueue<CacheEntry> queue) {
+        ExecutorService executor = spillExecutor;
+        if (executor == null) {
+            return false;
+        }
+        int size = ce.getSizeEstimate();
+        long pending = pendingSpillBytes.addAndGet(size);
+        //always allow a single entry regardless of size
+        if (pending > maxWriteBehindBytes && pending != size) {
+            pendingSpillBytes.addAndGet(-size);
+            spillRejections.getAndIncrement();
+            return false;
+        }
+        pendingSpills.add(new PendingSpill(ce, queue));
+        if (spilling.compareAndSet(false, true)) {
+            executor.execute(new SpillTask());
+        }
+        return true;
+    }
+
+    void spill(PendingSpill spill) {
+        CacheEntry ce = spill.entry;
+        try {
+            if (cache == null) {
+                return; //shutdown
+            }
+            synchronized (ce) {
+                if (!memoryEntries.containsKey(ce.getId())) {
+                    return; //removed or read while pending
+                }
+                if (ce.getKey() != spill.key) {
+                    return; //accessed while pending, it is back on an eviction queue
+                }
+            }
+            evictAndRemove(ce, spill.queue);
+        } finally {
+            pendingSpillBytes.addAndGet(-ce.getSizeEstimate());
+            spillCount.getAndIncrement();
+            long latency = System.nanoTime() - spill.queued;
+            spillLatencyNanos.addAndGet(latency);
+            long max = maxSpillLatencyNanos.get();
+            while (latency > max && !maxSpillLatencyNanos.compareAndSet(max, latency)) {
+                max = maxSpillLatencyNanos.get();
+            }
+            if (reserveWaiters.get() > 0) {
+                lock.lock();
+                try {
+                    batchesFreed.signalAll();
+                } finally {
+                    lock.unlock();
+                }
+            }
+        }
+    }
+
     boolean evict(CacheEntry ce) throws Exception {
         Serializer<?> s = ce.getSerializer();
         if (s == null) {
@@ -1109,8 +1472,24 @@ public class BufferManagerImpl implements BufferManager, ReplicatedObject<String
         //will push the soft ref out of memory potentially too quickly
         int sizeEstimate = ce.getSizeEstimate()/2;
         BatchSoftReference ref = new BatchSoftReference(ce, SOFT_QUEUE, sizeEstimate);
-        softCache.put(ce.getId(), ref);
         overheadBytes.addAndGet(sizeEstimate);
+        SoftCacheStripe stripe = getSoftCacheStripe(ce.getId());
+        synchronized (stripe) {
+            stripe.put(ce.getId(), ref);
+        }
+    }
+
+    private SoftCacheStripe getSoftCacheStripe(Long id) {
+        int h = id.hashCode();
+        h ^= (h >>> 16);
+        return softCache[(h & 0x7fffffff) % softCache.length];
+    }
+
+    private BatchSoftReference removeSoftReference(Long id) {
+        SoftCacheStripe stripe = getSoftCacheStripe(id);
+        synchronized (stripe) {
+            return stripe.remove(id);
+        }
     }
 
     /**
@@ -1148,7 +1527,7 @@ public class BufferManagerImpl implements BufferManager, ReplicatedObject<String
             return ce;
         }
         if (prefersMemory == null || prefersMemory) {
-            BatchSoftReference bsr = softCache.remove(batch);
+            BatchSoftReference bsr = removeSoftReference(batch);
             if (bsr != null) {
                 ce = bsr.get();
                 if (ce != null) {
@@ -1242,7 +1621,7 @@ public class BufferManagerImpl implements BufferManager, ReplicatedObject<String
             if (ref == null) {
                 break;
             }
-            softCache.remove(ref.key);
+            removeSoftReference(ref.key);
             clearSoftReference(ref);
         }
     }
@@ -1298,8 +1677,17 @@ public class BufferManagerImpl implements BufferManager, ReplicatedObject<String
         this.cache.shutdown();
         this.cache = null;
         this.memoryEntries.clear();
-        this.evictionQueue.getEvictionQueue().clear();
-        this.initialEvictionQueue.getEvictionQueue().clear();
+        this.evictionQueue.clear();
+        this.initialEvictionQueue.clear();
+        if (this.spillExecutor != null) {
+            this.spillExecutor.shutdownNow();
+            this.spillExecutor = null;
+        }
+        this.pendingSpills.clear();
+        if (this.prefetchExecutor != null) {
+            this.prefetchExecutor.shutdownNow();
+            this.prefetchExecutor = null;
+        }
         this.cleaner.cancel();
         if (this.timer != SHARED_TIMER) {
             this.timer.cancel();
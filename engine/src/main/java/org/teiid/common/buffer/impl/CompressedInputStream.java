@@ -0,0 +1,99 @@
+/*
+ * Copyright Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags and
+ * the COPYRIGHT.txt file distributed with this work.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.teiid.common.buffer.impl;
+
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Reads the frames written by a {@link CompressedOutputStream}
+ */
+final class CompressedInputStream extends InputStream {
+
+    private final DataInputStream in;
+    private final BlockCodec codec;
+    private byte[] buffer;
+    private byte[] compressed;
+    private int pos;
+    private int limit;
+
+    CompressedInputStream(InputStream in, BlockCodec codec) {
+        this.in = new DataInputStream(in);
+        this.codec = codec;
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (pos == limit && !readFrame()) {
+            return -1;
+        }
+        return buffer[pos++] & 0xff;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        if (pos == limit && !readFrame()) {
+            return -1;
+        }
+        len = Math.min(len, limit - pos);
+        System.arraycopy(buffer, pos, b, off, len);
+        pos += len;
+        return len;
+    }
+
+    private boolean readFrame() throws IOException {
+        int rawLength = 0;
+        int length = 0;
+        try {
+            rawLength = in.readInt();
+            length = in.readInt();
+        } catch (EOFException e) {
+            return false;
+        }
+        if (rawLength <= 0 || rawLength > CompressedOutputStream.FRAME_SIZE || length <= 0 || length > rawLength) {
+            throw new IOException("Invalid frame header " + rawLength + " " + length); //$NON-NLS-1$ //$NON-NLS-2$
+        }
+        if (buffer == null || buffer.length < rawLength) {
+            buffer = new byte[rawLength];
+        }
+        if (length == rawLength) {
+            in.readFully(buffer, 0, rawLength);
+        } else {
+            if (compressed == null || compressed.length < length) {
+                compressed = new byte[length];
+            }
+            in.readFully(compressed, 0, length);
+            codec.decompress(compressed, 0, length, buffer, 0, rawLength);
+        }
+        pos = 0;
+        limit = rawLength;
+        return true;
+    }
+
+    @Override
+    public int available() throws IOException {
+        return limit - pos;
+    }
+
+}
@@ -0,0 +1,137 @@
+/*
+ * Copyright Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags and
+ * the COPYRIGHT.txt file distributed with this work.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.teiid.common.buffer.impl;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+/**
+ * Writes frames of at most {@link #FRAME_SIZE} bytes through a {@link BlockCodec}.
+ * Each frame is prefixed by the raw and stored lengths - if the codec does not reduce
+ * the size of a frame, it is stored as is.
+ */
+final class CompressedOutputStream extends OutputStream {
+
+    static final int FRAME_SIZE = 1 << 16;
+    private static final int INITIAL_SIZE = 1 << 13;
+
+    private final OutputStream out;
+    private final BlockCodec codec;
+    private byte[] buffer = new byte[INITIAL_SIZE];
+    private int count;
+    private byte[] compressed;
+    private long rawBytes;
+    private long storedBytes;
+
+    CompressedOutputStream(OutputStream out, BlockCodec codec) {
+        this.out = out;
+        this.codec = codec;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        if (count == buffer.length) {
+            ensureCapacity();
+        }
+        buffer[count++] = (byte)b;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        while (len > 0) {
+            if (count == buffer.length) {
+                ensureCapacity();
+            }
+            int toCopy = Math.min(len, buffer.length - count);
+            System.arraycopy(b, off, buffer, count, toCopy);
+            count += toCopy;
+            off += toCopy;
+            len -= toCopy;
+        }
+    }
+
+    /**
+     * grow the buffer up to the frame size, then write out a frame
+     */
+    private void ensureCapacity() throws IOException {
+        if (buffer.length < FRAME_SIZE) {
+            buffer = Arrays.copyOf(buffer, buffer.length << 1);
+        } else {
+            writeFrame();
+        }
+    }
+
+    private void writeFrame() throws IOException {
+        if (count == 0) {
+            return;
+        }
+        int maxLength = codec.maxCompressedLength(count);
+        if (compressed == null || compressed.length < maxLength) {
+            compressed = new byte[maxLength];
+        }
+        int length = codec.compress(buffer, 0, count, compressed, 0);
+        writeInt(count);
+        if (length < count) {
+            writeInt(length);
+            out.write(compressed, 0, length);
+        } else {
+            writeInt(count);
+            out.write(buffer, 0, count);
+            length = count;
+        }
+        rawBytes += count;
+        storedBytes += length + 8;
+        count = 0;
+    }
+
+    private void writeInt(int v) throws IOException {
+        out.write(v >>> 24);
+        out.write(v >>> 16);
+        out.write(v >>> 8);
+        out.write(v);
+    }
+
+    @Override
+    public void flush() throws IOException {
+        writeFrame();
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        writeFrame();
+        out.close();
+    }
+
+    /**
+     * @return the number of bytes written to this stream
+     */
+    long getRawBytes() {
+        return rawBytes;
+    }
+
+    /**
+     * @return the number of bytes written to the underlying stream, including frame headers
+     */
+    long getStoredBytes() {
+        return storedBytes;
+    }
+
+}
@@ -65,6 +65,21 @@ public abstract class ExtensibleBufferedOutputStream extends OutputStream {
         }
     }
 
+    /**
+     * Write the remaining bytes of the given buffer, which may be direct.
+     * The position of the buffer will be advanced to its limit.
+     */
+    public void write(ByteBuffer b) throws IOException {
+        while (b.hasRemaining()) {
+            ensureBuffer();
+            int toCopy = Math.min(buf.remaining(), b.remaining());
+            ByteBuffer src = b.duplicate();
+            src.limit(src.position() + toCopy);
+            buf.put(src);
+            b.position(b.position() + toCopy);
+        }
+    }
+
     public void flush() throws IOException {
         if (buf != null) {
             int bytes = buf.position() - startPosition;
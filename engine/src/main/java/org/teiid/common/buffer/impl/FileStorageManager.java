@@ -22,6 +22,8 @@ import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel.MapMode;
 import java.util.Collections;
 import java.util.LinkedHashMap;
 import java.util.Map;
@@ -197,6 +199,22 @@ public class FileStorageManager implements StorageManager {
             }
         }
 
+        /**
+         * Map a region of the file, which should already be within the file length.
+         * @return the mapping or null if the file has not yet been created
+         */
+        synchronized MappedByteBuffer map(long position, long size) throws IOException {
+            if (fileInfo == null) {
+                return null;
+            }
+            try {
+                //the mapping remains valid even after the file is closed
+                return fileInfo.open().getChannel().map(MapMode.READ_WRITE, position, size);
+            } finally {
+                fileInfo.close();
+            }
+        }
+
         @Override
         public synchronized void removeDirect() {
             usedBufferSpace.addAndGet(-getLength());
@@ -0,0 +1,175 @@
+/*
+ * Copyright Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags and
+ * the COPYRIGHT.txt file distributed with this work.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.teiid.common.buffer.impl;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * A fast LZ77 style codec that produces the LZ4 block format.
+ * It favors speed over ratio - there is a single hash table probe per position
+ * and incompressible input is skipped over at an accelerating rate.
+ */
+public final class LZ4BlockCodec implements BlockCodec {
+
+    private static final int MIN_MATCH = 4;
+    private static final int HASH_LOG = 12;
+    private static final int LAST_LITERALS = 5;
+    private static final int MF_LIMIT = 12;
+    private static final int MAX_DISTANCE = (1 << 16) - 1;
+    private static final int SKIP_TRIGGER = 6;
+    private static final int RUN_MASK = 0x0f;
+
+    @Override
+    public int maxCompressedLength(int length) {
+        return length + length/255 + 16;
+    }
+
+    @Override
+    public int compress(byte[] src, int srcOff, int length, byte[] dest,
+            int destOff) {
+        int srcEnd = srcOff + length;
+        int anchor = srcOff;
+        int dp = destOff;
+        if (length > MF_LIMIT) {
+            int[] table = new int[1 << HASH_LOG];
+            Arrays.fill(table, -1);
+            int matchLimit = srcEnd - LAST_LITERALS;
+            int mfLimit = srcEnd - MF_LIMIT;
+            int sp = srcOff;
+            while (sp <= mfLimit) {
+                int seq = readInt(src, sp);
+                int h = hash(seq);
+                int ref = table[h];
+                table[h] = sp;
+                if (ref < 0 || sp - ref > MAX_DISTANCE || readInt(src, ref) != seq) {
+                    sp += 1 + ((sp - anchor) >>> SKIP_TRIGGER);
+                    continue;
+                }
+                //extend backwards over pending literals
+                while (sp > anchor && ref > srcOff && src[sp - 1] == src[ref - 1]) {
+                    sp--;
+                    ref--;
+                }
+                int matchLength = MIN_MATCH;
+                while (sp + matchLength < matchLimit && src[sp + matchLength] == src[ref + matchLength]) {
+                    matchLength++;
+                }
+                int literals = sp - anchor;
+                int token = dp++;
+                dp = writeLength(dest, dp, literals);
+                System.arraycopy(src, anchor, dest, dp, literals);
+                dp += literals;
+                int offset = sp - ref;
+                dest[dp++] = (byte)offset;
+                dest[dp++] = (byte)(offset >>> 8);
+                dp = writeLength(dest, dp, matchLength - MIN_MATCH);
+                dest[token] = (byte)((Math.min(literals, RUN_MASK) << 4) | Math.min(matchLength - MIN_MATCH, RUN_MASK));
+                sp += matchLength;
+                anchor = sp;
+            }
+        }
+        int literals = srcEnd - anchor;
+        dest[dp++] = (byte)(Math.min(literals, RUN_MASK) << 4);
+        dp = writeLength(dest, dp, literals);
+        System.arraycopy(src, anchor, dest, dp, literals);
+        dp += literals;
+        return dp - destOff;
+    }
+
+    /**
+     * Write the bytes for a length beyond what fits in the token
+     */
+    private static int writeLength(byte[] dest, int dp, int length) {
+        if (length >= RUN_MASK) {
+            length -= RUN_MASK;
+            while (length >= 0xff) {
+                dest[dp++] = (byte)0xff;
+                length -= 0xff;
+            }
+            dest[dp++] = (byte)length;
+        }
+        return dp;
+    }
+
+    @Override
+    public void decompress(byte[] src, int srcOff, int length, byte[] dest,
+            int destOff, int rawLength) throws IOException {
+        int sp = srcOff;
+        int srcEnd = srcOff + length;
+        int dp = destOff;
+        int destEnd = destOff + rawLength;
+        try {
+            while (true) {
+                int token = src[sp++] & 0xff;
+                int literals = token >>> 4;
+                if (literals == RUN_MASK) {
+                    int b = 0;
+                    do {
+                        b = src[sp++] & 0xff;
+                        literals += b;
+                    } while (b == 0xff);
+                }
+                System.arraycopy(src, sp, dest, dp, literals);
+                sp += literals;
+                dp += literals;
+                if (sp >= srcEnd) {
+                    break;
+                }
+                int offset = (src[sp++] & 0xff) | ((src[sp++] & 0xff) << 8);
+                int matchLength = token & RUN_MASK;
+                if (matchLength == RUN_MASK) {
+                    int b = 0;
+                    do {
+                        b = src[sp++] & 0xff;
+                        matchLength += b;
+                    } while (b == 0xff);
+                }
+                matchLength += MIN_MATCH;
+                int ref = dp - offset;
+                if (offset == 0 || ref < destOff || dp + matchLength > destEnd) {
+                    throw new IOException("Invalid compressed block"); //$NON-NLS-1$
+                }
+                if (offset >= matchLength) {
+                    System.arraycopy(dest, ref, dest, dp, matchLength);
+                    dp += matchLength;
+                } else {
+                    //overlapping copy
+                    for (int i = 0; i < matchLength; i++) {
+                        dest[dp++] = dest[ref++];
+                    }
+                }
+            }
+        } catch (IndexOutOfBoundsException e) {
+            throw new IOException("Invalid compressed block", e); //$NON-NLS-1$
+        }
+        if (dp != destEnd) {
+            throw new IOException("Invalid compressed block"); //$NON-NLS-1$
+        }
+    }
+
+    private static int hash(int seq) {
+        return (seq * -1640531535) >>> (32 - HASH_LOG);
+    }
+
+    private static int readInt(byte[] b, int i) {
+        return (b[i] & 0xff) | ((b[i + 1] & 0xff) << 8) | ((b[i + 2] & 0xff) << 16) | ((b[i + 3] & 0xff) << 24);
+    }
+
+}
@@ -97,6 +97,11 @@ public class LrfuEvictionQueue<V extends BaseCacheEntry> {
         add(value);
     }
 
+    public void clear() {
+        evictionQueue.clear();
+        size.set(0);
+    }
+
     public Collection<V> getEvictionQueue() {
         return evictionQueue.values();
     }
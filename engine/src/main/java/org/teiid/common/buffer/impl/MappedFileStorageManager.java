@@ -0,0 +1,321 @@
+/*
+ * Copyright Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags and
+ * the COPYRIGHT.txt file distributed with this work.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.teiid.common.buffer.impl;
+
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.teiid.common.buffer.ExtensibleBufferedInputStream;
+import org.teiid.common.buffer.FileStore;
+import org.teiid.logging.LogConstants;
+import org.teiid.logging.LogManager;
+
+/**
+ * A {@link FileStorageManager} that serves reads, and writes to existing space,
+ * from memory mappings of the storage files so that re-reading spilled data is
+ * satisfied from the OS page cache without a syscall or an intermediate heap copy.
+ *
+ * Files are mapped lazily in fixed size regions and a region is only mapped up to
+ * the current file length.  The mapping of the last region grows in powers of 2, so
+ * it is replaced only a logarithmic number of times.  Growing a file still uses the
+ * {@link java.io.RandomAccessFile} logic so that the buffer space accounting is unchanged.
+ * Replaced mappings are explicitly released once the file is truncated below them or
+ * removed, so that the address space is reclaimed and the file may be deleted.
+ *
+ * Buffers returned from {@link MappedDiskStore#createInputStream(long, long)} are views
+ * of the mapping and are only valid as long as the store is not truncated below the read
+ * range - which {@link BufferFrontedFileStoreCache} ensures via its segment locks.
+ */
+public class MappedFileStorageManager extends FileStorageManager {
+
+    public static final int DEFAULT_REGION_SIZE = 1 << 26; //64 MB
+
+    private static final Object UNSAFE;
+    private static final Method INVOKE_CLEANER;
+
+    static {
+        Object unsafe = null;
+        Method invokeCleaner = null;
+        try {
+            //java 9+
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe"); //$NON-NLS-1$
+            invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class); //$NON-NLS-1$
+            Field f = unsafeClass.getDeclaredField("theUnsafe"); //$NON-NLS-1$
+            f.setAccessible(true);
+            unsafe = f.get(null);
+        } catch (Exception e) {
+            invokeCleaner = null;
+            unsafe = null;
+        }
+        UNSAFE = unsafe;
+        INVOKE_CLEANER = invokeCleaner;
+    }
+
+    private int logRegionSize = Integer.numberOfTrailingZeros(DEFAULT_REGION_SIZE);
+
+    private AtomicLong mappedReads = new AtomicLong();
+    private AtomicLong mappedWrites = new AtomicLong();
+    private AtomicLong unmapped = new AtomicLong();
+
+    public class MappedDiskStore extends DiskStore {
+
+        private MappedByteBuffer[] regions = new MappedByteBuffer[0];
+        private List<Mapping> retired = new ArrayList<Mapping>(2);
+
+        public MappedDiskStore(String name) {
+            super(name);
+        }
+
+        /**
+         * Get a view of the mapping for the given range
+         * @param remap true if the region may be (re)mapped to cover the range
+         * @return the view or null if the range is not mappable
+         */
+        private synchronized ByteBuffer getMapped(long fileOffset, int length, boolean remap) throws IOException {
+            int regionSize = 1 << logRegionSize;
+            int index = (int)(fileOffset >> logRegionSize);
+            int regionOffset = (int)(fileOffset & (regionSize - 1));
+            if (length <= 0 || regionOffset + length > regionSize) {
+                return null;
+            }
+            MappedByteBuffer region = index < regions.length ? regions[index] : null;
+            if (region == null || region.capacity() < regionOffset + length) {
+                if (!remap) {
+                    return null;
+                }
+                long regionStart = (long)index << logRegionSize;
+                long available = Math.min(regionSize, getLength() - regionStart);
+                if (available <= 0) {
+                    return null;
+                }
+                //only map power of 2 sizes so that a region is remapped at most log(regionSize) times
+                int size = Integer.highestOneBit((int)available);
+                if (size < regionOffset + length || (region != null && size <= region.capacity())) {
+                    return null;
+                }
+                MappedByteBuffer newRegion = map(regionStart, size);
+                if (newRegion == null) {
+                    return null;
+                }
+                if (index >= regions.length) {
+                    regions = Arrays.copyOf(regions, index + 1);
+                }
+                if (region != null) {
+                    //views of the old mapping may still be in use
+                    retired.add(new Mapping(regionStart, region));
+                }
+                regions[index] = newRegion;
+                region = newRegion;
+            }
+            ByteBuffer result = region.duplicate();
+            result.limit(regionOffset + length);
+            result.position(regionOffset);
+            return result.slice();
+        }
+
+        @Override
+        protected synchronized int readWrite(long fileOffset, byte[] b, int offSet,
+                int length, boolean write) throws IOException {
+            ByteBuffer mapped = getMapped(fileOffset, length, !write);
+            if (mapped == null) {
+                return super.readWrite(fileOffset, b, offSet, length, write);
+            }
+            if (write) {
+                mapped.put(b, offSet, length);
+                mappedWrites.getAndIncrement();
+            } else {
+                mapped.get(b, offSet, length);
+                mappedReads.getAndIncrement();
+            }
+            return length;
+        }
+
+        @Override
+        public ExtensibleBufferedInputStream createInputStream(final long start,
+                final long length) {
+            if (length < 0) {
+                return super.createInputStream(start, length);
+            }
+            return new ExtensibleBufferedInputStream() {
+                private long offset = start;
+                private long streamLength = length;
+                private ByteBuffer bb;
+
+                @Override
+                protected ByteBuffer nextBuffer() throws IOException {
+                    if (streamLength <= 0) {
+                        return null;
+                    }
+                    int len = (int)Math.min(streamLength, (1 << logRegionSize) - (offset & ((1 << logRegionSize) - 1)));
+                    ByteBuffer result = getMapped(offset, len, true);
+                    if (result != null) {
+                        mappedReads.getAndIncrement();
+                    } else {
+                        //not mappable, read through a heap buffer
+                        if (bb == null) {
+                            bb = ByteBuffer.allocate(1<<13);
+                        }
+                        len = Math.min(len, bb.capacity());
+                        len = MappedDiskStore.this.read(offset, bb.array(), 0, len);
+                        if (len == -1) {
+                            return null;
+                        }
+                        bb.rewind();
+                        bb.limit(len);
+                        result = bb;
+                    }
+                    offset += len;
+                    streamLength -= len;
+                    return result;
+                }
+            };
+        }
+
+        @Override
+        public synchronized void setLength(long length) throws IOException {
+            if (length < getLength()) {
+                //drop any mappings that extend beyond the new length
+                int index = (int)(length >> logRegionSize);
+                if (index < regions.length) {
+                    long regionStart = (long)index << logRegionSize;
+                    if (regions[index] != null) {
+                        if (regionStart + regions[index].capacity() <= length) {
+                            index++;
+                        } else if (regionStart < length) {
+                            //views below the new length may still be in use
+                            retired.add(new Mapping(regionStart, regions[index]));
+                            regions[index++] = null;
+                        }
+                    }
+                    for (int i = index; i < regions.length; i++) {
+                        if (regions[i] != null) {
+                            unmap(regions[i]);
+                            regions[i] = null;
+                        }
+                    }
+                }
+                for (Iterator<Mapping> iter = retired.iterator(); iter.hasNext();) {
+                    Mapping mapping = iter.next();
+                    if (mapping.start >= length) {
+                        unmap(mapping.buffer);
+                        iter.remove();
+                    }
+                }
+            }
+            super.setLength(length);
+        }
+
+        @Override
+        public synchronized void removeDirect() {
+            //unmap first so that the file may be deleted on all platforms
+            for (MappedByteBuffer region : regions) {
+                if (region != null) {
+                    unmap(region);
+                }
+            }
+            for (Mapping mapping : retired) {
+                unmap(mapping.buffer);
+            }
+            regions = new MappedByteBuffer[0];
+            retired.clear();
+            super.removeDirect();
+        }
+
+    }
+
+    private static class Mapping {
+        final long start;
+        final MappedByteBuffer buffer;
+
+        Mapping(long start, MappedByteBuffer buffer) {
+            this.start = start;
+            this.buffer = buffer;
+        }
+    }
+
+    @Override
+    public FileStore createFileStore(String name) {
+        return new MappedDiskStore(name);
+    }
+
+    /**
+     * Set the size in bytes of the mapped regions.  Will be rounded down to a power of 2.
+     * Reads that span a region boundary will not use the mapping.
+     * @param regionSize
+     */
+    public void setRegionSize(int regionSize) {
+        this.logRegionSize = 31 - Integer.numberOfLeadingZeros(Math.max(regionSize, 1<<13));
+    }
+
+    public int getRegionSize() {
+        return 1 << logRegionSize;
+    }
+
+    /**
+     * Get the number of reads served from a mapping
+     */
+    public long getMappedReads() {
+        return mappedReads.get();
+    }
+
+    /**
+     * Get the number of writes served by a mapping
+     */
+    public long getMappedWrites() {
+        return mappedWrites.get();
+    }
+
+    /**
+     * Get the number of mappings that have been explicitly released
+     */
+    public long getUnmapped() {
+        return unmapped.get();
+    }
+
+    /**
+     * Release the mapping without waiting for the buffer to be garbage collected.
+     * Must only be called once there are no views of the buffer in use.
+     */
+    private void unmap(MappedByteBuffer buffer) {
+        try {
+            if (UNSAFE != null) {
+                INVOKE_CLEANER.invoke(UNSAFE, buffer);
+            } else {
+                Method cleanerMethod = buffer.getClass().getMethod("cleaner"); //$NON-NLS-1$
+                cleanerMethod.setAccessible(true);
+                Object cleaner = cleanerMethod.invoke(buffer);
+                if (cleaner != null) {
+                    cleaner.getClass().getMethod("clean").invoke(cleaner); //$NON-NLS-1$
+                }
+            }
+            unmapped.getAndIncrement();
+        } catch (Exception e) {
+            LogManager.logDetail(LogConstants.CTX_BUFFER_MGR, e, "Could not unmap the buffer, it will be released when garbage collected"); //$NON-NLS-1$
+        }
+    }
+
+}
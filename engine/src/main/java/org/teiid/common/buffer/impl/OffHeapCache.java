@@ -0,0 +1,437 @@
+/*
+ * Copyright Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags and
+ * the COPYRIGHT.txt file distributed with this work.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.teiid.common.buffer.impl;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.lang.ref.WeakReference;
+import java.nio.ByteBuffer;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.teiid.common.buffer.BaseCacheEntry;
+import org.teiid.common.buffer.Cache;
+import org.teiid.common.buffer.CacheEntry;
+import org.teiid.common.buffer.CacheKey;
+import org.teiid.common.buffer.ExtensibleBufferedInputStream;
+import org.teiid.common.buffer.FileStore;
+import org.teiid.common.buffer.Serializer;
+import org.teiid.core.TeiidComponentException;
+import org.teiid.core.util.AccessibleByteArrayOutputStream;
+import org.teiid.logging.LogConstants;
+import org.teiid.logging.LogManager;
+import org.teiid.logging.MessageLevel;
+import org.teiid.query.QueryPlugin;
+
+/**
+ * A {@link Cache} tier that holds serialized objects in pooled direct memory ahead of
+ * another {@link Cache}, typically the {@link BufferFrontedFileStoreCache}.
+ *
+ * Memory is obtained from a {@link SizeClassAllocator} so that each object occupies a single
+ * contiguous block and the tier never holds more than its byte budget.
+ *
+ * Admission and eviction use the LRFU keys assigned by the {@link BufferManagerImpl} - an object
+ * evicted from the heap is only admitted if there is free space or if it is hotter than the coldest
+ * resident objects, which are then demoted to the delegate.  Objects that are not admitted go directly
+ * to the delegate.
+ *
+ * Locking is by object.  A demotion completes the add to the delegate prior to releasing the memory, so
+ * a get that finds the object missing here will find it in the delegate.
+ */
+public class OffHeapCache<T> implements Cache<T> {
+
+    private static final int MAX_DEMOTIONS = 64;
+
+    static final class OffHeapEntry extends BaseCacheEntry {
+        final long gid;
+        final int sizeEstimate;
+        final WeakReference<? extends Serializer<?>> serializer;
+        SizeClassAllocator.Slice slice;
+        int length;
+        boolean demoting;
+
+        OffHeapEntry(CacheKey key, long gid, int sizeEstimate, WeakReference<? extends Serializer<?>> serializer) {
+            super(key);
+            this.gid = gid;
+            this.sizeEstimate = sizeEstimate;
+            this.serializer = serializer;
+        }
+    }
+
+    private Cache<T> delegate;
+    private SizeClassAllocator allocator;
+    private long memoryBufferSpace;
+    private boolean direct = true;
+    private int maxStorageObjectSize = BufferFrontedFileStoreCache.DEFAULT_MAX_OBJECT_SIZE;
+
+    private ConcurrentHashMap<Long, Map<Long, OffHeapEntry>> groups = new ConcurrentHashMap<Long, Map<Long, OffHeapEntry>>();
+    //the keys are assigned by the buffer manager, so the clock is not used
+    private LrfuEvictionQueue<OffHeapEntry> entries = new LrfuEvictionQueue<OffHeapEntry>(new AtomicLong());
+
+    private AtomicLong hits = new AtomicLong();
+    private AtomicLong admissions = new AtomicLong();
+    private AtomicLong rejections = new AtomicLong();
+    private AtomicLong demotions = new AtomicLong();
+
+    public OffHeapCache(Cache<T> delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override
+    public void initialize() throws TeiidComponentException {
+        delegate.initialize();
+        this.allocator = new SizeClassAllocator(memoryBufferSpace, SizeClassAllocator.DEFAULT_LOG_MIN_SIZE,
+                Math.min(30, Math.max(SizeClassAllocator.DEFAULT_LOG_ARENA_SIZE, 32 - Integer.numberOfLeadingZeros(maxStorageObjectSize - 1))), direct);
+    }
+
+    @Override
+    public FileStore createFileStore(String name) {
+        return delegate.createFileStore(name);
+    }
+
+    @Override
+    public void createCacheGroup(Long gid) {
+        groups.put(gid, Collections.synchronizedMap(new HashMap<Long, OffHeapEntry>()));
+        delegate.createCacheGroup(gid);
+    }
+
+    @Override
+    public boolean addToCacheGroup(Long gid, Long oid) {
+        Map<Long, OffHeapEntry> group = groups.get(gid);
+        if (group == null || !delegate.addToCacheGroup(gid, oid)) {
+            return false;
+        }
+        group.put(oid, null);
+        return true;
+    }
+
+    @Override
+    public Collection<Long> removeCacheGroup(Long gid) {
+        Map<Long, OffHeapEntry> group = groups.remove(gid);
+        if (group != null) {
+            synchronized (group) {
+                for (OffHeapEntry entry : group.values()) {
+                    free(entry);
+                }
+            }
+        }
+        return delegate.removeCacheGroup(gid);
+    }
+
+    @Override
+    public Integer remove(Long gid, Long id) {
+        Map<Long, OffHeapEntry> group = groups.get(gid);
+        OffHeapEntry entry = null;
+        if (group != null) {
+            entry = group.remove(id);
+        }
+        Integer result = delegate.remove(gid, id);
+        if (entry != null) {
+            free(entry);
+            if (result == null) {
+                result = entry.sizeEstimate;
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public T lockForLoad(Long oid, Serializer<?> serializer) {
+        return delegate.lockForLoad(oid, serializer);
+    }
+
+    @Override
+    public void unlockForLoad(T lock) {
+        delegate.unlockForLoad(lock);
+    }
+
+    @Override
+    public CacheEntry get(T lock, Long oid,
+            WeakReference<? extends Serializer<?>> ref)
+            throws TeiidComponentException {
+        Serializer<?> serializer = ref.get();
+        if (serializer == null) {
+            return null;
+        }
+        Map<Long, OffHeapEntry> group = groups.get(serializer.getId());
+        OffHeapEntry entry = null;
+        if (group != null) {
+            entry = group.get(oid);
+        }
+        if (entry != null) {
+            synchronized (entry) {
+                if (entry.slice != null) {
+                    hits.getAndIncrement();
+                    try {
+                        return new CacheEntry(new CacheKey(oid, 1, 1), entry.sizeEstimate, read(entry, serializer), ref, true);
+                    } catch (IOException e) {
+                        throw new TeiidComponentException(QueryPlugin.Event.TEIID30048, e, QueryPlugin.Util.gs(QueryPlugin.Event.TEIID30048, entry.gid, oid));
+                    } catch (ClassNotFoundException e) {
+                        throw new TeiidComponentException(QueryPlugin.Event.TEIID30048, e, QueryPlugin.Util.gs(QueryPlugin.Event.TEIID30048, entry.gid, oid));
+                    }
+                }
+            }
+        }
+        if (lock == null) {
+            //the object may have been demoted after the load lock was obtained
+            T newLock = delegate.lockForLoad(oid, serializer);
+            if (newLock != null) {
+                try {
+                    return delegate.get(newLock, oid, ref);
+                } finally {
+                    delegate.unlockForLoad(newLock);
+                }
+            }
+        }
+        return delegate.get(lock, oid, ref);
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public boolean add(CacheEntry entry, Serializer s) throws Exception {
+        Map<Long, OffHeapEntry> group = groups.get(s.getId());
+        if (group == null) {
+            return true; //already removed
+        }
+        OffHeapEntry existing = group.get(entry.getId());
+        if (existing != null) {
+            synchronized (existing) {
+                if (existing.slice != null && !existing.demoting) {
+                    //update the ordering with the current buffer manager value
+                    entries.remove(existing);
+                    existing.setKey(entry.getKey());
+                    entries.add(existing);
+                    return true;
+                }
+            }
+            return delegate.add(entry, s);
+        }
+        AccessibleByteArrayOutputStream baos = new AccessibleByteArrayOutputStream(1 << 13);
+        ObjectOutputStream oos = new ObjectOutputStream(baos);
+        s.serialize(entry.getObject(), oos);
+        oos.close();
+        int length = baos.getCount();
+        SizeClassAllocator.Slice slice = null;
+        if (length <= maxStorageObjectSize) {
+            slice = allocate(length, entry.getKey());
+        }
+        if (slice == null) {
+            rejections.getAndIncrement();
+            return delegate.add(entry, s);
+        }
+        ByteBuffer bb = slice.getBuffer().duplicate();
+        bb.put(baos.getBuffer(), 0, length);
+        OffHeapEntry ohe = new OffHeapEntry(entry.getKey(), s.getId(), entry.getSizeEstimate(), new WeakReference<Serializer<?>>(s));
+        ohe.slice = slice;
+        ohe.length = length;
+        boolean added = false;
+        synchronized (group) {
+            if (groups.get(s.getId()) == group && group.containsKey(entry.getId()) && group.get(entry.getId()) == null) {
+                group.put(entry.getId(), ohe);
+                added = true;
+            }
+        }
+        if (!added) {
+            allocator.free(slice);
+            return true;
+        }
+        synchronized (ohe) {
+            if (ohe.slice != null) {
+                entries.add(ohe);
+            }
+        }
+        admissions.getAndIncrement();
+        if (LogManager.isMessageToBeRecorded(LogConstants.CTX_BUFFER_MGR, MessageLevel.DETAIL)) {
+            LogManager.logDetail(LogConstants.CTX_BUFFER_MGR, "added object to the off heap cache", s.getId(), entry.getId(), length); //$NON-NLS-1$
+        }
+        return true;
+    }
+
+    /**
+     * Allocate space demoting colder entries as needed
+     * @return the slice or null if the entry should not be admitted
+     */
+    private SizeClassAllocator.Slice allocate(int length, CacheKey key) {
+        for (int i = 0; i < MAX_DEMOTIONS; i++) {
+            SizeClassAllocator.Slice slice = allocator.allocate(length);
+            if (slice != null) {
+                return slice;
+            }
+            OffHeapEntry coldest = entries.firstEntry(false);
+            if (coldest == null || coldest.getKey().compareTo(key) >= 0) {
+                return null;
+            }
+            demote(coldest);
+        }
+        return null;
+    }
+
+    /**
+     * Move the entry to the delegate and release its memory
+     */
+    void demote(OffHeapEntry entry) {
+        CacheEntry ce = null;
+        Serializer<?> s = null;
+        synchronized (entry) {
+            if (entry.slice == null || entry.demoting) {
+                return;
+            }
+            entry.demoting = true;
+            entries.remove(entry);
+            s = entry.serializer.get();
+            if (s != null) {
+                try {
+                    ce = new CacheEntry(entry.getKey(), entry.sizeEstimate, read(entry, s), entry.serializer, true);
+                } catch (Throwable e) {
+                    LogManager.logError(LogConstants.CTX_BUFFER_MGR, e, QueryPlugin.Util.gs(QueryPlugin.Event.TEIID30002, entry.gid, entry.getId()));
+                }
+            }
+        }
+        try {
+            if (ce != null) {
+                delegate.add(ce, s);
+            }
+        } catch (Throwable e) {
+            LogManager.logError(LogConstants.CTX_BUFFER_MGR, e, QueryPlugin.Util.gs(QueryPlugin.Event.TEIID30002, entry.gid, entry.getId()));
+        } finally {
+            Map<Long, OffHeapEntry> group = groups.get(entry.gid);
+            if (group != null) {
+                synchronized (group) {
+                    if (group.get(entry.getId()) == entry) {
+                        group.put(entry.getId(), null);
+                    }
+                }
+            }
+            free(entry);
+            demotions.getAndIncrement();
+        }
+    }
+
+    private void free(OffHeapEntry entry) {
+        if (entry == null) {
+            return;
+        }
+        synchronized (entry) {
+            if (entry.slice != null) {
+                entries.remove(entry);
+                allocator.free(entry.slice);
+                entry.slice = null;
+            }
+        }
+    }
+
+    /**
+     * Callers should be synchronized on the entry
+     */
+    private Object read(OffHeapEntry entry, Serializer<?> serializer) throws IOException, ClassNotFoundException {
+        final ByteBuffer bb = entry.slice.getBuffer().duplicate();
+        bb.limit(entry.length);
+        ObjectInputStream ois = new ObjectInputStream(new ExtensibleBufferedInputStream() {
+            boolean read;
+
+            @Override
+            protected ByteBuffer nextBuffer() throws IOException {
+                if (read) {
+                    return null;
+                }
+                read = true;
+                return bb;
+            }
+        });
+        return serializer.deserialize(ois);
+    }
+
+    @Override
+    public void shutdown() {
+        for (Map<Long, OffHeapEntry> group : groups.values()) {
+            synchronized (group) {
+                for (OffHeapEntry entry : group.values()) {
+                    free(entry);
+                }
+            }
+        }
+        groups.clear();
+        entries.clear();
+        delegate.shutdown();
+    }
+
+    @Override
+    public long getMemoryBufferSpace() {
+        return delegate.getMemoryBufferSpace() + memoryBufferSpace;
+    }
+
+    @Override
+    public long getMaxStorageSpace() {
+        return delegate.getMaxStorageSpace() + memoryBufferSpace;
+    }
+
+    @Override
+    public int getCacheGroupCount() {
+        return delegate.getCacheGroupCount();
+    }
+
+    /**
+     * Set the hard byte budget for the tier
+     */
+    public void setMemoryBufferSpace(long memoryBufferSpace) {
+        this.memoryBufferSpace = memoryBufferSpace;
+    }
+
+    public void setDirect(boolean direct) {
+        this.direct = direct;
+    }
+
+    public void setMaxStorageObjectSize(int maxStorageObjectSize) {
+        this.maxStorageObjectSize = maxStorageObjectSize;
+    }
+
+    public Cache<T> getDelegate() {
+        return delegate;
+    }
+
+    public SizeClassAllocator getAllocator() {
+        return allocator;
+    }
+
+    public long getMemoryInUseBytes() {
+        return allocator == null ? 0 : allocator.getUsedBytes();
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getAdmissions() {
+        return admissions.get();
+    }
+
+    public long getRejections() {
+        return rejections.get();
+    }
+
+    public long getDemotions() {
+        return demotions.get();
+    }
+
+}
@@ -0,0 +1,309 @@
+/*
+ * Copyright Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags and
+ * the COPYRIGHT.txt file distributed with this work.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.teiid.common.buffer.impl;
+
+import java.nio.ByteBuffer;
+import java.util.BitSet;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.teiid.logging.LogConstants;
+import org.teiid.logging.LogManager;
+
+/**
+ * A size class (binary buddy) allocator over a set of lazily allocated arenas with
+ * a hard byte budget.
+ *
+ * Each request is rounded up to the next power of 2 greater than or equal to the
+ * minimum size and is served from the smallest free block of a sufficient class, splitting
+ * larger blocks as needed.  Frees coalesce with the buddy block so that the arenas do not
+ * fragment into permanently small classes.
+ *
+ * Arenas are only allocated as needed and never beyond the budget, so the memory held
+ * is bounded by {@link #getMaxBytes()} regardless of the allocation pattern.
+ */
+public class SizeClassAllocator {
+
+    public static final int DEFAULT_LOG_MIN_SIZE = 13; //8 KB
+    public static final int DEFAULT_LOG_ARENA_SIZE = 26; //64 MB
+
+    /**
+     * An allocated block.  The buffer is a view of the arena with a capacity
+     * of the size class.
+     */
+    public static final class Slice {
+        private final Arena arena;
+        private final int index;
+        private final int order;
+        private final ByteBuffer buffer;
+
+        Slice(Arena arena, int index, int order, ByteBuffer buffer) {
+            this.arena = arena;
+            this.index = index;
+            this.order = order;
+            this.buffer = buffer;
+        }
+
+        public ByteBuffer getBuffer() {
+            return buffer;
+        }
+
+        public int getCapacity() {
+            return buffer.capacity();
+        }
+    }
+
+    private final class Arena {
+        private final ByteBuffer memory;
+        private final BitSet[] free;
+        private final int[] freeCount;
+
+        Arena(ByteBuffer memory) {
+            this.memory = memory;
+            this.free = new BitSet[maxOrder + 1];
+            this.freeCount = new int[maxOrder + 1];
+            for (int i = 0; i <= maxOrder; i++) {
+                free[i] = new BitSet(1 << (maxOrder - i));
+            }
+            free[maxOrder].set(0);
+            freeCount[maxOrder] = 1;
+        }
+
+        /**
+         * @return the block index relative to the order or -1 if no block is available
+         */
+        synchronized int allocate(int order) {
+            int available = order;
+            while (available <= maxOrder && freeCount[available] == 0) {
+                available++;
+            }
+            if (available > maxOrder) {
+                return -1;
+            }
+            int index = free[available].nextSetBit(0);
+            free[available].clear(index);
+            freeCount[available]--;
+            //split down to the requested order, keeping the upper buddy free
+            while (available > order) {
+                available--;
+                index <<= 1;
+                free[available].set(index + 1);
+                freeCount[available]++;
+            }
+            return index;
+        }
+
+        synchronized void free(int index, int order) {
+            while (order < maxOrder) {
+                int buddy = index ^ 1;
+                if (!free[order].get(buddy)) {
+                    break;
+                }
+                free[order].clear(buddy);
+                freeCount[order]--;
+                index >>= 1;
+                order++;
+            }
+            free[order].set(index);
+            freeCount[order]++;
+        }
+
+        ByteBuffer view(int index, int order) {
+            int size = 1 << (logMinSize + order);
+            ByteBuffer result = memory.duplicate();
+            result.limit((index << (logMinSize + order)) + size);
+            result.position(index << (logMinSize + order));
+            return result.slice();
+        }
+    }
+
+    private final int logMinSize;
+    private final int logArenaSize;
+    private final int maxOrder;
+    private final long maxBytes;
+    private final boolean direct;
+
+    private volatile Arena[] arenas;
+    private final AtomicInteger arenaCount = new AtomicInteger();
+    private volatile int maxArenas;
+
+    private final AtomicLong usedBytes = new AtomicLong();
+    private final AtomicLong allocations = new AtomicLong();
+    private final AtomicLong failedAllocations = new AtomicLong();
+
+    public SizeClassAllocator(long maxBytes, boolean direct) {
+        this(maxBytes, DEFAULT_LOG_MIN_SIZE, DEFAULT_LOG_ARENA_SIZE, direct);
+    }
+
+    /**
+     * @param maxBytes the hard budget
+     * @param logMinSize log2 of the smallest size class
+     * @param logArenaSize log2 of the arena size, which is also the largest size class.  Will be
+     * reduced if the budget is smaller than the arena size.
+     * @param direct true if the arenas should be allocated off heap
+     */
+    public SizeClassAllocator(long maxBytes, int logMinSize, int logArenaSize, boolean direct) {
+        if (logMinSize > logArenaSize || logArenaSize > 30) {
+            throw new IllegalArgumentException();
+        }
+        maxBytes = Math.max(maxBytes, 1L << logMinSize);
+        logArenaSize = Math.min(logArenaSize, 63 - Long.numberOfLeadingZeros(maxBytes));
+        this.logMinSize = logMinSize;
+        this.logArenaSize = logArenaSize;
+        this.maxOrder = logArenaSize - logMinSize;
+        this.maxArenas = (int)Math.min(Integer.MAX_VALUE, maxBytes >> logArenaSize);
+        this.maxBytes = ((long)maxArenas) << logArenaSize;
+        this.direct = direct;
+        this.arenas = new Arena[Math.min(maxArenas, 16)];
+    }
+
+    /**
+     * Allocate a block of at least the given size.
+     * @return the slice or null if the size exceeds the largest class or the budget is exhausted
+     */
+    public Slice allocate(int size) {
+        int order = getOrder(size);
+        if (order > maxOrder) {
+            return null;
+        }
+        Arena[] current = this.arenas;
+        int count = Math.min(arenaCount.get(), current.length);
+        //start at a thread dependent arena to reduce contention
+        int start = count == 0 ? 0 : (int)(Thread.currentThread().getId() % count);
+        for (int i = 0; i < count; i++) {
+            Arena arena = current[(start + i) % count];
+            Slice result = allocate(arena, order);
+            if (result != null) {
+                return result;
+            }
+        }
+        while (true) {
+            Arena arena = addArena(count);
+            if (arena == null) {
+                break;
+            }
+            Slice result = allocate(arena, order);
+            if (result != null) {
+                return result;
+            }
+            count++;
+        }
+        failedAllocations.getAndIncrement();
+        return null;
+    }
+
+    private Slice allocate(Arena arena, int order) {
+        int index = arena.allocate(order);
+        if (index < 0) {
+            return null;
+        }
+        usedBytes.addAndGet(1L << (logMinSize + order));
+        allocations.getAndIncrement();
+        return new Slice(arena, index, order, arena.view(index, order));
+    }
+
+    /**
+     * Add an arena if the budget allows
+     * @param seen the number of arenas the caller has already tried
+     * @return an arena that the caller has not yet tried or null if the budget is exhausted
+     */
+    private synchronized Arena addArena(int seen) {
+        int count = arenaCount.get();
+        if (seen < count) {
+            return arenas[seen];
+        }
+        if (count >= maxArenas) {
+            return null;
+        }
+        ByteBuffer memory = null;
+        try {
+            memory = BlockByteBuffer.allocate(1 << logArenaSize, direct);
+        } catch (OutOfMemoryError e) {
+            //typically the direct memory limit is lower than the budget, don't try again
+            maxArenas = count;
+            LogManager.logWarning(LogConstants.CTX_BUFFER_MGR, "Could not allocate an additional " + (1 << logArenaSize) + " byte buffer arena, limiting the size class allocator to " + count + " arenas."); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+            return null;
+        }
+        Arena arena = new Arena(memory);
+        if (count == arenas.length) {
+            Arena[] newArenas = new Arena[Math.min(maxArenas, count << 1)];
+            System.arraycopy(arenas, 0, newArenas, 0, count);
+            arenas = newArenas;
+        }
+        arenas[count] = arena;
+        arenaCount.set(count + 1);
+        return arena;
+    }
+
+    /**
+     * Return the slice to the allocator.  Must only be called once per slice.
+     */
+    public void free(Slice slice) {
+        slice.arena.free(slice.index, slice.order);
+        usedBytes.addAndGet(-(1L << (logMinSize + slice.order)));
+    }
+
+    int getOrder(int size) {
+        if (size <= 1 << logMinSize) {
+            return 0;
+        }
+        return 32 - Integer.numberOfLeadingZeros(size - 1) - logMinSize;
+    }
+
+    /**
+     * @return the largest size that may be allocated
+     */
+    public int getMaxAllocationSize() {
+        return 1 << logArenaSize;
+    }
+
+    /**
+     * @return the hard budget, rounded down to a multiple of the arena size
+     */
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    /**
+     * @return the bytes held by allocated size class blocks
+     */
+    public long getUsedBytes() {
+        return usedBytes.get();
+    }
+
+    /**
+     * @return the bytes held by arenas
+     */
+    public long getReservedBytes() {
+        return ((long)arenaCount.get()) << logArenaSize;
+    }
+
+    public long getAllocations() {
+        return allocations.get();
+    }
+
+    public long getFailedAllocations() {
+        return failedAllocations.get();
+    }
+
+    public boolean isDirect() {
+        return direct;
+    }
+
+}
@@ -34,6 +34,7 @@ import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicInteger;
 
+import org.teiid.common.buffer.ColumnarBatch;
 import org.teiid.core.types.ArrayImpl;
 import org.teiid.core.types.BaseLob;
 import org.teiid.core.types.BinaryType;
@@ -118,6 +119,9 @@ public final class SizeUtility {
     }
 
     public long getBatchSize(boolean accountForValueCache, List<? extends List<?>> data) {
+        if (data instanceof ColumnarBatch) {
+            return ((ColumnarBatch)data).getSizeEstimate(accountForValueCache);
+        }
         int colLength = types.length;
         int rowLength = data.size();
 
@@ -22,6 +22,7 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 
+import org.teiid.common.buffer.ExtensibleBufferedInputStream;
 import org.teiid.common.buffer.FileStore;
 import org.teiid.common.buffer.StorageManager;
 import org.teiid.core.TeiidComponentException;
@@ -91,6 +92,25 @@ public class SplittableStorageManager implements StorageManager {
             return length;
         }
 
+        @Override
+        public ExtensibleBufferedInputStream createInputStream(long start,
+                long length) {
+            if (length > 0) {
+                FileStore store = null;
+                synchronized (this) {
+                    int index = (int)(start/maxFileSize);
+                    //delegate if the range is within a single file so that the store specific stream can be used
+                    if (index == (start + length - 1)/maxFileSize && index < storageFiles.size()) {
+                        store = storageFiles.get(index);
+                    }
+                }
+                if (store != null) {
+                    return store.createInputStream(start%maxFileSize, length);
+                }
+            }
+            return super.createInputStream(start, length);
+        }
+
         private void ensureLength(long length) throws IOException {
             if (length <= len) {
                 return;
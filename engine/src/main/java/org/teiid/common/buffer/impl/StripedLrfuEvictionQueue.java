@@ -0,0 +1,188 @@
+/*
+ * Copyright Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags and
+ * the COPYRIGHT.txt file distributed with this work.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.teiid.common.buffer.impl;
+
+import java.util.AbstractCollection;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.teiid.common.buffer.BaseCacheEntry;
+import org.teiid.common.buffer.CacheKey;
+
+/**
+ * An {@link LrfuEvictionQueue} that is split into stripes by entry id to reduce contention
+ * on the head and tail of a single skip list.
+ *
+ * Eviction is approximate - the first entry is chosen as the lowest ordered head amongst
+ * a rotating sample of the stripes.  Since all stripes share the same clock the ordering
+ * values are directly comparable.
+ * @param <V>
+ */
+public class StripedLrfuEvictionQueue<V extends BaseCacheEntry> extends LrfuEvictionQueue<V> {
+
+    static final int DEFAULT_SAMPLE_SIZE = 4;
+
+    private final LrfuEvictionQueue<V>[] stripes;
+    private final int mask;
+    private final int sampleSize;
+    private AtomicInteger nextSample = new AtomicInteger();
+
+    /**
+     * @param stripeCount will be rounded up to a power of 2
+     */
+    @SuppressWarnings("unchecked")
+    public StripedLrfuEvictionQueue(AtomicLong clock, int stripeCount) {
+        super(clock);
+        int count = Integer.highestOneBit(Math.max(1, stripeCount - 1)) << 1;
+        if (stripeCount <= 1) {
+            count = 1;
+        }
+        this.stripes = new LrfuEvictionQueue[count];
+        for (int i = 0; i < count; i++) {
+            this.stripes[i] = new LrfuEvictionQueue<V>(clock);
+        }
+        this.mask = count - 1;
+        this.sampleSize = Math.min(count, DEFAULT_SAMPLE_SIZE);
+    }
+
+    LrfuEvictionQueue<V> getStripe(V value) {
+        long id = value.getId();
+        int h = (int)(id ^ (id >>> 32));
+        h ^= (h >>> 16);
+        return stripes[h & mask];
+    }
+
+    @Override
+    public boolean add(V value) {
+        return getStripe(value).add(value);
+    }
+
+    @Override
+    public boolean remove(V value) {
+        return getStripe(value).remove(value);
+    }
+
+    @Override
+    public V firstEntry(boolean poll) {
+        //a few attempts to deal with concurrent removals
+        for (int attempt = 0; attempt < 3; attempt++) {
+            int start = nextSample.getAndIncrement();
+            V result = sample(start, sampleSize);
+            if (result == null) {
+                //the sampled stripes are empty, check all
+                result = sample(start, stripes.length);
+            }
+            if (result == null) {
+                return null;
+            }
+            if (!poll || getStripe(result).remove(result)) {
+                return result;
+            }
+        }
+        return null;
+    }
+
+    private V sample(int start, int count) {
+        V result = null;
+        CacheKey resultKey = null;
+        for (int i = 0; i < count; i++) {
+            V head = stripes[(start + i) & mask].firstEntry(false);
+            if (head == null) {
+                continue;
+            }
+            CacheKey key = head.getKey();
+            if (result == null || key.compareTo(resultKey) < 0) {
+                result = head;
+                resultKey = key;
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public Collection<V> getEvictionQueue() {
+        return new AbstractCollection<V>() {
+            @Override
+            public Iterator<V> iterator() {
+                List<Iterator<V>> iters = new ArrayList<Iterator<V>>(stripes.length);
+                for (LrfuEvictionQueue<V> stripe : stripes) {
+                    iters.add(stripe.getEvictionQueue().iterator());
+                }
+                final Iterator<Iterator<V>> iterIter = iters.iterator();
+                return new Iterator<V>() {
+                    Iterator<V> current = iterIter.next();
+
+                    @Override
+                    public boolean hasNext() {
+                        while (!current.hasNext() && iterIter.hasNext()) {
+                            current = iterIter.next();
+                        }
+                        return current.hasNext();
+                    }
+
+                    @Override
+                    public V next() {
+                        hasNext();
+                        return current.next();
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return getSize();
+            }
+        };
+    }
+
+    @Override
+    public void clear() {
+        for (LrfuEvictionQueue<V> stripe : stripes) {
+            stripe.clear();
+        }
+    }
+
+    @Override
+    public void setHalfLife(long halfLife) {
+        super.setHalfLife(halfLife);
+        if (stripes != null) {
+            for (LrfuEvictionQueue<V> stripe : stripes) {
+                stripe.setHalfLife(halfLife);
+            }
+        }
+    }
+
+    @Override
+    public int getSize() {
+        int result = 0;
+        for (LrfuEvictionQueue<V> stripe : stripes) {
+            result += stripe.getSize();
+        }
+        return result;
+    }
+
+    int getStripeCount() {
+        return stripes.length;
+    }
+
+}
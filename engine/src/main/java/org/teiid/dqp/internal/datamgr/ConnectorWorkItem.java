@@ -308,6 +308,14 @@ public class ConnectorWorkItem implements ConnectorWork {
                 LogManager.logDetail(LogConstants.CTX_CONNECTOR, new Object[] {this.id, "Closed connection"}); //$NON-NLS-1$
             }
             Long time = timer.stop();
+            if (LogManager.isMessageToBeRecorded(LogConstants.CTX_CONNECTOR, MessageLevel.DETAIL)) {
+                if (time >= 0) {
+                    LogManager.logDetail(LogConstants.CTX_CONNECTOR, new Object[] {this.id, "Source cpu time", time, "ns, wait time", timer.getWaitTime(), "ns"}); //$NON-NLS-1$ //$NON-NLS-2$
+                } else if (timer.getElapsedTime() >= 0) {
+                    //cpu time is not available, such as for virtual threads
+                    LogManager.logDetail(LogConstants.CTX_CONNECTOR, new Object[] {this.id, "Source elapsed time", timer.getElapsedTime(), "ns, cpu time unavailable"}); //$NON-NLS-1$ //$NON-NLS-2$
+                }
+            }
             manager.logSRCCommand(this, this.requestMsg, this.securityContext, Event.END, this.rowCount, time);
             if (scope != null) {
                 scope.close();
@@ -41,6 +41,7 @@ import org.teiid.core.TeiidComponentException;
 import org.teiid.core.TeiidProcessingException;
 import org.teiid.core.TeiidRuntimeException;
 import org.teiid.core.types.ArrayImpl;
+import org.teiid.core.types.BinaryType;
 import org.teiid.core.types.DataTypeManager;
 import org.teiid.language.AggregateFunction;
 import org.teiid.language.AndOr;
@@ -94,6 +95,7 @@ import org.teiid.query.function.FunctionMethods;
 import org.teiid.query.metadata.QueryMetadataInterface;
 import org.teiid.query.metadata.TempMetadataID;
 import org.teiid.query.optimizer.relational.rules.RulePlaceAccess;
+import org.teiid.query.processor.relational.BloomFilter;
 import org.teiid.query.sql.lang.BatchedUpdateCommand;
 import org.teiid.query.sql.lang.Command;
 import org.teiid.query.sql.lang.CompareCriteria;
@@ -520,6 +522,9 @@ public class LanguageBridgeFactory {
     }
 
     org.teiid.language.Comparison translate(DependentSetCriteria criteria) {
+        if (criteria.getBloomFilter() != null) {
+            return translateBloomFilter(criteria);
+        }
         Operator operator = Operator.EQ;
         org.teiid.language.Expression arg = null;
         final TupleBuffer tb = criteria.getDependentValueSource().getTupleBuffer();
@@ -549,6 +554,19 @@ public class LanguageBridgeFactory {
         return result;
     }
 
+    /**
+     * Translate to bloom_filter_contains(filter bytes, hash functions, expr) = TRUE
+     */
+    private org.teiid.language.Comparison translateBloomFilter(DependentSetCriteria criteria) {
+        BloomFilter bloomFilter = criteria.getBloomFilter();
+        List<org.teiid.language.Expression> args = new ArrayList<org.teiid.language.Expression>(3);
+        args.add(new Literal(new BinaryType(bloomFilter.getBytes()), DataTypeManager.DefaultDataClasses.VARBINARY));
+        args.add(new Literal(bloomFilter.getHashFunctions(), DataTypeManager.DefaultDataClasses.INTEGER));
+        args.add(translate(criteria.getExpression()));
+        org.teiid.language.Function function = new org.teiid.language.Function(SourceSystemFunctions.BLOOM_FILTER_CONTAINS, args, DataTypeManager.DefaultDataClasses.BOOLEAN);
+        return new org.teiid.language.Comparison(function, new Literal(Boolean.TRUE, DataTypeManager.DefaultDataClasses.BOOLEAN), Operator.EQ);
+    }
+
     private Parameter createParameter(DependentSetCriteria criteria,
             final TupleBuffer tb, Expression ex) {
         Parameter p = new Parameter();
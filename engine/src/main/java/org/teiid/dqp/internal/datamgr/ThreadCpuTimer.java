@@ -26,14 +26,22 @@ import org.teiid.logging.LogManager;
 import org.teiid.logging.MessageLevel;
 
 /**
- * Timer class that uses the ThreadMXBean for CPU timing
+ * Timer class that uses the ThreadMXBean for CPU timing.
+ * The elapsed time between start and stop is also tracked so that the
+ * time spent waiting, rather than consuming CPU, can be reported.
+ * <br>
+ * CPU time is not available for virtual threads, in which case only the
+ * elapsed time is tracked.
  */
 public class ThreadCpuTimer {
 
     private static ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
-    private int totalTime = -1;
+    private long totalTime = -1;
     private long lastTime = -1;
+    private long elapsedTime = -1;
+    private long lastElapsedTime = -1;
     private boolean active;
+    private boolean cpuTimeAvailable = true;
 
     public ThreadCpuTimer() {
         active = threadMXBean.isThreadCpuTimeSupported()
@@ -45,24 +53,40 @@ public class ThreadCpuTimer {
         if (!active) {
             return;
         }
+        lastElapsedTime = System.nanoTime();
+        if (!cpuTimeAvailable) {
+            return;
+        }
         try {
             lastTime = threadMXBean.getCurrentThreadCpuTime();
+            if (lastTime == -1) {
+                cpuTimeUnavailable();
+            }
         } catch (UnsupportedOperationException e) {
-            inactivate();
+            cpuTimeUnavailable();
         }
-
     }
 
-    private void inactivate() {
-        active = false;
+    private void cpuTimeUnavailable() {
+        cpuTimeAvailable = false;
         lastTime = -1;
         totalTime = -1;
     }
 
+    /**
+     * @return the cpu time in nanoseconds, or -1 if not active or the cpu time is not available
+     */
     public long stop() {
         if (!active) {
             return -1;
         }
+        if (lastElapsedTime != -1) {
+            if (elapsedTime == -1) {
+                elapsedTime = 0;
+            }
+            elapsedTime += System.nanoTime() - lastElapsedTime;
+            lastElapsedTime = -1;
+        }
         if (lastTime != -1) {
             try {
                 long time = threadMXBean.getCurrentThreadCpuTime();
@@ -72,14 +96,31 @@ public class ThreadCpuTimer {
                     }
                     totalTime += (time - lastTime);
                 } else {
-                    inactivate();
+                    cpuTimeUnavailable();
                 }
             } catch (UnsupportedOperationException e) {
-                inactivate();
+                cpuTimeUnavailable();
             }
         }
         lastTime = -1;
         return totalTime;
     }
 
+    /**
+     * @return the elapsed time in nanoseconds, or -1 if not active
+     */
+    public long getElapsedTime() {
+        return elapsedTime;
+    }
+
+    /**
+     * @return the wait time in nanoseconds - the elapsed time less the cpu time, or -1 if not active or the cpu time is not available
+     */
+    public long getWaitTime() {
+        if (totalTime == -1 || elapsedTime == -1) {
+            return -1;
+        }
+        return Math.max(0, elapsedTime - totalTime);
+    }
+
 }
@@ -18,11 +18,15 @@
 package org.teiid.dqp.internal.process;
 
 import java.util.Properties;
+import java.util.concurrent.ExecutorService;
 
 import org.teiid.PreParser;
 import org.teiid.client.RequestMessage;
 import org.teiid.core.util.PropertiesUtils;
 import org.teiid.jdbc.tracing.GlobalTracerInjector;
+import org.teiid.logging.LogConstants;
+import org.teiid.logging.LogManager;
+import org.teiid.query.QueryPlugin;
 import org.teiid.query.util.Options;
 
 import io.opentracing.Tracer;
@@ -36,11 +40,13 @@ public class DQPConfiguration{
     static final int DEFAULT_MAX_RESULTSET_CACHE_ENTRIES = 1024;
     static final int DEFAULT_QUERY_THRESHOLD = 600000;
     static final String PROCESS_PLAN_QUEUE_NAME = "QueryProcessorQueue"; //$NON-NLS-1$
+    static final String SOURCE_QUEUE_NAME = "SourceQueue"; //$NON-NLS-1$
     public static final int DEFAULT_MAX_PROCESS_WORKERS = 64;
     public static final int DEFAULT_MAX_SOURCE_ROWS = -1;
     public static final int DEFAULT_MAX_ACTIVE_PLANS = 20;
     public static final int DEFAULT_USER_REQUEST_SOURCE_CONCURRENCY = 0;
     public static final int DEFAULT_MAX_STALENESS_SECONDS = 0;
+    public static final int DEFAULT_OUTPUT_BUFFER_MAX_BATCHES = 8;
 
 
     private int maxThreads = DEFAULT_MAX_PROCESS_WORKERS;
@@ -55,6 +61,9 @@ public class DQPConfiguration{
     private int userRequestSourceConcurrency = DEFAULT_USER_REQUEST_SOURCE_CONCURRENCY;
     private boolean detectingChangeEvents = true;
     private long queryTimeout;
+    private boolean useVirtualThreads;
+    private int planAdmissionMemoryKB = -1;
+    private int outputBufferMaxBatches = DEFAULT_OUTPUT_BUFFER_MAX_BATCHES;
 
     private transient AuthorizationValidator authorizationValidator;
     private transient PreParser preParser;
@@ -189,6 +198,64 @@ public class DQPConfiguration{
         };
     }
 
+    /**
+     * Get the executor for source work.  Unless using virtual threads this is the process executor.
+     */
+    public TeiidExecutor getSourceExecutor(TeiidExecutor processExecutor) {
+        if (!useVirtualThreads) {
+            return processExecutor;
+        }
+        ExecutorService es = VirtualThreadExecutor.newVirtualThreadPerTaskExecutor();
+        if (es == null) {
+            LogManager.logWarning(LogConstants.CTX_DQP, QueryPlugin.Util.gs(QueryPlugin.Event.TEIID31306, PROCESS_PLAN_QUEUE_NAME));
+            return processExecutor;
+        }
+        return new VirtualThreadExecutor(SOURCE_QUEUE_NAME, es) {
+            Tracer tracer = GlobalTracerInjector.getTracer();
+            @Override
+            public void execute(Runnable command) {
+                super.execute(tracer.activeSpan() == null ? command :
+                    new TracedRunnable(command, tracer));
+            }
+        };
+    }
+
+    public boolean isUseVirtualThreads() {
+        return useVirtualThreads;
+    }
+
+    /**
+     * Execute source work, which includes blocking calls to synchronous translators,
+     * on virtual threads rather than the process worker pool.  Requires a JVM supporting virtual threads.
+     */
+    public void setUseVirtualThreads(boolean useVirtualThreads) {
+        this.useVirtualThreads = useVirtualThreads;
+    }
+
+    public int getPlanAdmissionMemoryKB() {
+        return planAdmissionMemoryKB;
+    }
+
+    /**
+     * The estimated memory that active plans may reserve before new plans are queued.
+     * -1 uses the buffer manager max reserve, 0 disables memory based admission.
+     */
+    public void setPlanAdmissionMemoryKB(int planAdmissionMemoryKB) {
+        this.planAdmissionMemoryKB = planAdmissionMemoryKB;
+    }
+
+    public int getOutputBufferMaxBatches() {
+        return outputBufferMaxBatches;
+    }
+
+    /**
+     * The max number of result batches held ahead of the client for a forward only cursor.
+     * A client may request a smaller window.
+     */
+    public void setOutputBufferMaxBatches(int outputBufferMaxBatches) {
+        this.outputBufferMaxBatches = outputBufferMaxBatches;
+    }
+
     public void setPreParser(PreParser preParser) {
         this.preParser = preParser;
     }
@@ -24,6 +24,7 @@ import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
@@ -59,6 +60,7 @@ import org.teiid.client.util.ResultsReceiver;
 import org.teiid.client.xa.XATransactionException;
 import org.teiid.client.xa.XidImpl;
 import org.teiid.common.buffer.BufferManager;
+import org.teiid.common.buffer.impl.BufferManagerImpl;
 import org.teiid.core.TeiidComponentException;
 import org.teiid.core.TeiidProcessingException;
 import org.teiid.core.TeiidRuntimeException;
@@ -82,7 +84,15 @@ import org.teiid.logging.LogConstants;
 import org.teiid.logging.LogManager;
 import org.teiid.logging.MessageLevel;
 import org.teiid.query.QueryPlugin;
+import org.teiid.query.processor.ProcessorPlan;
 import org.teiid.query.processor.QueryProcessor;
+import org.teiid.query.processor.relational.GroupingNode;
+import org.teiid.query.processor.relational.JoinNode;
+import org.teiid.query.processor.relational.RelationalNode;
+import org.teiid.query.processor.relational.RelationalPlan;
+import org.teiid.query.processor.relational.SortNode;
+import org.teiid.query.processor.relational.WindowFunctionProjectNode;
+import org.teiid.query.sql.symbol.Expression;
 import org.teiid.query.tempdata.TempTableDataManager;
 import org.teiid.query.tempdata.TempTableStore;
 import org.teiid.query.tempdata.TempTableStore.TransactionMode;
@@ -99,11 +109,14 @@ import io.opentracing.tag.Tags;
  */
 public class DQPCore implements DQP {
 
+    static final int MAX_ADMISSION_DEFERRALS = 3;
+
     public interface CompletionListener<T> {
         void onCompletion(FutureWork<T> future);
     }
 
     private TeiidExecutor processWorkerPool;
+    private TeiidExecutor sourceWorkerPool;
 
     // Resources
     private BufferManager bufferManager;
@@ -126,6 +139,11 @@ public class DQPCore implements DQP {
     private int userRequestSourceConcurrency;
     private LinkedList<RequestWorkItem> waitingPlans = new LinkedList<RequestWorkItem>();
     private volatile int maxWaitingPlans = 0;
+    private long planAdmissionBytes;
+    private long reservedPlanBytes;
+    private long queuedPlanCount;
+    private long totalPlanWaitTime;
+    private long maxPlanWaitTime;
     private AuthorizationValidator authorizationValidator;
 
     private EnhancedTimer cancellationTimer;
@@ -150,8 +168,14 @@ public class DQPCore implements DQP {
             }
         }
         processWorkerPool.shutdownNow();
+        if (sourceWorkerPool != processWorkerPool) {
+            sourceWorkerPool.shutdownNow();
+        }
         try {
             processWorkerPool.awaitTermination(10, TimeUnit.SECONDS);
+            if (sourceWorkerPool != processWorkerPool) {
+                sourceWorkerPool.awaitTermination(10, TimeUnit.SECONDS);
+            }
         } catch (InterruptedException e) {
         }
         this.timeoutExecutor.shutdownNow();
@@ -352,8 +376,7 @@ public class DQPCore implements DQP {
                 if (LogManager.isMessageToBeRecorded(LogConstants.CTX_DQP, MessageLevel.DETAIL)) {
                     LogManager.logDetail(LogConstants.CTX_DQP, workItem.requestID, "Queuing plan, since max plans has been reached.");  //$NON-NLS-1$
                 }
-                waitingPlans.add(workItem);
-                maxWaitingPlans = Math.max(this.maxWaitingPlans, waitingPlans.size());
+                queuePlan(workItem);
             }
         }
         if (runInThread) {
@@ -384,10 +407,38 @@ public class DQPCore implements DQP {
         state.addRequest(requestID);
     }
 
+    private void queuePlan(RequestWorkItem workItem) {
+        workItem.queuedTime = System.currentTimeMillis();
+        if (workItem.admissionDeferred) {
+            //deferred plans are resumed ahead of new plans, in the order they were deferred
+            int index = 0;
+            for (RequestWorkItem work : waitingPlans) {
+                if (!work.admissionDeferred) {
+                    break;
+                }
+                index++;
+            }
+            waitingPlans.add(index, workItem);
+        } else {
+            waitingPlans.add(workItem);
+        }
+        maxWaitingPlans = Math.max(this.maxWaitingPlans, waitingPlans.size());
+    }
+
     private void startActivePlan(RequestWorkItem workItem, boolean addToQueue) {
+        if (workItem.queuedTime != 0) {
+            long waitTime = System.currentTimeMillis() - workItem.queuedTime;
+            workItem.queuedTime = 0;
+            queuedPlanCount++;
+            totalPlanWaitTime += waitTime;
+            maxPlanWaitTime = Math.max(maxPlanWaitTime, waitTime);
+        }
         boolean continuous = workItem.requestMsg.getRequestOptions().isContinuous();
         workItem.active = !continuous;
-        if (addToQueue) {
+        if (workItem.admissionDeferred) {
+            //already planned and idle, so just resume
+            workItem.moreWork();
+        } else if (addToQueue) {
             this.addWork(workItem);
         }
         if (!continuous) {
@@ -397,7 +448,14 @@ public class DQPCore implements DQP {
 
     void finishProcessing(final RequestWorkItem workItem) {
         synchronized (waitingPlans) {
+            if (workItem.planReservation > 0) {
+                reservedPlanBytes -= workItem.planReservation;
+                workItem.planReservation = 0;
+            }
             if (!workItem.active) {
+                if (workItem.queuedTime != 0) {
+                    waitingPlans.remove(workItem);
+                }
                 return;
             }
             workItem.active = false;
@@ -413,6 +471,95 @@ public class DQPCore implements DQP {
         }
     }
 
+    /**
+     * Admit a planned request for processing based upon the estimated memory
+     * its plan will reserve.  If the estimate does not fit with the reservations
+     * of the other active plans, the work item gives up its active plan slot and
+     * is queued ahead of new plans until another plan finishes.  A plan that has
+     * already been deferred {@link #MAX_ADMISSION_DEFERRALS} times is admitted
+     * regardless, so that it cannot be starved by smaller plans.
+     * @return true if processing may proceed
+     */
+    boolean admitPlan(RequestWorkItem workItem, boolean canQueue) {
+        long estimate = 0;
+        if (this.planAdmissionBytes > 0 && workItem.getProcessor() != null) {
+            estimate = Math.min(this.planAdmissionBytes, estimatePlanReservation(workItem.getProcessor().getProcessorPlan(), this.bufferManager));
+        }
+        synchronized (waitingPlans) {
+            if (workItem.admissionDeferred && !workItem.active) {
+                return false; //still queued
+            }
+            if (estimate == 0 || !canQueue || !workItem.active || reservedPlanBytes == 0 || reservedPlanBytes + estimate <= this.planAdmissionBytes
+                    || workItem.admissionDeferrals >= MAX_ADMISSION_DEFERRALS) {
+                if (workItem.active) {
+                    workItem.planReservation = estimate;
+                    reservedPlanBytes += estimate;
+                }
+                workItem.admissionDeferred = false;
+                return true;
+            }
+            if (LogManager.isMessageToBeRecorded(LogConstants.CTX_DQP, MessageLevel.DETAIL)) {
+                LogManager.logDetail(LogConstants.CTX_DQP, workItem.requestID, "Queuing plan with estimated reservation", estimate, "since", reservedPlanBytes, "bytes are reserved by active plans");  //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+            }
+            workItem.active = false;
+            workItem.admissionDeferred = true;
+            workItem.admissionDeferrals++;
+            currentlyActivePlans--;
+            queuePlan(workItem);
+            //a plan that has not yet been estimated may still fit
+            for (Iterator<RequestWorkItem> iter = waitingPlans.iterator(); iter.hasNext();) {
+                RequestWorkItem work = iter.next();
+                if (!work.admissionDeferred) {
+                    iter.remove();
+                    startActivePlan(work, true);
+                    break;
+                }
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Estimate the bytes that will be held by the blocking operations of the plan
+     * using the planning cardinality estimates.
+     */
+    static long estimatePlanReservation(ProcessorPlan plan, BufferManager bufferManager) {
+        if (!(plan instanceof RelationalPlan)) {
+            return 0;
+        }
+        return estimateReservation(((RelationalPlan)plan).getRootNode(), bufferManager);
+    }
+
+    private static long estimateReservation(RelationalNode node, BufferManager bufferManager) {
+        long result = 0;
+        RelationalNode[] children = node.getChildren();
+        for (RelationalNode child : children) {
+            if (child == null) {
+                break;
+            }
+            result += estimateReservation(child, bufferManager);
+        }
+        if (node instanceof SortNode || node instanceof GroupingNode || node instanceof WindowFunctionProjectNode) {
+            result += estimateSize(children[0], bufferManager);
+        } else if (node instanceof JoinNode) {
+            result += estimateSize(children[0], bufferManager) + estimateSize(children[1], bufferManager);
+        }
+        return result;
+    }
+
+    private static long estimateSize(RelationalNode node, BufferManager bufferManager) {
+        if (node == null) {
+            return 0;
+        }
+        Number cardinality = node.getEstimateNodeCardinality();
+        if (cardinality == null || cardinality.floatValue() < 0) {
+            return bufferManager.getMaxProcessingSize();
+        }
+        List<? extends Expression> elements = node.getElements();
+        long bytesPerRow = Math.max(1, bufferManager.getSchemaSize(elements) / Math.max(1, bufferManager.getProcessorBatchSize(elements)));
+        return (long)Math.min(Long.MAX_VALUE >> 8, cardinality.doubleValue() * bytesPerRow);
+    }
+
     public int getActivePlanCount() {
         return this.currentlyActivePlans;
     }
@@ -423,7 +570,8 @@ public class DQPCore implements DQP {
 
     public boolean blockOnOutputBuffer(RequestWorkItem item) {
         synchronized (waitingPlans) {
-            if (!waitingPlans.isEmpty()) {
+            if (!waitingPlans.isEmpty() && item.requestMsg.getResultsWindow() <= 0) {
+                //prefer finishing the plan, unless the client has asked for a bounded window
                 return false;
             }
             if (item.useCallingThread || item.getDqpWorkContext().getSession().isEmbedded()) {
@@ -443,6 +591,33 @@ public class DQPCore implements DQP {
         return this.maxWaitingPlans;
     }
 
+    /**
+     * @return the average time in milliseconds that queued plans waited to become active
+     */
+    public long getAveragePlanWaitTime() {
+        synchronized (waitingPlans) {
+            if (queuedPlanCount == 0) {
+                return 0;
+            }
+            return totalPlanWaitTime / queuedPlanCount;
+        }
+    }
+
+    /**
+     * @return the max time in milliseconds that a queued plan waited to become active
+     */
+    public long getMaxPlanWaitTime() {
+        synchronized (waitingPlans) {
+            return maxPlanWaitTime;
+        }
+    }
+
+    public long getReservedPlanMemoryKB() {
+        synchronized (waitingPlans) {
+            return reservedPlanBytes >> 10;
+        }
+    }
+
     void removeRequest(final RequestWorkItem workItem) {
         finishProcessing(workItem);
         this.requests.remove(workItem.requestID);
@@ -453,8 +628,19 @@ public class DQPCore implements DQP {
     }
 
     void addWork(Runnable work) {
+        addWork(this.processWorkerPool, work);
+    }
+
+    /**
+     * Add work against a source, which may use a separate executor
+     */
+    void addSourceWork(Runnable work) {
+        addWork(this.sourceWorkerPool, work);
+    }
+
+    private void addWork(TeiidExecutor executor, Runnable work) {
         try {
-            this.processWorkerPool.execute(work);
+            executor.execute(work);
         } catch (RejectedExecutionException e) {
             if (!shutdown) {
                 throw e;
@@ -513,6 +699,10 @@ public class DQPCore implements DQP {
         return processWorkerPool;
     }
 
+    public TeiidExecutor getSourceWorkerPool() {
+        return sourceWorkerPool;
+    }
+
     public void terminateSession(String sessionId) {
         // sometimes there will not be any atomic requests pending, in that
         // situation we still need to clear the master request from our map
@@ -691,6 +881,10 @@ public class DQPCore implements DQP {
         return this.config.getTimeSliceInMilli();
     }
 
+    int getOutputBufferMaxBatches() {
+        return this.config.getOutputBufferMaxBatches();
+    }
+
     int getChunkSize() {
         return chunkSize;
     }
@@ -701,6 +895,7 @@ public class DQPCore implements DQP {
         this.chunkSize = config.getLobChunkSizeInKB() * 1024;
 
         this.processWorkerPool = config.getTeiidExecutor();
+        this.sourceWorkerPool = config.getSourceExecutor(this.processWorkerPool);
         //we don't want cancellations waiting on normal processing, so they get a small dedicated pool
         //TODO: overflow to the worker pool
         timeoutExecutor = new TracedExecutorService(ExecutorUtils.newFixedThreadPool(3, "Server Side Timeout"), GlobalTracerInjector.getTracer()); //$NON-NLS-1$
@@ -727,6 +922,14 @@ public class DQPCore implements DQP {
              throw new TeiidRuntimeException(QueryPlugin.Event.TEIID30496, e);
         }
 
+        this.planAdmissionBytes = ((long)config.getPlanAdmissionMemoryKB()) << 10;
+        if (this.planAdmissionBytes < 0) {
+            this.planAdmissionBytes = 0;
+            if (this.bufferManager instanceof BufferManagerImpl) {
+                this.planAdmissionBytes = ((long)((BufferManagerImpl)this.bufferManager).getMaxReserveKB()) << 10;
+            }
+        }
+
         this.userRequestSourceConcurrency = config.getUserRequestSourceConcurrency();
         if (this.userRequestSourceConcurrency < 1) {
             this.userRequestSourceConcurrency = Math.min(config.getMaxThreads(), 2*config.getMaxThreads()/this.maxActivePlans);
@@ -109,6 +109,7 @@ import org.teiid.metadata.Table.TriggerEvent;
 import org.teiid.metadata.Table.Type;
 import org.teiid.metadata.TableStats;
 import org.teiid.query.QueryPlugin;
+import org.teiid.query.function.FunctionDescriptor;
 import org.teiid.query.metadata.CompositeMetadataStore;
 import org.teiid.query.metadata.CompositeMetadataStore.RecordHolder;
 import org.teiid.query.metadata.DDLConstants;
@@ -129,13 +130,17 @@ import org.teiid.query.resolver.util.ResolverUtil;
 import org.teiid.query.sql.lang.Command;
 import org.teiid.query.sql.lang.Criteria;
 import org.teiid.query.sql.lang.Query;
+import org.teiid.query.sql.lang.QueryCommand;
 import org.teiid.query.sql.lang.SPParameter;
 import org.teiid.query.sql.lang.StoredProcedure;
 import org.teiid.query.sql.lang.UnaryFromClause;
 import org.teiid.query.sql.navigator.PreOrPostOrderNavigator;
 import org.teiid.query.sql.symbol.Constant;
+import org.teiid.query.sql.symbol.Expression;
 import org.teiid.query.sql.symbol.ElementSymbol;
+import org.teiid.query.sql.symbol.Function;
 import org.teiid.query.sql.symbol.GroupSymbol;
+import org.teiid.query.sql.visitor.FunctionCollectorVisitor;
 import org.teiid.query.sql.visitor.GroupCollectorVisitor;
 import org.teiid.query.tempdata.BaseIndexInfo;
 import org.teiid.query.tempdata.GlobalTableStore;
@@ -279,6 +284,7 @@ public class DataTierManagerImpl implements ProcessorDataManager {
     private BufferManager bufferManager;
     private EventDistributor eventDistributor;
     private boolean detectChangeEvents;
+    private SharedScanRegistry sharedScans;
 
     private Map<SystemTables, BaseExtractionTable<?>> systemTables = new HashMap<SystemTables, BaseExtractionTable<?>>();
     private Map<SystemAdminTables, BaseExtractionTable<?>> systemAdminTables = new HashMap<SystemAdminTables, BaseExtractionTable<?>>();
@@ -298,6 +304,7 @@ public class DataTierManagerImpl implements ProcessorDataManager {
         this.requestMgr = requestMgr;
         this.bufferManager = bufferMgr;
         this.detectChangeEvents = detectChangeEvents;
+        this.sharedScans = new SharedScanRegistry(bufferMgr);
         MetadataStore ms = SystemMetadata.getInstance().getSystemStore();
         TransformationMetadata tm = new TransformationMetadata(null, new CompositeMetadataStore(ms), null, null, null);
         String name = SystemTables.SCHEMAS.name();
@@ -1241,6 +1248,10 @@ public class DataTierManagerImpl implements ProcessorDataManager {
     }
 
     public TupleSource registerRequest(CommandContext context, Command command, String modelName, final RegisterRequestParameter parameterObject) throws TeiidComponentException, TeiidProcessingException {
+        return registerRequest(context, command, modelName, parameterObject, true);
+    }
+
+    private TupleSource registerRequest(final CommandContext context, final Command command, final String modelName, final RegisterRequestParameter parameterObject, boolean shareScan) throws TeiidComponentException, TeiidProcessingException {
         RequestWorkItem workItem = context.getWorkItem();
         Assertion.isNotNull(workItem);
         if(CoreConstants.SYSTEM_MODEL.equals(modelName) || CoreConstants.SYSTEM_ADMIN_MODEL.equals(modelName)) {
@@ -1289,6 +1300,22 @@ public class DataTierManagerImpl implements ProcessorDataManager {
                 context.setDeterminismLevel(Determinism.valueOf(specificProp.toUpperCase()));
             }
         }
+        Object scanKey = null;
+        if (shareScan) {
+            scanKey = getSharedScanKey(workItem, aqr, parameterObject);
+            if (scanKey != null) {
+                TupleSource ts = this.sharedScans.attach(scanKey, workItem, new SharedScanRegistry.SourceFactory() {
+                    @Override
+                    public TupleSource createSource() throws TeiidComponentException, TeiidProcessingException {
+                        return registerRequest(context, command, modelName, parameterObject, false);
+                    }
+                });
+                if (ts != null) {
+                    LogManager.logDetail(LogConstants.CTX_DQP, aqr.getAtomicRequestID(), "Sharing the results of an in-flight source query"); //$NON-NLS-1$
+                    return ts;
+                }
+            }
+        }
         ConnectorManagerRepository cmr = workItem.getDqpWorkContext().getVDB().getAttachment(ConnectorManagerRepository.class);
         ConnectorManager connectorManager = cmr.getConnectorManager(aqr.getConnectorName());
         if (connectorManager == null) {
@@ -1356,12 +1383,65 @@ public class DataTierManagerImpl implements ProcessorDataManager {
         }
         if (work.isThreadBound()) {
             result = handleThreadBound(workItem, aqr, work, cid, result, dtts, tb);
-        } else if (!aqr.isSerial()) {
-            dtts.addWork();
+        } else {
+            if (!aqr.isSerial()) {
+                dtts.addWork();
+            }
+            if (scanKey != null && cid == null) {
+                result = this.sharedScans.register(scanKey, workItem, result, aqr.getCommand().getProjectedSymbols(), context.getConnectionId());
+            }
         }
         return result;
     }
 
+    /**
+     * Get the key for sharing the source query with other requests, or null if the query
+     * should not be shared.  Only deterministic, non-transactional queries without limits
+     * or lob values are shared and only between requests of the same user against the same vdb.
+     */
+    private Object getSharedScanKey(RequestWorkItem workItem, AtomicRequestMessage aqr, RegisterRequestParameter parameterObject) {
+        Command command = aqr.getCommand();
+        if (!aqr.getCommandContext().getOptions().isSharedScans()
+                || !(command instanceof QueryCommand)
+                || ((QueryCommand)command).getLimit() != null
+                || parameterObject.limit > 0
+                || parameterObject.info != null
+                || aqr.isTransactional()
+                || workItem.requestMsg.getExecutionPayload() != null) {
+            return null;
+        }
+        //as with result set caching the results must be the same for any request
+        //in the scope of the key - which is a user
+        if (!command.areResultsCachable()
+                || aqr.getCommandContext().getDeterminismLevel().compareTo(Determinism.USER_DETERMINISTIC) < 0) {
+            return null;
+        }
+        for (Function function : FunctionCollectorVisitor.getFunctions(command, true, true)) {
+            FunctionDescriptor fd = function.getFunctionDescriptor();
+            if (fd == null || fd.getDeterministic().compareTo(Determinism.USER_DETERMINISTIC) < 0) {
+                return null;
+            }
+        }
+        for (Expression ex : command.getProjectedSymbols()) {
+            if (DataTypeManager.isLOB(ex.getType())) {
+                return null;
+            }
+        }
+        CachableVisitor cv = new CachableVisitor();
+        PreOrPostOrderNavigator.doVisit(command, cv, PreOrPostOrderNavigator.PRE_ORDER, true);
+        if (!cv.cacheable || cv.parameters != null) {
+            return null;
+        }
+        String cmdString = command.toString();
+        if (cmdString.length() >= 100000) {
+            return null;
+        }
+        DQPWorkContext workContext = workItem.getDqpWorkContext();
+        return Arrays.asList(workContext.getVdbName(), workContext.getVdbVersion(),
+                workContext.getSession().getUserName(), workContext.getSession().getSecurityDomain(),
+                aqr.getModelName(), aqr.getConnectorName(), cmdString);
+    }
+
     /**
      * thread bound work is tricky for our execution model
      *
@@ -103,8 +103,6 @@ public class RequestWorkItem extends AbstractWorkItem implements PrioritizedRunn
 
     public static final String REQUEST_KEY = "teiid-request"; //$NON-NLS-1$
 
-    //TODO: this could be configurable
-    private static final int OUTPUT_BUFFER_MAX_BATCHES = 8;
     private static final int CLIENT_FETCH_MAX_BATCHES = 3;
 
     public static final class MoreWorkTask implements Runnable {
@@ -156,7 +154,7 @@ public class RequestWorkItem extends AbstractWorkItem implements PrioritizedRunn
                 }
             }
             if (nextWork != null) {
-                dqpCore.addWork(nextWork.work);
+                dqpCore.addSourceWork(nextWork.work);
             }
         }
     }
@@ -179,10 +177,16 @@ public class RequestWorkItem extends AbstractWorkItem implements PrioritizedRunn
     private Request request; //provides the processing plan, held on a temporary basis
     private Options options;
     private final int processorTimeslice;
+    private int outputBufferMaxBatches;
     private CacheID cid;
     private final TransactionService transactionService;
     private final DQPWorkContext dqpWorkContext;
     boolean active;
+    long queuedTime;
+    long planReservation;
+    boolean admissionDeferred;
+    int admissionDeferrals;
+    private boolean admitted;
 
     /*
      * obtained during new
@@ -237,6 +241,14 @@ public class RequestWorkItem extends AbstractWorkItem implements PrioritizedRunn
         this.requestMsg = requestMsg;
         this.requestID = requestID;
         this.processorTimeslice = dqpCore.getProcessorTimeSlice();
+        this.outputBufferMaxBatches = dqpCore.getOutputBufferMaxBatches();
+        if (this.outputBufferMaxBatches < 1) {
+            this.outputBufferMaxBatches = DQPConfiguration.DEFAULT_OUTPUT_BUFFER_MAX_BATCHES;
+        }
+        if (requestMsg.getResultsWindow() > 0) {
+            //the client may only lower the window
+            this.outputBufferMaxBatches = Math.min(this.outputBufferMaxBatches, requestMsg.getResultsWindow());
+        }
         this.transactionService = dqpCore.getTransactionService();
         this.dqpCore = dqpCore;
         this.request = request;
@@ -354,6 +366,18 @@ public class RequestWorkItem extends AbstractWorkItem implements PrioritizedRunn
                 }
             }
 
+            if (!admitted && this.state == ProcessingState.PROCESSING && !this.closeRequested) {
+                if (isCanceled) {
+                    //a deferred plan may be cancelled while queued
+                    setCanceledException();
+                    state = ProcessingState.CLOSE;
+                } else if (!dqpCore.admitPlan(this, !useCallingThread && transactionState == TransactionState.NONE)) {
+                    return;
+                } else {
+                    admitted = true;
+                }
+            }
+
             resume();
 
             if (this.state == ProcessingState.PROCESSING) {
@@ -473,7 +497,7 @@ public class RequestWorkItem extends AbstractWorkItem implements PrioritizedRunn
             synchronized (queue) {
                 while (!queue.isEmpty() && totalThreads < dqpCore.getUserRequestSourceConcurrency()) {
                     WorkWrapper<?> w = queue.removeFirst();
-                    dqpCore.addWork(w.work);
+                    dqpCore.addSourceWork(w.work);
                     w.submitted = true;
                     totalThreads++;
                 }
@@ -690,7 +714,7 @@ public class RequestWorkItem extends AbstractWorkItem implements PrioritizedRunn
             protected void flushBatchDirect(TupleBatch batch, boolean add) throws TeiidComponentException,TeiidProcessingException {
                 resultsBuffer = getTupleBuffer();
                 if (maxRows == 0) {
-                    maxRows = OUTPUT_BUFFER_MAX_BATCHES * resultsBuffer.getBatchSize();
+                    maxRows = outputBufferMaxBatches * resultsBuffer.getBatchSize();
                 }
                 if (cid != null) {
                     super.flushBatchDirect(batch, add);
@@ -1392,7 +1416,7 @@ public class RequestWorkItem extends AbstractWorkItem implements PrioritizedRunn
         work.addCompletionListener(listener);
         synchronized (queue) {
             if (totalThreads < dqpCore.getUserRequestSourceConcurrency()) {
-                dqpCore.addWork(work);
+                dqpCore.addSourceWork(work);
                 totalThreads++;
                 wl.submitted = true;
             } else {
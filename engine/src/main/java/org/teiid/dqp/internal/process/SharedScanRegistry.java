@@ -0,0 +1,425 @@
+/*
+ * Copyright Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags and
+ * the COPYRIGHT.txt file distributed with this work.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.teiid.dqp.internal.process;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Future;
+
+import org.teiid.common.buffer.BlockedException;
+import org.teiid.common.buffer.BufferManager;
+import org.teiid.common.buffer.BufferManager.TupleSourceType;
+import org.teiid.common.buffer.TupleBatch;
+import org.teiid.common.buffer.TupleBuffer;
+import org.teiid.common.buffer.TupleSource;
+import org.teiid.core.TeiidComponentException;
+import org.teiid.core.TeiidProcessingException;
+import org.teiid.query.sql.symbol.Expression;
+
+/**
+ * Tracks in-flight source queries so that identical source queries issued concurrently
+ * by different requests may share a single source execution.
+ * <br>
+ * The first request to issue a query leads the scan.  Other requests may attach as followers
+ * until the leader reads its first row without any followers.  Once followers are attached
+ * the leader copies its results into a shared {@link TupleBuffer} and publishes each full
+ * batch, so followers read the results as they are produced.
+ * <br>
+ * If the leader closes early, or does not read for the stall timeout while its source has
+ * results available, a follower issues its own source query.  The rows the follower has already returned are
+ * removed from the new results, so the follower still returns each row once.
+ * <br>
+ * To prevent requests from waiting on each other, a request leading a scan with followers
+ * may not follow another scan, and a request may not follow a scan led by a request that is
+ * itself following.
+ */
+public class SharedScanRegistry {
+
+    public static final long DEFAULT_STALL_TIMEOUT = 2000;
+
+    public interface SourceFactory {
+        TupleSource createSource() throws TeiidComponentException, TeiidProcessingException;
+    }
+
+    private static class SharedScan {
+        final Object key;
+        final RequestWorkItem leader;
+        TupleBuffer tb;
+        long published;
+        volatile long lastRead = System.currentTimeMillis();
+        volatile boolean sourceBlocked;
+        int readers;
+        boolean started;
+        boolean done;
+        boolean abandoned;
+        List<RequestWorkItem> followers = new ArrayList<RequestWorkItem>(2);
+        List<RequestWorkItem> waiting = new ArrayList<RequestWorkItem>(2);
+
+        SharedScan(Object key, RequestWorkItem leader) {
+            this.key = key;
+            this.leader = leader;
+        }
+    }
+
+    private class LeaderTupleSource implements TupleSource {
+        private TupleSource source;
+        private SharedScan scan;
+        private List<? extends Expression> schema;
+        private String connectionId;
+        private List<List<?>> pending;
+
+        LeaderTupleSource(SharedScan scan, TupleSource source, List<? extends Expression> schema, String connectionId) {
+            this.scan = scan;
+            this.source = source;
+            this.schema = schema;
+            this.connectionId = connectionId;
+        }
+
+        @Override
+        public List<?> nextTuple() throws TeiidComponentException,
+                TeiidProcessingException {
+            if (scan == null) {
+                return source.nextTuple();
+            }
+            scan.lastRead = System.currentTimeMillis();
+            List<?> row = null;
+            try {
+                row = source.nextTuple();
+            } catch (BlockedException e) {
+                scan.sourceBlocked = true;
+                throw e;
+            }
+            scan.sourceBlocked = false;
+            copy(row);
+            return row;
+        }
+
+        private void copy(List<?> row) throws TeiidComponentException {
+            if (!scan.started) {
+                synchronized (SharedScanRegistry.this) {
+                    scan.started = true;
+                    if (scan.readers == 0) {
+                        scans.remove(scan.key, scan);
+                        scan = null;
+                        return;
+                    }
+                }
+                TupleBuffer tb = bufferManager.createTupleBuffer(schema, connectionId, TupleSourceType.PROCESSOR);
+                pending = new ArrayList<List<?>>(tb.getBatchSize());
+                synchronized (SharedScanRegistry.this) {
+                    scan.tb = tb;
+                }
+            }
+            if (row != null) {
+                pending.add(row);
+                if (pending.size() < scan.tb.getBatchSize()) {
+                    return;
+                }
+            }
+            List<RequestWorkItem> toNotify = null;
+            synchronized (SharedScanRegistry.this) {
+                if (scan.readers == 0) {
+                    //all of the followers have gone away
+                    end(scan, false);
+                    scan = null;
+                    pending = null;
+                    return;
+                }
+                //the buffer is only accessed holding the registry lock
+                for (List<?> tuple : pending) {
+                    scan.tb.addTuple(tuple);
+                }
+                pending.clear();
+                if (row == null) {
+                    scan.tb.close();
+                }
+                scan.published = scan.tb.getRowCount();
+                if (row == null) {
+                    toNotify = end(scan, true);
+                    scan = null;
+                    pending = null;
+                } else {
+                    toNotify = scan.waiting;
+                    scan.waiting = new ArrayList<RequestWorkItem>(2);
+                }
+            }
+            resumeWaiting(toNotify);
+        }
+
+        @Override
+        public void closeSource() {
+            source.closeSource();
+            if (scan == null) {
+                return;
+            }
+            List<RequestWorkItem> toNotify = null;
+            synchronized (SharedScanRegistry.this) {
+                toNotify = end(scan, false);
+            }
+            scan = null;
+            pending = null;
+            resumeWaiting(toNotify);
+        }
+
+    }
+
+    private class FollowerTupleSource implements TupleSource {
+        private SharedScan scan;
+        private RequestWorkItem workItem;
+        private SourceFactory sourceFactory;
+        private long row = 1;
+        private TupleBatch batch;
+        private TupleSource ts;
+        private Map<List<?>, Integer> returned;
+        private Future<Void> wakeup;
+        private boolean fallback;
+        private boolean released;
+
+        FollowerTupleSource(SharedScan scan, RequestWorkItem workItem, SourceFactory sourceFactory) {
+            this.scan = scan;
+            this.workItem = workItem;
+            this.sourceFactory = sourceFactory;
+        }
+
+        @Override
+        public List<?> nextTuple() throws TeiidComponentException,
+                TeiidProcessingException {
+            while (ts == null) {
+                if (batch != null && row <= batch.getEndRow()) {
+                    return batch.getTuple(row++);
+                }
+                if (!fallback) {
+                    synchronized (SharedScanRegistry.this) {
+                        if (released) {
+                            return null;
+                        }
+                        if (row <= scan.published) {
+                            batch = scan.tb.getBatch(row);
+                            continue;
+                        }
+                        if (scan.done) {
+                            release();
+                            return null;
+                        }
+                        if (!scan.abandoned && (scan.sourceBlocked || System.currentTimeMillis() - scan.lastRead < stallTimeout)) {
+                            scan.waiting.add(workItem);
+                            if (wakeup == null || wakeup.isDone()) {
+                                //check for a stalled leader
+                                wakeup = workItem.scheduleWork(stallTimeout);
+                            }
+                            throw BlockedException.block(workItem.requestID, "Blocking on shared source query"); //$NON-NLS-1$
+                        }
+                        returned = getReturnedRows();
+                        release();
+                    }
+                    fallback = true;
+                    batch = null;
+                }
+                ts = sourceFactory.createSource();
+            }
+            return nextOwnTuple();
+        }
+
+        /**
+         * Must be called holding the registry lock
+         */
+        private Map<List<?>, Integer> getReturnedRows() throws TeiidComponentException {
+            if (row == 1) {
+                return null;
+            }
+            Map<List<?>, Integer> result = new HashMap<List<?>, Integer>();
+            for (long i = 1; i < row;) {
+                TupleBatch b = scan.tb.getBatch(i);
+                for (; i <= b.getEndRow() && i < row; i++) {
+                    List<?> tuple = b.getTuple(i);
+                    Integer count = result.get(tuple);
+                    result.put(tuple, count == null ? 1 : count + 1);
+                }
+            }
+            return result;
+        }
+
+        private List<?> nextOwnTuple() throws TeiidComponentException,
+                TeiidProcessingException {
+            for (;;) {
+                List<?> tuple = ts.nextTuple();
+                if (tuple == null || returned == null) {
+                    return tuple;
+                }
+                Integer count = returned.remove(tuple);
+                if (count == null) {
+                    return tuple;
+                }
+                if (count > 1) {
+                    returned.put(tuple, count - 1);
+                } else if (returned.isEmpty()) {
+                    returned = null;
+                }
+            }
+        }
+
+        /**
+         * Must be called holding the registry lock
+         */
+        private void release() {
+            if (released) {
+                return;
+            }
+            released = true;
+            if (wakeup != null) {
+                wakeup.cancel(false);
+                wakeup = null;
+            }
+            if (!scan.done && !scan.abandoned) {
+                scan.followers.remove(workItem);
+                decrement(following, workItem);
+            }
+            if (--scan.readers == 0) {
+                if (scan.done || scan.abandoned) {
+                    if (scan.tb != null) {
+                        scan.tb.remove();
+                    }
+                } else {
+                    decrement(leading, scan.leader);
+                }
+            }
+        }
+
+        @Override
+        public void closeSource() {
+            if (ts != null) {
+                ts.closeSource();
+            }
+            synchronized (SharedScanRegistry.this) {
+                release();
+            }
+        }
+
+    }
+
+    private BufferManager bufferManager;
+    private long stallTimeout = DEFAULT_STALL_TIMEOUT;
+    private Map<Object, SharedScan> scans = new HashMap<Object, SharedScan>();
+    private Map<RequestWorkItem, Integer> leading = new HashMap<RequestWorkItem, Integer>();
+    private Map<RequestWorkItem, Integer> following = new HashMap<RequestWorkItem, Integer>();
+
+    public SharedScanRegistry(BufferManager bufferManager) {
+        this.bufferManager = bufferManager;
+    }
+
+    /**
+     * Set the time in milliseconds that a follower waits for a leader that is not reading
+     * before issuing its own source query.
+     */
+    public void setStallTimeout(long stallTimeout) {
+        this.stallTimeout = stallTimeout;
+    }
+
+    /**
+     * Attach to an in-flight scan with the given key.
+     * @return the shared {@link TupleSource} or null if there is no scan that can be shared
+     */
+    public synchronized TupleSource attach(Object key, RequestWorkItem workItem, SourceFactory sourceFactory) {
+        SharedScan scan = scans.get(key);
+        if (scan == null
+                || scan.leader == workItem
+                || leading.containsKey(workItem)
+                || following.containsKey(scan.leader)) {
+            return null;
+        }
+        if (scan.readers++ == 0) {
+            increment(leading, scan.leader);
+        }
+        scan.followers.add(workItem);
+        increment(following, workItem);
+        return new FollowerTupleSource(scan, workItem, sourceFactory);
+    }
+
+    /**
+     * Register the source query of the leader so that it may be shared.
+     * @return the {@link TupleSource} to be used by the leader
+     */
+    public synchronized TupleSource register(Object key, RequestWorkItem leader, TupleSource source, List<? extends Expression> schema, String connectionId) {
+        if (scans.containsKey(key)) {
+            return source;
+        }
+        SharedScan scan = new SharedScan(key, leader);
+        scans.put(key, scan);
+        return new LeaderTupleSource(scan, source, schema, connectionId);
+    }
+
+    synchronized int getScanCount() {
+        return scans.size();
+    }
+
+    /**
+     * Must be called holding the registry lock
+     */
+    private List<RequestWorkItem> end(SharedScan scan, boolean done) {
+        scans.remove(scan.key, scan);
+        if (done) {
+            scan.done = true;
+        } else {
+            scan.abandoned = true;
+        }
+        if (scan.readers > 0) {
+            decrement(leading, scan.leader);
+        }
+        for (RequestWorkItem follower : scan.followers) {
+            decrement(following, follower);
+        }
+        scan.followers.clear();
+        //followers that are still reading remove the buffer once they are released
+        if (scan.tb != null && scan.readers == 0) {
+            scan.tb.remove();
+        }
+        List<RequestWorkItem> result = scan.waiting;
+        scan.waiting = new ArrayList<RequestWorkItem>(0);
+        return result;
+    }
+
+    private void resumeWaiting(List<RequestWorkItem> toNotify) {
+        if (toNotify == null) {
+            return;
+        }
+        for (RequestWorkItem workItem : toNotify) {
+            workItem.moreWork();
+        }
+    }
+
+    private static void increment(Map<RequestWorkItem, Integer> counts, RequestWorkItem workItem) {
+        Integer count = counts.get(workItem);
+        counts.put(workItem, count == null ? 1 : count + 1);
+    }
+
+    private static void decrement(Map<RequestWorkItem, Integer> counts, RequestWorkItem workItem) {
+        Integer count = counts.get(workItem);
+        if (count == null) {
+            return;
+        }
+        if (count == 1) {
+            counts.remove(workItem);
+        } else {
+            counts.put(workItem, count - 1);
+        }
+    }
+
+}
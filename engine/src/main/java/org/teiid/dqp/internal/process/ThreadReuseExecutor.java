@@ -20,12 +20,14 @@ package org.teiid.dqp.internal.process;
 
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
-import java.util.Queue;
+import java.util.Map;
+import java.util.PriorityQueue;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ForkJoinPool;
-import java.util.concurrent.PriorityBlockingQueue;
 import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.SynchronousQueue;
 import java.util.concurrent.ThreadPoolExecutor;
@@ -33,6 +35,7 @@ import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 
+import org.teiid.adminapi.impl.SessionMetadata;
 import org.teiid.adminapi.impl.WorkerPoolStatisticsMetadata;
 import org.teiid.core.util.NamedThreadFactory;
 import org.teiid.logging.LogConstants;
@@ -56,6 +59,9 @@ import org.teiid.query.QueryPlugin;
  * backed {@link ThreadPoolExecutor}.
  * <br>
  * There is also only a single master scheduling thread with actual executions deferred.
+ * <br>
+ * Queued work is taken by priority, then fairly between sessions based upon their recent
+ * usage of the pool - see {@link FairQueue}.
  *
  * TODO: there is a race condition between retiring threads and adding work, which may create extra threads.
  * That is a flaw with attempting to reuse, rather than create threads.
@@ -89,6 +95,7 @@ public class ThreadReuseExecutor implements TeiidExecutor {
         long creationTime;
         int priority;
         long id = ID_GEN.getAndIncrement();
+        long queuedTime;
 
         public RunnableWrapper(Runnable r) {
             if (r instanceof PrioritizedRunnable) {
@@ -128,6 +135,14 @@ public class ThreadReuseExecutor implements TeiidExecutor {
             return workContext;
         }
 
+        Object getFairShareKey() {
+            SessionMetadata session = workContext.getSession();
+            if (session == null) {
+                return null;
+            }
+            return session.getSessionId();
+        }
+
         @Override
         public int compareTo(RunnableWrapper o) {
             int comp = Integer.compare(this.priority, o.priority);
@@ -140,6 +155,152 @@ public class ThreadReuseExecutor implements TeiidExecutor {
 
     }
 
+    /**
+     * Holds queued work by session.  Work is taken in priority order, and for the same priority
+     * from the session with the least recent usage of the pool, so that sessions with long running
+     * work do not starve short requests from other sessions.  Usage decays with a half life so that
+     * only recent usage matters.
+     * <br>
+     * Not thread-safe, access is guarded by the poolLock.
+     */
+    static class FairQueue {
+
+        private static final long HALF_LIFE = TimeUnit.SECONDS.toNanos(30);
+        /**
+         * Usage below which an idle session is no longer tracked
+         */
+        private static final double MIN_USAGE = TimeUnit.MILLISECONDS.toNanos(1);
+
+        private static class SessionQueue {
+            PriorityQueue<RunnableWrapper> work = new PriorityQueue<RunnableWrapper>();
+            double usage;
+            long lastUpdate = System.nanoTime();
+
+            double getUsage(long now) {
+                long elapsed = now - lastUpdate;
+                if (elapsed > 0) {
+                    usage *= Math.pow(.5, (double)elapsed/HALF_LIFE);
+                    lastUpdate = now;
+                }
+                return usage;
+            }
+        }
+
+        private Map<Object, SessionQueue> sessions = new HashMap<Object, SessionQueue>();
+        private volatile int size;
+
+        void add(RunnableWrapper work) {
+            Object key = work.getFairShareKey();
+            SessionQueue queue = sessions.get(key);
+            if (queue == null) {
+                queue = new SessionQueue();
+                sessions.put(key, queue);
+            }
+            queue.work.add(work);
+            size++;
+        }
+
+        RunnableWrapper poll() {
+            if (size == 0) {
+                return null;
+            }
+            long now = System.nanoTime();
+            SessionQueue best = null;
+            double bestUsage = 0;
+            for (Iterator<SessionQueue> iter = sessions.values().iterator(); iter.hasNext();) {
+                SessionQueue queue = iter.next();
+                RunnableWrapper head = queue.work.peek();
+                double usage = queue.getUsage(now);
+                if (head == null) {
+                    if (usage < MIN_USAGE) {
+                        iter.remove();
+                    }
+                    continue;
+                }
+                if (best == null) {
+                    best = queue;
+                    bestUsage = usage;
+                    continue;
+                }
+                RunnableWrapper bestHead = best.work.peek();
+                int comp = Integer.compare(head.priority, bestHead.priority);
+                if (comp == 0) {
+                    comp = Double.compare(usage, bestUsage);
+                    if (comp == 0) {
+                        comp = Long.compare(head.id, bestHead.id);
+                    }
+                }
+                if (comp < 0) {
+                    best = queue;
+                    bestUsage = usage;
+                }
+            }
+            size--;
+            return best.work.poll();
+        }
+
+        /**
+         * Add usage for the session.  Only sessions that have queued work are tracked
+         * as usage does not matter when there is no contention.
+         */
+        void addUsage(Object key, long nanos) {
+            SessionQueue queue = sessions.get(key);
+            if (queue != null) {
+                queue.usage = queue.getUsage(System.nanoTime()) + nanos;
+            }
+        }
+
+        int size() {
+            return size;
+        }
+
+        List<RunnableWrapper> drain() {
+            List<RunnableWrapper> result = new ArrayList<RunnableWrapper>(size);
+            for (SessionQueue queue : sessions.values()) {
+                result.addAll(queue.work);
+            }
+            sessions.clear();
+            size = 0;
+            return result;
+        }
+
+    }
+
+    /**
+     * Approximate wait time distribution using power of 2 millisecond buckets.
+     * Not thread-safe, access is guarded by the poolLock.
+     */
+    static class WaitTimeHistogram {
+
+        private long[] counts = new long[40];
+        private long total;
+
+        void add(long millis) {
+            int bucket = 0;
+            if (millis > 0) {
+                bucket = Math.min(counts.length - 1, 64 - Long.numberOfLeadingZeros(millis));
+            }
+            counts[bucket]++;
+            total++;
+        }
+
+        /**
+         * @return the upper bound of the bucket containing the percentile
+         */
+        long getPercentile(double percentile) {
+            long target = (long)Math.ceil(total * percentile);
+            long count = 0;
+            for (int i = 0; i < counts.length; i++) {
+                count += counts[i];
+                if (count >= target) {
+                    return i == 0 ? 0 : (1L << i) - 1;
+                }
+            }
+            return 0;
+        }
+
+    }
+
     private final ThreadPoolExecutor tpe;
 
     private volatile int activeCount;
@@ -154,7 +315,8 @@ public class ThreadReuseExecutor implements TeiidExecutor {
 
     private String poolName;
     private int maximumPoolSize;
-    private Queue<RunnableWrapper> queue = new PriorityBlockingQueue<RunnableWrapper>(11);
+    private FairQueue queue = new FairQueue();
+    private WaitTimeHistogram waitTimes = new WaitTimeHistogram();
 
     private long warnWaitTime = 500;
 
@@ -185,6 +347,7 @@ public class ThreadReuseExecutor implements TeiidExecutor {
             submittedCount++;
             boolean atMaxThreads = activeCount == maximumPoolSize;
             if (atMaxThreads) {
+                command.queuedTime = System.currentTimeMillis();
                 queue.add(command);
                 int queueSize = queue.size();
                 if (queueSize > highestQueueSize) {
@@ -194,6 +357,7 @@ public class ThreadReuseExecutor implements TeiidExecutor {
             }
             activeCount++;
             highestActiveCount = Math.max(activeCount, highestActiveCount);
+            waitTimes.add(0);
         }
         tpe.execute(new Runnable() {
             @Override
@@ -205,18 +369,24 @@ public class ThreadReuseExecutor implements TeiidExecutor {
                 if (LogManager.isMessageToBeRecorded(LogConstants.CTX_RUNTIME, MessageLevel.TRACE)) {
                     LogManager.logTrace(LogConstants.CTX_RUNTIME, "Beginning work with virtual worker", t.getName()); //$NON-NLS-1$
                 }
-                PrioritizedRunnable r = command;
+                RunnableWrapper r = command;
                 while (r != null) {
                     boolean success = false;
+                    long start = System.nanoTime();
                     try {
                         r.run();
                         success = true;
                     } finally {
+                        long runTime = System.nanoTime() - start;
                         synchronized (poolLock) {
+                            queue.addUsage(r.getFairShareKey(), runTime);
                             if (success) {
                                 completedCount++;
                                 //we only poll if successful, to let the exception handling happen immediately otherwise
                                 r = queue.poll();
+                                if (r != null) {
+                                    waitTimes.add(System.currentTimeMillis() - r.queuedTime);
+                                }
                             }
                             if (!success || r == null) {
                                 threads.remove(t);
@@ -289,6 +459,11 @@ public class ThreadReuseExecutor implements TeiidExecutor {
         stats.setTotalSubmitted(getSubmittedCount());
         stats.setHighestActiveThreads(getLargestPoolSize());
         stats.setTotalCompleted(getCompletedCount());
+        synchronized (poolLock) {
+            stats.setQueueWaitTimeMedian(waitTimes.getPercentile(.5));
+            stats.setQueueWaitTime95(waitTimes.getPercentile(.95));
+            stats.setQueueWaitTime99(waitTimes.getPercentile(.99));
+        }
         return stats;
     }
 
@@ -298,8 +473,7 @@ public class ThreadReuseExecutor implements TeiidExecutor {
             for (Thread t : threads) {
                 t.interrupt();
             }
-            List<Runnable> result = new ArrayList<Runnable>(queue);
-            queue.clear();
+            List<Runnable> result = new ArrayList<Runnable>(queue.drain());
             result.addAll(this.tpe.shutdownNow());
             return result;
         }
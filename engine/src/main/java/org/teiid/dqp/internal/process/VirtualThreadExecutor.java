@@ -0,0 +1,138 @@
+/*
+ * Copyright Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags and
+ * the COPYRIGHT.txt file distributed with this work.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.teiid.dqp.internal.process;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.teiid.adminapi.impl.WorkerPoolStatisticsMetadata;
+import org.teiid.dqp.internal.process.ThreadReuseExecutor.RunnableWrapper;
+import org.teiid.logging.LogConstants;
+import org.teiid.logging.LogManager;
+import org.teiid.logging.MessageLevel;
+import org.teiid.query.QueryPlugin;
+
+/**
+ * A thread per task {@link TeiidExecutor} for source work.
+ * <br>
+ * Synchronous translators hold a thread for the full duration of a source call, so with virtual
+ * threads many concurrent source calls do not consume the process worker pool threads.
+ * Any queuing / concurrency limits are expected to be enforced by the caller, such as with the
+ * user request source concurrency.
+ */
+public class VirtualThreadExecutor implements TeiidExecutor {
+
+    private final ExecutorService executor;
+    private final String poolName;
+
+    private AtomicInteger activeCount = new AtomicInteger();
+    private volatile int highestActiveCount;
+    private AtomicLong submittedCount = new AtomicLong();
+    private AtomicLong completedCount = new AtomicLong();
+
+    public VirtualThreadExecutor(String name, ExecutorService executor) {
+        this.poolName = name;
+        this.executor = executor;
+    }
+
+    /**
+     * Create a virtual thread per task executor if supported by the running JVM.
+     * @return the executor or null if virtual threads are not available
+     */
+    public static ExecutorService newVirtualThreadPerTaskExecutor() {
+        try {
+            //compiled at an older source level, so this is obtained reflectively
+            Method m = Executors.class.getMethod("newVirtualThreadPerTaskExecutor"); //$NON-NLS-1$
+            return (ExecutorService)m.invoke(null);
+        } catch (NoSuchMethodException e) {
+            return null;
+        } catch (ReflectiveOperationException e) {
+            //preview releases
+            if (LogManager.isMessageToBeRecorded(LogConstants.CTX_RUNTIME, MessageLevel.DETAIL)) {
+                LogManager.logDetail(LogConstants.CTX_RUNTIME, e, "Could not create a virtual thread executor"); //$NON-NLS-1$
+            }
+            return null;
+        }
+    }
+
+    @Override
+    public void execute(Runnable command) {
+        final RunnableWrapper wrapper = new RunnableWrapper(command);
+        submittedCount.incrementAndGet();
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                int active = activeCount.incrementAndGet();
+                if (active > highestActiveCount) {
+                    highestActiveCount = active; //we don't really care if this is synchronized
+                }
+                try {
+                    wrapper.run();
+                } catch (Throwable t) {
+                    LogManager.logError(LogConstants.CTX_RUNTIME, t, QueryPlugin.Util.gs(QueryPlugin.Event.TEIID30021));
+                } finally {
+                    activeCount.decrementAndGet();
+                    completedCount.incrementAndGet();
+                }
+            }
+        });
+    }
+
+    @Override
+    public WorkerPoolStatisticsMetadata getStats() {
+        WorkerPoolStatisticsMetadata stats = new WorkerPoolStatisticsMetadata();
+        stats.setName(poolName);
+        stats.setQueued(0);
+        stats.setHighestQueued(0);
+        stats.setActiveThreads(getActiveCount());
+        stats.setMaxThreads(Integer.MAX_VALUE);
+        stats.setTotalSubmitted(submittedCount.get());
+        stats.setHighestActiveThreads(highestActiveCount);
+        stats.setTotalCompleted(completedCount.get());
+        return stats;
+    }
+
+    @Override
+    public int getQueued() {
+        return 0;
+    }
+
+    @Override
+    public int getActiveCount() {
+        return activeCount.get();
+    }
+
+    @Override
+    public List<Runnable> shutdownNow() {
+        return new ArrayList<Runnable>(executor.shutdownNow());
+    }
+
+    @Override
+    public boolean awaitTermination(long timeout, TimeUnit unit)
+            throws InterruptedException {
+        return executor.awaitTermination(timeout, unit);
+    }
+
+}
@@ -668,6 +668,7 @@ public class QueryPlugin { // extends Plugin {
         TEIID31302,
         TEIID31303,
         TEIID31304,
-        TEIID31305
+        TEIID31305,
+        TEIID31306
     }
 }
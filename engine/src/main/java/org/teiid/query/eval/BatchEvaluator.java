@@ -0,0 +1,965 @@
+/*
+ * Copyright Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags and
+ * the COPYRIGHT.txt file distributed with this work.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.teiid.query.eval;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+import org.teiid.api.exception.query.ExpressionEvaluationException;
+import org.teiid.common.buffer.ColumnarBatch;
+import org.teiid.core.types.DataTypeManager;
+import org.teiid.query.function.FunctionDescriptor;
+import org.teiid.query.sql.lang.CompareCriteria;
+import org.teiid.query.sql.lang.CompoundCriteria;
+import org.teiid.query.sql.lang.Criteria;
+import org.teiid.query.sql.lang.IsNullCriteria;
+import org.teiid.query.sql.lang.MatchCriteria;
+import org.teiid.query.sql.lang.NotCriteria;
+import org.teiid.query.sql.lang.SetCriteria;
+import org.teiid.query.sql.symbol.AbstractCaseExpression;
+import org.teiid.query.sql.symbol.CaseExpression;
+import org.teiid.query.sql.symbol.Constant;
+import org.teiid.query.sql.symbol.DerivedExpression;
+import org.teiid.query.sql.symbol.Expression;
+import org.teiid.query.sql.symbol.ExpressionSymbol;
+import org.teiid.query.sql.symbol.Function;
+import org.teiid.query.sql.symbol.SearchedCaseExpression;
+import org.teiid.translator.SourceSystemFunctions;
+
+/**
+ * Evaluates criteria and expressions over a whole batch of rows at a time.
+ * <br>
+ * Comparisons, arithmetic, constant IN lists, LIKE, CASE, and null checks over columns
+ * and constants are compiled into a tree of vector operations.  Integral and floating point
+ * values are held in primitive vectors and each operation is only evaluated for the rows
+ * in its selection vector, so that the short circuit and three valued logic semantics of
+ * the row based {@link Evaluator} are retained.
+ * <br>
+ * No errors are raised.  If a row cannot be evaluated, such as for an overflow or a division
+ * by zero, the evaluation of the batch is abandoned and the caller should use the {@link Evaluator}
+ * instead, which will raise the appropriate exception.
+ */
+public final class BatchEvaluator {
+
+    static final byte FALSE = 0;
+    static final byte TRUE = 1;
+    static final byte UNKNOWN = 2;
+
+    private static final int LONG = 0;
+    private static final int DOUBLE = 1;
+    private static final int OBJECT = 2;
+
+    private static final int ADD = 0;
+    private static final int SUBTRACT = 1;
+    private static final int MULTIPLY = 2;
+    private static final int DIVIDE = 3;
+
+    /**
+     * Signals that the batch must be evaluated a row at a time
+     */
+    private static final class FallbackException extends Exception {
+        private static final long serialVersionUID = -2186529547233155768L;
+        static final FallbackException INSTANCE = new FallbackException();
+
+        private FallbackException() {
+            super(null, null, false, false);
+        }
+    }
+
+    private static final class Rows {
+        final List<? extends List<?>> tuples;
+        final ColumnarBatch columnar;
+        final int size;
+
+        Rows(List<? extends List<?>> tuples) {
+            this.tuples = tuples;
+            this.columnar = tuples instanceof ColumnarBatch ? (ColumnarBatch)tuples : null;
+            this.size = tuples.size();
+        }
+
+        int[] all() {
+            int[] sel = new int[size];
+            for (int i = 0; i < size; i++) {
+                sel[i] = i;
+            }
+            return sel;
+        }
+    }
+
+    /**
+     * Values for a batch.  Only the positions in the selection vector used to
+     * produce the vector are populated.
+     */
+    private static final class Vector {
+        final boolean[] nulls;
+        long[] longs;
+        double[] doubles;
+        Object[] objects;
+
+        Vector(int lane, int size) {
+            nulls = new boolean[size];
+            switch (lane) {
+            case LONG:
+                longs = new long[size];
+                break;
+            case DOUBLE:
+                doubles = new double[size];
+                break;
+            default:
+                objects = new Object[size];
+            }
+        }
+
+        void copy(Vector target, int[] sel, int count) {
+            for (int i = 0; i < count; i++) {
+                int row = sel[i];
+                target.nulls[row] = nulls[row];
+                if (longs != null) {
+                    target.longs[row] = longs[row];
+                } else if (doubles != null) {
+                    target.doubles[row] = doubles[row];
+                } else {
+                    target.objects[row] = objects[row];
+                }
+            }
+        }
+
+        /**
+         * Equality with the semantics of {@link Object#equals(Object)} where nulls are equal
+         */
+        boolean isEqual(Vector other, int row) {
+            if (nulls[row] || other.nulls[row]) {
+                return nulls[row] && other.nulls[row];
+            }
+            if (longs != null) {
+                return longs[row] == other.longs[row];
+            }
+            if (doubles != null) {
+                return Double.compare(doubles[row], other.doubles[row]) == 0;
+            }
+            return objects[row].equals(other.objects[row]);
+        }
+    }
+
+    public abstract static class BatchExpression {
+        final Class<?> type;
+        final int lane;
+
+        BatchExpression(Class<?> type) {
+            this.type = type;
+            this.lane = getLane(type);
+        }
+
+        abstract Vector evaluate(Rows rows, int[] sel, int count) throws FallbackException;
+
+        /**
+         * Evaluate the expression for every row
+         * @return the values or null if the rows must be evaluated with the {@link Evaluator}
+         */
+        public Object[] evaluate(List<? extends List<?>> tuples) {
+            Rows rows = new Rows(tuples);
+            Vector vector = null;
+            try {
+                vector = evaluate(rows, rows.all(), rows.size);
+            } catch (FallbackException e) {
+                return null;
+            }
+            Object[] result = new Object[rows.size];
+            for (int row = 0; row < rows.size; row++) {
+                if (vector.nulls[row]) {
+                    continue;
+                }
+                switch (lane) {
+                case LONG:
+                    long l = vector.longs[row];
+                    if (type == DataTypeManager.DefaultDataClasses.INTEGER) {
+                        result[row] = Integer.valueOf((int)l);
+                    } else if (type == DataTypeManager.DefaultDataClasses.LONG) {
+                        result[row] = Long.valueOf(l);
+                    } else if (type == DataTypeManager.DefaultDataClasses.SHORT) {
+                        result[row] = Short.valueOf((short)l);
+                    } else {
+                        result[row] = Byte.valueOf((byte)l);
+                    }
+                    break;
+                case DOUBLE:
+                    double d = vector.doubles[row];
+                    if (type == DataTypeManager.DefaultDataClasses.FLOAT) {
+                        result[row] = Float.valueOf((float)d);
+                    } else {
+                        result[row] = Double.valueOf(d);
+                    }
+                    break;
+                default:
+                    result[row] = vector.objects[row];
+                }
+            }
+            return result;
+        }
+    }
+
+    public abstract static class BatchCriteria {
+
+        abstract void evaluate(Rows rows, int[] sel, int count, byte[] out) throws FallbackException;
+
+        /**
+         * Evaluate the criteria for every row
+         * @return the indexes of the rows that are true or null if the rows must be evaluated with the {@link Evaluator}
+         */
+        public int[] select(List<? extends List<?>> tuples) {
+            Rows rows = new Rows(tuples);
+            byte[] out = new byte[rows.size];
+            try {
+                evaluate(rows, rows.all(), rows.size, out);
+            } catch (FallbackException e) {
+                return null;
+            }
+            int[] result = new int[rows.size];
+            int count = 0;
+            for (int row = 0; row < rows.size; row++) {
+                if (out[row] == TRUE) {
+                    result[count++] = row;
+                }
+            }
+            if (count == result.length) {
+                return result;
+            }
+            return Arrays.copyOf(result, count);
+        }
+    }
+
+    private BatchEvaluator() {
+
+    }
+
+    static int getLane(Class<?> type) {
+        if (type == DataTypeManager.DefaultDataClasses.INTEGER
+                || type == DataTypeManager.DefaultDataClasses.LONG
+                || type == DataTypeManager.DefaultDataClasses.SHORT
+                || type == DataTypeManager.DefaultDataClasses.BYTE) {
+            return LONG;
+        }
+        if (type == DataTypeManager.DefaultDataClasses.DOUBLE
+                || type == DataTypeManager.DefaultDataClasses.FLOAT) {
+            return DOUBLE;
+        }
+        return OBJECT;
+    }
+
+    /**
+     * Compile the expression for batch evaluation
+     * @param elements the map of element to tuple index
+     * @return the compiled expression or null if the expression is not supported
+     */
+    public static BatchExpression compile(Expression expression, Map<? extends Expression, Integer> elements) {
+        if (expression instanceof DerivedExpression) {
+            Integer index = elements.get(expression);
+            if (index != null) {
+                return new ColumnExpression(index, expression.getType());
+            }
+            if (expression instanceof ExpressionSymbol) {
+                return compile(((ExpressionSymbol)expression).getExpression(), elements);
+            }
+            return null;
+        }
+        if (expression instanceof Constant) {
+            Constant constant = (Constant)expression;
+            if (constant.isMultiValued()) {
+                return null;
+            }
+            return new ConstantExpression(constant.getValue(), constant.getType());
+        }
+        if (expression instanceof Function) {
+            return compileArithmetic((Function)expression, elements);
+        }
+        if (expression instanceof CaseExpression) {
+            CaseExpression caseExpr = (CaseExpression)expression;
+            BatchExpression value = compile(caseExpr.getExpression(), elements);
+            if (value == null) {
+                return null;
+            }
+            BatchExpression[] whens = new BatchExpression[caseExpr.getWhenCount()];
+            for (int i = 0; i < whens.length; i++) {
+                whens[i] = compile(caseExpr.getWhenExpression(i), elements);
+                if (whens[i] == null || whens[i].type != value.type) {
+                    return null;
+                }
+            }
+            BatchExpression[] results = compileResults(caseExpr, elements);
+            if (results == null) {
+                return null;
+            }
+            return new CaseBatchExpression(caseExpr.getType(), value, whens, null, results);
+        }
+        if (expression instanceof SearchedCaseExpression) {
+            SearchedCaseExpression caseExpr = (SearchedCaseExpression)expression;
+            BatchCriteria[] whens = new BatchCriteria[caseExpr.getWhenCount()];
+            for (int i = 0; i < whens.length; i++) {
+                whens[i] = compile(caseExpr.getWhenCriteria(i), elements);
+                if (whens[i] == null) {
+                    return null;
+                }
+            }
+            BatchExpression[] results = compileResults(caseExpr, elements);
+            if (results == null) {
+                return null;
+            }
+            return new CaseBatchExpression(caseExpr.getType(), null, null, whens, results);
+        }
+        return null;
+    }
+
+    /**
+     * @return the then expressions followed by the else expression, which may be null
+     */
+    private static BatchExpression[] compileResults(AbstractCaseExpression caseExpr, Map<? extends Expression, Integer> elements) {
+        BatchExpression[] results = new BatchExpression[caseExpr.getWhenCount() + 1];
+        for (int i = 0; i < caseExpr.getWhenCount(); i++) {
+            results[i] = compile(caseExpr.getThenExpression(i), elements);
+            if (results[i] == null || results[i].type != caseExpr.getType()) {
+                return null;
+            }
+        }
+        if (caseExpr.getElseExpression() != null) {
+            results[results.length - 1] = compile(caseExpr.getElseExpression(), elements);
+            if (results[results.length - 1] == null || results[results.length - 1].type != caseExpr.getType()) {
+                return null;
+            }
+        }
+        return results;
+    }
+
+    private static BatchExpression compileArithmetic(Function function, Map<? extends Expression, Integer> elements) {
+        FunctionDescriptor fd = function.getFunctionDescriptor();
+        if (fd == null || function.getArgs().length != 2) {
+            return null;
+        }
+        Class<?> type = fd.getReturnType();
+        if (type != DataTypeManager.DefaultDataClasses.INTEGER
+                && type != DataTypeManager.DefaultDataClasses.LONG
+                && type != DataTypeManager.DefaultDataClasses.DOUBLE) {
+            return null;
+        }
+        int op = 0;
+        if (fd.isSystemFunction(SourceSystemFunctions.ADD_OP)) {
+            op = ADD;
+        } else if (fd.isSystemFunction(SourceSystemFunctions.SUBTRACT_OP)) {
+            op = SUBTRACT;
+        } else if (fd.isSystemFunction(SourceSystemFunctions.MULTIPLY_OP)) {
+            op = MULTIPLY;
+        } else if (fd.isSystemFunction(SourceSystemFunctions.DIVIDE_OP)) {
+            op = DIVIDE;
+        } else {
+            return null;
+        }
+        BatchExpression left = compile(function.getArg(0), elements);
+        BatchExpression right = compile(function.getArg(1), elements);
+        if (left == null || right == null || left.type != type || right.type != type) {
+            return null;
+        }
+        return new ArithmeticExpression(type, op, left, right);
+    }
+
+    /**
+     * Compile the criteria for batch evaluation
+     * @param elements the map of element to tuple index
+     * @return the compiled criteria or null if the criteria is not supported
+     */
+    public static BatchCriteria compile(Criteria criteria, Map<? extends Expression, Integer> elements) {
+        if (criteria instanceof CompoundCriteria) {
+            CompoundCriteria compound = (CompoundCriteria)criteria;
+            BatchCriteria[] crits = new BatchCriteria[compound.getCriteriaCount()];
+            for (int i = 0; i < crits.length; i++) {
+                crits[i] = compile(compound.getCriteria(i), elements);
+                if (crits[i] == null) {
+                    return null;
+                }
+            }
+            return new CompoundBatchCriteria(compound.getOperator() == CompoundCriteria.AND, crits);
+        }
+        if (criteria instanceof NotCriteria) {
+            BatchCriteria crit = compile(((NotCriteria)criteria).getCriteria(), elements);
+            if (crit == null) {
+                return null;
+            }
+            return new NotBatchCriteria(crit);
+        }
+        if (criteria instanceof CompareCriteria) {
+            CompareCriteria compare = (CompareCriteria)criteria;
+            BatchExpression left = compile(compare.getLeftExpression(), elements);
+            BatchExpression right = compile(compare.getRightExpression(), elements);
+            if (left == null || right == null || left.type != right.type) {
+                return null;
+            }
+            return new CompareBatchCriteria(compare.getOperator(), left, right);
+        }
+        if (criteria instanceof IsNullCriteria) {
+            IsNullCriteria isNull = (IsNullCriteria)criteria;
+            BatchExpression expr = compile(isNull.getExpression(), elements);
+            if (expr == null) {
+                return null;
+            }
+            return new IsNullBatchCriteria(expr, isNull.isNegated());
+        }
+        if (criteria instanceof SetCriteria) {
+            SetCriteria set = (SetCriteria)criteria;
+            if (!set.isAllConstants()) {
+                return null;
+            }
+            BatchExpression expr = compile(set.getExpression(), elements);
+            if (expr == null) {
+                return null;
+            }
+            return SetBatchCriteria.create(expr, set);
+        }
+        if (criteria instanceof MatchCriteria) {
+            MatchCriteria match = (MatchCriteria)criteria;
+            if (!(match.getRightExpression() instanceof Constant)) {
+                return null;
+            }
+            Object pattern = ((Constant)match.getRightExpression()).getValue();
+            if (!(pattern instanceof String)) {
+                return null;
+            }
+            BatchExpression expr = compile(match.getLeftExpression(), elements);
+            if (expr == null || expr.type != DataTypeManager.DefaultDataClasses.STRING) {
+                return null;
+            }
+            try {
+                return new MatchBatchCriteria(expr, Evaluator.getPattern((String)pattern, match.getEscapeChar(), match.getMode()), match.isNegated());
+            } catch (ExpressionEvaluationException e) {
+                //let the row evaluation raise the error
+                return null;
+            }
+        }
+        return null;
+    }
+
+    private static final class ColumnExpression extends BatchExpression {
+        private final int index;
+
+        ColumnExpression(int index, Class<?> type) {
+            super(type);
+            this.index = index;
+        }
+
+        @Override
+        Vector evaluate(Rows rows, int[] sel, int count) {
+            Vector result = new Vector(lane, rows.size);
+            ColumnarBatch columnar = rows.columnar;
+            if (columnar != null && lane != OBJECT && columnar.isSpecialized(index, type)) {
+                boolean isLong = type == DataTypeManager.DefaultDataClasses.LONG;
+                for (int i = 0; i < count; i++) {
+                    int row = sel[i];
+                    if (columnar.isNull(row, index)) {
+                        result.nulls[row] = true;
+                    } else if (lane == DOUBLE) {
+                        result.doubles[row] = columnar.getDouble(row, index);
+                    } else if (isLong) {
+                        result.longs[row] = columnar.getLong(row, index);
+                    } else {
+                        result.longs[row] = columnar.getInt(row, index);
+                    }
+                }
+                return result;
+            }
+            for (int i = 0; i < count; i++) {
+                int row = sel[i];
+                Object value = rows.tuples.get(row).get(index);
+                if (value == null) {
+                    result.nulls[row] = true;
+                } else if (lane == LONG) {
+                    result.longs[row] = ((Number)value).longValue();
+                } else if (lane == DOUBLE) {
+                    result.doubles[row] = ((Number)value).doubleValue();
+                } else {
+                    result.objects[row] = value;
+                }
+            }
+            return result;
+        }
+    }
+
+    private static final class ConstantExpression extends BatchExpression {
+        private final Object value;
+
+        ConstantExpression(Object value, Class<?> type) {
+            super(type);
+            this.value = value;
+        }
+
+        @Override
+        Vector evaluate(Rows rows, int[] sel, int count) {
+            Vector result = new Vector(lane, rows.size);
+            if (value == null) {
+                for (int i = 0; i < count; i++) {
+                    result.nulls[sel[i]] = true;
+                }
+            } else if (lane == LONG) {
+                long l = ((Number)value).longValue();
+                for (int i = 0; i < count; i++) {
+                    result.longs[sel[i]] = l;
+                }
+            } else if (lane == DOUBLE) {
+                double d = ((Number)value).doubleValue();
+                for (int i = 0; i < count; i++) {
+                    result.doubles[sel[i]] = d;
+                }
+            } else {
+                for (int i = 0; i < count; i++) {
+                    result.objects[sel[i]] = value;
+                }
+            }
+            return result;
+        }
+    }
+
+    /**
+     * Integer, long, and double arithmetic with the same overflow checks as the system functions
+     */
+    private static final class ArithmeticExpression extends BatchExpression {
+        private final int op;
+        private final BatchExpression left;
+        private final BatchExpression right;
+
+        ArithmeticExpression(Class<?> type, int op, BatchExpression left, BatchExpression right) {
+            super(type);
+            this.op = op;
+            this.left = left;
+            this.right = right;
+        }
+
+        @Override
+        Vector evaluate(Rows rows, int[] sel, int count) throws FallbackException {
+            Vector l = left.evaluate(rows, sel, count);
+            Vector r = right.evaluate(rows, sel, count);
+            Vector result = new Vector(lane, rows.size);
+            boolean isInt = type == DataTypeManager.DefaultDataClasses.INTEGER;
+            for (int i = 0; i < count; i++) {
+                int row = sel[i];
+                if (l.nulls[row] || r.nulls[row]) {
+                    result.nulls[row] = true;
+                } else if (lane == DOUBLE) {
+                    double d = apply(op, l.doubles[row], r.doubles[row]);
+                    if (!FunctionDescriptor.ALLOW_NAN_INFINITY && (Double.isInfinite(d) || Double.isNaN(d))) {
+                        throw FallbackException.INSTANCE;
+                    }
+                    result.doubles[row] = d;
+                } else if (isInt) {
+                    result.longs[row] = applyInt(op, l.longs[row], r.longs[row]);
+                } else {
+                    result.longs[row] = applyLong(op, l.longs[row], r.longs[row]);
+                }
+            }
+            return result;
+        }
+
+        private static double apply(int op, double x, double y) {
+            switch (op) {
+            case ADD:
+                return x + y;
+            case SUBTRACT:
+                return x - y;
+            case MULTIPLY:
+                return x * y;
+            default:
+                return x / y;
+            }
+        }
+
+        private static long applyInt(int op, long x, long y) throws FallbackException {
+            long result = 0;
+            switch (op) {
+            case ADD:
+                result = x + y;
+                break;
+            case SUBTRACT:
+                result = x - y;
+                break;
+            case MULTIPLY:
+                result = x * y;
+                break;
+            default:
+                if (y == 0) {
+                    throw FallbackException.INSTANCE;
+                }
+                result = x / y;
+            }
+            if (result > Integer.MAX_VALUE || result < Integer.MIN_VALUE) {
+                throw FallbackException.INSTANCE;
+            }
+            return result;
+        }
+
+        private static long applyLong(int op, long x, long y) throws FallbackException {
+            try {
+                switch (op) {
+                case ADD:
+                    return Math.addExact(x, y);
+                case SUBTRACT:
+                    return Math.subtractExact(x, y);
+                case MULTIPLY:
+                    return Math.multiplyExact(x, y);
+                default:
+                    if (y == 0 || (x == Long.MIN_VALUE && y == -1)) {
+                        throw FallbackException.INSTANCE;
+                    }
+                    return x / y;
+                }
+            } catch (ArithmeticException e) {
+                throw FallbackException.INSTANCE;
+            }
+        }
+    }
+
+    /**
+     * A simple case when value is not null, otherwise a searched case
+     */
+    private static final class CaseBatchExpression extends BatchExpression {
+        private final BatchExpression value;
+        private final BatchExpression[] whenValues;
+        private final BatchCriteria[] whenCriteria;
+        private final BatchExpression[] results;
+
+        CaseBatchExpression(Class<?> type, BatchExpression value, BatchExpression[] whenValues,
+                BatchCriteria[] whenCriteria, BatchExpression[] results) {
+            super(type);
+            this.value = value;
+            this.whenValues = whenValues;
+            this.whenCriteria = whenCriteria;
+            this.results = results;
+        }
+
+        @Override
+        Vector evaluate(Rows rows, int[] sel, int count) throws FallbackException {
+            Vector result = new Vector(lane, rows.size);
+            Vector caseValue = null;
+            byte[] out = null;
+            if (value != null) {
+                caseValue = value.evaluate(rows, sel, count);
+            } else {
+                out = new byte[rows.size];
+            }
+            int whenCount = results.length - 1;
+            int[] matched = new int[count];
+            for (int i = 0; i < whenCount && count > 0; i++) {
+                int matchCount = 0;
+                int remaining = 0;
+                int[] rest = new int[count];
+                if (value != null) {
+                    Vector when = whenValues[i].evaluate(rows, sel, count);
+                    for (int j = 0; j < count; j++) {
+                        int row = sel[j];
+                        if (caseValue.isEqual(when, row)) {
+                            matched[matchCount++] = row;
+                        } else {
+                            rest[remaining++] = row;
+                        }
+                    }
+                } else {
+                    whenCriteria[i].evaluate(rows, sel, count, out);
+                    for (int j = 0; j < count; j++) {
+                        int row = sel[j];
+                        if (out[row] == TRUE) {
+                            matched[matchCount++] = row;
+                        } else {
+                            rest[remaining++] = row;
+                        }
+                    }
+                }
+                if (matchCount > 0) {
+                    results[i].evaluate(rows, matched, matchCount).copy(result, matched, matchCount);
+                }
+                sel = rest;
+                count = remaining;
+            }
+            if (count > 0) {
+                if (results[whenCount] != null) {
+                    results[whenCount].evaluate(rows, sel, count).copy(result, sel, count);
+                } else {
+                    for (int i = 0; i < count; i++) {
+                        result.nulls[sel[i]] = true;
+                    }
+                }
+            }
+            return result;
+        }
+    }
+
+    private static final class CompoundBatchCriteria extends BatchCriteria {
+        private final boolean and;
+        private final BatchCriteria[] crits;
+
+        CompoundBatchCriteria(boolean and, BatchCriteria[] crits) {
+            this.and = and;
+            this.crits = crits;
+        }
+
+        @Override
+        void evaluate(Rows rows, int[] sel, int count, byte[] out) throws FallbackException {
+            crits[0].evaluate(rows, sel, count, out);
+            //the value that ends the evaluation of a row
+            byte done = and ? FALSE : TRUE;
+            byte[] next = null;
+            for (int i = 1; i < crits.length; i++) {
+                int[] remaining = new int[count];
+                int remainingCount = 0;
+                for (int j = 0; j < count; j++) {
+                    if (out[sel[j]] != done) {
+                        remaining[remainingCount++] = sel[j];
+                    }
+                }
+                if (remainingCount == 0) {
+                    return;
+                }
+                if (next == null) {
+                    next = new byte[rows.size];
+                }
+                crits[i].evaluate(rows, remaining, remainingCount, next);
+                for (int j = 0; j < remainingCount; j++) {
+                    int row = remaining[j];
+                    if (next[row] != (and ? TRUE : FALSE)) {
+                        //either the final value or unknown
+                        out[row] = next[row];
+                    }
+                }
+                sel = remaining;
+                count = remainingCount;
+            }
+        }
+    }
+
+    private static final class NotBatchCriteria extends BatchCriteria {
+        private final BatchCriteria crit;
+
+        NotBatchCriteria(BatchCriteria crit) {
+            this.crit = crit;
+        }
+
+        @Override
+        void evaluate(Rows rows, int[] sel, int count, byte[] out) throws FallbackException {
+            crit.evaluate(rows, sel, count, out);
+            for (int i = 0; i < count; i++) {
+                int row = sel[i];
+                if (out[row] != UNKNOWN) {
+                    out[row] = out[row] == TRUE ? FALSE : TRUE;
+                }
+            }
+        }
+    }
+
+    private static final class CompareBatchCriteria extends BatchCriteria {
+        private final int operator;
+        private final BatchExpression left;
+        private final BatchExpression right;
+
+        CompareBatchCriteria(int operator, BatchExpression left, BatchExpression right) {
+            this.operator = operator;
+            this.left = left;
+            this.right = right;
+        }
+
+        @Override
+        void evaluate(Rows rows, int[] sel, int count, byte[] out) throws FallbackException {
+            Vector l = left.evaluate(rows, sel, count);
+            //the right side is only evaluated if the left is not null
+            int[] nonNull = new int[count];
+            int nonNullCount = 0;
+            for (int i = 0; i < count; i++) {
+                int row = sel[i];
+                if (l.nulls[row]) {
+                    out[row] = UNKNOWN;
+                } else {
+                    nonNull[nonNullCount++] = row;
+                }
+            }
+            if (nonNullCount == 0) {
+                return;
+            }
+            Vector r = right.evaluate(rows, nonNull, nonNullCount);
+            for (int i = 0; i < nonNullCount; i++) {
+                int row = nonNull[i];
+                if (r.nulls[row]) {
+                    out[row] = UNKNOWN;
+                    continue;
+                }
+                int compare = 0;
+                if (l.longs != null) {
+                    compare = Long.compare(l.longs[row], r.longs[row]);
+                } else if (l.doubles != null) {
+                    compare = Double.compare(l.doubles[row], r.doubles[row]);
+                } else {
+                    Boolean result = Evaluator.compare(operator, l.objects[row], r.objects[row]);
+                    out[row] = result == null ? UNKNOWN : (result ? TRUE : FALSE);
+                    continue;
+                }
+                out[row] = test(operator, compare) ? TRUE : FALSE;
+            }
+        }
+
+        private static boolean test(int operator, int compare) {
+            switch (operator) {
+            case CompareCriteria.EQ:
+                return compare == 0;
+            case CompareCriteria.NE:
+                return compare != 0;
+            case CompareCriteria.LT:
+                return compare < 0;
+            case CompareCriteria.LE:
+                return compare <= 0;
+            case CompareCriteria.GT:
+                return compare > 0;
+            case CompareCriteria.GE:
+                return compare >= 0;
+            default:
+                throw new AssertionError();
+            }
+        }
+    }
+
+    private static final class IsNullBatchCriteria extends BatchCriteria {
+        private final BatchExpression expr;
+        private final boolean negated;
+
+        IsNullBatchCriteria(BatchExpression expr, boolean negated) {
+            this.expr = expr;
+            this.negated = negated;
+        }
+
+        @Override
+        void evaluate(Rows rows, int[] sel, int count, byte[] out) throws FallbackException {
+            Vector v = expr.evaluate(rows, sel, count);
+            for (int i = 0; i < count; i++) {
+                int row = sel[i];
+                out[row] = v.nulls[row] ^ negated ? TRUE : FALSE;
+            }
+        }
+    }
+
+    /**
+     * An IN predicate over constant values.  Integral and floating point values
+     * are matched with a binary search of a sorted primitive array.
+     */
+    private static final class SetBatchCriteria extends BatchCriteria {
+        private final BatchExpression expr;
+        private final boolean negated;
+        private final boolean empty;
+        private final boolean hasNull;
+        private long[] longs;
+        private double[] doubles;
+        private Collection<?> values;
+
+        private SetBatchCriteria(BatchExpression expr, boolean negated, boolean empty, boolean hasNull) {
+            this.expr = expr;
+            this.negated = negated;
+            this.empty = empty;
+            this.hasNull = hasNull;
+        }
+
+        static SetBatchCriteria create(BatchExpression expr, SetCriteria set) {
+            Collection<?> values = set.getValues();
+            boolean hasNull = false;
+            for (Object o : values) {
+                if (((Constant)o).isNull()) {
+                    hasNull = true;
+                    break;
+                }
+            }
+            SetBatchCriteria result = new SetBatchCriteria(expr, set.isNegated(), values.isEmpty(), hasNull);
+            if (expr.lane == OBJECT) {
+                result.values = values;
+                return result;
+            }
+            long[] longs = new long[values.size()];
+            double[] doubles = new double[values.size()];
+            int count = 0;
+            for (Object o : values) {
+                Object value = ((Constant)o).getValue();
+                if (value == null) {
+                    continue;
+                }
+                if (value.getClass() != expr.type) {
+                    return null;
+                }
+                longs[count] = ((Number)value).longValue();
+                doubles[count++] = ((Number)value).doubleValue();
+            }
+            if (expr.lane == LONG) {
+                result.longs = Arrays.copyOf(longs, count);
+                Arrays.sort(result.longs);
+            } else {
+                result.doubles = Arrays.copyOf(doubles, count);
+                Arrays.sort(result.doubles);
+            }
+            return result;
+        }
+
+        @Override
+        void evaluate(Rows rows, int[] sel, int count, byte[] out) throws FallbackException {
+            Vector v = expr.evaluate(rows, sel, count);
+            byte notFound = hasNull ? UNKNOWN : (negated ? TRUE : FALSE);
+            byte found = negated ? FALSE : TRUE;
+            for (int i = 0; i < count; i++) {
+                int row = sel[i];
+                if (v.nulls[row]) {
+                    out[row] = empty ? (negated ? TRUE : FALSE) : UNKNOWN;
+                    continue;
+                }
+                boolean exists = false;
+                if (longs != null) {
+                    exists = Arrays.binarySearch(longs, v.longs[row]) >= 0;
+                } else if (doubles != null) {
+                    exists = Arrays.binarySearch(doubles, v.doubles[row]) >= 0;
+                } else {
+                    exists = values.contains(new Constant(v.objects[row], expr.type));
+                }
+                out[row] = exists ? found : notFound;
+            }
+        }
+    }
+
+    private static final class MatchBatchCriteria extends BatchCriteria {
+        private final BatchExpression expr;
+        private final Pattern pattern;
+        private final boolean negated;
+
+        MatchBatchCriteria(BatchExpression expr, Pattern pattern, boolean negated) {
+            this.expr = expr;
+            this.pattern = pattern;
+            this.negated = negated;
+        }
+
+        @Override
+        void evaluate(Rows rows, int[] sel, int count, byte[] out) throws FallbackException {
+            Vector v = expr.evaluate(rows, sel, count);
+            for (int i = 0; i < count; i++) {
+                int row = sel[i];
+                if (v.nulls[row]) {
+                    out[row] = UNKNOWN;
+                } else {
+                    out[row] = pattern.matcher((CharSequence)v.objects[row]).find() ^ negated ? TRUE : FALSE;
+                }
+            }
+        }
+    }
+
+}
@@ -454,23 +454,24 @@ public class Evaluator {
     private boolean match(String pattern, char escape, CharSequence search, MatchMode mode)
         throws ExpressionEvaluationException {
 
-        Pattern patternRegex = null;
+        Pattern patternRegex = getPattern(pattern, escape, mode);
+
+        Matcher matcher = patternRegex.matcher(search);
+        return matcher.find();
+    }
+
+    static Pattern getPattern(String pattern, char escape, MatchMode mode)
+            throws ExpressionEvaluationException {
         switch (mode) {
         case LIKE:
-            patternRegex = LIKE_TO_REGEX.translate(pattern, escape);
-            break;
+            return LIKE_TO_REGEX.translate(pattern, escape);
         case SIMILAR:
-            patternRegex = SIMILAR_TO_REGEX.translate(pattern, escape);
-            break;
+            return SIMILAR_TO_REGEX.translate(pattern, escape);
         case REGEX:
-            patternRegex = MatchCriteria.getPattern(pattern, pattern, 0);
-            break;
+            return MatchCriteria.getPattern(pattern, pattern, 0);
         default:
             throw new AssertionError();
         }
-
-        Matcher matcher = patternRegex.matcher(search);
-        return matcher.find();
     }
 
     private Boolean evaluate(AbstractSetCriteria criteria, List<?> tuple)
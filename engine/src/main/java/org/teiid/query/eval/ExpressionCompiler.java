@@ -0,0 +1,453 @@
+/*
+ * Copyright Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags and
+ * the COPYRIGHT.txt file distributed with this work.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.teiid.query.eval;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import org.teiid.api.exception.query.ExpressionEvaluationException;
+import org.teiid.api.exception.query.FunctionExecutionException;
+import org.teiid.common.buffer.BlockedException;
+import org.teiid.core.TeiidComponentException;
+import org.teiid.core.TeiidRuntimeException;
+import org.teiid.core.types.TransformationException;
+import org.teiid.metadata.FunctionMethod.Determinism;
+import org.teiid.query.QueryPlugin;
+import org.teiid.query.function.FunctionDescriptor;
+import org.teiid.query.function.FunctionLibrary;
+import org.teiid.query.sql.lang.CompareCriteria;
+import org.teiid.query.sql.lang.CompoundCriteria;
+import org.teiid.query.sql.lang.Criteria;
+import org.teiid.query.sql.lang.IsNullCriteria;
+import org.teiid.query.sql.lang.NotCriteria;
+import org.teiid.query.sql.symbol.Constant;
+import org.teiid.query.sql.symbol.DerivedExpression;
+import org.teiid.query.sql.symbol.Expression;
+import org.teiid.query.sql.symbol.ExpressionSymbol;
+import org.teiid.query.sql.symbol.Function;
+import org.teiid.query.sql.symbol.SearchedCaseExpression;
+import org.teiid.query.util.CommandContext;
+
+/**
+ * Compiles resolved expressions and criteria into a single {@link MethodHandle} tree, so that
+ * the JIT may inline the evaluation as straight-line code rather than walking the
+ * {@link Evaluator} instanceof chains and invoking functions reflectively.
+ * <br>
+ * Column references, constants, system and other static java functions, searched case,
+ * and/or/not, comparisons, and null checks are compiled directly.  Anything else, such as subqueries,
+ * references, or pushdown functions, is left to the {@link Evaluator} passed in at evaluation time,
+ * so the results and exceptions are the same as the interpreted evaluation.
+ * <br>
+ * The compilation is performed lazily on the first evaluation using the element map of the evaluator
+ * and the result is retained by the compiled instance, so it may be created with and shared by all
+ * copies of a plan.
+ */
+public final class ExpressionCompiler {
+
+    /**
+     * Limits the number of function arguments so that the combined handles stay under the
+     * jvm limit on method arity
+     */
+    private static final int MAX_ARGS = 100;
+
+    private static final MethodType EXPRESSION_TYPE = MethodType.methodType(Object.class, Evaluator.class, List.class);
+    private static final MethodType CRITERIA_TYPE = MethodType.methodType(Boolean.class, Evaluator.class, List.class);
+
+    private static final MethodHandle LIST_GET;
+    private static final MethodHandle INTERPRET;
+    private static final MethodHandle INTERPRET_CRITERIA;
+    private static final MethodHandle GET_CONTEXT;
+    private static final MethodHandle HAS_NULL;
+    private static final MethodHandle COMPLETE;
+    private static final MethodHandle FUNCTION_EXCEPTION;
+    private static final MethodHandle OPERAND_EXCEPTION;
+    private static final MethodHandle IS_NULL;
+    private static final MethodHandle IS_TRUE;
+    private static final MethodHandle MATCHES;
+    private static final MethodHandle COMBINE;
+    private static final MethodHandle NOT;
+    private static final MethodHandle COMPARE;
+    private static final MethodHandle NULL_CHECK;
+
+    static {
+        MethodHandles.Lookup lookup = MethodHandles.lookup();
+        Class<?> c = ExpressionCompiler.class;
+        try {
+            LIST_GET = lookup.findVirtual(List.class, "get", MethodType.methodType(Object.class, int.class)); //$NON-NLS-1$
+            INTERPRET = lookup.findStatic(c, "interpret", MethodType.methodType(Object.class, Expression.class, Evaluator.class, List.class)); //$NON-NLS-1$
+            INTERPRET_CRITERIA = lookup.findStatic(c, "interpret", MethodType.methodType(Boolean.class, Criteria.class, Evaluator.class, List.class)); //$NON-NLS-1$
+            GET_CONTEXT = lookup.findStatic(c, "getContext", MethodType.methodType(Object.class, Evaluator.class)); //$NON-NLS-1$
+            HAS_NULL = lookup.findStatic(c, "hasNull", MethodType.methodType(boolean.class, Object[].class)); //$NON-NLS-1$
+            COMPLETE = lookup.findStatic(c, "complete", MethodType.methodType(Object.class, FunctionDescriptor.class, Object.class, Evaluator.class)); //$NON-NLS-1$
+            FUNCTION_EXCEPTION = lookup.findStatic(c, "functionException", MethodType.methodType(Object.class, FunctionDescriptor.class, Throwable.class)); //$NON-NLS-1$
+            OPERAND_EXCEPTION = lookup.findStatic(c, "operandException", MethodType.methodType(Object.class, Criteria.class, String.class, Expression.class, ExpressionEvaluationException.class)); //$NON-NLS-1$
+            IS_NULL = lookup.findStatic(c, "isNull", MethodType.methodType(boolean.class, Object.class)); //$NON-NLS-1$
+            IS_TRUE = lookup.findStatic(c, "isTrue", MethodType.methodType(boolean.class, Boolean.class)); //$NON-NLS-1$
+            MATCHES = lookup.findStatic(c, "matches", MethodType.methodType(boolean.class, Boolean.class, Boolean.class)); //$NON-NLS-1$
+            COMBINE = lookup.findStatic(c, "combine", MethodType.methodType(Boolean.class, Boolean.class, Boolean.class, Boolean.class)); //$NON-NLS-1$
+            NOT = lookup.findStatic(c, "not", MethodType.methodType(Boolean.class, Boolean.class)); //$NON-NLS-1$
+            COMPARE = lookup.findStatic(c, "compare", MethodType.methodType(Boolean.class, int.class, Object.class, Object.class)); //$NON-NLS-1$
+            NULL_CHECK = lookup.findStatic(c, "nullCheck", MethodType.methodType(Boolean.class, boolean.class, Object.class)); //$NON-NLS-1$
+        } catch (ReflectiveOperationException e) {
+            throw new TeiidRuntimeException(e);
+        }
+    }
+
+    /**
+     * A compiled {@link Expression}
+     */
+    public static final class CompiledExpression {
+
+        private final Expression expression;
+        private volatile MethodHandle handle;
+
+        CompiledExpression(Expression expression) {
+            this.expression = expression;
+        }
+
+        public Expression getExpression() {
+            return expression;
+        }
+
+        /**
+         * @see Evaluator#evaluate(Expression, List)
+         */
+        public Object evaluate(Evaluator evaluator, List<?> tuple)
+                throws ExpressionEvaluationException, BlockedException, TeiidComponentException {
+            MethodHandle h = handle;
+            if (h == null) {
+                h = compileExpression(expression, evaluator.elements);
+                handle = h;
+            }
+            try {
+                return (Object)h.invokeExact(evaluator, (List)tuple);
+            } catch (ExpressionEvaluationException e) {
+                throw new ExpressionEvaluationException(QueryPlugin.Event.TEIID30328, e, QueryPlugin.Util.gs(QueryPlugin.Event.TEIID30328, new Object[] {expression, e.getMessage()}));
+            } catch (Throwable e) {
+                throw rethrow(e);
+            }
+        }
+
+    }
+
+    /**
+     * A compiled {@link Criteria}
+     */
+    public static final class CompiledCriteria {
+
+        private final Criteria criteria;
+        private volatile MethodHandle handle;
+
+        CompiledCriteria(Criteria criteria) {
+            this.criteria = criteria;
+        }
+
+        public Criteria getCriteria() {
+            return criteria;
+        }
+
+        /**
+         * @see Evaluator#evaluate(Criteria, List)
+         */
+        public boolean evaluate(Evaluator evaluator, List<?> tuple)
+                throws ExpressionEvaluationException, BlockedException, TeiidComponentException {
+            return Boolean.TRUE.equals(evaluateTVL(evaluator, tuple));
+        }
+
+        /**
+         * @see Evaluator#evaluateTVL(Criteria, List)
+         */
+        public Boolean evaluateTVL(Evaluator evaluator, List<?> tuple)
+                throws ExpressionEvaluationException, BlockedException, TeiidComponentException {
+            MethodHandle h = handle;
+            if (h == null) {
+                h = compileCriteria(criteria, evaluator.elements);
+                handle = h;
+            }
+            try {
+                return (Boolean)h.invokeExact(evaluator, (List)tuple);
+            } catch (Throwable e) {
+                throw rethrow(e);
+            }
+        }
+
+    }
+
+    private ExpressionCompiler() {
+
+    }
+
+    public static CompiledExpression compile(Expression expression) {
+        return new CompiledExpression(expression);
+    }
+
+    public static CompiledCriteria compile(Criteria criteria) {
+        return new CompiledCriteria(criteria);
+    }
+
+    private static TeiidComponentException rethrow(Throwable e) throws ExpressionEvaluationException {
+        if (e instanceof RuntimeException) {
+            throw (RuntimeException)e;
+        }
+        if (e instanceof Error) {
+            throw (Error)e;
+        }
+        if (e instanceof ExpressionEvaluationException) {
+            throw (ExpressionEvaluationException)e;
+        }
+        if (e instanceof TeiidComponentException) {
+            return (TeiidComponentException)e;
+        }
+        return new TeiidComponentException(e);
+    }
+
+    static MethodHandle compileExpression(Expression expression, Map<?, ?> elements) {
+        if (expression instanceof DerivedExpression) {
+            if (elements != null) {
+                Integer index = (Integer)elements.get(expression);
+                if (index != null) {
+                    return MethodHandles.dropArguments(MethodHandles.insertArguments(LIST_GET, 1, index.intValue()), 0, Evaluator.class);
+                }
+            }
+            if (expression instanceof ExpressionSymbol) {
+                return compileExpression(((ExpressionSymbol)expression).getExpression(), elements);
+            }
+        } else if (expression instanceof Constant) {
+            Constant c = (Constant)expression;
+            if (!c.isMultiValued()) {
+                return MethodHandles.dropArguments(MethodHandles.constant(Object.class, c.getValue()), 0, Evaluator.class, List.class);
+            }
+        } else if (expression instanceof Function) {
+            MethodHandle result = compileFunction((Function)expression, elements);
+            if (result != null) {
+                return result;
+            }
+        } else if (expression instanceof SearchedCaseExpression) {
+            return compileSearchedCase((SearchedCaseExpression)expression, elements);
+        } else if (expression instanceof Criteria) {
+            //criteria are evaluated to true or false, not unknown
+            return MethodHandles.filterReturnValue(compileCriteria((Criteria)expression, elements), IS_TRUE).asType(EXPRESSION_TYPE);
+        }
+        return MethodHandles.insertArguments(INTERPRET, 0, expression);
+    }
+
+    static MethodHandle compileCriteria(Criteria criteria, Map<?, ?> elements) {
+        if (criteria instanceof CompoundCriteria) {
+            return compileCompound((CompoundCriteria)criteria, elements);
+        }
+        if (criteria instanceof NotCriteria) {
+            return MethodHandles.filterReturnValue(compileCriteria(((NotCriteria)criteria).getCriteria(), elements), NOT);
+        }
+        if (criteria instanceof CompareCriteria) {
+            CompareCriteria compare = (CompareCriteria)criteria;
+            MethodHandle left = compileOperand(compare.getLeftExpression(), criteria, "left", elements); //$NON-NLS-1$
+            MethodHandle right = compileOperand(compare.getRightExpression(), criteria, "right", elements); //$NON-NLS-1$
+            //(left, evaluator, tuple) - the right side is only evaluated for a non-null left value
+            MethodHandle target = MethodHandles.collectArguments(MethodHandles.insertArguments(COMPARE, 0, compare.getOperator()), 1, right);
+            target = MethodHandles.guardWithTest(IS_NULL, MethodHandles.dropArguments(MethodHandles.constant(Boolean.class, null), 0, Object.class, Evaluator.class, List.class), target);
+            return MethodHandles.foldArguments(target, left);
+        }
+        if (criteria instanceof IsNullCriteria) {
+            IsNullCriteria isNull = (IsNullCriteria)criteria;
+            MethodHandle value = compileOperand(isNull.getExpression(), criteria, null, elements);
+            return MethodHandles.filterReturnValue(value, MethodHandles.insertArguments(NULL_CHECK, 0, isNull.isNegated()));
+        }
+        return MethodHandles.insertArguments(INTERPRET_CRITERIA, 0, criteria);
+    }
+
+    /**
+     * Fold the criteria from right to left so that they are evaluated in order and
+     * the evaluation stops at the first short circuit value
+     */
+    private static MethodHandle compileCompound(CompoundCriteria criteria, Map<?, ?> elements) {
+        List<Criteria> subCrits = criteria.getCriteria();
+        Boolean shortCircuit = criteria.getOperator() == CompoundCriteria.AND?Boolean.FALSE:Boolean.TRUE;
+        MethodHandle result = compileCriteria(subCrits.get(subCrits.size() - 1), elements);
+        for (int i = subCrits.size() - 2; i >= 0; i--) {
+            //(value, evaluator, tuple)
+            MethodHandle rest = MethodHandles.collectArguments(MethodHandles.insertArguments(COMBINE, 0, shortCircuit), 1, result);
+            MethodHandle target = MethodHandles.guardWithTest(MethodHandles.insertArguments(MATCHES, 0, shortCircuit),
+                    MethodHandles.dropArguments(MethodHandles.identity(Boolean.class), 1, Evaluator.class, List.class), rest);
+            result = MethodHandles.foldArguments(target, compileCriteria(subCrits.get(i), elements));
+        }
+        return result;
+    }
+
+    private static MethodHandle compileOperand(Expression expression, Criteria criteria, String side, Map<?, ?> elements) {
+        MethodHandle result = compileExpression(expression, elements);
+        return MethodHandles.catchException(result, ExpressionEvaluationException.class, MethodHandles.insertArguments(OPERAND_EXCEPTION, 0, criteria, side, expression));
+    }
+
+    private static MethodHandle compileSearchedCase(SearchedCaseExpression expr, Map<?, ?> elements) {
+        MethodHandle result = null;
+        if (expr.getElseExpression() != null) {
+            result = compileExpression(expr.getElseExpression(), elements);
+        } else {
+            result = MethodHandles.dropArguments(MethodHandles.constant(Object.class, null), 0, Evaluator.class, List.class);
+        }
+        for (int i = expr.getWhenCount() - 1; i >= 0; i--) {
+            MethodHandle when = MethodHandles.filterReturnValue(compileCriteria(expr.getWhenCriteria(i), elements), IS_TRUE);
+            result = MethodHandles.guardWithTest(when, compileExpression(expr.getThenExpression(i), elements), result);
+        }
+        return result;
+    }
+
+    /**
+     * Bind the arguments to a direct handle of the function method.
+     * @return the function handle or null if the function must be interpreted
+     */
+    private static MethodHandle compileFunction(Function function, Map<?, ?> elements) {
+        FunctionDescriptor fd = function.getFunctionDescriptor();
+        Expression[] args = function.getArgs();
+        if (fd == null || args.length > MAX_ARGS || function.getName().equalsIgnoreCase(FunctionLibrary.LOOKUP)) {
+            return null;
+        }
+        MethodHandle result = fd.getInvocationHandle();
+        if (result == null) {
+            return null;
+        }
+        Class<?>[] argTypes = new Class<?>[args.length];
+        Arrays.fill(argTypes, Object.class);
+        //(evaluator, arg values...)
+        if (fd.requiresContext()) {
+            result = MethodHandles.filterArguments(result, 0, GET_CONTEXT);
+        } else {
+            result = MethodHandles.dropArguments(result, 0, Evaluator.class);
+        }
+        result = MethodHandles.catchException(result, Throwable.class, MethodHandles.insertArguments(FUNCTION_EXCEPTION, 0, fd));
+        MethodHandle complete = MethodHandles.dropArguments(MethodHandles.insertArguments(COMPLETE, 0, fd), 2, argTypes);
+        result = MethodHandles.foldArguments(complete, result);
+        if (!fd.isNullDependent() && args.length > 0) {
+            MethodHandle test = MethodHandles.dropArguments(HAS_NULL.asCollector(Object[].class, args.length), 0, Evaluator.class);
+            MethodHandle returnNull = MethodHandles.dropArguments(MethodHandles.constant(Object.class, null), 0, result.type().parameterList());
+            result = MethodHandles.guardWithTest(test, returnNull, result);
+        }
+        //replace the values with the argument handles from right to left, so that the
+        //leftmost argument is evaluated first
+        int[] reorder = new int[1 + 2*args.length];
+        for (int i = args.length - 1; i >= 0; i--) {
+            result = MethodHandles.collectArguments(result, 1 + i, compileExpression(args[i], elements));
+            reorder[2 + 2*i] = 1;
+        }
+        return MethodHandles.permuteArguments(result, EXPRESSION_TYPE, reorder);
+    }
+
+    static Object interpret(Expression expression, Evaluator evaluator, List<?> tuple)
+            throws ExpressionEvaluationException, BlockedException, TeiidComponentException {
+        return evaluator.internalEvaluate(expression, tuple);
+    }
+
+    static Boolean interpret(Criteria criteria, Evaluator evaluator, List<?> tuple)
+            throws ExpressionEvaluationException, BlockedException, TeiidComponentException {
+        return evaluator.evaluateTVL(criteria, tuple);
+    }
+
+    static Object getContext(Evaluator evaluator) {
+        return evaluator.context;
+    }
+
+    static boolean hasNull(Object[] values) {
+        for (Object value : values) {
+            if (value == null) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @see FunctionDescriptor#invokeFunction(Object[], CommandContext, Object)
+     */
+    static Object complete(FunctionDescriptor fd, Object result, Evaluator evaluator) throws FunctionExecutionException {
+        CommandContext context = evaluator.context;
+        if (context != null && fd.getDeterministic().ordinal() <= Determinism.USER_DETERMINISTIC.ordinal()) {
+            context.setDeterminismLevel(fd.getDeterministic());
+        }
+        try {
+            return FunctionDescriptor.importValue(result, fd.getReturnType(), context);
+        } catch (ArithmeticException e) {
+            throw new FunctionExecutionException(QueryPlugin.Event.TEIID30384, e, QueryPlugin.Util.gs(QueryPlugin.Event.TEIID30384, fd.getFullName()));
+        } catch (TransformationException e) {
+            throw new FunctionExecutionException(e);
+        }
+    }
+
+    static Object functionException(FunctionDescriptor fd, Throwable e) throws Throwable {
+        if (e instanceof BlockedException) {
+            throw e;
+        }
+        throw new FunctionExecutionException(QueryPlugin.Event.TEIID30384, e, QueryPlugin.Util.gs(QueryPlugin.Event.TEIID30384, fd.getFullName()));
+    }
+
+    static Object operandException(Criteria criteria, String side, Expression expression, ExpressionEvaluationException e) throws ExpressionEvaluationException {
+        e = new ExpressionEvaluationException(QueryPlugin.Event.TEIID30328, e, QueryPlugin.Util.gs(QueryPlugin.Event.TEIID30328, new Object[] {expression, e.getMessage()}));
+        if (side == null) {
+            throw new ExpressionEvaluationException(QueryPlugin.Event.TEIID30323, e, QueryPlugin.Util.gs(QueryPlugin.Event.TEIID30323, criteria));
+        }
+        throw new ExpressionEvaluationException(QueryPlugin.Event.TEIID30312, e, QueryPlugin.Util.gs(QueryPlugin.Event.TEIID30312, side, criteria));
+    }
+
+    static boolean isNull(Object value) {
+        return value == null;
+    }
+
+    static boolean isTrue(Boolean value) {
+        return Boolean.TRUE.equals(value);
+    }
+
+    static boolean matches(Boolean expected, Boolean value) {
+        return expected.equals(value);
+    }
+
+    /**
+     * Combine a value that is not the short circuit value with the value of the remaining criteria
+     */
+    static Boolean combine(Boolean shortCircuit, Boolean value, Boolean rest) {
+        if (shortCircuit.equals(rest)) {
+            return rest;
+        }
+        if (value == null || rest == null) {
+            return null;
+        }
+        return value;
+    }
+
+    static Boolean not(Boolean value) {
+        if (value == null) {
+            return null;
+        }
+        return !value;
+    }
+
+    static Boolean compare(int operator, Object leftValue, Object rightValue) {
+        if (rightValue == null) {
+            return null;
+        }
+        return Evaluator.compare(operator, leftValue, rightValue);
+    }
+
+    static Boolean nullCheck(boolean negated, Object value) {
+        return value == null ^ negated;
+    }
+
+}
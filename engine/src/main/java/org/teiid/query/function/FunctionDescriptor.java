@@ -19,9 +19,13 @@
 package org.teiid.query.function;
 
 import java.io.Serializable;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.Array;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
 import java.util.Arrays;
 
 import org.teiid.api.exception.query.FunctionExecutionException;
@@ -52,7 +56,7 @@ import org.teiid.query.util.CommandContext;
 public class FunctionDescriptor implements Serializable, Cloneable {
     private static final long serialVersionUID = 5374103983118037242L;
 
-    private static final boolean ALLOW_NAN_INFINITY = PropertiesUtils.getHierarchicalProperty("org.teiid.allowNanInfinity", false, Boolean.class); //$NON-NLS-1$
+    public static final boolean ALLOW_NAN_INFINITY = PropertiesUtils.getHierarchicalProperty("org.teiid.allowNanInfinity", false, Boolean.class); //$NON-NLS-1$
 
     private Class<?>[] types;
     private Class<?> returnType;
@@ -298,6 +302,39 @@ public class FunctionDescriptor implements Serializable, Cloneable {
         }
     }
 
+    /**
+     * Get a direct {@link MethodHandle} to the invocation method taking and returning {@link Object}s,
+     * with the {@link CommandContext} as the first argument if required.
+     * <br>
+     * The handle performs no null checking, argument unwrapping, or import of the result, so
+     * null is returned for any function that requires more than that from {@link #invokeFunction}, such as
+     * var args, wrapped args, a custom class loader, pushdown, or procedure functions.
+     */
+    public MethodHandle getInvocationHandle() {
+        if (invocationMethod == null || !Modifier.isStatic(invocationMethod.getModifiers())
+                || method.isVarArgs() || hasWrappedArgs || classLoader != null
+                || procedure != null || getPushdown() == PushDown.MUST_PUSHDOWN) {
+            return null;
+        }
+        Class<?>[] parameterTypes = invocationMethod.getParameterTypes();
+        int start = requiresContext?1:0;
+        if (parameterTypes.length != types.length + start) {
+            return null;
+        }
+        for (int i = 0; i < types.length; i++) {
+            Class<?> parameterType = MethodType.methodType(parameterTypes[i + start]).wrap().returnType();
+            if (types[i] == null || !parameterType.isAssignableFrom(types[i])) {
+                return null;
+            }
+        }
+        try {
+            MethodHandle handle = MethodHandles.lookup().unreflect(invocationMethod);
+            return handle.asType(MethodType.genericMethodType(parameterTypes.length));
+        } catch (IllegalAccessException e) {
+            return null;
+        }
+    }
+
     private void checkMethod() throws FunctionExecutionException {
         // If descriptor is missing invokable method, find this VM's descriptor
         // give name and types from fd
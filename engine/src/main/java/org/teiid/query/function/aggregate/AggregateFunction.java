@@ -74,6 +74,32 @@ public abstract class AggregateFunction {
         addInputDirect(tuple, commandContext);
     }
 
+    /**
+     * Remove an input previously added with {@link #addInput(List, CommandContext)}.
+     * Only valid if {@link #canRemoveInput()} is true.
+     */
+    public void removeInput(List<?> tuple, CommandContext commandContext) throws TeiidComponentException, TeiidProcessingException {
+        if (conditionIndex != -1 && !Boolean.TRUE.equals(tuple.get(conditionIndex))) {
+            return;
+        }
+        if (filter(tuple)) {
+            return;
+        }
+        removeInputDirect(tuple, commandContext);
+    }
+
+    /**
+     * @return true if the function can incrementally remove inputs, such as
+     * for maintaining the value of a sliding window frame
+     */
+    public boolean canRemoveInput() {
+        return false;
+    }
+
+    public void removeInputDirect(List<?> tuple, CommandContext commandContext) throws TeiidComponentException, TeiidProcessingException {
+        throw new UnsupportedOperationException();
+    }
+
     public boolean filter(List<?> tuple) {
         if (!respectsNull()) {
             for (int i = 0; i < argIndexes.length; i++) {
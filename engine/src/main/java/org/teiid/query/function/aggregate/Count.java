@@ -46,6 +46,16 @@ public class Count extends AggregateFunction {
         count++;
     }
 
+    @Override
+    public boolean canRemoveInput() {
+        return true;
+    }
+
+    @Override
+    public void removeInputDirect(List<?> tuple, CommandContext commandContext) {
+        count--;
+    }
+
     /**
      * @see org.teiid.query.function.aggregate.AggregateFunction#getResult(CommandContext)
      */
@@ -51,6 +51,7 @@ public class Sum extends SingleArgumentAggregateFunction {
     private double sumDouble;
     private BigDecimal sumBigDecimal;
     private boolean isNull = true;
+    private long inputCount;
 
     /**
      * Allows subclasses to determine type of accumulator for the SUM.
@@ -82,6 +83,7 @@ public class Sum extends SingleArgumentAggregateFunction {
         sumDouble = 0;
         sumBigDecimal = null;
         isNull = true;
+        inputCount = 0;
     }
 
     @Override
@@ -89,6 +91,7 @@ public class Sum extends SingleArgumentAggregateFunction {
         throws FunctionExecutionException, ExpressionEvaluationException, TeiidComponentException {
 
         isNull = false;
+        inputCount++;
 
         switch(this.accumulatorType) {
             case LONG:
@@ -114,6 +117,39 @@ public class Sum extends SingleArgumentAggregateFunction {
         }
     }
 
+    /**
+     * Only exact integral sums are removable, since removing floating point or
+     * decimal values would not give the same result or scale as the sum of the remaining values
+     */
+    @Override
+    public boolean canRemoveInput() {
+        return this.accumulatorType == LONG || this.accumulatorType == BIG_INTEGER;
+    }
+
+    @Override
+    public void removeInputDirect(Object input, List<?> tuple, CommandContext commandContext)
+            throws FunctionExecutionException {
+        switch(this.accumulatorType) {
+            case LONG:
+                this.sumLong = FunctionMethods.minus(this.sumLong, ((Number)input).longValue());
+                break;
+            case BIG_INTEGER:
+                if (input instanceof BigInteger) {
+                    this.sumBigDecimal = this.sumBigDecimal.subtract(new BigDecimal((BigInteger)input));
+                } else {
+                    this.sumBigDecimal = this.sumBigDecimal.subtract(new BigDecimal(((Number)input).longValue()));
+                }
+                break;
+            default:
+                throw new UnsupportedOperationException();
+        }
+        if (--inputCount == 0) {
+            isNull = true;
+            sumLong = 0;
+            sumBigDecimal = null;
+        }
+    }
+
     /**
      * @see org.teiid.query.function.aggregate.AggregateFunction#getResult(CommandContext)
      */
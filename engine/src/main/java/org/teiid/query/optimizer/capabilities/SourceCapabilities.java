@@ -370,7 +370,8 @@ public interface SourceCapabilities {
         QUERY_AGGREGATES_LIST,
         QUERY_AGGREGATES_COUNT_BIG,
         GEOGRAPHY_TYPE,
-        PROCEDURE_PARAMETER_EXPRESSION;
+        PROCEDURE_PARAMETER_EXPRESSION,
+        DEPENDENT_JOIN_BLOOM_FILTER;
 
         private final String toString;
 
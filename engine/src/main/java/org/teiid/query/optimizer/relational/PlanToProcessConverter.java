@@ -70,6 +70,7 @@ import org.teiid.query.processor.relational.DependentProcedureExecutionNode;
 import org.teiid.query.processor.relational.DupRemoveNode;
 import org.teiid.query.processor.relational.EnhancedSortMergeJoinStrategy;
 import org.teiid.query.processor.relational.GroupingNode;
+import org.teiid.query.processor.relational.HashJoinStrategy;
 import org.teiid.query.processor.relational.InsertPlanExecutionNode;
 import org.teiid.query.processor.relational.JoinNode;
 import org.teiid.query.processor.relational.JoinNode.JoinStrategyType;
@@ -351,6 +352,12 @@ public class PlanToProcessConverter {
                     List rightExpressions = (List) node.getProperty(NodeConstants.Info.RIGHT_EXPRESSIONS);
                     jnode.setJoinExpressions(leftExpressions, rightExpressions);
                     joinCrits = (List) node.getProperty(NodeConstants.Info.NON_EQUI_JOIN_CRITERIA);
+                } else if (stype == JoinStrategyType.HASH) {
+                    jnode.setJoinStrategy(new HashJoinStrategy());
+                    List leftExpressions = (List) node.getProperty(NodeConstants.Info.LEFT_EXPRESSIONS);
+                    List rightExpressions = (List) node.getProperty(NodeConstants.Info.RIGHT_EXPRESSIONS);
+                    jnode.setJoinExpressions(leftExpressions, rightExpressions);
+                    joinCrits = (List) node.getProperty(NodeConstants.Info.NON_EQUI_JOIN_CRITERIA);
                 } else if (stype == JoinStrategyType.NESTED_TABLE) {
                     NestedTableJoinStrategy ntjStrategy = new NestedTableJoinStrategy();
                     jnode.setJoinStrategy(ntjStrategy);
@@ -419,6 +426,7 @@ public class PlanToProcessConverter {
                                 depAccessNode.setMaxSetSize(CapabilitiesUtil.getMaxInCriteriaSize(modelID, metadata, capFinder));
                                 depAccessNode.setMaxPredicates(CapabilitiesUtil.getMaxDependentPredicates(modelID, metadata, capFinder));
                                 depAccessNode.setUseBindings(CapabilitiesUtil.supports(Capability.DEPENDENT_JOIN_BINDINGS, modelID, metadata, capFinder));
+                                depAccessNode.setBloomFilterPushdown(CapabilitiesUtil.supports(Capability.DEPENDENT_JOIN_BLOOM_FILTER, modelID, metadata, capFinder));
                                 //TODO: allow the translator to drive this property
                                 //simplistic check of whether this query is complex to re-execute
                                 Query query = (Query)command;
@@ -604,6 +612,7 @@ public class PlanToProcessConverter {
             case NodeConstants.Types.GROUP:
                 GroupingNode gnode = new GroupingNode(getID());
                 gnode.setRollup(node.hasBooleanProperty(Info.ROLLUP));
+                gnode.setHashAggregation(node.hasBooleanProperty(Info.HASH_AGGREGATION));
                 SymbolMap groupingMap = (SymbolMap)node.getProperty(NodeConstants.Info.SYMBOL_MAP);
                 gnode.setOutputMapping(groupingMap);
                 gnode.setRemoveDuplicates(node.hasBooleanProperty(NodeConstants.Info.IS_DUP_REMOVAL));
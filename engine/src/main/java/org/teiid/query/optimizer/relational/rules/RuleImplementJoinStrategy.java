@@ -41,6 +41,7 @@ import org.teiid.query.optimizer.relational.plantree.NodeConstants.Info;
 import org.teiid.query.optimizer.relational.plantree.NodeEditor;
 import org.teiid.query.optimizer.relational.plantree.NodeFactory;
 import org.teiid.query.optimizer.relational.plantree.PlanNode;
+import org.teiid.query.processor.relational.HashJoinStrategy;
 import org.teiid.query.processor.relational.JoinNode.JoinStrategyType;
 import org.teiid.query.processor.relational.MergeJoinStrategy.SortOption;
 import org.teiid.query.processor.relational.RelationalNode;
@@ -141,6 +142,11 @@ public class RuleImplementJoinStrategy implements OptimizerRule {
                 }
             }
 
+            if (key == null && useHashJoin(joinNode, joinType, leftExpressions, rightExpressions, metadata, capabilitiesFinder, context)) {
+                joinNode.setProperty(NodeConstants.Info.JOIN_STRATEGY, JoinStrategyType.HASH);
+                continue;
+            }
+
             if (key != null && joinNode.getProperty(NodeConstants.Info.DEPENDENT_VALUE_SOURCE) == null) {
                 //redo the join predicates based upon the key alone
                 List<Object> keyCols = metadata.getElementIDsInKey(key);
@@ -218,6 +224,47 @@ public class RuleImplementJoinStrategy implements OptimizerRule {
         return plan;
     }
 
+    /**
+     * Use a hash join if neither side can have the sort pushed to the source and both
+     * sides are estimated to be larger than a batch, so that the merge join would need
+     * to sort in the engine.  The join expressions must already be projected by the children.
+     */
+    static boolean useHashJoin(PlanNode joinNode, JoinType joinType, List<Expression> leftExpressions, List<Expression> rightExpressions,
+            QueryMetadataInterface metadata, CapabilitiesFinder capFinder, CommandContext context) throws QueryMetadataException, TeiidComponentException {
+        if (context == null || !context.getOptions().isHashJoin()
+                || (joinType != JoinType.JOIN_INNER && joinType != JoinType.JOIN_LEFT_OUTER && joinType != JoinType.JOIN_FULL_OUTER
+                        && joinType != JoinType.JOIN_SEMI && joinType != JoinType.JOIN_ANTI_SEMI)
+                || joinNode.getProperty(NodeConstants.Info.DEPENDENT_VALUE_SOURCE) != null
+                || joinNode.hasBooleanProperty(Info.SINGLE_MATCH)
+                || !HashJoinStrategy.isHashable(leftExpressions, rightExpressions)
+                || !((List<Expression>)joinNode.getFirstChild().getProperty(NodeConstants.Info.OUTPUT_COLS)).containsAll(leftExpressions)
+                || !((List<Expression>)joinNode.getLastChild().getProperty(NodeConstants.Info.OUTPUT_COLS)).containsAll(rightExpressions)) {
+            return false;
+        }
+        float leftCost = NewCalculateCostUtil.computeCostForTree(joinNode.getFirstChild(), metadata);
+        float rightCost = NewCalculateCostUtil.computeCostForTree(joinNode.getLastChild(), metadata);
+        if (leftCost == NewCalculateCostUtil.UNKNOWN_VALUE || rightCost == NewCalculateCostUtil.UNKNOWN_VALUE
+                || Math.min(leftCost, rightCost) <= context.getProcessorBatchSize()) {
+            return false;
+        }
+        return !canPushSort(joinNode.getFirstChild(), leftExpressions, metadata, capFinder, context)
+                && !canPushSort(joinNode.getLastChild(), rightExpressions, metadata, capFinder, context);
+    }
+
+    private static boolean canPushSort(PlanNode childNode, List<Expression> expressions, QueryMetadataInterface metadata,
+            CapabilitiesFinder capFinder, CommandContext context) throws QueryMetadataException, TeiidComponentException {
+        PlanNode sourceNode = FrameUtil.findJoinSourceNode(childNode);
+        if (sourceNode.getType() != NodeConstants.Types.ACCESS) {
+            return false;
+        }
+        if (RuleRaiseAccess.getModelIDFromAccess(sourceNode, metadata) == TempMetadataAdapter.TEMP_MODEL
+                && !NewCalculateCostUtil.usesKey(sourceNode, expressions, metadata)) {
+            return false;
+        }
+        PlanNode sortNode = createSortNode(new ArrayList<Expression>(new LinkedHashSet<Expression>(expressions)), expressions);
+        return RuleRaiseAccess.canRaiseOverSort(sourceNode, metadata, capFinder, sortNode, null, false, context, true);
+    }
+
     /**
      * Insert a sort node under the merge join node.  If necessary, also insert a project
      * node to handle function evaluation.
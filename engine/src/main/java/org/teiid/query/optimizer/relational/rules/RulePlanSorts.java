@@ -56,6 +56,11 @@ import org.teiid.query.util.CommandContext;
  */
 public class RulePlanSorts implements OptimizerRule {
 
+    /**
+     * The maximum estimated number of groups for using hash aggregation
+     */
+    static final int HASH_AGGREGATION_MAX_GROUPS = 1 << 16;
+
     @Override
     public PlanNode execute(PlanNode plan, QueryMetadataInterface metadata,
             CapabilitiesFinder capabilitiesFinder, RuleStack rules,
@@ -166,12 +171,16 @@ public class RulePlanSorts implements OptimizerRule {
                     }
                 }
             }
+            if (useHashAggregation(node, metadata, context)) {
+                node.setProperty(Info.HASH_AGGREGATION, true);
+            }
             //TODO: check the join interesting order
             parentBlocking = true;
             break;
         case NodeConstants.Types.JOIN:
             if (node.getProperty(NodeConstants.Info.JOIN_STRATEGY) == JoinStrategyType.NESTED_LOOP
-                    || node.getProperty(NodeConstants.Info.JOIN_STRATEGY) == JoinStrategyType.NESTED_TABLE) {
+                    || node.getProperty(NodeConstants.Info.JOIN_STRATEGY) == JoinStrategyType.NESTED_TABLE
+                    || node.getProperty(NodeConstants.Info.JOIN_STRATEGY) == JoinStrategyType.HASH) {
                 break;
             }
             /*
@@ -213,6 +222,26 @@ public class RulePlanSorts implements OptimizerRule {
         return root;
     }
 
+    /**
+     * Use hash aggregation if the output does not need to be ordered and the estimated
+     * number of groups is small enough that sorting the input is not worth the cost
+     */
+    private boolean useHashAggregation(PlanNode node, QueryMetadataInterface metadata, CommandContext context) throws QueryMetadataException, TeiidComponentException {
+        if (context == null || !context.getOptions().isHashAggregation()
+                || node.getProperty(Info.SORT_ORDER) != null || node.hasBooleanProperty(Info.ROLLUP)
+                || node.hasBooleanProperty(Info.IS_DUP_REMOVAL)) {
+            return false;
+        }
+        PlanNode child = node.getFirstChild();
+        float childCardinality = NewCalculateCostUtil.computeCostForTree(child, metadata);
+        if (childCardinality == NewCalculateCostUtil.UNKNOWN_VALUE) {
+            return false;
+        }
+        List<Expression> groupCols = (List<Expression>)node.getProperty(Info.GROUP_COLS);
+        float ndv = NewCalculateCostUtil.getNDVEstimate(child, metadata, childCardinality, groupCols, true);
+        return ndv != NewCalculateCostUtil.UNKNOWN_VALUE && ndv <= HASH_AGGREGATION_MAX_GROUPS && ndv < childCardinality;
+    }
+
     static PlanNode checkForProjectOptimization(PlanNode node, PlanNode root,
             QueryMetadataInterface metadata, CapabilitiesFinder capFinder, AnalysisRecord record, CommandContext context) throws QueryMetadataException, TeiidComponentException, QueryPlannerException {
         PlanNode projectNode = node.getFirstChild();
@@ -183,7 +183,7 @@ public class BatchCollector {
                     if (!modified) {
                         batch = new TupleBatch(batch.getBeginRow(), batch.getTuples());
                     }
-                    batch.getTuples().add(lastTuple);
+                    batch.addTuple(lastTuple);
                 }
                 batch.setTerminationFlag(true);
             }
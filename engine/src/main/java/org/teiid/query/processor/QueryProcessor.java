@@ -152,7 +152,7 @@ public class QueryProcessor implements BatchProducer {
                     if (result.getTerminationFlag()) {
                         result.setTermination(TupleBatch.ITERATION_TERMINATED);
                         List<Object> terminationTuple = Arrays.asList(new Object[this.getOutputElements().size()]);
-                        result.getTuples().add(terminationTuple);
+                        result.addTuple(terminationTuple);
                         this.context.getTupleSourceCache().close();
                         this.processPlan.close();
                         this.processPlan.reset();
@@ -0,0 +1,148 @@
+/*
+ * Copyright Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags and
+ * the COPYRIGHT.txt file distributed with this work.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.teiid.query.processor.relational;
+
+import java.util.List;
+
+/**
+ * A Bloom filter over join key values.  Used to pre-filter dependent join input when the
+ * key set is too large to push as IN predicates.
+ * <br>
+ * The hashing is defined so that it may be reproduced by a source function:
+ * a 64 bit FNV-1a hash over the UTF-16 code units of the string form of each key value,
+ * with 0x10000 mixed in after each value of a composite key, followed by the MurmurHash3 fmix64 finalizer
+ * (a final hash of 0 is replaced by 1).
+ * The low and high 32 bits h1 and h2 then give the bit indexes (h1 + i*h2) mod bitCount for i in 1..hashFunctions,
+ * where a negative combined value is bitwise inverted.  Bit n is (bytes[n/8] &gt;&gt; (n%8)) &amp; 1.
+ * <br>
+ * Null values, or composite keys containing a null, are never added and never match.
+ */
+public class BloomFilter {
+
+    static final int MAX_BITS = 1 << 26;
+
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private byte[] bits;
+    private int bitCount;
+    private int hashFunctions;
+
+    /**
+     * Create a filter sized for the expected number of keys and desired false positive probability.
+     * The size is capped, so a very large number of keys will have a higher false positive rate.
+     */
+    public BloomFilter(long expectedKeys, double falsePositiveProbability) {
+        long n = Math.max(1, expectedKeys);
+        double optimalBits = -n * Math.log(falsePositiveProbability) / (Math.log(2) * Math.log(2));
+        long size = (long)Math.ceil(Math.min(MAX_BITS, Math.max(64, optimalBits)));
+        this.bitCount = (int)((size + 7) & ~7L);
+        this.hashFunctions = (int)Math.max(1, Math.min(16, Math.round((double)bitCount / n * Math.log(2))));
+        this.bits = new byte[bitCount >>> 3];
+    }
+
+    public void add(Object key) {
+        long hash = hash(key);
+        if (hash == 0) {
+            return;
+        }
+        int h1 = (int)hash;
+        int h2 = (int)(hash >>> 32);
+        for (int i = 1; i <= hashFunctions; i++) {
+            int bit = index(h1, h2, i);
+            bits[bit >>> 3] |= 1 << (bit & 7);
+        }
+    }
+
+    public boolean mightContain(Object key) {
+        long hash = hash(key);
+        if (hash == 0) {
+            return false;
+        }
+        int h1 = (int)hash;
+        int h2 = (int)(hash >>> 32);
+        for (int i = 1; i <= hashFunctions; i++) {
+            int bit = index(h1, h2, i);
+            if ((bits[bit >>> 3] & (1 << (bit & 7))) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int index(int h1, int h2, int i) {
+        int combined = h1 + i * h2;
+        if (combined < 0) {
+            combined = ~combined;
+        }
+        return combined % bitCount;
+    }
+
+    /**
+     * @return the hash of the key or 0 if the key is or contains a null value
+     */
+    static long hash(Object key) {
+        long h = FNV_OFFSET;
+        if (key instanceof List<?>) {
+            for (Object value : (List<?>)key) {
+                if (value == null) {
+                    return 0;
+                }
+                h = hash(h, value.toString());
+                h ^= 0x10000;
+                h *= FNV_PRIME;
+            }
+        } else if (key == null) {
+            return 0;
+        } else {
+            h = hash(h, key.toString());
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        //0 is reserved for null
+        return h == 0 ? 1 : h;
+    }
+
+    private static long hash(long h, String value) {
+        for (int i = 0; i < value.length(); i++) {
+            h ^= value.charAt(i);
+            h *= FNV_PRIME;
+        }
+        return h;
+    }
+
+    public int getBitCount() {
+        return bitCount;
+    }
+
+    public int getHashFunctions() {
+        return hashFunctions;
+    }
+
+    /**
+     * @return the filter bits, which should not be modified
+     */
+    public byte[] getBytes() {
+        return bits;
+    }
+
+}
@@ -18,7 +18,11 @@
 
 package org.teiid.query.processor.relational;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.List;
+import java.util.Map;
 
 import org.teiid.common.buffer.BlockedException;
 import org.teiid.core.TeiidComponentException;
@@ -28,6 +32,9 @@ import org.teiid.query.sql.lang.Command;
 import org.teiid.query.sql.lang.Criteria;
 import org.teiid.query.sql.lang.Query;
 import org.teiid.query.sql.lang.QueryCommand;
+import org.teiid.query.sql.symbol.Array;
+import org.teiid.query.sql.symbol.Expression;
+import org.teiid.query.sql.util.SymbolMap;
 
 
 /**
@@ -53,6 +60,12 @@ public class DependentAccessNode extends AccessNode {
     private Command rewrittenCommand;
     private boolean useBindings;
     private boolean complexQuery;
+    private boolean bloomFilterPushdown;
+    /**
+     * Bloom filters to apply to the results with the indexes of their key columns
+     */
+    private List<BloomFilter> bloomFilters;
+    private List<int[]> bloomFilterIndexes;
 
     public DependentAccessNode(int nodeID) {
         super(nodeID);
@@ -75,6 +88,8 @@ public class DependentAccessNode extends AccessNode {
         dependentCrit = null;
         sort = true;
         rewrittenCommand = null;
+        bloomFilters = null;
+        bloomFilterIndexes = null;
     }
 
     @Override
@@ -107,6 +122,7 @@ public class DependentAccessNode extends AccessNode {
         clonedNode.pushdown = this.pushdown;
         clonedNode.useBindings = this.useBindings;
         clonedNode.complexQuery = this.complexQuery;
+        clonedNode.bloomFilterPushdown = this.bloomFilterPushdown;
         super.copyTo(clonedNode);
         return clonedNode;
     }
@@ -149,6 +165,7 @@ public class DependentAccessNode extends AccessNode {
                 this.criteriaProcessor.setPushdown(pushdown);
                 this.criteriaProcessor.setUseBindings(useBindings);
                 this.criteriaProcessor.setComplexQuery(complexQuery);
+                this.criteriaProcessor.setBloomFilterPushdown(bloomFilterPushdown);
             }
 
             if (this.dependentCrit == null) {
@@ -175,9 +192,69 @@ public class DependentAccessNode extends AccessNode {
 
         criteriaProcessor.consumedCriteria();
 
+        if (bloomFilters == null && !criteriaProcessor.getBloomFilters().isEmpty()) {
+            initBloomFilters();
+        }
+
         return result;
     }
 
+    /**
+     * Determine the result columns for each of the engine side filters.
+     * A filter whose key is not projected is not used.
+     */
+    private void initBloomFilters() {
+        bloomFilters = new ArrayList<BloomFilter>();
+        bloomFilterIndexes = new ArrayList<int[]>();
+        List<Expression> projected = new ArrayList<Expression>(getElements().size());
+        for (Expression ex : getElements()) {
+            projected.add(SymbolMap.getExpression(ex));
+        }
+        for (Map.Entry<Expression, BloomFilter> entry : criteriaProcessor.getBloomFilters().entrySet()) {
+            List<Expression> keys = null;
+            if (entry.getKey() instanceof Array) {
+                keys = ((Array)entry.getKey()).getExpressions();
+            } else {
+                keys = Arrays.asList(entry.getKey());
+            }
+            int[] indexes = new int[keys.size()];
+            for (int i = 0; i < indexes.length; i++) {
+                indexes[i] = projected.indexOf(SymbolMap.getExpression(keys.get(i)));
+                if (indexes[i] < 0) {
+                    indexes = null;
+                    break;
+                }
+            }
+            if (indexes != null) {
+                bloomFilters.add(entry.getValue());
+                bloomFilterIndexes.add(indexes);
+            }
+        }
+    }
+
+    @Override
+    protected void addBatchRow(List<?> row) {
+        if (bloomFilters != null) {
+            for (int i = 0; i < bloomFilters.size(); i++) {
+                int[] indexes = bloomFilterIndexes.get(i);
+                Object key = null;
+                if (indexes.length == 1) {
+                    key = row.get(indexes[0]);
+                } else {
+                    Object[] values = new Object[indexes.length];
+                    for (int j = 0; j < indexes.length; j++) {
+                        values[j] = row.get(indexes[j]);
+                    }
+                    key = Arrays.asList(values);
+                }
+                if (!bloomFilters.get(i).mightContain(key)) {
+                    return;
+                }
+            }
+        }
+        super.addBatchRow(row);
+    }
+
     private void declineSort() {
         RelationalNode parent = this.getParent();
         RelationalNode child = this;
@@ -237,4 +314,8 @@ public class DependentAccessNode extends AccessNode {
         this.complexQuery = complexQuery;
     }
 
+    public void setBloomFilterPushdown(boolean bloomFilterPushdown) {
+        this.bloomFilterPushdown = bloomFilterPushdown;
+    }
+
 }
\ No newline at end of file
@@ -24,6 +24,7 @@ import org.teiid.api.exception.query.ExpressionEvaluationException;
 import org.teiid.common.buffer.BlockedException;
 import org.teiid.core.TeiidComponentException;
 import org.teiid.core.TeiidProcessingException;
+import org.teiid.core.types.ArrayImpl;
 import org.teiid.core.types.DataTypeManager;
 import org.teiid.logging.LogConstants;
 import org.teiid.logging.LogManager;
@@ -71,6 +72,10 @@ public class DependentCriteriaProcessor {
 
         SetCriteria existingSet;
 
+        boolean bloomFilterChecked;
+
+        DependentSetCriteria bloomFilterCriteria;
+
     }
 
     class TupleState {
@@ -155,6 +160,8 @@ public class DependentCriteriaProcessor {
 
     }
 
+    private static final double BLOOM_FILTER_FPP = .01;
+
     private static final int SORT = 2;
     private static final int SET_PROCESSING = 3;
 
@@ -165,6 +172,7 @@ public class DependentCriteriaProcessor {
     private boolean pushdown;
     private boolean useBindings;
     private boolean complexQuery;
+    private boolean bloomFilterPushdown;
 
     //initialization state
     private List<Criteria> queryCriteria;
@@ -181,6 +189,7 @@ public class DependentCriteriaProcessor {
 
     private int totalPredicates;
     private long maxSize;
+    private Map<Expression, BloomFilter> bloomFilters = new LinkedHashMap<Expression, BloomFilter>();
 
     public DependentCriteriaProcessor(int maxSetSize, int maxPredicates, RelationalNode dependentNode, Criteria dependentCriteria) throws ExpressionEvaluationException, TeiidComponentException {
         this.maxSetSize = maxSetSize;
@@ -294,6 +303,7 @@ public class DependentCriteriaProcessor {
             //determine push down handling
             if (pushdown) {
                 List<Criteria> newCriteria = new ArrayList<Criteria>();
+                Map<Expression, BloomFilter> filters = new LinkedHashMap<Expression, BloomFilter>();
                 long params = 0;
                 int sets = 0;
                 for (Criteria criteria : queryCriteria) {
@@ -310,7 +320,12 @@ public class DependentCriteriaProcessor {
                             || (dsc.getMakeDepOptions() != null
                                     && dsc.getMakeDepOptions().getMax() != null
                                     && dvs.getTupleBuffer().getRowCount() > dsc.getMakeDepOptions().getMax())) {
-                        continue; // don't try to pushdown
+                        // don't try to pushdown, but still restrict the results if possible
+                        DependentSetCriteria bloomCrit = createBloomFilterCriteria(dsc, dvs, filters);
+                        if (bloomCrit != null) {
+                            newCriteria.add(bloomCrit);
+                        }
+                        continue;
                     }
                     int cols = 1;
                     if (dsc.getExpression() instanceof Array) {
@@ -330,6 +345,7 @@ public class DependentCriteriaProcessor {
                     //use the pushdown only in limited scenarios
                     //only if we will produce more than two source queries
                     //and only if the we could produce a cross set or have a complex query
+                    this.bloomFilters.putAll(filters);
                     return Criteria.combineCriteria(newCriteria);
                 }
             }
@@ -490,6 +506,14 @@ public class DependentCriteriaProcessor {
         if (state.overMax) {
             DependentValueSource originalVs = (DependentValueSource)dependentNode.getContext().getVariableContext().getGlobalValue(((DependentSetCriteria)crit).getContextSymbol());
             originalVs.setUnused(true);
+            if (!state.bloomFilterChecked) {
+                state.bloomFilterChecked = true;
+                DependentSetCriteria dsc = (DependentSetCriteria)crit;
+                state.bloomFilterCriteria = createBloomFilterCriteria(dsc, dependentState.get(dsc.getContextSymbol()).dvs, this.bloomFilters);
+            }
+            if (state.bloomFilterCriteria != null) {
+                return state.bloomFilterCriteria;
+            }
             return QueryRewriter.TRUE_CRITERIA;
         }
         if (state.replacement.isEmpty()) {
@@ -535,6 +559,69 @@ public class DependentCriteriaProcessor {
         return new CompoundCriteria(CompoundCriteria.OR, orCrits);
     }
 
+    /**
+     * Create a {@link BloomFilter} of the independent values for a dependent set that will not be
+     * used as a predicate.  If the source supports the filter, return the criteria to push,
+     * otherwise add the filter to be applied against the source results.
+     * <br>
+     * The filter compares values by their string form, so it is only used if each
+     * key is hashable, not an array and of the same type on both sides.  Only a composite
+     * key's array value is hashed by element, to match the probe and pushdown keys.
+     */
+    private DependentSetCriteria createBloomFilterCriteria(DependentSetCriteria dsc, DependentValueSource dvs, Map<Expression, BloomFilter> filters) throws TeiidComponentException {
+        if (!dependentNode.getContext().getOptions().isDependentJoinBloomFilter()) {
+            return null;
+        }
+        Expression expr = dsc.getExpression();
+        Expression valueExpr = dsc.getValueExpression();
+        if (expr instanceof Array) {
+            if (!(valueExpr instanceof Array)) {
+                return null;
+            }
+            List<Expression> exprs = ((Array)expr).getExpressions();
+            List<Expression> valueExprs = ((Array)valueExpr).getExpressions();
+            if (exprs.size() != valueExprs.size()) {
+                return null;
+            }
+            for (int i = 0; i < exprs.size(); i++) {
+                if (!isBloomFilterType(exprs.get(i), valueExprs.get(i))) {
+                    return null;
+                }
+            }
+        } else if (!isBloomFilterType(expr, valueExpr)) {
+            return null;
+        }
+        boolean composite = expr instanceof Array;
+        BloomFilter bloomFilter = new BloomFilter(dvs.getTupleBuffer().getRowCount(), BLOOM_FILTER_FPP);
+        ValueIterator iter = dvs.getValueIterator(valueExpr);
+        while (iter.hasNext()) {
+            Object value = iter.next();
+            if (composite && value instanceof ArrayImpl) {
+                value = Arrays.asList(((ArrayImpl)value).getValues());
+            }
+            bloomFilter.add(value);
+        }
+        if (!bloomFilterPushdown) {
+            filters.put(expr, bloomFilter);
+            return null;
+        }
+        DependentSetCriteria result = dsc.clone();
+        result.setBloomFilter(bloomFilter);
+        return result;
+    }
+
+    static boolean isBloomFilterType(Expression expr, Expression valueExpr) {
+        Class<?> type = expr.getType();
+        return type != null && type == valueExpr.getType() && !type.isArray() && DataTypeManager.isHashable(type);
+    }
+
+    /**
+     * @return the filters to apply to the source results by dependent expression
+     */
+    public Map<Expression, BloomFilter> getBloomFilters() {
+        return bloomFilters;
+    }
+
     private Constant newConstant(Object val, Expression ex) {
         Constant c;
         if (ex != null) {
@@ -563,4 +650,8 @@ public class DependentCriteriaProcessor {
         this.complexQuery = complexQuery;
     }
 
+    public void setBloomFilterPushdown(boolean bloomFilterPushdown) {
+        this.bloomFilterPushdown = bloomFilterPushdown;
+    }
+
 }
@@ -20,11 +20,14 @@ package org.teiid.query.processor.relational;
 
 import static org.teiid.query.analysis.AnalysisRecord.*;
 
+import java.math.BigDecimal;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.LinkedHashMap;
+import java.util.LinkedList;
 import java.util.List;
 import java.util.ListIterator;
 import java.util.Map;
@@ -34,6 +37,8 @@ import org.teiid.api.exception.query.FunctionExecutionException;
 import org.teiid.client.plan.PlanNode;
 import org.teiid.common.buffer.BlockedException;
 import org.teiid.common.buffer.BufferManager;
+import org.teiid.common.buffer.BufferManager.BufferReserveMode;
+import org.teiid.common.buffer.BufferManager.TupleSourceType;
 import org.teiid.common.buffer.STree;
 import org.teiid.common.buffer.STree.InsertMode;
 import org.teiid.common.buffer.TupleBatch;
@@ -43,8 +48,10 @@ import org.teiid.core.TeiidComponentException;
 import org.teiid.core.TeiidProcessingException;
 import org.teiid.core.TeiidRuntimeException;
 import org.teiid.core.types.DataTypeManager;
+import org.teiid.core.types.DataTypeManager.DefaultTypeCodes;
 import org.teiid.language.SortSpecification.NullOrdering;
 import org.teiid.query.eval.Evaluator;
+import org.teiid.query.function.FunctionMethods;
 import org.teiid.query.function.aggregate.*;
 import org.teiid.query.processor.BatchCollector;
 import org.teiid.query.processor.BatchCollector.BatchProducer;
@@ -134,11 +141,28 @@ public class GroupingNode extends SubqueryAwareRelationalNode {
     private TupleSource groupSortTupleSource;
     private int[] projection;
 
+    // Hash aggregation
+    private static final int HASH_PARTITIONS = 16;
+    private static final int HASH_MAX_LEVEL = 7;
+    private boolean hashAggregation;
+    private HashMap<List<?>, List<Object>> groups;
+    private Iterator<List<Object>> groupIterator;
+    private int hashLevel;
+    private int reserved;
+    private int groupBatchSize;
+    private int groupBatchBytes;
+    private TupleBuffer[] spillPartitions;
+    private TupleBuffer currentPartition;
+    private LinkedList<TupleBuffer> pendingPartitions = new LinkedList<TupleBuffer>();
+    private LinkedList<Integer> pendingLevels = new LinkedList<Integer>();
+
     private static final int COLLECTION = 1;
     private static final int SORT = 2;
     private static final int GROUP = 3;
     private static final int GROUP_SORT = 4;
     private static final int GROUP_SORT_OUTPUT = 5;
+    private static final int GROUP_HASH = 6;
+    private static final int GROUP_HASH_OUTPUT = 7;
     private int[] indexes;
     private boolean rollup;
     private HashMap<Integer, Integer> indexMap;
@@ -159,6 +183,14 @@ public class GroupingNode extends SubqueryAwareRelationalNode {
         currentGroupTuple = null;
         doneReading = false;
 
+        groups = null;
+        groupIterator = null;
+        hashLevel = 0;
+        spillPartitions = null;
+        currentPartition = null;
+        pendingPartitions.clear();
+        pendingLevels.clear();
+
         if (this.functions != null) {
             for (AggregateFunction[] functions : this.functions) {
                 for (AggregateFunction function : functions) {
@@ -180,6 +212,18 @@ public class GroupingNode extends SubqueryAwareRelationalNode {
         this.outputMapping = outputMapping;
     }
 
+    /**
+     * Use a hash table rather than a sort to find the groups.  The output will
+     * not be ordered by the grouping columns.
+     */
+    public void setHashAggregation(boolean hashAggregation) {
+        this.hashAggregation = hashAggregation;
+    }
+
+    public boolean isHashAggregation() {
+        return hashAggregation;
+    }
+
     @Override
     public void initialize(CommandContext context, BufferManager bufferManager,
             ProcessorDataManager dataMgr) {
@@ -408,6 +452,14 @@ public class GroupingNode extends SubqueryAwareRelationalNode {
             return groupSortOutputPhase();
         }
 
+        if (this.phase == GROUP_HASH) {
+            groupHashPhase();
+        }
+
+        if (this.phase == GROUP_HASH_OUTPUT) {
+            return groupHashOutputPhase();
+        }
+
         this.terminateBatches();
         return pullBatch();
     }
@@ -501,12 +553,20 @@ public class GroupingNode extends SubqueryAwareRelationalNode {
                         schema.add(es);
                     }
 
+                    this.groupSortTupleSource = this.getGroupSortTupleSource();
+                    if (this.hashAggregation && isHashable()) {
+                        this.groups = new HashMap<List<?>, List<Object>>();
+                        this.groupBatchSize = getBufferManager().getProcessorBatchSize(schema);
+                        this.groupBatchBytes = getBufferManager().getSchemaSize(schema);
+                        this.phase = GROUP_HASH;
+                        return;
+                    }
+
                     tree = this.getBufferManager().createSTree(schema, this.getConnectionID(), orderBy.size());
                     //non-default order needs to update the comparator
                     tree.getComparator().setNullOrdering(nullOrdering);
                     tree.getComparator().setOrderTypes(sortTypes);
 
-                    this.groupSortTupleSource = this.getGroupSortTupleSource();
                     this.phase = GROUP_SORT;
                     return;
                 }
@@ -566,25 +626,211 @@ public class GroupingNode extends SubqueryAwareRelationalNode {
      */
     private TupleBatch groupSortOutputPhase() throws FunctionExecutionException, ExpressionEvaluationException, TeiidComponentException, TeiidProcessingException {
         List<?> tuple = null;
+        while ((tuple = groupSortTupleSource.nextTuple()) != null) {
+            addBatchRow(groupSortResult(tuple));
+            if (isBatchFull()) {
+                return pullBatch();
+            }
+        }
+        terminateBatches();
+        return pullBatch();
+    }
+
+    /**
+     * Compute the output row from the grouping values and accumulator states
+     */
+    private List<?> groupSortResult(List<?> tuple) throws TeiidComponentException, TeiidProcessingException {
         int size = orderBy.size();
         List<Object> vals = Arrays.asList(new Object[size + groupSortfunctions.length]);
+        for (int i = 0; i < size; i++) {
+            vals.set(i, tuple.get(i));
+        }
+        int index = size;
+        for (int i = 0; i < this.groupSortfunctions.length; i++) {
+            AggregateFunction aggregateFunction = this.groupSortfunctions[i];
+            aggregateFunction.setState(tuple, index);
+            index+=this.accumulatorStateCount[i];
+            vals.set(size + i, aggregateFunction.getResult(getContext()));
+        }
+        return RelationalNode.projectTuple(projection, vals);
+    }
+
+    /**
+     * @return true if the grouping values have an equals/hashCode consistent with the comparison used for sorting
+     */
+    private boolean isHashable() {
+        for (OrderByItem item : orderBy) {
+            if (!isHashable(item.getSymbol().getType())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return true if the {@link #hashValue(Object)} of the type has an equals/hashCode consistent with the comparison used for sorting
+     */
+    static boolean isHashable(Class<?> type) {
+        switch (DataTypeManager.getTypeCode(type)) {
+        case DefaultTypeCodes.STRING:
+            return DataTypeManager.COLLATION_LOCALE == null;
+        case DefaultTypeCodes.CHAR:
+        case DefaultTypeCodes.BOOLEAN:
+        case DefaultTypeCodes.BYTE:
+        case DefaultTypeCodes.SHORT:
+        case DefaultTypeCodes.INTEGER:
+        case DefaultTypeCodes.LONG:
+        case DefaultTypeCodes.BIGINTEGER:
+        case DefaultTypeCodes.FLOAT:
+        case DefaultTypeCodes.DOUBLE:
+        case DefaultTypeCodes.BIGDECIMAL:
+        case DefaultTypeCodes.DATE:
+        case DefaultTypeCodes.TIME:
+        case DefaultTypeCodes.TIMESTAMP:
+            return true;
+        default:
+            return false;
+        }
+    }
+
+    /**
+     * Process the input into a hash table of the partial accumulator values.
+     * New groups that don't fit in the memory reservation are spilled by hash partition
+     * to be processed after the in memory groups are output.
+     * @throws TeiidComponentException
+     * @throws TeiidProcessingException
+     */
+    private void groupHashPhase() throws TeiidComponentException, TeiidProcessingException {
+        List<?> tuple = null;
+        int size = orderBy.size();
         while ((tuple = groupSortTupleSource.nextTuple()) != null) {
+            List<Object> key = new ArrayList<Object>(size);
             for (int i = 0; i < size; i++) {
-                vals.set(i, tuple.get(i));
+                key.add(hashValue(tuple.get(i)));
+            }
+            List<Object> current = groups.get(key);
+            if (current == null) {
+                if (spillPartitions == null && groups.size() % groupBatchSize == 0 && !reserveGroupBatch()) {
+                    spillPartitions = new TupleBuffer[HASH_PARTITIONS];
+                }
+                if (spillPartitions != null) {
+                    int partition = (mix(key.hashCode()) >>> (hashLevel << 2)) & (HASH_PARTITIONS - 1);
+                    if (spillPartitions[partition] == null) {
+                        spillPartitions[partition] = getBufferManager().createTupleBuffer(new ArrayList<Expression>(collectedExpressions.keySet()), getConnectionID(), TupleSourceType.PROCESSOR);
+                        spillPartitions[partition].setForwardOnly(true);
+                    }
+                    spillPartitions[partition].addTuple(tuple);
+                    continue;
+                }
+                current = new ArrayList<Object>(tuple.subList(0, size));
+                for (int i = 0; i < this.groupSortfunctions.length; i++) {
+                    AggregateFunction aggregateFunction = this.groupSortfunctions[i];
+                    aggregateFunction.reset();
+                    aggregateFunction.addInput(tuple, getContext());
+                    aggregateFunction.getState(current);
+                }
+                groups.put(key, current);
+                continue;
             }
             int index = size;
             for (int i = 0; i < this.groupSortfunctions.length; i++) {
                 AggregateFunction aggregateFunction = this.groupSortfunctions[i];
-                aggregateFunction.setState(tuple, index);
+                aggregateFunction.setState(current, index);
                 index+=this.accumulatorStateCount[i];
-                vals.set(size + i, aggregateFunction.getResult(getContext()));
             }
-            List<?> result = RelationalNode.projectTuple(projection, vals);
-            addBatchRow(result);
-            if (isBatchFull()) {
-                return pullBatch();
+            current.subList(size, current.size()).clear();
+            for (int i = 0; i < this.groupSortfunctions.length; i++) {
+                AggregateFunction aggregateFunction = this.groupSortfunctions[i];
+                aggregateFunction.addInput(tuple, getContext());
+                aggregateFunction.getState(current);
             }
         }
+        this.groupSortTupleSource.closeSource();
+        this.groupSortTupleSource = null;
+        if (currentPartition != null) {
+            currentPartition.remove();
+            currentPartition = null;
+        }
+        if (spillPartitions != null) {
+            for (int i = spillPartitions.length - 1; i >= 0; i--) {
+                TupleBuffer partition = spillPartitions[i];
+                if (partition != null) {
+                    partition.close();
+                    pendingPartitions.addFirst(partition);
+                    pendingLevels.addFirst(hashLevel + 1);
+                }
+            }
+            spillPartitions = null;
+        }
+        this.groupIterator = groups.values().iterator();
+        this.phase = GROUP_HASH_OUTPUT;
+    }
+
+    /**
+     * Reserve the memory for the next batch of groups
+     * @return false if the groups should be spilled instead
+     */
+    private boolean reserveGroupBatch() {
+        BufferReserveMode mode = BufferReserveMode.NO_WAIT;
+        if (reserved == 0 || hashLevel >= HASH_MAX_LEVEL) {
+            //always allow progress
+            mode = BufferReserveMode.FORCE;
+        }
+        int result = getBufferManager().reserveBuffers(groupBatchBytes, mode);
+        reserved += result;
+        return result == groupBatchBytes;
+    }
+
+    /**
+     * Get the value to use in the hash key such that the key equality matches
+     * the group comparison
+     */
+    static Object hashValue(Object value) {
+        if (value instanceof BigDecimal) {
+            BigDecimal bd = (BigDecimal)value;
+            if (bd.signum() == 0) {
+                return BigDecimal.ZERO;
+            }
+            return bd.stripTrailingZeros();
+        }
+        if (DataTypeManager.PAD_SPACE && value instanceof String) {
+            return FunctionMethods.rightTrim((String)value, ' ', false);
+        }
+        return value;
+    }
+
+    static int mix(int hash) {
+        hash *= 0x9E3779B9;
+        return hash ^ (hash >>> 16);
+    }
+
+    /**
+     * Output the groups from the hash table, then process any spilled partitions
+     * @return
+     * @throws TeiidComponentException
+     * @throws TeiidProcessingException
+     */
+    private TupleBatch groupHashOutputPhase() throws TeiidComponentException, TeiidProcessingException {
+        while (true) {
+            while (groupIterator.hasNext()) {
+                List<Object> tuple = groupIterator.next();
+                groupIterator.remove();
+                addBatchRow(groupSortResult(tuple));
+                if (isBatchFull()) {
+                    return pullBatch();
+                }
+            }
+            getBufferManager().releaseBuffers(reserved);
+            reserved = 0;
+            if (pendingPartitions.isEmpty()) {
+                break;
+            }
+            this.currentPartition = pendingPartitions.removeFirst();
+            this.hashLevel = pendingLevels.removeFirst();
+            this.groupSortTupleSource = currentPartition.createIndexedTupleSource();
+            this.phase = GROUP_HASH;
+            groupHashPhase();
+        }
         terminateBatches();
         return pullBatch();
     }
@@ -713,6 +959,29 @@ public class GroupingNode extends SubqueryAwareRelationalNode {
             this.tree.remove();
             this.tree = null;
         }
+        if (this.reserved > 0) {
+            getBufferManager().releaseBuffers(this.reserved);
+            this.reserved = 0;
+        }
+        this.groups = null;
+        this.groupIterator = null;
+        if (this.spillPartitions != null) {
+            for (TupleBuffer partition : this.spillPartitions) {
+                if (partition != null) {
+                    partition.remove();
+                }
+            }
+            this.spillPartitions = null;
+        }
+        for (TupleBuffer partition : this.pendingPartitions) {
+            partition.remove();
+        }
+        this.pendingPartitions.clear();
+        this.pendingLevels.clear();
+        if (this.currentPartition != null) {
+            this.currentPartition.remove();
+            this.currentPartition = null;
+        }
     }
 
     protected void getNodeString(StringBuffer str) {
@@ -730,6 +999,7 @@ public class GroupingNode extends SubqueryAwareRelationalNode {
         clonedNode.outputMapping = outputMapping;
         clonedNode.orderBy = orderBy;
         clonedNode.rollup = rollup;
+        clonedNode.hashAggregation = hashAggregation;
         return clonedNode;
     }
 
@@ -756,6 +1026,9 @@ public class GroupingNode extends SubqueryAwareRelationalNode {
         if (rollup) {
             props.addProperty(PROP_ROLLUP, Boolean.TRUE.toString());
         }
+        if (hashAggregation) {
+            props.addProperty(PROP_HASH_AGGREGATION, Boolean.TRUE.toString());
+        }
         return props;
     }
 
@@ -0,0 +1,590 @@
+/*
+ * Copyright Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags and
+ * the COPYRIGHT.txt file distributed with this work.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.teiid.query.processor.relational;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.LinkedList;
+import java.util.List;
+
+import org.teiid.common.buffer.BufferManager;
+import org.teiid.common.buffer.BufferManager.BufferReserveMode;
+import org.teiid.common.buffer.TupleBuffer;
+import org.teiid.common.buffer.TupleSource;
+import org.teiid.core.TeiidComponentException;
+import org.teiid.core.TeiidProcessingException;
+import org.teiid.core.types.DataTypeManager;
+import org.teiid.core.types.DataTypeManager.DefaultTypeCodes;
+import org.teiid.logging.LogConstants;
+import org.teiid.logging.LogManager;
+import org.teiid.logging.MessageLevel;
+import org.teiid.query.sql.lang.JoinType;
+import org.teiid.query.sql.symbol.Expression;
+
+
+/**
+ * Hash join that supports Inner, Left Outer, Full Outer, Semi and Anti-Semi Joins as long as there
+ * is at least one equi-join criteria.  Non-equi join criteria is evaluated against each hash match.
+ *
+ * The build side, which is the right side unless an inner join has the smaller left side,
+ * is fully buffered and loaded into an in memory hash table one batch reservation at a time.
+ * If a reservation cannot be obtained, both sides are hash partitioned into {@link TupleBuffer}s
+ * and each pair of partitions is joined in turn - partitioning again on the next hash bits if needed.
+ *
+ * The output is not ordered.
+ */
+public class HashJoinStrategy extends JoinStrategy {
+
+    private static final int PARTITIONS = 16;
+    private static final int MAX_LEVEL = 7;
+
+    private enum State {
+        BUILD, PROBE, UNMATCHED, DONE
+    }
+
+    /**
+     * Chained hash table of the build rows.  Single integral keys are stored as primitive longs.
+     */
+    static final class HashTable {
+        private int[] heads = new int[16];
+        private int[] next = new int[16];
+        private int[] hashes = new int[16];
+        private long[] longKeys;
+        private Object[] keys;
+        private List<?>[] rows = new List<?>[16];
+        private BitSet matched;
+        private int size;
+
+        HashTable(boolean primitive, boolean trackMatches) {
+            if (primitive) {
+                longKeys = new long[16];
+            } else {
+                keys = new Object[16];
+            }
+            if (trackMatches) {
+                matched = new BitSet();
+            }
+        }
+
+        void add(int hash, long longKey, Object key, List<?> row) {
+            if (size == rows.length) {
+                int length = size << 1;
+                next = Arrays.copyOf(next, length);
+                hashes = Arrays.copyOf(hashes, length);
+                rows = Arrays.copyOf(rows, length);
+                if (longKeys != null) {
+                    longKeys = Arrays.copyOf(longKeys, length);
+                } else {
+                    keys = Arrays.copyOf(keys, length);
+                }
+            }
+            int index = size++;
+            hashes[index] = hash;
+            rows[index] = row;
+            if (longKeys != null) {
+                longKeys[index] = longKey;
+            } else {
+                keys[index] = key;
+            }
+            if (size > heads.length - (heads.length >> 2)) {
+                heads = new int[heads.length << 1];
+                for (int i = 0; i < size; i++) {
+                    link(i);
+                }
+            } else {
+                link(index);
+            }
+        }
+
+        private void link(int index) {
+            int bucket = hashes[index] & (heads.length - 1);
+            next[index] = heads[bucket];
+            heads[bucket] = index + 1;
+        }
+
+        int first(int hash) {
+            return heads[hash & (heads.length - 1)] - 1;
+        }
+
+        int next(int index) {
+            return next[index] - 1;
+        }
+
+        boolean matches(int index, int hash, long longKey, Object key) {
+            if (hashes[index] != hash) {
+                return false;
+            }
+            if (longKeys != null) {
+                return longKeys[index] == longKey;
+            }
+            return keys[index].equals(key);
+        }
+
+        List<?> getRow(int index) {
+            return rows[index];
+        }
+
+        int getHash(int index) {
+            return hashes[index];
+        }
+
+        int size() {
+            return size;
+        }
+
+        void setMatched(int index) {
+            if (matched != null) {
+                matched.set(index);
+            }
+        }
+
+        boolean isMatched(int index) {
+            return matched.get(index);
+        }
+    }
+
+    private static class Partition {
+        TupleBuffer build;
+        TupleBuffer probe;
+        int level;
+
+        void remove() {
+            if (build != null) {
+                build.remove();
+            }
+            if (probe != null) {
+                probe.remove();
+            }
+        }
+    }
+
+    //load time state
+    private boolean buildLeft;
+    private boolean partitioned;
+
+    //processing state
+    private State state;
+    private SourceState buildState;
+    private SourceState probeState;
+    private boolean primitive;
+    private boolean probeOuter;
+    private boolean fullOuter;
+    private HashTable table;
+    private int tableReserved;
+    private int batchRows;
+    private int batchBytes;
+    private int level;
+    private TupleSource buildSource;
+    private TupleSource probeSource;
+    private TupleBuffer[] buildPartitions;
+    private TupleBuffer[] probePartitions;
+    private LinkedList<Partition> pendingPartitions = new LinkedList<Partition>();
+    private Partition currentPartition;
+
+    //probe state
+    private List<?> probeTuple;
+    private int entry = -1;
+    private boolean matched;
+    private int unmatchedIndex;
+
+    //the key of the current tuple
+    private int hash;
+    private long longKey;
+    private Object key;
+
+    /**
+     * @return true if the join expressions have the same types with an equals/hashCode consistent with
+     * the merge join comparison
+     */
+    public static boolean isHashable(List<? extends Expression> leftExpressions, List<? extends Expression> rightExpressions) {
+        for (int i = 0; i < leftExpressions.size(); i++) {
+            Class<?> type = leftExpressions.get(i).getType();
+            if (type != rightExpressions.get(i).getType() || !GroupingNode.isHashable(type)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public HashJoinStrategy clone() {
+        return new HashJoinStrategy();
+    }
+
+    @Override
+    public void close() {
+        if (joinNode == null) {
+            return;
+        }
+        try {
+            super.close();
+        } finally {
+            releaseTable();
+            removePartitions(buildPartitions);
+            removePartitions(probePartitions);
+            buildPartitions = null;
+            probePartitions = null;
+            for (Partition partition : pendingPartitions) {
+                partition.remove();
+            }
+            pendingPartitions.clear();
+            closePartition();
+            buildSource = null;
+            probeSource = null;
+            probeTuple = null;
+            table = null;
+        }
+    }
+
+    private void removePartitions(TupleBuffer[] partitions) {
+        if (partitions == null) {
+            return;
+        }
+        for (TupleBuffer partition : partitions) {
+            if (partition != null) {
+                partition.remove();
+            }
+        }
+    }
+
+    @Override
+    protected void loadLeft() throws TeiidComponentException,
+            TeiidProcessingException {
+        if (this.joinNode.isDependent()) {
+            this.leftSource.getTupleBuffer();
+        }
+    }
+
+    @Override
+    protected void loadRight() throws TeiidComponentException,
+            TeiidProcessingException {
+        this.rightSource.getTupleBuffer();
+        //an inner join may build on the smaller left side instead
+        if (!buildLeft && this.joinNode.getJoinType() == JoinType.JOIN_INNER && this.rightSource.getRowCount() > 0
+                && this.leftSource.rowCountLE(this.rightSource.getRowCount() - 1)) {
+            buildLeft = true;
+        }
+    }
+
+    private void start() throws TeiidComponentException, TeiidProcessingException {
+        JoinType joinType = this.joinNode.getJoinType();
+        fullOuter = joinType == JoinType.JOIN_FULL_OUTER;
+        probeOuter = !buildLeft && joinType.isOuter();
+        if (buildLeft) {
+            buildState = this.leftSource;
+            probeState = this.rightSource;
+        } else {
+            buildState = this.rightSource;
+            probeState = this.leftSource;
+        }
+        List<? extends Expression> buildElements = buildState.getSource().getElements();
+        BufferManager bm = this.joinNode.getBufferManager();
+        batchRows = bm.getProcessorBatchSize(buildElements);
+        batchBytes = bm.getSchemaSize(buildElements);
+        int[] indexes = buildState.getExpressionIndexes();
+        if (indexes.length == 1) {
+            switch (DataTypeManager.getTypeCode(((Expression)this.joinNode.getLeftExpressions().get(0)).getType())) {
+            case DefaultTypeCodes.BYTE:
+            case DefaultTypeCodes.SHORT:
+            case DefaultTypeCodes.INTEGER:
+            case DefaultTypeCodes.LONG:
+                primitive = true;
+                break;
+            }
+        }
+        table = new HashTable(primitive, fullOuter);
+        buildSource = buildState.getTupleBuffer().createIndexedTupleSource();
+        probeState.setImplicitBuffer(SourceState.ImplicitBuffer.NONE);
+        probeSource = probeState.getIterator();
+        state = State.BUILD;
+    }
+
+    @Override
+    protected void process() throws TeiidComponentException,
+            TeiidProcessingException {
+        if (state == null) {
+            start();
+        }
+        while (true) {
+            switch (state) {
+            case BUILD:
+                build();
+                break;
+            case PROBE:
+                probe();
+                break;
+            case UNMATCHED:
+                unmatched();
+                break;
+            case DONE:
+                return;
+            }
+        }
+    }
+
+    private void build() throws TeiidComponentException, TeiidProcessingException {
+        List<?> tuple = null;
+        while (buildSource != null && (tuple = buildSource.nextTuple()) != null) {
+            if (!setKey(tuple, buildState.getExpressionIndexes())) {
+                //a null key can't match
+                if (fullOuter) {
+                    this.joinNode.addBatchRow(outputTuple(this.leftSource.getOuterVals(), tuple));
+                }
+                continue;
+            }
+            if (buildPartitions == null && table.size() % batchRows == 0 && !reserveBatch()) {
+                spill();
+            }
+            if (buildPartitions != null) {
+                addToPartition(buildPartitions, hash, tuple, buildState);
+                continue;
+            }
+            table.add(hash, longKey, key, tuple);
+        }
+        if (buildSource != null) {
+            buildSource.closeSource();
+        }
+        buildSource = null;
+        state = State.PROBE;
+    }
+
+    private void probe() throws TeiidComponentException, TeiidProcessingException {
+        JoinType joinType = this.joinNode.getJoinType();
+        while (true) {
+            if (probeTuple == null) {
+                List<?> tuple = probeSource != null ? probeSource.nextTuple() : null;
+                if (tuple == null) {
+                    break;
+                }
+                if (!setKey(tuple, probeState.getExpressionIndexes())) {
+                    if (probeOuter) {
+                        this.joinNode.addBatchRow(outputTuple(tuple, this.rightSource.getOuterVals()));
+                    }
+                    continue;
+                }
+                if (probePartitions != null) {
+                    addToPartition(probePartitions, hash, tuple, probeState);
+                    continue;
+                }
+                probeTuple = tuple;
+                matched = false;
+                entry = table.first(hash);
+            }
+            while (entry != -1) {
+                int current = entry;
+                if (!table.matches(current, hash, longKey, key)) {
+                    entry = table.next(current);
+                    continue;
+                }
+                List<?> buildTuple = table.getRow(current);
+                List outputTuple = buildLeft?outputTuple(buildTuple, probeTuple):outputTuple(probeTuple, buildTuple);
+                boolean matches = this.joinNode.matchesCriteria(outputTuple);
+                entry = table.next(current);
+                if (!matches) {
+                    continue;
+                }
+                matched = true;
+                table.setMatched(current);
+                if (joinType == JoinType.JOIN_ANTI_SEMI) {
+                    entry = -1;
+                } else if (joinType == JoinType.JOIN_SEMI) {
+                    entry = -1;
+                    this.joinNode.addBatchRow(outputTuple);
+                } else {
+                    this.joinNode.addBatchRow(outputTuple);
+                }
+            }
+            List<?> tuple = probeTuple;
+            probeTuple = null;
+            if (!matched && probeOuter) {
+                this.joinNode.addBatchRow(outputTuple(tuple, this.rightSource.getOuterVals()));
+            }
+        }
+        if (probeSource != null && currentPartition != null) {
+            probeSource.closeSource();
+        }
+        probeSource = null;
+        if (probePartitions != null) {
+            for (int i = PARTITIONS - 1; i >= 0; i--) {
+                Partition partition = new Partition();
+                partition.build = closePartition(buildPartitions[i]);
+                partition.probe = closePartition(probePartitions[i]);
+                partition.level = level + 1;
+                pendingPartitions.addFirst(partition);
+            }
+            buildPartitions = null;
+            probePartitions = null;
+            nextPartition();
+            return;
+        }
+        if (fullOuter) {
+            unmatchedIndex = 0;
+            state = State.UNMATCHED;
+            return;
+        }
+        nextPartition();
+    }
+
+    private TupleBuffer closePartition(TupleBuffer partition) throws TeiidComponentException {
+        if (partition != null) {
+            partition.close();
+        }
+        return partition;
+    }
+
+    /**
+     * Output the build rows without a match for a full outer join
+     */
+    private void unmatched() throws TeiidComponentException, TeiidProcessingException {
+        while (unmatchedIndex < table.size()) {
+            int index = unmatchedIndex++;
+            if (!table.isMatched(index)) {
+                this.joinNode.addBatchRow(outputTuple(this.leftSource.getOuterVals(), table.getRow(index)));
+            }
+        }
+        nextPartition();
+    }
+
+    private void nextPartition() {
+        releaseTable();
+        closePartition();
+        table = new HashTable(primitive, fullOuter);
+        while (!pendingPartitions.isEmpty()) {
+            Partition partition = pendingPartitions.removeFirst();
+            if ((partition.build == null && !probeOuter) || (partition.probe == null && !fullOuter)
+                    || (partition.build == null && partition.probe == null)) {
+                partition.remove();
+                continue;
+            }
+            currentPartition = partition;
+            level = partition.level;
+            buildSource = partition.build != null ? partition.build.createIndexedTupleSource() : null;
+            probeSource = partition.probe != null ? partition.probe.createIndexedTupleSource() : null;
+            state = State.BUILD;
+            return;
+        }
+        state = State.DONE;
+    }
+
+    private void closePartition() {
+        if (currentPartition != null) {
+            currentPartition.remove();
+            currentPartition = null;
+        }
+    }
+
+    /**
+     * Move the in memory build rows to partitions and start partitioning
+     */
+    private void spill() throws TeiidComponentException {
+        if (LogManager.isMessageToBeRecorded(LogConstants.CTX_DQP, MessageLevel.DETAIL)) {
+            LogManager.logDetail(LogConstants.CTX_DQP, "partitioning hash join at level", level, this.joinNode.getID()); //$NON-NLS-1$
+        }
+        partitioned = true;
+        buildPartitions = new TupleBuffer[PARTITIONS];
+        probePartitions = new TupleBuffer[PARTITIONS];
+        for (int i = 0; i < table.size(); i++) {
+            addToPartition(buildPartitions, table.getHash(i), table.getRow(i), buildState);
+        }
+        releaseTable();
+        table = new HashTable(primitive, fullOuter);
+    }
+
+    private void addToPartition(TupleBuffer[] partitions, int tupleHash, List<?> tuple, SourceState sourceState) throws TeiidComponentException {
+        int index = (tupleHash >>> (28 - (level << 2))) & (PARTITIONS - 1);
+        if (partitions[index] == null) {
+            partitions[index] = sourceState.createSourceTupleBuffer();
+            partitions[index].setForwardOnly(true);
+        }
+        partitions[index].addTuple(tuple);
+    }
+
+    /**
+     * Reserve the memory for the next batch of build rows
+     * @return false if the build side should be partitioned instead
+     */
+    private boolean reserveBatch() {
+        BufferReserveMode mode = BufferReserveMode.NO_WAIT;
+        if (tableReserved == 0 || level >= MAX_LEVEL) {
+            //always allow progress
+            mode = BufferReserveMode.FORCE;
+        }
+        int result = this.joinNode.getBufferManager().reserveBuffers(batchBytes, mode);
+        tableReserved += result;
+        return result == batchBytes;
+    }
+
+    private void releaseTable() {
+        if (tableReserved > 0) {
+            this.joinNode.getBufferManager().releaseBuffers(tableReserved);
+            tableReserved = 0;
+        }
+    }
+
+    /**
+     * Set the hash and key values for the tuple
+     * @return false if the key contains a null and cannot match
+     */
+    private boolean setKey(List<?> tuple, int[] indexes) {
+        if (primitive) {
+            Object value = tuple.get(indexes[0]);
+            if (value == null) {
+                return false;
+            }
+            longKey = ((Number)value).longValue();
+            long h = longKey * 0x9E3779B97F4A7C15L;
+            hash = (int)(h ^ (h >>> 32));
+            return true;
+        }
+        if (indexes.length == 1) {
+            Object value = tuple.get(indexes[0]);
+            if (value == null) {
+                return false;
+            }
+            key = GroupingNode.hashValue(value);
+        } else {
+            List<Object> values = new ArrayList<Object>(indexes.length);
+            for (int index : indexes) {
+                Object value = tuple.get(index);
+                if (value == null) {
+                    return false;
+                }
+                values.add(GroupingNode.hashValue(value));
+            }
+            key = values;
+        }
+        hash = GroupingNode.mix(key.hashCode());
+        return true;
+    }
+
+    public String getName() {
+        StringBuilder result = new StringBuilder("HASH JOIN"); //$NON-NLS-1$
+        if (partitioned) {
+            result.append(" RAN PARTITIONED"); //$NON-NLS-1$
+        }
+        return result.toString();
+    }
+
+    @Override
+    public String toString() {
+        return getName();
+    }
+
+}
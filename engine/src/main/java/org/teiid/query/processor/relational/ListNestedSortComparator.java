@@ -145,24 +145,7 @@ public class ListNestedSortComparator<T extends Comparable<? super T>> implement
      */
 
     public int compare(java.util.List<T> list1, java.util.List<T> list2) {
-        if (!init) {
-            if (nullOrdering == null) {
-                nullOrdering = Collections.nCopies(sortParameters.length, null);
-            }
-            for (int i = 0; i < sortParameters.length; i++) {
-                if (nullOrdering.get(i) == null) {
-                    if (defaultNullOrder == NullOrder.FIRST) {
-                        nullOrdering.set(i, NullOrdering.FIRST);
-                    } else if (defaultNullOrder == NullOrder.LAST) {
-                        nullOrdering.set(i, NullOrdering.LAST);
-                    }
-                }
-            }
-            if (defaultNullOrder == NullOrder.HIGH) {
-                nullValue = 1;
-            }
-            init = true;
-        }
+        init();
         int compare = 0;
         for (int k = 0; k < sortParameters.length; k++) {
             if (list1.size() <= sortParameters[k]) {
@@ -203,8 +186,7 @@ public class ListNestedSortComparator<T extends Comparable<? super T>> implement
                 compare = Constant.COMPARATOR.compare(param1, param2);
             }
             if (compare != 0) {
-                boolean asc = orderTypes != null?orderTypes.get(k):this.ascendingOrder;
-                return asc ? compare : -compare;
+                return isAscending(k) ? compare : -compare;
             } else if (k == distinctIndex) {
                 isDistinct = false;
             }
@@ -212,6 +194,51 @@ public class ListNestedSortComparator<T extends Comparable<? super T>> implement
         return 0;
     }
 
+    private void init() {
+        if (init) {
+            return;
+        }
+        if (nullOrdering == null) {
+            nullOrdering = Collections.nCopies(sortParameters.length, null);
+        }
+        for (int i = 0; i < sortParameters.length; i++) {
+            if (nullOrdering.get(i) == null) {
+                if (defaultNullOrder == NullOrder.FIRST) {
+                    nullOrdering.set(i, NullOrdering.FIRST);
+                } else if (defaultNullOrder == NullOrder.LAST) {
+                    nullOrdering.set(i, NullOrdering.LAST);
+                }
+            }
+        }
+        if (defaultNullOrder == NullOrder.HIGH) {
+            nullValue = 1;
+        }
+        init = true;
+    }
+
+    /**
+     * @return true if the sort item at the given index is ascending
+     */
+    public boolean isAscending(int index) {
+        return orderTypes != null?orderTypes.get(index):this.ascendingOrder;
+    }
+
+    /**
+     * @return true if nulls sort before all other values for the sort item at the given index,
+     * accounting for the sort direction and the default null order
+     */
+    public boolean isNullFirst(int index) {
+        init();
+        NullOrdering no = getNullOrdering(index);
+        if (no == NullOrdering.FIRST) {
+            return true;
+        }
+        if (no == NullOrdering.LAST) {
+            return false;
+        }
+        return (nullValue == -1) == isAscending(index);
+    }
+
     private NullOrdering getNullOrdering(int index) {
         return nullOrdering.get(index);
     }
@@ -30,15 +30,22 @@ import java.util.Map;
 import org.teiid.api.exception.query.ExpressionEvaluationException;
 import org.teiid.client.plan.PlanNode;
 import org.teiid.common.buffer.BlockedException;
+import org.teiid.common.buffer.BufferManager;
 import org.teiid.common.buffer.TupleBatch;
 import org.teiid.common.buffer.TupleBuffer;
 import org.teiid.core.TeiidComponentException;
 import org.teiid.core.TeiidProcessingException;
 import org.teiid.query.analysis.AnalysisRecord;
+import org.teiid.query.eval.BatchEvaluator;
+import org.teiid.query.eval.BatchEvaluator.BatchExpression;
+import org.teiid.query.eval.ExpressionCompiler;
+import org.teiid.query.eval.ExpressionCompiler.CompiledExpression;
+import org.teiid.query.processor.ProcessorDataManager;
 import org.teiid.query.sql.LanguageObject;
 import org.teiid.query.sql.symbol.AliasSymbol;
 import org.teiid.query.sql.symbol.Expression;
 import org.teiid.query.sql.util.SymbolMap;
+import org.teiid.query.util.CommandContext;
 
 
 public class ProjectNode extends SubqueryAwareRelationalNode {
@@ -52,10 +59,16 @@ public class ProjectNode extends SubqueryAwareRelationalNode {
     private boolean needsProject = true;
     private List<Expression> expressions;
     private int[] projectionIndexes;
+    private BatchExpression[] batchExpressions;
+    // Compiled on first use and shared by all copies of the plan
+    private CompiledExpression[] compiledExpressions;
+    private boolean compileExpressions;
+    private boolean batchEvaluation;
 
     // Saved state when blocked on evaluating a row - must be reset
     private TupleBatch currentBatch;
     private int currentRow = 1;
+    private Object[][] batchValues;
 
     protected ProjectNode() {
         super();
@@ -70,6 +83,7 @@ public class ProjectNode extends SubqueryAwareRelationalNode {
 
         currentBatch = null;
         currentRow = 1;
+        batchValues = null;
     }
 
     /**
@@ -87,11 +101,22 @@ public class ProjectNode extends SubqueryAwareRelationalNode {
         Arrays.fill(this.projectionIndexes, -1);
 
         this.expressions = new ArrayList<Expression>(this.selectSymbols.size());
+        this.compiledExpressions = new CompiledExpression[this.selectSymbols.size()];
         for (Expression ses : this.selectSymbols) {
-            this.expressions.add(SymbolMap.getExpression(ses));
+            Expression ex = SymbolMap.getExpression(ses);
+            this.compiledExpressions[this.expressions.size()] = ExpressionCompiler.compile(ex);
+            this.expressions.add(ex);
         }
     }
 
+    @Override
+    public void initialize(CommandContext context, BufferManager bufferManager,
+            ProcessorDataManager dataMgr) {
+        super.initialize(context, bufferManager, dataMgr);
+        this.compileExpressions = context.getOptions().isCompileExpressions();
+        this.batchEvaluation = context.getOptions().isBatchEvaluation();
+    }
+
     @Override
     public void addChild(RelationalNode child) {
         super.addChild(child);
@@ -130,6 +155,23 @@ public class ProjectNode extends SubqueryAwareRelationalNode {
                 projectionIndexes[i] = index;
             }
         }
+
+        //compile the expressions that can be evaluated a batch at a time
+        batchExpressions = null;
+        if (needsProject) {
+            for (int i = 0; i < expressions.size(); i++) {
+                if (projectionIndexes[i] != -1) {
+                    continue;
+                }
+                BatchExpression batchExpression = BatchEvaluator.compile(expressions.get(i), elementMap);
+                if (batchExpression != null) {
+                    if (batchExpressions == null) {
+                        batchExpressions = new BatchExpression[expressions.size()];
+                    }
+                    batchExpressions[i] = batchExpression;
+                }
+            }
+        }
     }
 
     public TupleBatch nextBatchDirect()
@@ -152,6 +194,16 @@ public class ProjectNode extends SubqueryAwareRelationalNode {
                 currentBatch = null;
                 return result;
             }
+
+            if (batchEvaluation && batchExpressions != null) {
+                batchValues = new Object[batchExpressions.length][];
+                for (int i = 0; i < batchExpressions.length; i++) {
+                    if (batchExpressions[i] != null) {
+                        //null values will fall back to evaluating a row at a time
+                        batchValues[i] = batchExpressions[i].evaluate(currentBatch.getTuples());
+                    }
+                }
+            }
         }
 
         while (currentRow <= currentBatch.getEndRow() && !isBatchFull()) {
@@ -161,6 +213,10 @@ public class ProjectNode extends SubqueryAwareRelationalNode {
 
             // Walk through symbols
             for(int i=0; i<expressions.size(); i++) {
+                if (batchValues != null && batchValues[i] != null) {
+                    projectedTuple.add(batchValues[i][(int)(currentRow - currentBatch.getBeginRow())]);
+                    continue;
+                }
                 Expression symbol = expressions.get(i);
                 updateTuple(symbol, i, tuple, projectedTuple);
             }
@@ -175,6 +231,7 @@ public class ProjectNode extends SubqueryAwareRelationalNode {
                 terminateBatches();
             }
             currentBatch = null;
+            batchValues = null;
         }
 
         return pullBatch();
@@ -186,6 +243,8 @@ public class ProjectNode extends SubqueryAwareRelationalNode {
         int index = this.projectionIndexes[projectionIndex];
         if(index != -1) {
             tuple.add(values.get(index));
+        } else if (compileExpressions) {
+            tuple.add(compiledExpressions[projectionIndex].evaluate(getEvaluator(this.elementMap), values));
         } else {
             tuple.add(getEvaluator(this.elementMap).evaluate(symbol, values));
         }
@@ -209,6 +268,8 @@ public class ProjectNode extends SubqueryAwareRelationalNode {
         target.elementMap = elementMap;
         target.expressions = expressions;
         target.projectionIndexes = projectionIndexes;
+        target.batchExpressions = batchExpressions;
+        target.compiledExpressions = compiledExpressions;
     }
 
     public PlanNode getDescriptionProperties() {
@@ -20,6 +20,7 @@ package org.teiid.query.processor.relational;
 
 import static org.teiid.query.analysis.AnalysisRecord.*;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.List;
@@ -32,6 +33,10 @@ import org.teiid.common.buffer.TupleBatch;
 import org.teiid.core.TeiidComponentException;
 import org.teiid.core.TeiidProcessingException;
 import org.teiid.query.analysis.AnalysisRecord;
+import org.teiid.query.eval.BatchEvaluator;
+import org.teiid.query.eval.BatchEvaluator.BatchCriteria;
+import org.teiid.query.eval.ExpressionCompiler;
+import org.teiid.query.eval.ExpressionCompiler.CompiledCriteria;
 import org.teiid.query.processor.ProcessorDataManager;
 import org.teiid.query.rewriter.QueryRewriter;
 import org.teiid.query.sql.LanguageObject;
@@ -44,6 +49,10 @@ public class SelectNode extends SubqueryAwareRelationalNode {
 
     private Criteria criteria;
     private Criteria preEvalCriteria;
+    // Compiled on first use and shared by all copies of the plan
+    private CompiledCriteria compiledCriteria;
+    private boolean compileExpressions;
+    private boolean batchEvaluation;
     private List<Expression> projectedExpressions;
     private boolean shouldEvaluate = false;
 
@@ -53,9 +62,15 @@ public class SelectNode extends SubqueryAwareRelationalNode {
 
     private boolean noRows;
 
+    // The conjuncts that can be evaluated a batch at a time and the remaining criteria
+    private BatchCriteria batchCriteria;
+    private Criteria rowCriteria;
+
     // State if blocked on evaluating a criteria
     private TupleBatch currentBatch;
     private int currentRow = 1;
+    private int[] selection;
+    private int selectionIndex;
 
     protected SelectNode() {
         super();
@@ -70,12 +85,17 @@ public class SelectNode extends SubqueryAwareRelationalNode {
 
         currentBatch = null;
         currentRow = 1;
+        selection = null;
+        selectionIndex = 0;
         noRows = false;
         preEvalCriteria = null;
+        batchCriteria = null;
+        rowCriteria = null;
     }
 
     public void setCriteria(Criteria criteria) {
         this.criteria = criteria;
+        this.compiledCriteria = ExpressionCompiler.compile(criteria);
     }
 
     public Criteria getCriteria() { // made public to support change in ProcedurePlanner
@@ -90,6 +110,8 @@ public class SelectNode extends SubqueryAwareRelationalNode {
     public void initialize(CommandContext context, BufferManager bufferManager,
             ProcessorDataManager dataMgr) {
         super.initialize(context, bufferManager, dataMgr);
+        this.compileExpressions = context.getOptions().isCompileExpressions();
+        this.batchEvaluation = context.getOptions().isBatchEvaluation();
         // Create element lookup map for evaluating project expressions
         if(this.elementMap == null) {
             this.elementMap = createLookupMap(this.getChildren()[0].getElements());
@@ -110,18 +132,45 @@ public class SelectNode extends SubqueryAwareRelationalNode {
 
         if(currentBatch == null) {
             currentBatch = this.getChildren()[0].nextBatch();
+            if (batchCriteria != null) {
+                selection = batchCriteria.select(currentBatch.getTuples());
+            }
+        }
+
+        if (selection != null) {
+            //only the remaining criteria need to be checked for the selected rows
+            List<List<?>> tuples = currentBatch.getTuples();
+            while (selectionIndex < selection.length && !isBatchFull()) {
+                List<?> tuple = tuples.get(selection[selectionIndex]);
+
+                if(rowCriteria == null || getEvaluator(this.elementMap).evaluate(rowCriteria, tuple)) {
+                    addBatchRow(projectTuple(this.projectionIndexes, tuple));
+                }
+                selectionIndex++;
+            }
+            if (selectionIndex >= selection.length) {
+                selection = null;
+                selectionIndex = 0;
+                currentRow = (int)currentBatch.getEndRow() + 1;
+            }
         }
 
         while (currentRow <= currentBatch.getEndRow() && !isBatchFull()) {
             List<?> tuple = currentBatch.getTuple(currentRow);
 
-            if(getEvaluator(this.elementMap).evaluate(this.preEvalCriteria!=null?preEvalCriteria:criteria, tuple)) {
+            boolean selected;
+            if (this.preEvalCriteria == null && compileExpressions) {
+                selected = compiledCriteria.evaluate(getEvaluator(this.elementMap), tuple);
+            } else {
+                selected = getEvaluator(this.elementMap).evaluate(this.preEvalCriteria!=null?preEvalCriteria:criteria, tuple);
+            }
+            if(selected) {
                 addBatchRow(projectTuple(this.projectionIndexes, tuple));
             }
             currentRow++;
         }
 
-        if (currentRow > currentBatch.getEndRow()) {
+        if (currentRow > currentBatch.getEndRow() && selection == null) {
             if(currentBatch.getTerminationFlag()) {
                 terminateBatches();
             }
@@ -145,6 +194,7 @@ public class SelectNode extends SubqueryAwareRelationalNode {
     protected void copyTo(SelectNode target){
         super.copyTo(target);
         target.criteria = criteria;
+        target.compiledCriteria = compiledCriteria;
         target.elementMap = elementMap;
         target.projectionIndexes = projectionIndexes;
         target.projectedExpressions = projectedExpressions;
@@ -176,7 +226,40 @@ public class SelectNode extends SubqueryAwareRelationalNode {
                 return;
             }
         }
+        initBatchCriteria(preEvalCriteria!=null?preEvalCriteria:criteria);
         super.open();
     }
 
+    /**
+     * Split the conjuncts into the leading ones that can be evaluated a batch at a time
+     * and the rest, such as subqueries, that must be evaluated a row at a time.
+     * Conjuncts after the first one that can't be batched are left to the row criteria
+     * so that the conjuncts are still evaluated in the order written.
+     */
+    private void initBatchCriteria(Criteria crit) {
+        batchCriteria = null;
+        rowCriteria = null;
+        if (!batchEvaluation) {
+            return;
+        }
+        List<Criteria> batchParts = new ArrayList<Criteria>();
+        List<Criteria> rowParts = new ArrayList<Criteria>();
+        for (Criteria part : Criteria.separateCriteriaByAnd(crit)) {
+            if (rowParts.isEmpty() && BatchEvaluator.compile(part, this.elementMap) != null) {
+                batchParts.add(part);
+            } else {
+                rowParts.add(part);
+            }
+        }
+        if (batchParts.isEmpty()) {
+            return;
+        }
+        batchCriteria = BatchEvaluator.compile(Criteria.combineCriteria(batchParts), this.elementMap);
+        rowCriteria = Criteria.combineCriteria(rowParts);
+    }
+
+    BatchCriteria getBatchCriteria() {
+        return batchCriteria;
+    }
+
 }
@@ -0,0 +1,281 @@
+/*
+ * Copyright Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags and
+ * the COPYRIGHT.txt file distributed with this work.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.teiid.query.processor.relational;
+
+import java.sql.Timestamp;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+import org.teiid.core.types.DataTypeManager;
+import org.teiid.core.types.DataTypeManager.DefaultTypeCodes;
+import org.teiid.query.sql.symbol.Expression;
+
+/**
+ * Encodes the sort items of a tuple as a normalized binary key, such that an unsigned
+ * lexicographic comparison of two keys orders the tuples the same as the
+ * {@link ListNestedSortComparator} the encoder was created from.
+ * <p>
+ * Each sort item is written as a null indicator byte followed by an order preserving,
+ * prefix free encoding of the value, which is inverted for descending items.
+ * Only types with a natural binary order are supported - strings are only supported
+ * when no collation locale or pad space comparison is in effect.
+ */
+public class SortKeyEncoder implements Comparator<SortKeyEncoder.SortKey> {
+
+    /**
+     * A tuple with its key.  The first 8 bytes of the key are held as a long so that
+     * most comparisons are resolved without touching the key bytes.
+     */
+    public static final class SortKey implements Comparable<SortKey> {
+        final long prefix;
+        final byte[] bytes;
+        final List<?> tuple;
+
+        SortKey(byte[] bytes, List<?> tuple) {
+            long p = 0;
+            for (int i = 0; i < 8; i++) {
+                p <<= 8;
+                if (i < bytes.length) {
+                    p |= bytes[i] & 0xff;
+                }
+            }
+            this.prefix = p;
+            this.bytes = bytes;
+            this.tuple = tuple;
+        }
+
+        public List<?> getTuple() {
+            return tuple;
+        }
+
+        @Override
+        public int compareTo(SortKey o) {
+            if (prefix != o.prefix) {
+                return Long.compareUnsigned(prefix, o.prefix);
+            }
+            return compareUnsigned(bytes, o.bytes, 8);
+        }
+    }
+
+    /**
+     * Per thread scratch space for building keys
+     */
+    private static final class KeyBuffer {
+        byte[] bytes = new byte[64];
+        int length;
+
+        void ensureCapacity(int count) {
+            if (length + count > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(bytes.length << 1, length + count));
+            }
+        }
+
+        void write(byte b) {
+            ensureCapacity(1);
+            bytes[length++] = b;
+        }
+
+        void writeBits(long bits, int count) {
+            ensureCapacity(count);
+            for (int i = count - 1; i >= 0; i--) {
+                bytes[length++] = (byte)(bits >>> (i << 3));
+            }
+        }
+
+        /**
+         * Writes each char as an order preserving variable length value of c + 1
+         * terminated by a 0 byte.  Ascii chars take a single byte.
+         */
+        void writeString(String s) {
+            ensureCapacity(s.length() * 3 + 1);
+            for (int i = 0; i < s.length(); i++) {
+                int v = s.charAt(i) + 1;
+                if (v < 0x80) {
+                    bytes[length++] = (byte)v;
+                } else if (v < 0x4000) {
+                    bytes[length++] = (byte)(0x80 | (v >>> 8));
+                    bytes[length++] = (byte)v;
+                } else {
+                    bytes[length++] = (byte)(0xc0 | (v >>> 16));
+                    bytes[length++] = (byte)(v >>> 8);
+                    bytes[length++] = (byte)v;
+                }
+            }
+            bytes[length++] = 0;
+        }
+    }
+
+    private static final ThreadLocal<KeyBuffer> KEY_BUFFER = ThreadLocal.withInitial(KeyBuffer::new);
+
+    private static final byte NULL_LOW = 0;
+    private static final byte NOT_NULL = 1;
+    private static final byte NULL_HIGH = 2;
+
+    private ListNestedSortComparator<?> comparator;
+    private int[] cols;
+    private int[] typeCodes;
+    private boolean[] ascending;
+    private byte[] nullBytes;
+
+    private SortKeyEncoder(ListNestedSortComparator<?> comparator, int[] typeCodes) {
+        this.comparator = comparator;
+        this.cols = comparator.getSortParameters();
+        this.typeCodes = typeCodes;
+        this.ascending = new boolean[cols.length];
+        this.nullBytes = new byte[cols.length];
+        for (int i = 0; i < cols.length; i++) {
+            this.ascending[i] = comparator.isAscending(i);
+            this.nullBytes[i] = comparator.isNullFirst(i)?NULL_LOW:NULL_HIGH;
+        }
+    }
+
+    /**
+     * Create an encoder for the given comparator
+     * @return the encoder or null if one of the sort items is not of a supported type
+     */
+    public static SortKeyEncoder create(ListNestedSortComparator<?> comparator, List<? extends Expression> schema) {
+        int[] cols = comparator.getSortParameters();
+        int[] typeCodes = new int[cols.length];
+        for (int i = 0; i < cols.length; i++) {
+            int typeCode = DataTypeManager.getTypeCode(schema.get(cols[i]).getType());
+            switch (typeCode) {
+            case DefaultTypeCodes.STRING:
+                if (DataTypeManager.COLLATION_LOCALE != null || DataTypeManager.PAD_SPACE) {
+                    return null;
+                }
+                break;
+            case DefaultTypeCodes.CHAR:
+            case DefaultTypeCodes.BOOLEAN:
+            case DefaultTypeCodes.BYTE:
+            case DefaultTypeCodes.SHORT:
+            case DefaultTypeCodes.INTEGER:
+            case DefaultTypeCodes.LONG:
+            case DefaultTypeCodes.FLOAT:
+            case DefaultTypeCodes.DOUBLE:
+            case DefaultTypeCodes.DATE:
+            case DefaultTypeCodes.TIME:
+            case DefaultTypeCodes.TIMESTAMP:
+                break;
+            default:
+                return null;
+            }
+            typeCodes[i] = typeCode;
+        }
+        return new SortKeyEncoder(comparator, typeCodes);
+    }
+
+    /**
+     * Encode the key for the tuple.  May be called concurrently.
+     * @return the key or null if a value does not match the expected type
+     */
+    public SortKey encode(List<?> tuple) {
+        KeyBuffer buffer = KEY_BUFFER.get();
+        buffer.length = 0;
+        for (int i = 0; i < cols.length; i++) {
+            if (tuple.size() <= cols[i]) {
+                return null;
+            }
+            Object value = tuple.get(cols[i]);
+            if (value == null) {
+                buffer.write(nullBytes[i]);
+                continue;
+            }
+            buffer.write(NOT_NULL);
+            int start = buffer.length;
+            try {
+                switch (typeCodes[i]) {
+                case DefaultTypeCodes.STRING:
+                    buffer.writeString((String)value);
+                    break;
+                case DefaultTypeCodes.CHAR:
+                    buffer.writeBits((Character)value, 2);
+                    break;
+                case DefaultTypeCodes.BOOLEAN:
+                    buffer.writeBits(((Boolean)value)?1:0, 1);
+                    break;
+                case DefaultTypeCodes.BYTE:
+                    buffer.writeBits(((Byte)value) ^ Byte.MIN_VALUE, 1);
+                    break;
+                case DefaultTypeCodes.SHORT:
+                    buffer.writeBits(((Short)value) ^ Short.MIN_VALUE, 2);
+                    break;
+                case DefaultTypeCodes.INTEGER:
+                    buffer.writeBits(((Integer)value) ^ Integer.MIN_VALUE, 4);
+                    break;
+                case DefaultTypeCodes.LONG:
+                    buffer.writeBits(((Long)value) ^ Long.MIN_VALUE, 8);
+                    break;
+                case DefaultTypeCodes.FLOAT:
+                    int intBits = Float.floatToIntBits((Float)value);
+                    buffer.writeBits(intBits < 0 ? ~intBits : intBits ^ Integer.MIN_VALUE, 4);
+                    break;
+                case DefaultTypeCodes.DOUBLE:
+                    long longBits = Double.doubleToLongBits((Double)value);
+                    buffer.writeBits(longBits < 0 ? ~longBits : longBits ^ Long.MIN_VALUE, 8);
+                    break;
+                case DefaultTypeCodes.DATE:
+                case DefaultTypeCodes.TIME:
+                    buffer.writeBits(((java.util.Date)value).getTime() ^ Long.MIN_VALUE, 8);
+                    break;
+                case DefaultTypeCodes.TIMESTAMP:
+                    Timestamp ts = (Timestamp)value;
+                    buffer.writeBits(ts.getTime() ^ Long.MIN_VALUE, 8);
+                    buffer.writeBits(ts.getNanos(), 4);
+                    break;
+                }
+            } catch (ClassCastException e) {
+                return null;
+            }
+            if (!ascending[i]) {
+                for (int j = start; j < buffer.length; j++) {
+                    buffer.bytes[j] = (byte)~buffer.bytes[j];
+                }
+            }
+        }
+        return new SortKey(Arrays.copyOf(buffer.bytes, buffer.length), tuple);
+    }
+
+    /**
+     * Compare the keys, which also tracks the distinct state of the comparator
+     */
+    @Override
+    public int compare(SortKey o1, SortKey o2) {
+        int result = o1.compareTo(o2);
+        if (result == 0 && comparator.isDistinct()) {
+            comparator.compare((List)o1.tuple, (List)o2.tuple);
+        }
+        return result;
+    }
+
+    /**
+     * Unsigned lexicographic comparison of the arrays starting at the given offset
+     */
+    static int compareUnsigned(byte[] b1, byte[] b2, int offset) {
+        int len = Math.min(b1.length, b2.length);
+        for (int i = offset; i < len; i++) {
+            int result = (b1[i] & 0xff) - (b2[i] & 0xff);
+            if (result != 0) {
+                return result;
+            }
+        }
+        return b1.length - b2.length;
+    }
+
+}
@@ -23,10 +23,13 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
 import java.util.ListIterator;
+import java.util.PriorityQueue;
 import java.util.TreeSet;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
 
@@ -46,6 +49,7 @@ import org.teiid.language.SortSpecification.NullOrdering;
 import org.teiid.logging.LogConstants;
 import org.teiid.logging.LogManager;
 import org.teiid.logging.MessageLevel;
+import org.teiid.query.processor.relational.SortKeyEncoder.SortKey;
 import org.teiid.query.sql.lang.OrderBy;
 import org.teiid.query.sql.lang.OrderByItem;
 import org.teiid.query.sql.symbol.Expression;
@@ -113,12 +117,16 @@ public class SortUtility {
      */
     private class SortedSublist implements Comparable<SortedSublist> {
         List<?> tuple;
+        SortKey key;
         int index;
         TupleBufferTupleSource its;
 
         @Override
         public int compareTo(SortedSublist o) {
             //reverse the comparison, so that removal of the lowest is a low cost operation
+            if (this.key != null && o.key != null) {
+                return -keyEncoder.compare(this.key, o.key);
+            }
             return -comparator.compare(this.tuple, o.tuple);
         }
 
@@ -137,6 +145,7 @@ public class SortUtility {
     private int schemaSize;
     private int batchSize;
     private ListNestedSortComparator comparator;
+    private SortKeyEncoder keyEncoder;
     private int targetRowCount;
     private boolean doneReading;
     private int phase = INITIAL_SORT;
@@ -155,6 +164,20 @@ public class SortUtility {
     private boolean stableSort = STABLE_SORT;
     private Future<Void> future;
 
+    //parallel sort state
+    private int parallelism;
+    private boolean parallel;
+    private List<?>[] splitters;
+    private List<TupleBuffer>[] partitionRuns;
+
+    //top n state
+    private int topNMaxRows;
+    private PriorityQueue<TopNEntry> topN;
+    private TupleSource topNSource;
+    private long topNSequence;
+    private int topNReserved;
+    private boolean topNRejected;
+
     public SortUtility(TupleSource sourceID, List<OrderByItem> items, Mode mode, BufferManager bufferMgr,
                         String groupName, List<? extends Expression> schema) {
         List<Expression> sortElements = null;
@@ -222,6 +245,11 @@ public class SortUtility {
         int distinctIndex = cols.length - 1;
         this.comparator.setDistinctIndex(distinctIndex);
         this.comparator.setNullOrdering(nullOrderings);
+        if (bufferMgr.getOptions().isNormalizedSortKeys()) {
+            this.keyEncoder = SortKeyEncoder.create(this.comparator, schema);
+        }
+        this.parallelism = bufferMgr.getOptions().getSortParallelism();
+        this.topNMaxRows = bufferMgr.getOptions().getTopNMaxRows();
     }
 
     public SortUtility(TupleSource ts, List<? extends Expression> expressions, List<Boolean> types,
@@ -240,7 +268,12 @@ public class SortUtility {
             waitForWork();
             synchronized (this) {
                 if(this.phase == INITIAL_SORT) {
-                    initialSort(false, false, rowLimit);
+                    if (mode == Mode.SORT && rowLimit > 0 && rowLimit <= topNMaxRows && reserveTopN(rowLimit)) {
+                        topNSort(rowLimit);
+                    } else {
+                        this.parallel = parallelism > 1 && mode == Mode.SORT && rowLimit == -1;
+                        initialSort(false, false, rowLimit);
+                    }
                 }
 
                 if(this.phase == MERGE) {
@@ -285,6 +318,111 @@ public class SortUtility {
         }
     }
 
+    /**
+     * Reserve the memory for a heap of rowLimit tuples.  If the reservation
+     * cannot be granted the normal sort is used instead.
+     */
+    private boolean reserveTopN(int rowLimit) {
+        if (topN != null) {
+            return true;
+        }
+        if (topNRejected) {
+            return false;
+        }
+        long needed = ((long)rowLimit + batchSize - 1) / batchSize * schemaSize;
+        if (needed <= Integer.MAX_VALUE) {
+            int reserved = bufferManager.reserveBuffers((int)needed, BufferReserveMode.NO_WAIT);
+            if (reserved >= needed) {
+                topNReserved = reserved;
+                return true;
+            }
+            bufferManager.releaseBuffers(reserved);
+        }
+        topNRejected = true;
+        return false;
+    }
+
+    private void releaseTopN() {
+        if (topNReserved > 0) {
+            bufferManager.releaseBuffers(topNReserved);
+            topNReserved = 0;
+        }
+    }
+
+    /**
+     * Keep only the first rowLimit tuples in a bounded heap rather than creating
+     * sorted runs, so that there are no intermediate buffers.  Ties are kept in input order.
+     */
+    private void topNSort(int rowLimit) throws TeiidComponentException, TeiidProcessingException {
+        if (topN == null) {
+            topN = new PriorityQueue<TopNEntry>(Math.min(rowLimit, this.batchSize) + 1, Collections.reverseOrder(new TopNComparator()));
+            if (source == null) {
+                topNSource = workingBuffer.createIndexedTupleSource();
+            } else {
+                topNSource = source;
+            }
+        }
+        long end = Long.MAX_VALUE;
+        if (!nonBlocking) {
+            CommandContext cc = CommandContext.getThreadLocalContext();
+            if (cc != null && cc.getWorkItem() != null) {
+                end = System.nanoTime() + (cc.getTimeSliceEnd()-System.currentTimeMillis())*1000000;
+            }
+        }
+        List<?> tuple = null;
+        while ((tuple = topNSource.nextTuple()) != null) {
+            if (topN.size() < rowLimit) {
+                topN.add(new TopNEntry(tuple, topNSequence++));
+            } else if (comparator.compare(tuple, topN.peek().tuple) < 0) {
+                TopNEntry entry = topN.poll();
+                entry.tuple = tuple;
+                entry.sequence = topNSequence++;
+                topN.add(entry);
+            } else {
+                topNSequence++;
+            }
+            if (end != Long.MAX_VALUE && (topNSequence%1024)==1 && System.nanoTime() > end) {
+                CommandContext.getThreadLocalContext().getWorkItem().moreWork();
+                throw BlockedException.block("Blocking on top n sort"); //$NON-NLS-1$
+            }
+        }
+        doneReading = true;
+        TopNEntry[] entries = topN.toArray(new TopNEntry[topN.size()]);
+        Arrays.sort(entries, new TopNComparator());
+        TupleBuffer result = createTupleBuffer();
+        for (TopNEntry entry : entries) {
+            result.addTuple(entry.tuple);
+        }
+        result.close();
+        result.setForwardOnly(false);
+        this.activeTupleBuffers.add(result);
+        this.topN = null;
+        this.topNSource = null;
+        releaseTopN();
+        this.phase = DONE;
+    }
+
+    private static class TopNEntry {
+        List<?> tuple;
+        long sequence;
+
+        TopNEntry(List<?> tuple, long sequence) {
+            this.tuple = tuple;
+            this.sequence = sequence;
+        }
+    }
+
+    private class TopNComparator implements Comparator<TopNEntry> {
+        @Override
+        public int compare(TopNEntry o1, TopNEntry o2) {
+            int result = comparator.compare(o1.tuple, o2.tuple);
+            if (result != 0) {
+                return result;
+            }
+            return Long.compare(o1.sequence, o2.sequence);
+        }
+    }
+
     private TupleBuffer createTupleBuffer() throws TeiidComponentException {
         TupleBuffer tb = bufferManager.createTupleBuffer(this.schema, this.groupName, TupleSourceType.PROCESSOR);
         if (LogManager.isMessageToBeRecorded(LogConstants.CTX_DQP, MessageLevel.DETAIL)) {
@@ -376,16 +514,7 @@ public class SortUtility {
             if (e.getCause() instanceof BlockedException) {
                 return;
             }
-            if (e.getCause() instanceof TeiidComponentException) {
-                throw (TeiidComponentException) e.getCause();
-            }
-            if (e.getCause() instanceof TeiidProcessingException) {
-                throw (TeiidProcessingException) e.getCause();
-            }
-            if (e.getCause() instanceof TeiidRuntimeException) {
-                throw (TeiidRuntimeException) e.getCause();
-            }
-            throw new TeiidRuntimeException(e);
+            throwCause(e);
         } catch (InterruptedException e) {
             Thread.interrupted();
             throw new TeiidRuntimeException(e);
@@ -394,6 +523,92 @@ public class SortUtility {
         }
     }
 
+    private static void throwCause(ExecutionException e) throws TeiidComponentException,
+            TeiidProcessingException {
+        if (e.getCause() instanceof TeiidComponentException) {
+            throw (TeiidComponentException) e.getCause();
+        }
+        if (e.getCause() instanceof TeiidProcessingException) {
+            throw (TeiidProcessingException) e.getCause();
+        }
+        if (e.getCause() instanceof TeiidRuntimeException) {
+            throw (TeiidRuntimeException) e.getCause();
+        }
+        throw new TeiidRuntimeException(e);
+    }
+
+    /**
+     * Run the tasks and wait for all of them to complete.  Up to parallelism - 1 helpers
+     * are scheduled on the engine executor with the calling context, limited by the
+     * threads available to the request.  The calling thread works through any tasks
+     * not taken by a helper, so it only waits on tasks that are already running.
+     */
+    private void invokeAll(List<Callable<Void>> tasks) throws TeiidComponentException,
+            TeiidProcessingException {
+        final CommandContext cc = CommandContext.getThreadLocalContext();
+        final ConcurrentLinkedQueue<Callable<Void>> queue = new ConcurrentLinkedQueue<Callable<Void>>(tasks);
+        List<Future<Void>> futures = new ArrayList<Future<Void>>();
+        if (cc != null) {
+            for (int i = 1; i < Math.min(tasks.size(), parallelism) && cc.acquireExchangeThread(parallelism); i++) {
+                futures.add(cc.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() throws Exception {
+                        CommandContext.pushThreadLocalContext(cc);
+                        try {
+                            runTasks(queue);
+                        } finally {
+                            CommandContext.popThreadLocalContext();
+                            cc.releaseExchangeThread();
+                        }
+                        return null;
+                    }
+                }));
+            }
+        }
+        Exception failure = null;
+        try {
+            runTasks(queue);
+        } catch (Exception e) {
+            failure = e;
+            queue.clear();
+        }
+        for (Future<Void> f : futures) {
+            try {
+                f.get();
+            } catch (ExecutionException e) {
+                if (failure == null) {
+                    failure = e;
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                queue.clear();
+                throw new TeiidProcessingException(e);
+            }
+        }
+        if (failure instanceof ExecutionException) {
+            throwCause((ExecutionException)failure);
+        }
+        if (failure instanceof TeiidComponentException) {
+            throw (TeiidComponentException)failure;
+        }
+        if (failure instanceof TeiidProcessingException) {
+            throw (TeiidProcessingException)failure;
+        }
+        if (failure instanceof RuntimeException) {
+            throw (RuntimeException)failure;
+        }
+        if (failure != null) {
+            throw new TeiidRuntimeException(failure);
+        }
+    }
+
+    private static void runTasks(ConcurrentLinkedQueue<Callable<Void>> queue) throws Exception {
+        Callable<Void> task = null;
+        while ((task = queue.poll()) != null) {
+            task.call();
+        }
+    }
+
     private void workAsync(final int rowLimit, CommandContext cc) throws BlockedException {
         future = cc.submit(new Callable<Void>() {
             @Override
@@ -471,16 +686,24 @@ public class SortUtility {
                     workingTuples.add(tuple);
                 }
 
-                TupleBuffer sublist = createTupleBuffer();
-                activeTupleBuffers.add(sublist);
                 if (this.mode == Mode.SORT) {
                     //perform a stable sort
-                    if (workingTuples.size() > (1<<18)) {
+                    if (keyEncoder != null && sortByKey((AccessibleArrayList<List<?>>)workingTuples)) {
+                        //sorted
+                    } else if (parallel || workingTuples.size() > (1<<18)) {
                         Arrays.parallelSort(((AccessibleArrayList)workingTuples).elementData,0, workingTuples.size(), comparator);
                     } else {
                         Collections.sort((List<List<?>>) workingTuples, comparator);
                     }
+                    if (parallel && (partitionRuns != null || !done)) {
+                        //more than one run, so range partition them for a parallel merge
+                        addPartitionedRuns((AccessibleArrayList<List<?>>)workingTuples);
+                        workingTuples.clear();
+                        continue;
+                    }
                 }
+                TupleBuffer sublist = createTupleBuffer();
+                activeTupleBuffers.add(sublist);
                 for (List<?> list : workingTuples) {
                     sublist.addTuple(list);
 
@@ -504,18 +727,114 @@ public class SortUtility {
             }
         }
 
-        if (this.activeTupleBuffers.isEmpty()) {
+        if (this.activeTupleBuffers.isEmpty() && this.partitionRuns == null) {
             activeTupleBuffers.add(createTupleBuffer());
         }
         this.phase = MERGE;
     }
 
+    /**
+     * Sort the working tuples by their normalized keys, which are computed once per row
+     * @return false if a key could not be computed and the comparator should be used instead
+     */
+    private boolean sortByKey(AccessibleArrayList<List<?>> workingTuples) {
+        int size = workingTuples.size();
+        SortKey[] keys = new SortKey[size];
+        if (parallel || size > (1<<18)) {
+            Arrays.parallelSetAll(keys, i->keyEncoder.encode(workingTuples.get(i)));
+        } else {
+            for (int i = 0; i < size; i++) {
+                keys[i] = keyEncoder.encode(workingTuples.get(i));
+            }
+        }
+        for (SortKey key : keys) {
+            if (key == null) {
+                return false;
+            }
+        }
+        if (parallel || size > (1<<18)) {
+            Arrays.parallelSort(keys, keyEncoder);
+        } else {
+            Arrays.sort(keys, keyEncoder);
+        }
+        for (int i = 0; i < size; i++) {
+            workingTuples.elementData[i] = keys[i].tuple;
+        }
+        return true;
+    }
+
+    /**
+     * Split the sorted working tuples into one run per range partition and write
+     * the runs in parallel.  The partition boundaries are chosen from the first run.
+     */
+    private void addPartitionedRuns(final AccessibleArrayList<List<?>> workingTuples) throws TeiidComponentException, TeiidProcessingException {
+        int size = workingTuples.size();
+        int[] splitIndexes = null;
+        if (partitionRuns == null) {
+            int partitions = Math.max(1, Math.min(parallelism, size / batchSize));
+            splitters = new List<?>[partitions - 1];
+            splitIndexes = new int[partitions - 1];
+            for (int i = 0; i < splitters.length; i++) {
+                splitIndexes[i] = (int)((long)(i + 1) * size / partitions) - 1;
+                splitters[i] = workingTuples.get(splitIndexes[i]);
+            }
+            partitionRuns = new List[partitions];
+            for (int i = 0; i < partitions; i++) {
+                partitionRuns[i] = new ArrayList<TupleBuffer>();
+            }
+        }
+        List<Callable<Void>> tasks = new ArrayList<Callable<Void>>(partitionRuns.length);
+        int start = 0;
+        for (int p = 0; p < partitionRuns.length; p++) {
+            int end = size;
+            if (p < splitters.length) {
+                //don't compare the splitter to itself, which would affect the distinct check
+                int from = splitIndexes != null ? Math.max(start, splitIndexes[p] + 1) : start;
+                end = upperBound(workingTuples, from, size, splitters[p]);
+            }
+            if (end > start) {
+                final List<TupleBuffer> runs = partitionRuns[p];
+                final int from = start;
+                final int to = end;
+                tasks.add(new Callable<Void>() {
+                    @Override
+                    public Void call() throws Exception {
+                        TupleBuffer run = createTupleBuffer();
+                        runs.add(run);
+                        for (int i = from; i < to; i++) {
+                            run.addTuple(workingTuples.get(i));
+                        }
+                        run.saveBatch();
+                        return null;
+                    }
+                });
+            }
+            start = end;
+        }
+        invokeAll(tasks);
+    }
+
+    /**
+     * @return the index of the first tuple in the sorted range that is greater than the bound
+     */
+    private int upperBound(List<List<?>> tuples, int low, int high, List<?> bound) {
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (comparator.compare(tuples.get(mid), bound) <= 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
     public void setWorkingBuffer(TupleBuffer workingBuffer) {
         this.workingBuffer = workingBuffer;
     }
 
     protected void mergePhase(int rowLimit) throws TeiidComponentException, TeiidProcessingException {
-        if (this.activeTupleBuffers.size() > 1) {
+        if (this.activeTupleBuffers.size() > 1 || this.partitionRuns != null) {
             doMerge(rowLimit);
         }
 
@@ -528,6 +847,10 @@ public class SortUtility {
     }
 
     protected void doMerge(int rowLimit) throws TeiidComponentException, TeiidProcessingException {
+        if (this.partitionRuns != null) {
+            doParallelMerge();
+            return;
+        }
         long desiredSpace = activeTupleBuffers.size() * (long)schemaSize;
         int toForce = (int)Math.min(desiredSpace, Math.max(2*schemaSize, this.bufferManager.getMaxProcessingSize()));
         int reserved = 0;
@@ -570,10 +893,6 @@ public class SortUtility {
 
         try {
             while(this.activeTupleBuffers.size() > 1) {
-                ArrayList<SortedSublist> sublists = new ArrayList<SortedSublist>(activeTupleBuffers.size());
-
-                TupleBuffer merged = createTupleBuffer();
-
                 desiredSpace = activeTupleBuffers.size() * (long)schemaSize;
                 if (desiredSpace < reserved) {
                     bufferManager.releaseBuffers(reserved - (int)desiredSpace);
@@ -584,50 +903,130 @@ public class SortUtility {
                 if (LogManager.isMessageToBeRecorded(org.teiid.logging.LogConstants.CTX_DQP, MessageLevel.TRACE)) {
                     LogManager.logTrace(org.teiid.logging.LogConstants.CTX_DQP, "Merging", maxSortIndex, "sublists out of", activeTupleBuffers.size()); //$NON-NLS-1$ //$NON-NLS-2$
                 }
-                // initialize the sublists with the min value
-                for(int i = 0; i<maxSortIndex; i++) {
-                     TupleBuffer activeID = activeTupleBuffers.get(i);
-                     SortedSublist sortedSublist = new SortedSublist();
-                    sortedSublist.its = activeID.createIndexedTupleSource();
-                    sortedSublist.its.setNoBlocking(true);
-                    sortedSublist.index = i;
-                    incrementWorkingTuple(sublists, sortedSublist);
-                }
+                mergeRuns(this.activeTupleBuffers, maxSortIndex, rowLimit);
+            }
+        } finally {
+            this.bufferManager.releaseBuffers(reserved);
+        }
+    }
 
-                boolean checkLimit = maxSortIndex == activeTupleBuffers.size() && rowLimit > -1;
+    /**
+     * Merge the first count runs, replacing them with the merged run at the end of the list
+     */
+    private void mergeRuns(List<TupleBuffer> runs, int count, int rowLimit) throws TeiidComponentException, TeiidProcessingException {
+        ArrayList<SortedSublist> sublists = new ArrayList<SortedSublist>(count);
+
+        TupleBuffer merged = createTupleBuffer();
+
+        // initialize the sublists with the min value
+        for(int i = 0; i<count; i++) {
+            TupleBuffer activeID = runs.get(i);
+            SortedSublist sortedSublist = new SortedSublist();
+            sortedSublist.its = activeID.createIndexedTupleSource();
+            sortedSublist.its.setNoBlocking(true);
+            sortedSublist.index = i;
+            incrementWorkingTuple(sublists, sortedSublist);
+        }
 
-                // iteratively process the lowest tuple
-                while (sublists.size() > 0) {
-                    SortedSublist sortedSublist = sublists.remove(sublists.size() - 1);
-                    merged.addTuple(sortedSublist.tuple);
-                    incrementWorkingTuple(sublists, sortedSublist);
+        boolean checkLimit = count == runs.size() && rowLimit > -1;
 
-                    if (checkLimit && merged.getRowCount() == rowLimit) {
-                        //early exit for row limit
-                        break;
-                    }
-                }
+        // iteratively process the lowest tuple
+        while (sublists.size() > 0) {
+            SortedSublist sortedSublist = sublists.remove(sublists.size() - 1);
+            merged.addTuple(sortedSublist.tuple);
+            incrementWorkingTuple(sublists, sortedSublist);
 
-                // Remove merged sublists
-                for(int i=0; i<maxSortIndex; i++) {
-                    TupleBuffer id = activeTupleBuffers.remove(0);
-                    id.remove();
+            if (checkLimit && merged.getRowCount() == rowLimit) {
+                //early exit for row limit
+                break;
+            }
+        }
+
+        // Remove merged sublists
+        for(int i=0; i<count; i++) {
+            TupleBuffer id = runs.remove(0);
+            id.remove();
+        }
+        merged.saveBatch();
+        runs.add(merged);
+    }
+
+    /**
+     * Merge each range partition in parallel, then concatenate the partitions in order.
+     * The memory used by the partition merges is bounded by a single reservation.
+     */
+    private void doParallelMerge() throws TeiidComponentException, TeiidProcessingException {
+        int runCount = 0;
+        for (List<TupleBuffer> runs : partitionRuns) {
+            runCount += runs.size();
+        }
+        long desiredSpace = runCount * (long)schemaSize;
+        int reserved = bufferManager.reserveBuffers((int)Math.min(desiredSpace, Math.max(2L*schemaSize*partitionRuns.length, this.bufferManager.getMaxProcessingSize())), BufferReserveMode.FORCE);
+        if (desiredSpace > reserved && desiredSpace < Integer.MAX_VALUE) {
+            reserved += bufferManager.reserveBuffers((int)desiredSpace - reserved, BufferReserveMode.NO_WAIT);
+        }
+        try {
+            final int maxSortIndex = Math.max(2, reserved / partitionRuns.length / schemaSize);
+            List<Callable<Void>> tasks = new ArrayList<Callable<Void>>(partitionRuns.length);
+            for (final List<TupleBuffer> runs : partitionRuns) {
+                if (runs.size() < 2) {
+                    continue;
                 }
-                merged.saveBatch();
-                this.activeTupleBuffers.add(merged);
+                tasks.add(new Callable<Void>() {
+                    @Override
+                    public Void call() throws Exception {
+                        while (runs.size() > 1) {
+                            mergeRuns(runs, Math.min(maxSortIndex, runs.size()), -1);
+                        }
+                        return null;
+                    }
+                });
             }
+            if (LogManager.isMessageToBeRecorded(org.teiid.logging.LogConstants.CTX_DQP, MessageLevel.TRACE)) {
+                LogManager.logTrace(org.teiid.logging.LogConstants.CTX_DQP, "Merging", runCount, "sublists in", partitionRuns.length, "partitions"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+            }
+            invokeAll(tasks);
         } finally {
             this.bufferManager.releaseBuffers(reserved);
         }
+        TupleBuffer result = null;
+        for (List<TupleBuffer> runs : partitionRuns) {
+            if (runs.isEmpty()) {
+                continue;
+            }
+            TupleBuffer run = runs.get(0);
+            if (result == null) {
+                result = run;
+                continue;
+            }
+            TupleBufferTupleSource ts = run.createIndexedTupleSource();
+            ts.setNoBlocking(true);
+            List<?> tuple = null;
+            while ((tuple = ts.nextTuple()) != null) {
+                result.addTuple(tuple);
+            }
+            runs.clear();
+            run.remove();
+        }
+        if (result == null) {
+            result = createTupleBuffer();
+        }
+        result.saveBatch();
+        partitionRuns = null;
+        this.activeTupleBuffers.add(result);
     }
 
     private void incrementWorkingTuple(ArrayList<SortedSublist> subLists, SortedSublist sortedSublist) throws TeiidComponentException, TeiidProcessingException {
         while (true) {
             sortedSublist.tuple = null;
+            sortedSublist.key = null;
             sortedSublist.tuple = sortedSublist.its.nextTuple();
             if (sortedSublist.tuple == null) {
                 return; // done with this sublist
             }
+            if (keyEncoder != null) {
+                sortedSublist.key = keyEncoder.encode(sortedSublist.tuple);
+            }
             int index = Collections.binarySearch(subLists, sortedSublist);
             if (index < 0) {
                 subLists.add(-index - 1, sortedSublist);
@@ -645,6 +1044,9 @@ public class SortUtility {
     }
 
     public synchronized void remove() {
+        this.topN = null;
+        this.topNSource = null;
+        releaseTopN();
         if (workingBuffer != null && source != null) {
             workingBuffer.remove();
             workingBuffer = null;
@@ -661,6 +1063,14 @@ public class SortUtility {
             }
             this.activeTupleBuffers.clear();
         }
+        if (this.partitionRuns != null) {
+            for (List<TupleBuffer> runs : this.partitionRuns) {
+                for (TupleBuffer tb : runs) {
+                    tb.remove();
+                }
+            }
+            this.partitionRuns = null;
+        }
     }
 
     public void setNonBlocking(boolean b) {
@@ -671,6 +1081,21 @@ public class SortUtility {
         this.stableSort = stableSort;
     }
 
+    /**
+     * Set the number of partitions used to generate and merge the runs of a full sort
+     * in parallel.  1 disables the parallel sort.
+     */
+    public void setParallelism(int parallelism) {
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * Set the largest row limit that will be sorted with a bounded heap.  0 disables the heap.
+     */
+    public void setTopNMaxRows(int topNMaxRows) {
+        this.topNMaxRows = topNMaxRows;
+    }
+
     void setBatchSize(int batchSize) {
         this.batchSize = batchSize;
     }
@@ -679,4 +1104,8 @@ public class SortUtility {
         return doneReading;
     }
 
+    SortKeyEncoder getKeyEncoder() {
+        return keyEncoder;
+    }
+
 }
@@ -18,7 +18,6 @@
 
 package org.teiid.query.processor.relational;
 
-import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.Reader;
 import java.sql.SQLException;
@@ -41,6 +40,7 @@ import org.teiid.core.TeiidRuntimeException;
 import org.teiid.core.types.ClobImpl;
 import org.teiid.core.types.ClobType;
 import org.teiid.core.types.DataTypeManager;
+import org.teiid.core.types.Transform;
 import org.teiid.core.types.TransformationException;
 import org.teiid.dqp.internal.process.RequestWorkItem;
 import org.teiid.query.QueryPlugin;
@@ -59,6 +59,8 @@ import org.teiid.query.util.CommandContext;
  */
 public class TextTableNode extends SubqueryAwareRelationalNode {
 
+    private static final int CHAR_BUFFER_SIZE = 1 << 13;
+
     private TextTable table;
 
     //initialized state
@@ -69,10 +71,16 @@ public class TextTableNode extends SubqueryAwareRelationalNode {
     private char delimiter;
     private int lineWidth;
     private int[] projectionIndexes;
+    private Transform[] transforms;
     private Map<String, List<String>> parentLines;
 
     //per file state
-    private BufferedReader reader;
+    private Reader reader;
+    private char[] chars;
+    private int charPos;
+    private int charLimit;
+    private StringBuilder lineBuilder;
+    private boolean[] neededFields;
     private int textLine = 0;
     private Map<String, Integer> nameIndexes;
     private String systemId;
@@ -144,6 +152,13 @@ public class TextTableNode extends SubqueryAwareRelationalNode {
         }
         Map<Expression, Integer> elementMap = createLookupMap(table.getProjectedSymbols());
         this.projectionIndexes = getProjectionIndexes(elementMap, getElements());
+        this.transforms = new Transform[table.getColumns().size()];
+        for (int i = 0; i < transforms.length; i++) {
+            Class<?> type = table.getColumns().get(i).getSymbol().getType();
+            if (type != DataTypeManager.DefaultDataClasses.STRING && type != DataTypeManager.DefaultDataClasses.OBJECT) {
+                transforms[i] = DataTypeManager.getTransform(DataTypeManager.DefaultDataClasses.STRING, type);
+            }
+        }
     }
 
     @Override
@@ -162,6 +177,11 @@ public class TextTableNode extends SubqueryAwareRelationalNode {
             }
             this.reader = null;
         }
+        this.chars = null;
+        this.charPos = 0;
+        this.charLimit = 0;
+        this.lineBuilder = null;
+        this.neededFields = null;
         this.nameIndexes = null;
         this.textLine = 0;
         this.rowNumber = 0;
@@ -303,7 +323,7 @@ public class TextTableNode extends SubqueryAwareRelationalNode {
                     }
                 }
 
-                List<String> vals = parseLine(line);
+                List<String> vals = parseLine(line, parentSelector == null ? neededFields : null);
 
                 if (parentSelector != null) {
                     this.parentLines.put(parentSelector, vals);
@@ -347,7 +367,12 @@ public class TextTableNode extends SubqueryAwareRelationalNode {
                     }
                     val = vals.get(index);
                     try {
-                        tuple.add(DataTypeManager.transformValue(val, table.getColumns().get(output).getSymbol().getType()));
+                        Transform transform = transforms[output];
+                        if (transform != null && val != null) {
+                            tuple.add(DataTypeManager.getCanonicalValue(transform.transform(val, col.getSymbol().getType())));
+                        } else {
+                            tuple.add(DataTypeManager.transformValue(val, col.getSymbol().getType()));
+                        }
                     } catch (TransformationException e) {
                          throw new TeiidProcessingException(QueryPlugin.Event.TEIID30176, e, QueryPlugin.Util.gs(QueryPlugin.Event.TEIID30176, col.getName(), textLine, systemId));
                     }
@@ -366,12 +391,34 @@ public class TextTableNode extends SubqueryAwareRelationalNode {
         if (eof) {
             return null;
         }
-        StringBuilder sb = new StringBuilder(exact ? maxLength : (maxLength >> 4));
+        //the line is fully consumed by the caller prior to reading the next
+        StringBuilder sb = lineBuilder;
+        sb.setLength(0);
         if (invalue) {
             //we must include the newline in the quoted value
-            sb.insert(0, newLine);
+            sb.append(newLine);
         }
         while (true) {
+            if (!cr && charPos < charLimit) {
+                //append the run of ordinary characters directly from the buffer
+                int end = Math.min(charLimit, charPos + maxLength - sb.length());
+                int i = charPos;
+                while (i < end) {
+                    char c = chars[i];
+                    if (c == newLine || c == '\r') {
+                        break;
+                    }
+                    i++;
+                }
+                if (i > charPos) {
+                    sb.append(chars, charPos, i - charPos);
+                    charPos = i;
+                    if (exact && sb.length() == maxLength && !table.isUsingRowDelimiter()) {
+                        return sb;
+                    }
+                    continue;
+                }
+            }
             char c = readChar();
             if (c == newLine) {
                 if (sb.length() == 0) {
@@ -409,10 +456,10 @@ public class TextTableNode extends SubqueryAwareRelationalNode {
 
     private char readChar() throws TeiidProcessingException {
         try {
-            int c = reader.read();
+            int c = read();
             if (cr) {
                 if (c == newLine) {
-                    c = reader.read();
+                    c = read();
                 }
                 cr = false;
             }
@@ -439,6 +486,23 @@ public class TextTableNode extends SubqueryAwareRelationalNode {
         }
     }
 
+    private int read() throws IOException {
+        if (charPos == charLimit) {
+            int count = 0;
+            do {
+                count = reader.read(chars, 0, chars.length);
+            } while (count == 0);
+            if (count < 0) {
+                charPos = 0;
+                charLimit = 0;
+                return -1;
+            }
+            charPos = 0;
+            charLimit = count;
+        }
+        return chars[charPos++];
+    }
+
     private void initReader() throws ExpressionEvaluationException,
             BlockedException, TeiidComponentException, TeiidProcessingException {
 
@@ -457,20 +521,15 @@ public class TextTableNode extends SubqueryAwareRelationalNode {
                     this.systemId = "Unknown"; //$NON-NLS-1$
                 }
             }
-            Reader r = file.getCharacterStream();
-            if (!(r instanceof BufferedReader)) {
-                reader = new BufferedReader(r);
-            } else {
-                reader = (BufferedReader)r;
-            }
+            //reads are against our own buffer, so there is no need for a BufferedReader
+            reader = file.getCharacterStream();
+            chars = new char[CHAR_BUFFER_SIZE];
+            lineBuilder = new StringBuilder();
         } catch (SQLException e) {
              throw new TeiidProcessingException(QueryPlugin.Event.TEIID30180, e);
         }
 
         //process the skip field
-        if (skip <= 0) {
-            return;
-        }
         while (textLine < skip) {
             boolean isHeader = textLine == header;
             if (isHeader) {
@@ -479,13 +538,51 @@ public class TextTableNode extends SubqueryAwareRelationalNode {
                     reset();
                     return;
                 }
-                processHeader(parseLine(line));
+                processHeader(parseLine(line, null));
             } else {
                 while (readChar() != newLine) {
 
                 }
             }
         }
+        initNeededFields();
+    }
+
+    /**
+     * Determine the fields referenced by the projected columns, so that
+     * the others are not materialized as strings.
+     */
+    private void initNeededFields() {
+        if (parentLines != null) {
+            return;
+        }
+        List<Integer> indexes = new ArrayList<Integer>(projectionIndexes.length + 1);
+        if (table.getSelector() != null) {
+            indexes.add(0);
+        }
+        for (int output : projectionIndexes) {
+            TextColumn col = table.getColumns().get(output);
+            if (col.isOrdinal()) {
+                continue;
+            }
+            int index = output;
+            if (nameIndexes != null) {
+                Integer headerIndex = nameIndexes.get(col.getName());
+                if (headerIndex == null) {
+                    continue;
+                }
+                index = headerIndex;
+            }
+            indexes.add(index);
+        }
+        int size = 0;
+        for (Integer index : indexes) {
+            size = Math.max(size, index + 1);
+        }
+        neededFields = new boolean[size];
+        for (Integer index : indexes) {
+            neededFields[index] = true;
+        }
     }
 
     private void processHeader(List<String> line) {
@@ -513,13 +610,51 @@ public class TextTableNode extends SubqueryAwareRelationalNode {
         }
     }
 
-    private List<String> parseLine(StringBuilder line) throws TeiidProcessingException {
+    /**
+     * @param needed the fields that must be materialized, or null if all should be
+     */
+    private List<String> parseLine(StringBuilder line, boolean[] needed) throws TeiidProcessingException {
         if (table.isFixedWidth()) {
-            return parseFixedWidth(line);
+            return parseFixedWidth(line, needed);
+        }
+        if (indexOf(line, quote) < 0) {
+            return parseSimpleDelimitedLine(line, needed);
         }
         return parseDelimitedLine(line);
     }
 
+    private static int indexOf(StringBuilder line, char c) {
+        for (int i = 0; i < line.length(); i++) {
+            if (line.charAt(i) == c) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Without quote or escape characters the line is split directly on the
+     * delimiter without copying through an intermediate builder.
+     */
+    private List<String> parseSimpleDelimitedLine(StringBuilder line, boolean[] needed) {
+        ArrayList<String> result = new ArrayList<String>();
+        int length = line.length();
+        int start = 0;
+        for (int i = 0; i <= length; i++) {
+            if (i < length && line.charAt(i) != delimiter) {
+                continue;
+            }
+            int index = result.size();
+            if (needed != null && (index >= needed.length || !needed[index])) {
+                result.add(null);
+            } else {
+                addValue(result, noTrim, line, start, i);
+            }
+            start = i + 1;
+        }
+        return result;
+    }
+
     private List<String> parseDelimitedLine(StringBuilder line) throws TeiidProcessingException {
         ArrayList<String> result = new ArrayList<String>();
         StringBuilder builder = new StringBuilder();
@@ -611,17 +746,36 @@ public class TextTableNode extends SubqueryAwareRelationalNode {
         result.add(val);
     }
 
-    private List<String> parseFixedWidth(StringBuilder line) {
+    /**
+     * Add the value of line from start to end with the same trimming as {@link #addValue(ArrayList, boolean, String)}
+     */
+    private void addValue(ArrayList<String> result, boolean wasQualified, StringBuilder line, int start, int end) {
+        if (!wasQualified) {
+            while (start < end && line.charAt(start) <= ' ') {
+                start++;
+            }
+            while (start < end && line.charAt(end - 1) <= ' ') {
+                end--;
+            }
+            if (start == end) {
+                result.add(null);
+                return;
+            }
+        }
+        result.add(line.substring(start, end));
+    }
+
+    private List<String> parseFixedWidth(StringBuilder line, boolean[] needed) {
         ArrayList<String> result = new ArrayList<String>();
         int beginIndex = 0;
         for (TextColumn col : table.getColumns()) {
-            if (beginIndex >= line.length()) {
+            int index = result.size();
+            if (beginIndex >= line.length() || (needed != null && (index >= needed.length || !needed[index]))) {
                 result.add(null);
             } else {
-                String val = new String(line.substring(beginIndex, Math.min(line.length(), beginIndex + col.getWidth())));
-                addValue(result, col.isNoTrim(), val);
-                beginIndex += col.getWidth();
+                addValue(result, col.isNoTrim(), line, beginIndex, Math.min(line.length(), beginIndex + col.getWidth()));
             }
+            beginIndex += col.getWidth();
         }
         return result;
     }
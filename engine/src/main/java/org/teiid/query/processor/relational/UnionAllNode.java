@@ -18,7 +18,11 @@
 
 package org.teiid.query.processor.relational;
 
+import java.util.ArrayDeque;
 import java.util.Collections;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 
 import org.teiid.common.buffer.BlockedException;
 import org.teiid.common.buffer.BufferManager;
@@ -27,13 +31,55 @@ import org.teiid.common.buffer.TupleBatch;
 import org.teiid.common.buffer.impl.BufferManagerImpl;
 import org.teiid.core.TeiidComponentException;
 import org.teiid.core.TeiidProcessingException;
+import org.teiid.core.TeiidRuntimeException;
+import org.teiid.logging.LogConstants;
+import org.teiid.logging.LogManager;
 import org.teiid.query.processor.ProcessorDataManager;
+import org.teiid.query.sql.visitor.ValueIteratorProviderCollectorVisitor;
 import org.teiid.query.util.CommandContext;
 
 
 public class UnionAllNode extends RelationalNode {
 
+    /**
+     * A child that is driven by its own thread when the union runs as an exchange
+     */
+    private static class ExchangeSource {
+        final RelationalNode child;
+        private final ArrayDeque<TupleBatch> batches = new ArrayDeque<TupleBatch>();
+        Future<Void> future;
+        volatile boolean done;
+
+        ExchangeSource(RelationalNode child) {
+            this.child = child;
+        }
+
+        synchronized boolean add(TupleBatch batch) {
+            batches.add(batch);
+            if (batch.getTerminationFlag()) {
+                done = true;
+            }
+            return batches.size() == 1;
+        }
+
+        synchronized TupleBatch poll() {
+            return batches.poll();
+        }
+
+        synchronized int size() {
+            return batches.size();
+        }
+
+        boolean isFinished() {
+            return done && size() == 0;
+        }
+    }
+
     private static final int SMALL_LIMIT = 10;
+    /**
+     * The number of batches an exchange source may queue before its thread stops
+     */
+    private static final int EXCHANGE_BATCHES = 2;
     private boolean[] sourceDone;
     private boolean[] sourceOpen;
 
@@ -41,6 +87,10 @@ public class UnionAllNode extends RelationalNode {
     private int reserved;
     private int schemaSize;
 
+    private ExchangeSource[] exchangeSources;
+    private int nextSource;
+    private volatile boolean closing;
+
     public UnionAllNode(int nodeID) {
         super(nodeID);
     }
@@ -51,6 +101,9 @@ public class UnionAllNode extends RelationalNode {
         sourceDone = null;
         sourceOpen = null;
         outputRow = 1;
+        exchangeSources = null;
+        nextSource = 0;
+        closing = false;
     }
 
     @Override
@@ -128,6 +181,61 @@ public class UnionAllNode extends RelationalNode {
 
         // Open the children
         super.open();
+
+        if (useExchange()) {
+            //each source may hold an additional queued batch
+            reserved += getBufferManager().reserveBuffers((getChildCount()) * schemaSize, BufferReserveMode.FORCE);
+            exchangeSources = new ExchangeSource[getChildCount()];
+            RelationalNode[] children = getChildren();
+            for (int i = 0; i < exchangeSources.length; i++) {
+                exchangeSources[i] = new ExchangeSource(children[i]);
+            }
+        }
+    }
+
+    /**
+     * Determine if the children should be processed concurrently.  This is only worthwhile
+     * if there is work above the access nodes, and is only safe for subtrees that do not
+     * share state with the rest of the plan.
+     */
+    private boolean useExchange() {
+        if (getContext().getOptions().getExchangeParallelism() < 2 || getChildCount() < 2) {
+            return false;
+        }
+        boolean work = false;
+        for (RelationalNode child : getChildren()) {
+            if (child == null) {
+                break;
+            }
+            if (!isExchangeable(child)) {
+                return false;
+            }
+            work |= child.getClass() != AccessNode.class;
+        }
+        return work;
+    }
+
+    static boolean isExchangeable(RelationalNode node) {
+        if (node.getClass() == AccessNode.class) {
+            AccessNode accessNode = (AccessNode)node;
+            return accessNode.getObjects().isEmpty() && accessNode.getSubPlans() == null;
+        }
+        if (node instanceof ProjectNode || node instanceof SelectNode || node instanceof GroupingNode) {
+            if (!ValueIteratorProviderCollectorVisitor.getValueIteratorProviders(((SubqueryAwareRelationalNode)node).getObjects()).isEmpty()) {
+                return false;
+            }
+        } else if (node.getClass() != LimitNode.class && node.getClass() != SortNode.class) {
+            return false;
+        }
+        for (RelationalNode child : node.getChildren()) {
+            if (child == null) {
+                break;
+            }
+            if (!isExchangeable(child)) {
+                return false;
+            }
+        }
+        return true;
     }
 
     public TupleBatch nextBatchDirect()
@@ -144,6 +252,10 @@ public class UnionAllNode extends RelationalNode {
     public TupleBatch nextBatchDirectInternal()
         throws BlockedException, TeiidComponentException, TeiidProcessingException {
 
+        if (exchangeSources != null) {
+            return nextExchangeBatch();
+        }
+
         // Walk through all children and for each one that isn't done, try to retrieve a batch
         // When all sources are done, set the termination flag on that batch
 
@@ -236,8 +348,157 @@ public class UnionAllNode extends RelationalNode {
         return outputBatch;
     }
 
+    /**
+     * Collect a batch from the sources being processed on other threads.
+     * Sources are scheduled on the engine pool up to the request limit, and
+     * the processing thread will work on a source itself only if no other
+     * thread is working for this node.
+     */
+    private TupleBatch nextExchangeBatch()
+            throws BlockedException, TeiidComponentException, TeiidProcessingException {
+        CommandContext context = getContext();
+        int limit = context.getOptions().getExchangeParallelism();
+        TupleBatch batch = null;
+        boolean running = false;
+        for (int i = 0; i < exchangeSources.length; i++) {
+            int index = (nextSource + i) % exchangeSources.length;
+            ExchangeSource source = exchangeSources[index];
+            if (source.future != null && source.future.isDone()) {
+                harvest(source);
+            }
+            if (batch == null) {
+                batch = source.poll();
+                if (batch != null) {
+                    //start with the next source on the next call to be fair
+                    nextSource = index + 1;
+                }
+            }
+            if (source.future == null && !source.done && source.size() < EXCHANGE_BATCHES
+                    && context.acquireExchangeThread(limit)) {
+                source.future = context.submit(new ExchangeTask(source));
+            }
+            running |= source.future != null;
+        }
+        if (batch == null && !running) {
+            for (ExchangeSource source : exchangeSources) {
+                if (!source.done) {
+                    try {
+                        source.add(source.child.nextBatch());
+                    } catch (BlockedException e) {
+                        continue;
+                    }
+                    batch = source.poll();
+                    break;
+                }
+            }
+        }
+        if (batch == null && running && context.getWorkItem() == null) {
+            //there is nothing to notify us of more work, so wait for a source thread
+            for (ExchangeSource source : exchangeSources) {
+                if (source.future != null) {
+                    harvest(source);
+                    batch = source.poll();
+                    break;
+                }
+            }
+        }
+        boolean finished = isExchangeFinished();
+        if (batch == null) {
+            if (!finished) {
+                throw BlockedException.block(getContext().getRequestId(), "Blocking on union exchange source.", getID()); //$NON-NLS-1$
+            }
+            batch = new TupleBatch(outputRow, Collections.EMPTY_LIST);
+        }
+        TupleBatch outputBatch = new TupleBatch(outputRow, batch.getTuples());
+        outputBatch.setTerminationFlag(finished);
+        outputRow += outputBatch.getRowCount();
+        return outputBatch;
+    }
+
+    private boolean isExchangeFinished() {
+        for (ExchangeSource source : exchangeSources) {
+            if (!source.isFinished()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void harvest(ExchangeSource source) throws TeiidComponentException, TeiidProcessingException {
+        try {
+            source.future.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof TeiidComponentException) {
+                throw (TeiidComponentException)e.getCause();
+            }
+            if (e.getCause() instanceof TeiidProcessingException) {
+                throw (TeiidProcessingException)e.getCause();
+            }
+            if (e.getCause() instanceof TeiidRuntimeException) {
+                throw (TeiidRuntimeException)e.getCause();
+            }
+            throw new TeiidRuntimeException(e);
+        } catch (InterruptedException e) {
+            Thread.interrupted();
+            throw new TeiidRuntimeException(e);
+        } finally {
+            source.future = null;
+            getContext().releaseExchangeThread();
+        }
+    }
+
+    /**
+     * Pulls batches from a single source until it blocks, completes, or has filled its queue
+     */
+    private class ExchangeTask implements Callable<Void> {
+        private final ExchangeSource source;
+
+        ExchangeTask(ExchangeSource source) {
+            this.source = source;
+        }
+
+        @Override
+        public Void call() throws Exception {
+            CommandContext context = getContext();
+            CommandContext.pushThreadLocalContext(context);
+            try {
+                while (!closing) {
+                    TupleBatch batch = null;
+                    try {
+                        batch = source.child.nextBatch();
+                    } catch (BlockedException e) {
+                        break;
+                    }
+                    boolean available = source.add(batch);
+                    if (batch.getTerminationFlag() || source.size() >= EXCHANGE_BATCHES) {
+                        break;
+                    }
+                    if (available && context.getWorkItem() != null) {
+                        context.getWorkItem().moreWork();
+                    }
+                }
+            } finally {
+                CommandContext.popThreadLocalContext();
+            }
+            return null;
+        }
+    }
+
     @Override
     public void closeDirect() {
+        if (exchangeSources != null) {
+            closing = true;
+            for (ExchangeSource source : exchangeSources) {
+                if (source.future != null) {
+                    try {
+                        harvest(source);
+                    } catch (TeiidComponentException | TeiidProcessingException | TeiidRuntimeException e) {
+                        LogManager.logDetail(LogConstants.CTX_DQP, e, "Exception from union exchange source during close"); //$NON-NLS-1$
+                    }
+                }
+            }
+            exchangeSources = null;
+        }
         if (reserved > 0) {
             getBufferManager().releaseBuffers(reserved);
             reserved = 0;
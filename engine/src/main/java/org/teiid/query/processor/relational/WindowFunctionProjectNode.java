@@ -23,9 +23,11 @@ import static org.teiid.query.analysis.AnalysisRecord.*;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.HashSet;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import org.teiid.api.exception.query.ExpressionEvaluationException;
 import org.teiid.api.exception.query.FunctionExecutionException;
@@ -77,7 +79,8 @@ public class WindowFunctionProjectNode extends SubqueryAwareRelationalNode {
     private enum Phase {
         COLLECT,
         PROCESS,
-        OUTPUT
+        OUTPUT,
+        STREAM
     }
 
     private static class WindowFunctionInfo {
@@ -158,6 +161,26 @@ public class WindowFunctionProjectNode extends SubqueryAwareRelationalNode {
     private STree[] valueMapping;
     private IndexedTupleSource outputTs;
 
+    //streaming state, used when the input is already sorted for the only window specification
+    private WindowSpecificationInfo streamInfo;
+    private int[] partitionIndexes;
+    private int[] orderIndexes;
+    private boolean peers;
+    private boolean incremental;
+    private Integer frameStartOffset;
+    private Integer frameEndOffset;
+    private List<AggregateFunction> streamAggs;
+    private ArrayList<List<?>> frameRows = new ArrayList<List<?>>();
+    private long frameRowsStart;
+    private long partitionRowCount;
+    private long nextOutput;
+    private long peerEnd;
+    private Object[] peerValues;
+    private long accumulatedStart;
+    private long accumulatedEnd;
+    private List<?> pending;
+    private boolean partitionDone;
+
     public WindowFunctionProjectNode(int nodeId) {
         super(nodeId);
     }
@@ -174,10 +197,25 @@ public class WindowFunctionProjectNode extends SubqueryAwareRelationalNode {
         this.partitionMapping = null;
         this.valueMapping = null;
         this.outputTs = null;
+        this.streamAggs = null;
+        this.frameRows.clear();
+        this.frameRowsStart = 0;
+        this.partitionRowCount = 0;
+        this.nextOutput = 0;
+        this.peerEnd = 0;
+        this.peerValues = null;
+        this.accumulatedStart = 0;
+        this.accumulatedEnd = 0;
+        this.pending = null;
+        this.partitionDone = false;
     }
 
     @Override
     public void closeDirect() {
+        if (inputTs != null) {
+            inputTs.closeSource();
+            inputTs = null;
+        }
         if (tb != null) {
             tb.remove();
             tb = null;
@@ -315,6 +353,14 @@ public class WindowFunctionProjectNode extends SubqueryAwareRelationalNode {
     protected TupleBatch nextBatchDirect() throws BlockedException,
             TeiidComponentException, TeiidProcessingException {
 
+        if (phase == Phase.COLLECT && streamInfo != null) {
+            phase = Phase.STREAM;
+        }
+
+        if (phase == Phase.STREAM) {
+            return streamResults();
+        }
+
         if (phase == Phase.COLLECT) {
             saveInput();
             phase = Phase.PROCESS;
@@ -706,20 +752,7 @@ public class WindowFunctionProjectNode extends SubqueryAwareRelationalNode {
             throws TeiidComponentException, TeiidProcessingException {
         if (inputTs == null) {
             List<Expression> collectedExpressions = new ArrayList<Expression>(expressionIndexes.keySet());
-            Evaluator eval = new Evaluator(elementMap, getDataManager(), getContext());
-            final RelationalNode sourceNode = this.getChildren()[0];
-            inputTs = new ProjectingTupleSource(sourceNode, eval, collectedExpressions, elementMap) {
-                int index = 0;
-                @Override
-                public List<Object> nextTuple() throws TeiidComponentException,
-                        TeiidProcessingException {
-                    List<Object> tuple = super.nextTuple();
-                    if (tuple != null) {
-                        tuple.add(index++);
-                    }
-                    return tuple;
-                }
-            };
+            inputTs = createInputSource(collectedExpressions);
             List<ElementSymbol> schema = new ArrayList<ElementSymbol>(collectedExpressions.size() + 1);
             int index = 0;
             for (Expression ex : collectedExpressions) {
@@ -751,6 +784,319 @@ public class WindowFunctionProjectNode extends SubqueryAwareRelationalNode {
             List<? extends Expression> sourceElements = this.getChildren()[0].getElements();
             this.elementMap = createLookupMap(sourceElements);
         }
+        this.streamInfo = getStreamingWindow();
+        if (this.streamInfo != null) {
+            this.partitionIndexes = toArray(this.streamInfo.groupIndexes);
+            this.orderIndexes = toArray(this.streamInfo.sortIndexes);
+        }
+    }
+
+    private static int[] toArray(List<Integer> indexes) {
+        if (indexes.isEmpty()) {
+            return null;
+        }
+        int[] result = new int[indexes.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = indexes.get(i);
+        }
+        return result;
+    }
+
+    /**
+     * Determine if the single window specification can be computed in a streaming manner.
+     * The input must already be sorted by the partition and order by items of the specification,
+     * which is detected by a sort beneath order preserving select and limit nodes.
+     */
+    private WindowSpecificationInfo getStreamingWindow() {
+        if (windows.size() != 1) {
+            return null;
+        }
+        WindowSpecificationInfo info = windows.values().iterator().next();
+        if (info.sortIndexes.isEmpty() || info.emptyOrdering || info.functions.isEmpty()) {
+            return null;
+        }
+        for (WindowFunctionInfo wfi : info.functions) {
+            if (wfi.primaryFunction != null) {
+                return null;
+            }
+            switch (wfi.function.getFunction().getAggregateFunction()) {
+            case LEAD:
+            case LAG:
+            case NTILE:
+            case PERCENT_RANK:
+            case CUME_DIST:
+            case NTH_VALUE:
+            case XMLAGG:
+            case STRING_AGG:
+            case JSONARRAY_AGG:
+            case TEXTAGG:
+                return null;
+            default:
+                break;
+            }
+        }
+        WindowFrame frame = info.windowFrame;
+        if (frame != null) {
+            if (frame.getMode() == FrameMode.ROWS) {
+                if (info.isUnboundedFollowing()) {
+                    return null;
+                }
+            } else if (frame.getStart().getBoundMode() != BoundMode.PRECEDING || frame.getStart().getBound() != null
+                    || (frame.getEnd() != null && frame.getEnd().getBoundMode() != BoundMode.CURRENT_ROW)) {
+                return null;
+            }
+        }
+        //limit nodes pass the child tuples through, select nodes may project
+        RelationalNode node = this.getChildren()[0];
+        while (!(node instanceof SortNode)) {
+            if (!(node instanceof SelectNode || node instanceof LimitNode) || node.getChildren()[0] == null) {
+                return null;
+            }
+            RelationalNode child = node.getChildren()[0];
+            if (node instanceof LimitNode ? node.getElements().size() != child.getElements().size() : !node.getElements().equals(child.getElements())) {
+                return null;
+            }
+            node = child;
+        }
+        SortNode sortNode = (SortNode)node;
+        List<OrderByItem> items = sortNode.getSortElements();
+        if (sortNode.getMode() == Mode.DUP_REMOVE || items == null
+                || items.size() < info.groupIndexes.size() + info.sortIndexes.size()) {
+            return null;
+        }
+        List<Expression> expressions = new ArrayList<Expression>(expressionIndexes.keySet());
+        Set<Integer> partitionPositions = new HashSet<Integer>();
+        Set<Integer> sortPartitionPositions = new HashSet<Integer>();
+        for (int i = 0; i < info.groupIndexes.size(); i++) {
+            Integer position = elementMap.get(expressions.get(info.groupIndexes.get(i)));
+            if (position == null) {
+                return null;
+            }
+            partitionPositions.add(position);
+            sortPartitionPositions.add(sortNode.getElements().indexOf(items.get(i).getSymbol()));
+        }
+        if (!partitionPositions.equals(sortPartitionPositions)) {
+            return null;
+        }
+        for (int i = 0; i < info.sortIndexes.size(); i++) {
+            int orderIndex = info.groupIndexes.size() + i;
+            Integer position = elementMap.get(expressions.get(info.sortIndexes.get(i)));
+            OrderByItem item = items.get(orderIndex);
+            if (position == null || position != sortNode.getElements().indexOf(item.getSymbol())
+                    || item.isAscending() != info.orderType.get(orderIndex)
+                    || item.getNullOrdering() != info.nullOrderings.get(orderIndex)) {
+                return null;
+            }
+        }
+        return info;
+    }
+
+    private TupleSource createInputSource(List<Expression> collectedExpressions) {
+        Evaluator eval = new Evaluator(elementMap, getDataManager(), getContext());
+        final RelationalNode sourceNode = this.getChildren()[0];
+        return new ProjectingTupleSource(sourceNode, eval, collectedExpressions, elementMap) {
+            int index = 0;
+            @Override
+            public List<Object> nextTuple() throws TeiidComponentException,
+                    TeiidProcessingException {
+                List<Object> tuple = super.nextTuple();
+                if (tuple != null) {
+                    tuple.add(index++);
+                }
+                return tuple;
+            }
+        };
+    }
+
+    /**
+     * Compute the results in a single pass over input that is already sorted by the partitioning and ordering
+     * of the window specification.  Rows are output in input order as soon as their frame has been seen, so only
+     * the rows of the current frame (or peer group for range frames) are held in memory.
+     * <br>
+     * Rows frames with a bounded start slide the frame with {@link AggregateFunction#removeInput(List, CommandContext)}
+     * when all of the functions support it, otherwise the aggregates are recomputed over the held frame rows.
+     */
+    private TupleBatch streamResults() throws TeiidComponentException, TeiidProcessingException {
+        if (streamAggs == null) {
+            inputTs = createInputSource(new ArrayList<Expression>(expressionIndexes.keySet()));
+            streamAggs = new ArrayList<AggregateFunction>(streamInfo.functions.size());
+            boolean removable = true;
+            for (WindowFunctionInfo wfi : streamInfo.functions) {
+                AggregateFunction aggregateFunction = GroupingNode.initAccumulator(wfi.function.getFunction(), this, expressionIndexes);
+                streamAggs.add(aggregateFunction);
+                removable &= aggregateFunction.canRemoveInput();
+            }
+            peers = streamInfo.windowFrame == null || streamInfo.windowFrame.getMode() == FrameMode.RANGE;
+            if (!peers) {
+                frameStartOffset = streamInfo.getWindowStartOffset();
+                frameEndOffset = streamInfo.getWindowEndOffset();
+                incremental = removable || frameStartOffset == null;
+            }
+        }
+        while (true) {
+            if (nextOutput < (partitionDone?partitionRowCount:(peers?peerEnd:partitionRowCount - Math.max(frameEndOffset, 0)))) {
+                List<?> tuple = getFrameRow(nextOutput);
+                Object[] values = peers?peerValues:computeFrameValues();
+                nextOutput++;
+                evictFrameRows();
+                addBatchRow(createOutputRow(tuple, values));
+                if (isBatchFull()) {
+                    return pullBatch();
+                }
+                continue;
+            }
+            if (partitionDone) {
+                if (pending == null) {
+                    break;
+                }
+                for (AggregateFunction function : streamAggs) {
+                    function.reset();
+                }
+                frameRows.clear();
+                frameRowsStart = 0;
+                partitionRowCount = 0;
+                nextOutput = 0;
+                peerEnd = 0;
+                accumulatedStart = 0;
+                accumulatedEnd = 0;
+                partitionDone = false;
+            }
+            List<?> tuple = pending;
+            pending = null;
+            if (tuple == null && inputTs != null) {
+                tuple = inputTs.nextTuple();
+                if (tuple == null) {
+                    inputTs.closeSource();
+                    inputTs = null;
+                }
+            }
+            if (tuple == null) {
+                endPartition();
+                continue;
+            }
+            if (partitionRowCount > 0) {
+                List<?> lastRow = getFrameRow(partitionRowCount - 1);
+                if (GroupingNode.sameGroup(partitionIndexes, tuple, lastRow) != -1) {
+                    pending = tuple;
+                    endPartition();
+                    continue;
+                }
+                if (peers && peerEnd < partitionRowCount && GroupingNode.sameGroup(orderIndexes, tuple, lastRow) != -1) {
+                    //output the previous peers before accumulating the new row
+                    pending = tuple;
+                    endPeers();
+                    continue;
+                }
+            }
+            frameRows.add(tuple);
+            partitionRowCount++;
+            if (peers) {
+                for (AggregateFunction function : streamAggs) {
+                    function.addInput(tuple, getContext());
+                }
+            }
+        }
+        terminateBatches();
+        return pullBatch();
+    }
+
+    private void endPartition() throws TeiidComponentException, TeiidProcessingException {
+        if (peers && peerEnd < partitionRowCount) {
+            endPeers();
+        }
+        partitionDone = true;
+    }
+
+    private void endPeers() throws TeiidComponentException, TeiidProcessingException {
+        peerValues = new Object[streamAggs.size()];
+        for (int i = 0; i < peerValues.length; i++) {
+            peerValues[i] = streamAggs.get(i).getResult(getContext());
+        }
+        peerEnd = partitionRowCount;
+    }
+
+    /**
+     * Move the accumulated range to the frame of the next output row
+     */
+    private Object[] computeFrameValues() throws TeiidComponentException, TeiidProcessingException {
+        long frameStart = getFrameStart(nextOutput);
+        long frameEnd = Math.min(nextOutput + frameEndOffset + 1, partitionRowCount);
+        if (incremental) {
+            for (; accumulatedStart < Math.min(frameStart, accumulatedEnd); accumulatedStart++) {
+                List<?> tuple = getFrameRow(accumulatedStart);
+                for (AggregateFunction function : streamAggs) {
+                    function.removeInput(tuple, getContext());
+                }
+            }
+            accumulatedStart = Math.max(accumulatedStart, frameStart);
+            accumulatedEnd = Math.max(accumulatedEnd, accumulatedStart);
+        } else {
+            for (AggregateFunction function : streamAggs) {
+                function.reset();
+            }
+            accumulatedStart = frameStart;
+            accumulatedEnd = frameStart;
+        }
+        for (; accumulatedEnd < frameEnd; accumulatedEnd++) {
+            List<?> tuple = getFrameRow(accumulatedEnd);
+            for (AggregateFunction function : streamAggs) {
+                function.addInput(tuple, getContext());
+            }
+        }
+        Object[] values = new Object[streamAggs.size()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = streamAggs.get(i).getResult(getContext());
+        }
+        return values;
+    }
+
+    private long getFrameStart(long row) {
+        if (frameStartOffset == null) {
+            return 0;
+        }
+        return Math.max(row + frameStartOffset, 0);
+    }
+
+    private List<?> getFrameRow(long row) {
+        return frameRows.get((int)(row - frameRowsStart));
+    }
+
+    /**
+     * Remove the held rows that are no longer needed for output or to slide the frame
+     */
+    private void evictFrameRows() {
+        long keep = nextOutput;
+        if (!peers) {
+            if (!incremental) {
+                keep = Math.min(keep, getFrameStart(nextOutput));
+            } else if (frameStartOffset == null) {
+                keep = Math.min(keep, accumulatedEnd);
+            } else {
+                keep = Math.min(keep, accumulatedStart);
+            }
+        }
+        //the last row is needed to detect the next partition or peer group
+        keep = Math.min(keep, partitionRowCount - 1);
+        int remove = (int)(keep - frameRowsStart);
+        if (remove > 0 && remove * 2 >= frameRows.size()) {
+            frameRows.subList(0, remove).clear();
+            frameRowsStart = keep;
+        }
+    }
+
+    private List<Object> createOutputRow(List<?> tuple, Object[] values) {
+        int size = getElements().size();
+        ArrayList<Object> outputRow = new ArrayList<Object>(size);
+        for (int i = 0; i < size; i++) {
+            outputRow.add(null);
+        }
+        for (int[] entry : passThrough) {
+            outputRow.set(entry[0], tuple.get(entry[1]));
+        }
+        for (int i = 0; i < values.length; i++) {
+            outputRow.set(streamInfo.functions.get(i).outputIndex, values[i]);
+        }
+        return outputRow;
     }
 
     @Override
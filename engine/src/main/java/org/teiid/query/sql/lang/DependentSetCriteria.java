@@ -25,6 +25,7 @@ import java.util.List;
 import org.teiid.core.util.EquivalenceUtil;
 import org.teiid.core.util.HashCodeUtil;
 import org.teiid.query.optimizer.relational.rules.NewCalculateCostUtil;
+import org.teiid.query.processor.relational.BloomFilter;
 import org.teiid.query.processor.relational.DependentValueSource;
 import org.teiid.query.sql.LanguageVisitor;
 import org.teiid.query.sql.lang.Option.MakeDep;
@@ -67,6 +68,10 @@ public class DependentSetCriteria extends AbstractSetCriteria implements Context
      * set only for dependent pushdown
      */
     private DependentValueSource dependentValueSource;
+    /**
+     * set only for Bloom filter pushdown
+     */
+    private BloomFilter bloomFilter;
     private MakeDep makeDepOptions;
 
     /**
@@ -234,6 +239,14 @@ public class DependentSetCriteria extends AbstractSetCriteria implements Context
         this.dependentValueSource = dependentValueSource;
     }
 
+    public BloomFilter getBloomFilter() {
+        return bloomFilter;
+    }
+
+    public void setBloomFilter(BloomFilter bloomFilter) {
+        this.bloomFilter = bloomFilter;
+    }
+
     public void setMakeDepOptions(MakeDep makeDep) {
         this.makeDepOptions = makeDep;
         //hint overrides computed value
@@ -393,10 +393,10 @@ public class TempTable implements Cloneable, SearchableTable {
             rid.setType(DataTypeManager.DefaultDataClasses.LONG);
             columns.add(0, rid);
             rowId = new AtomicLong();
-            tree = bm.createSTree(columns, sessionID, 1);
+            tree = createTree(bm, columns, sessionID, 1);
         } else {
             this.uniqueColIndex = primaryKeyLength;
-            tree = bm.createSTree(columns, sessionID, primaryKeyLength);
+            tree = createTree(bm, columns, sessionID, primaryKeyLength);
         }
         this.tree.setMinStorageSize(0);
         this.columnMap = RelationalNode.createLookupMap(columns);
@@ -430,6 +430,13 @@ public class TempTable implements Cloneable, SearchableTable {
         tid.setCardinality(0);
     }
 
+    private static STree createTree(BufferManager bm, List<ElementSymbol> columns, String sessionID, int keyLength) {
+        if (bm.getOptions().isBPlusTreeIndexes()) {
+            return bm.createBPlusTree(columns, sessionID, keyLength);
+        }
+        return bm.createSTree(columns, sessionID, keyLength);
+    }
+
     private void validateNotNull(List tuple)
             throws TeiidProcessingException {
         for (int i = 0; i < notNull.length; i++) {
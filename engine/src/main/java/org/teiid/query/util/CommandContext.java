@@ -192,6 +192,7 @@ public class CommandContext implements Cloneable, org.teiid.CommandContext {
         private List<ElementSymbol> returnAutoGeneratedKeys;
         private GeneratedKeysImpl generatedKeys;
         private long reservedBuffers;
+        private int exchangeThreads;
 
         private AuthorizationValidator authorizationValidator;
 
@@ -1041,6 +1042,27 @@ public class CommandContext implements Cloneable, org.teiid.CommandContext {
         }
     }
 
+    /**
+     * Claim one of the threads available to this request for parallel plan execution.
+     * @param limit the maximum number of concurrent threads for the request
+     * @return true if a thread was claimed and must later be released
+     */
+    public boolean acquireExchangeThread(int limit) {
+        synchronized (this.globalState) {
+            if (globalState.exchangeThreads >= limit) {
+                return false;
+            }
+            globalState.exchangeThreads++;
+            return true;
+        }
+    }
+
+    public void releaseExchangeThread() {
+        synchronized (this.globalState) {
+            globalState.exchangeThreads--;
+        }
+    }
+
     @Override
     public Object setSessionVariable(String key, Object value) {
         if (this.vdbState.session == null) {
@@ -39,6 +39,18 @@ public class Options {
     public static final String MAX_SESSION_BUFFER_SIZE_ESTIMATE = "org.teiid.maxSessionBufferSizeEstimate"; //$NON-NLS-1$
     public static final String TRACING_WITH_ACTIVE_SPAN_ONLY = "org.teiid.tracingWithActiveSpanOnly"; //$NON-NLS-1$
     public static final String ENFORCE_SINGLE_MAX_BUFFER_SIZE_ESTIMATE = "org.teiid.enforceSingleMaxBufferSizeEstimate"; //$NON-NLS-1$
+    public static final String COLUMNAR_BATCHES = "org.teiid.columnarBatches"; //$NON-NLS-1$
+    public static final String BPLUS_TREE_INDEXES = "org.teiid.bPlusTreeIndexes"; //$NON-NLS-1$
+    public static final String NORMALIZED_SORT_KEYS = "org.teiid.normalizedSortKeys"; //$NON-NLS-1$
+    public static final String SORT_PARALLELISM = "org.teiid.sortParallelism"; //$NON-NLS-1$
+    public static final String HASH_AGGREGATION = "org.teiid.hashAggregation"; //$NON-NLS-1$
+    public static final String HASH_JOIN = "org.teiid.hashJoin"; //$NON-NLS-1$
+    public static final String EXCHANGE_PARALLELISM = "org.teiid.exchangeParallelism"; //$NON-NLS-1$
+    public static final String BATCH_EVALUATION = "org.teiid.batchEvaluation"; //$NON-NLS-1$
+    public static final String COMPILE_EXPRESSIONS = "org.teiid.compileExpressions"; //$NON-NLS-1$
+    public static final String TOP_N_MAX_ROWS = "org.teiid.topNMaxRows"; //$NON-NLS-1$
+    public static final String DEPENDENT_JOIN_BLOOM_FILTER = "org.teiid.dependentJoinBloomFilter"; //$NON-NLS-1$
+    public static final String SHARED_SCANS = "org.teiid.sharedScans"; //$NON-NLS-1$
 
     private Properties properties;
     private boolean subqueryUnnestDefault = false;
@@ -54,6 +66,18 @@ public class Options {
     private boolean tracingWithActiveSpanOnly = true;
     private boolean enforceSingleMaxBufferSizeEstimate = false;
     private boolean relativeXPath = true;
+    private boolean columnarBatches;
+    private boolean bPlusTreeIndexes;
+    private boolean normalizedSortKeys = true;
+    private int sortParallelism = 1;
+    private boolean hashAggregation;
+    private boolean hashJoin;
+    private int exchangeParallelism = 1;
+    private boolean batchEvaluation;
+    private boolean compileExpressions;
+    private int topNMaxRows = 10000;
+    private boolean dependentJoinBloomFilter;
+    private boolean sharedScans;
 
     public Properties getProperties() {
         return properties;
@@ -238,4 +262,160 @@ public class Options {
         return this;
     }
 
+    public boolean isColumnarBatches() {
+        return columnarBatches;
+    }
+
+    public void setColumnarBatches(boolean columnarBatches) {
+        this.columnarBatches = columnarBatches;
+    }
+
+    public Options columnarBatches(boolean b) {
+        this.columnarBatches = b;
+        return this;
+    }
+
+    public boolean isBPlusTreeIndexes() {
+        return bPlusTreeIndexes;
+    }
+
+    public void setBPlusTreeIndexes(boolean bPlusTreeIndexes) {
+        this.bPlusTreeIndexes = bPlusTreeIndexes;
+    }
+
+    public Options bPlusTreeIndexes(boolean b) {
+        this.bPlusTreeIndexes = b;
+        return this;
+    }
+
+    public boolean isNormalizedSortKeys() {
+        return normalizedSortKeys;
+    }
+
+    public void setNormalizedSortKeys(boolean normalizedSortKeys) {
+        this.normalizedSortKeys = normalizedSortKeys;
+    }
+
+    public Options normalizedSortKeys(boolean b) {
+        this.normalizedSortKeys = b;
+        return this;
+    }
+
+    public int getSortParallelism() {
+        return sortParallelism;
+    }
+
+    public void setSortParallelism(int sortParallelism) {
+        this.sortParallelism = sortParallelism;
+    }
+
+    public Options sortParallelism(int i) {
+        this.sortParallelism = i;
+        return this;
+    }
+
+    public boolean isHashAggregation() {
+        return hashAggregation;
+    }
+
+    public void setHashAggregation(boolean hashAggregation) {
+        this.hashAggregation = hashAggregation;
+    }
+
+    public Options hashAggregation(boolean b) {
+        this.hashAggregation = b;
+        return this;
+    }
+
+    public boolean isHashJoin() {
+        return hashJoin;
+    }
+
+    public void setHashJoin(boolean hashJoin) {
+        this.hashJoin = hashJoin;
+    }
+
+    public Options hashJoin(boolean b) {
+        this.hashJoin = b;
+        return this;
+    }
+
+    public int getExchangeParallelism() {
+        return exchangeParallelism;
+    }
+
+    public void setExchangeParallelism(int exchangeParallelism) {
+        this.exchangeParallelism = exchangeParallelism;
+    }
+
+    public Options exchangeParallelism(int i) {
+        this.exchangeParallelism = i;
+        return this;
+    }
+
+    public boolean isBatchEvaluation() {
+        return batchEvaluation;
+    }
+
+    public void setBatchEvaluation(boolean batchEvaluation) {
+        this.batchEvaluation = batchEvaluation;
+    }
+
+    public Options batchEvaluation(boolean b) {
+        this.batchEvaluation = b;
+        return this;
+    }
+
+    public boolean isCompileExpressions() {
+        return compileExpressions;
+    }
+
+    public void setCompileExpressions(boolean compileExpressions) {
+        this.compileExpressions = compileExpressions;
+    }
+
+    public Options compileExpressions(boolean b) {
+        this.compileExpressions = b;
+        return this;
+    }
+
+    public int getTopNMaxRows() {
+        return topNMaxRows;
+    }
+
+    public void setTopNMaxRows(int topNMaxRows) {
+        this.topNMaxRows = topNMaxRows;
+    }
+
+    public Options topNMaxRows(int i) {
+        this.topNMaxRows = i;
+        return this;
+    }
+
+    public boolean isDependentJoinBloomFilter() {
+        return dependentJoinBloomFilter;
+    }
+
+    public void setDependentJoinBloomFilter(boolean dependentJoinBloomFilter) {
+        this.dependentJoinBloomFilter = dependentJoinBloomFilter;
+    }
+
+    public Options dependentJoinBloomFilter(boolean b) {
+        this.dependentJoinBloomFilter = b;
+        return this;
+    }
+
+    public boolean isSharedScans() {
+        return sharedScans;
+    }
+
+    public void setSharedScans(boolean sharedScans) {
+        this.sharedScans = sharedScans;
+    }
+
+    public Options sharedScans(boolean b) {
+        this.sharedScans = b;
+        return this;
+    }
+
 }
@@ -0,0 +1,110 @@
+/*
+ * Copyright Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags and
+ * the COPYRIGHT.txt file distributed with this work.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.teiid.common.buffer;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+import org.teiid.common.buffer.BufferManager.TupleSourceType;
+import org.teiid.common.buffer.impl.BufferManagerImpl;
+import org.teiid.common.buffer.impl.SizeUtility;
+import org.teiid.core.types.DataTypeManager;
+import org.teiid.query.sql.symbol.ElementSymbol;
+import org.teiid.query.util.Options;
+
+@SuppressWarnings("nls")
+public class TestColumnarBatch {
+
+    private static final Class<?>[] TYPES = new Class<?>[] {DataTypeManager.DefaultDataClasses.INTEGER,
+        DataTypeManager.DefaultDataClasses.STRING, DataTypeManager.DefaultDataClasses.TIMESTAMP,
+        DataTypeManager.DefaultDataClasses.BOOLEAN, DataTypeManager.DefaultDataClasses.BIG_DECIMAL};
+
+    private List<List<?>> getRows(int count) {
+        List<List<?>> rows = new ArrayList<List<?>>();
+        for (int i = 0; i < count; i++) {
+            Timestamp ts = new Timestamp(i * 1000L);
+            ts.setNanos(i);
+            rows.add(Arrays.asList(i%7==0?null:i, "v" + (i%3), i%5==0?null:ts, i%2==0, BigDecimal.valueOf(i)));
+        }
+        return rows;
+    }
+
+    @Test public void testCreate() {
+        List<List<?>> rows = getRows(100);
+        ColumnarBatch batch = ColumnarBatch.create(TYPES, rows);
+        assertEquals(rows, batch);
+        assertTrue(batch.isNull(0, 0));
+        assertEquals(3, batch.getInt(3, 0));
+        assertTrue(batch.getSizeEstimate(false) < new SizeUtility(TYPES).getBatchSize(false, rows));
+    }
+
+    @Test public void testNotSpecialized() {
+        assertNull(ColumnarBatch.create(new Class<?>[] {DataTypeManager.DefaultDataClasses.OBJECT}, Arrays.asList(Arrays.asList(1))));
+    }
+
+    @Test public void testSerialization() throws Exception {
+        List<List<?>> rows = getRows(1000);
+        ColumnarBatch batch = ColumnarBatch.create(TYPES, rows);
+        String[] types = new String[TYPES.length];
+        for (int i = 0; i < types.length; i++) {
+            types[i] = DataTypeManager.getDataTypeName(TYPES[i]);
+        }
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        ObjectOutputStream oos = new ObjectOutputStream(baos);
+        batch.writeBatch(oos, types);
+        oos.close();
+        ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(baos.toByteArray()));
+        assertEquals(rows, ColumnarBatch.readBatch(ois, types));
+    }
+
+    @Test public void testTupleBuffer() throws Exception {
+        BufferManagerImpl bm = BufferManagerFactory.createBufferManager();
+        bm.setOptions(new Options().columnarBatches(true));
+        ElementSymbol x = new ElementSymbol("x");
+        x.setType(DataTypeManager.DefaultDataClasses.INTEGER);
+        ElementSymbol y = new ElementSymbol("y");
+        y.setType(DataTypeManager.DefaultDataClasses.STRING);
+        TupleBuffer tb = bm.createTupleBuffer(Arrays.asList(x, y), "x", TupleSourceType.PROCESSOR);
+        tb.setBatchSize(10);
+        for (int i = 0; i < 25; i++) {
+            tb.addTuple(Arrays.asList(i, String.valueOf(i%2)));
+        }
+        tb.close();
+        TupleBatch batch = tb.getBatch(11);
+        assertTrue(batch.getTuples() instanceof ColumnarBatch);
+        assertEquals(Arrays.asList(11, "1"), batch.getTuple(12));
+        batch = tb.getBatch(25);
+        assertTrue(batch.getTerminationFlag());
+        assertEquals(Arrays.asList(24, "0"), batch.getTuple(25));
+        //as with a continuous termination tuple
+        batch.addTuple(Arrays.asList(null, null));
+        assertEquals(Arrays.asList(null, null), batch.getTuple(26));
+    }
+
+}
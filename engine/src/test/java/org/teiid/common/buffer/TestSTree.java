@@ -20,9 +20,11 @@ package org.teiid.common.buffer;
 
 import static org.junit.Assert.*;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.Random;
 
 import org.junit.Test;
 import org.teiid.common.buffer.STree.InsertMode;
@@ -202,4 +204,214 @@ public class TestSTree {
         assertEquals(Integer.valueOf(0), tb.getValueCount());
     }
 
+    @Test public void testBPlusTree() throws TeiidComponentException, TeiidProcessingException {
+        BufferManagerImpl bm = BufferManagerFactory.createBufferManager();
+        bm.setProcessorBatchSize(16);
+
+        ElementSymbol e1 = new ElementSymbol("x");
+        e1.setType(Integer.class);
+        ElementSymbol e2 = new ElementSymbol("y");
+        e2.setType(String.class);
+        List<ElementSymbol> elements = Arrays.asList(e1, e2);
+        STree map = bm.createBPlusTree(elements, "1", 1);
+
+        int size = 1<<15;
+        Random r = new Random(1);
+        List<Integer> values = new ArrayList<Integer>(size);
+        for (int i = 0; i < size; i++) {
+            values.add(i);
+        }
+        Collections.shuffle(values, r);
+        for (int i = 0; i < size; i++) {
+            int val = values.get(i);
+            assertNull(map.insert(Arrays.asList(val, String.valueOf(val)), InsertMode.NEW, -1));
+            assertEquals(i + 1, map.getRowCount());
+        }
+        //every page is referenced by its parent, so the height is logarithmic
+        assertTrue(map.getHeight() <= 5);
+
+        for (int i = 0; i < size; i++) {
+            assertEquals(String.valueOf(i), map.find(Arrays.asList(i)).get(1));
+        }
+        assertNull(map.find(Arrays.asList(-1)));
+        assertNull(map.find(Arrays.asList(size)));
+
+        TupleBrowser tb = new TupleBrowser(map, new ArrayList<Object>(Arrays.asList(100)), Arrays.asList(1099), true, true);
+        for (int i = 100; i < 1100; i++) {
+            assertEquals(i, tb.nextTuple().get(0));
+        }
+        assertNull(tb.nextTuple());
+
+        for (int i = 0; i < size; i+=2) {
+            assertNotNull(map.remove(Arrays.asList(values.get(i))));
+        }
+        for (int i = 0; i < size; i++) {
+            assertEquals(i%2==1, map.find(Arrays.asList(values.get(i))) != null);
+        }
+        for (int i = 1; i < size; i+=2) {
+            assertNotNull(map.remove(Arrays.asList(values.get(i))));
+        }
+        assertEquals(0, map.getRowCount());
+        assertEquals(0, ((BPlusTree)map).getLockedSearches());
+    }
+
+    @Test public void testBPlusTreeBulkLoad() throws TeiidComponentException, TeiidProcessingException {
+        BufferManagerImpl bm = BufferManagerFactory.createBufferManager();
+        bm.setProcessorBatchSize(4);
+
+        ElementSymbol e1 = new ElementSymbol("x");
+        e1.setType(Integer.class);
+        List<ElementSymbol> elements = Arrays.asList(e1);
+        STree map = bm.createBPlusTree(elements, "1", 1);
+
+        int size = (1<<16)+(1<<4)+1;
+        map.setBatchInsert(true);
+        for (int i = 0; i < size; i++) {
+            assertNull(map.insert(Arrays.asList(i), InsertMode.ORDERED, -1));
+        }
+        map.setBatchInsert(false);
+        assertEquals(size, map.getRowCount());
+        //the pages are filled completely, so the height is minimal
+        long pages = (size + map.getPageSize(true) - 1)/map.getPageSize(true);
+        int height = 1;
+        while (pages > 1) {
+            pages = (pages + map.getPageSize(false) - 1)/map.getPageSize(false);
+            height++;
+        }
+        assertEquals(height, map.getHeight());
+
+        //smaller values after the load
+        for (int i = -1; i > -100; i--) {
+            assertNull(map.insert(Arrays.asList(i), InsertMode.NEW, -1));
+        }
+
+        TupleBrowser tb = new TupleBrowser(map, null, null, true, true);
+        for (int i = -99; i < size; i++) {
+            assertEquals(i, tb.nextTuple().get(0));
+        }
+        assertNull(tb.nextTuple());
+
+        for (int i = -99; i < size; i++) {
+            assertNotNull(map.find(Arrays.asList(i)));
+        }
+    }
+
+    @Test public void testCloneIsolation() throws TeiidComponentException, TeiidProcessingException {
+        helpTestCloneIsolation(false);
+    }
+
+    @Test public void testCloneIsolationBPlusTree() throws TeiidComponentException, TeiidProcessingException {
+        helpTestCloneIsolation(true);
+    }
+
+    private void helpTestCloneIsolation(boolean bplus) throws TeiidComponentException, TeiidProcessingException {
+        BufferManagerImpl bm = BufferManagerFactory.createBufferManager();
+        bm.setProcessorBatchSize(16);
+
+        ElementSymbol e1 = new ElementSymbol("x");
+        e1.setType(Integer.class);
+        ElementSymbol e2 = new ElementSymbol("y");
+        e2.setType(String.class);
+        List<ElementSymbol> elements = Arrays.asList(e1, e2);
+        STree map = bplus?bm.createBPlusTree(elements, "1", 1):bm.createSTree(elements, "1", 1);
+
+        int size = 1<<12;
+        for (int i = 0; i < size; i++) {
+            assertNull(map.insert(Arrays.asList(i*2, String.valueOf(i)), InsertMode.NEW, -1));
+        }
+
+        STree version = map;
+        //more versions than the page table depth
+        for (int v = 0; v < 20; v++) {
+            STree next = version.clone();
+            next.insert(Arrays.asList(v*2+1, "new"), InsertMode.NEW, -1);
+            next.insert(Arrays.asList(v*2, "updated"), InsertMode.UPDATE, -1);
+            next.remove(Arrays.asList(size + v*2));
+            //only the modified pages are copied
+            int copied = 0;
+            for (SPage page : next.pages.values()) {
+                if (page.generation == next.generation) {
+                    copied++;
+                }
+            }
+            assertTrue(String.valueOf(copied), copied < 4 * next.getHeight());
+
+            assertEquals(size, version.getRowCount());
+            assertEquals(size, next.getRowCount());
+            assertNull(version.find(Arrays.asList(v*2+1)));
+            assertEquals("new", next.find(Arrays.asList(v*2+1)).get(1));
+            assertEquals(String.valueOf(v), version.find(Arrays.asList(v*2)).get(1));
+            assertEquals("updated", next.find(Arrays.asList(v*2)).get(1));
+            assertNotNull(version.find(Arrays.asList(size + v*2)));
+            assertNull(next.find(Arrays.asList(size + v*2)));
+            version = next;
+        }
+
+        //modifications to the source do not affect the clone
+        STree clone = map.clone();
+        for (int i = 0; i < size; i++) {
+            assertNotNull(map.remove(Arrays.asList(i*2)));
+        }
+        assertEquals(0, map.getRowCount());
+        assertEquals(size, clone.getRowCount());
+        TupleBrowser tb = new TupleBrowser(clone, null, null, true, true);
+        for (int i = 0; i < size; i++) {
+            assertEquals(i*2, tb.nextTuple().get(0));
+        }
+        assertNull(tb.nextTuple());
+
+        //and the latest version is intact
+        tb = new TupleBrowser(version, null, null, true, true);
+        int count = 0;
+        while (tb.nextTuple() != null) {
+            count++;
+        }
+        assertEquals(size, count);
+    }
+
+    @Test public void testClearClonedFlagsIsolation() throws TeiidComponentException, TeiidProcessingException {
+        BufferManagerImpl bm = BufferManagerFactory.createBufferManager();
+        bm.setProcessorBatchSize(16);
+
+        ElementSymbol e1 = new ElementSymbol("x");
+        e1.setType(Integer.class);
+        ElementSymbol e2 = new ElementSymbol("y");
+        e2.setType(String.class);
+        List<ElementSymbol> elements = Arrays.asList(e1, e2);
+        STree map = bm.createSTree(elements, "1", 1);
+
+        int size = 1<<10;
+        for (int i = 0; i < size; i++) {
+            assertNull(map.insert(Arrays.asList(i, String.valueOf(i)), InsertMode.NEW, -1));
+        }
+
+        STree clone = map.clone();
+        //copy some pages before clearing the flags
+        map.insert(Arrays.asList(0, "updated"), InsertMode.UPDATE, -1);
+        map.clearClonedFlags();
+        for (SPage page : clone.pages.values()) {
+            //pages shared with the clone are not claimed by the source
+            assertNotSame(map.generation, page.generation);
+        }
+
+        //mutate the source after clearing the flags
+        for (int i = 0; i < size; i++) {
+            map.insert(Arrays.asList(i, "updated"), InsertMode.UPDATE, -1);
+        }
+        for (int i = 0; i < size; i+=2) {
+            assertNotNull(map.remove(Arrays.asList(i)));
+        }
+        assertEquals(size/2, map.getRowCount());
+
+        //the clone is unchanged
+        assertEquals(size, clone.getRowCount());
+        TupleBrowser tb = new TupleBrowser(clone, null, null, true, true);
+        for (int i = 0; i < size; i++) {
+            List<?> tuple = tb.nextTuple();
+            assertEquals(i, tuple.get(0));
+            assertEquals(String.valueOf(i), tuple.get(1));
+        }
+        assertNull(tb.nextTuple());
+    }
+
 }
@@ -34,6 +34,7 @@ import org.teiid.common.buffer.FileStore;
 import org.teiid.common.buffer.Serializer;
 import org.teiid.common.buffer.StorageManager;
 import org.teiid.core.TeiidComponentException;
+import org.teiid.core.util.UnitTestUtil;
 
 public class TestBufferFrontedFileStoreCache {
 
@@ -75,6 +76,27 @@ public class TestBufferFrontedFileStoreCache {
         }
     }
 
+    private static class RepeatingSerializer extends SimpleSerializer {
+        @Override
+        public Integer deserialize(ObjectInput ois)
+                throws IOException, ClassNotFoundException {
+            Integer result = ois.readInt();
+            for (int i = 0; i < result; i++) {
+                assertEquals(result.intValue(), ois.readInt());
+            }
+            return result;
+        }
+
+        @Override
+        public void serialize(Integer obj, ObjectOutput oos)
+                throws IOException {
+            oos.writeInt(obj);
+            for (int i = 0; i < obj; i++) {
+                oos.writeInt(obj);
+            }
+        }
+    }
+
     @After public void teardown() {
         if (this.cache != null) {
             cache.shutdown();
@@ -214,6 +236,68 @@ public class TestBufferFrontedFileStoreCache {
         assertEquals(Integer.valueOf(5001), ce.getObject());
     }
 
+    @Test public void testMappedStorage() throws Exception {
+        cache = new BufferFrontedFileStoreCache();
+        cache.cleanerRunning.set(true);
+        cache.setMemoryBufferSpace(1<<15);
+        cache.setMaxStorageObjectSize(1<<15);
+        cache.setDirect(false);
+        MappedFileStorageManager msm = new MappedFileStorageManager();
+        msm.setStorageDirectory(UnitTestUtil.getTestScratchPath());
+        cache.setStorageManager(new SplittableStorageManager(msm));
+        cache.initialize();
+
+        Serializer<Integer> s = new SimpleSerializer();
+        WeakReference<? extends Serializer<?>> ref = new WeakReference<Serializer<?>>(s);
+        cache.createCacheGroup(s.getId());
+        for (long i = 0; i < 4; i++) {
+            CacheEntry ce = new CacheEntry(i);
+            ce.setSerializer(ref);
+            ce.setObject(Integer.valueOf(5000 + (int)i));
+            cache.addToCacheGroup(s.getId(), ce.getId());
+            cache.add(ce, s);
+        }
+        assertTrue(cache.getStorageWrites() > 0);
+
+        for (long i = 0; i < 4; i++) {
+            CacheEntry ce = get(cache, i, s);
+            assertEquals(Integer.valueOf(5000 + (int)i), ce.getObject());
+        }
+        assertTrue(msm.getMappedReads() > 0);
+    }
+
+    @Test public void testCompression() throws Exception {
+        cache = new BufferFrontedFileStoreCache();
+        cache.cleanerRunning.set(true);
+        cache.setMemoryBufferSpace(1<<15);
+        cache.setMaxStorageObjectSize(1<<15);
+        cache.setDirect(false);
+        cache.setBlockCodec(new LZ4BlockCodec());
+        SplittableStorageManager ssm = new SplittableStorageManager(new MemoryStorageManager());
+        ssm.setMaxFileSizeDirect(MemoryStorageManager.MAX_FILE_SIZE);
+        cache.setStorageManager(ssm);
+        cache.initialize();
+
+        Serializer<Integer> s = new RepeatingSerializer();
+        WeakReference<? extends Serializer<?>> ref = new WeakReference<Serializer<?>>(s);
+        cache.createCacheGroup(s.getId());
+        //would require 3 blocks uncompressed
+        for (long i = 0; i < 4; i++) {
+            CacheEntry ce = new CacheEntry(i);
+            ce.setSerializer(ref);
+            ce.setObject(Integer.valueOf(5000 + (int)i));
+            cache.addToCacheGroup(s.getId(), ce.getId());
+            cache.add(ce, s);
+        }
+        assertTrue(cache.getBytesAfterCompression() < cache.getBytesBeforeCompression());
+        assertTrue(cache.getDataBlocksInUse() < 4);
+
+        for (long i = 0; i < 4; i++) {
+            CacheEntry ce = get(cache, i, s);
+            assertEquals(Integer.valueOf(5000 + (int)i), ce.getObject());
+        }
+    }
+
     @Test public void testEvictionFails() throws Exception {
         cache = createLayeredCache(1<<15, 1<<15, false);
         BufferManagerImpl bmi = Mockito.mock(BufferManagerImpl.class);
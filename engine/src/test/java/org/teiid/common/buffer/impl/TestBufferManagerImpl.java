@@ -19,6 +19,8 @@
 package org.teiid.common.buffer.impl;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
 import java.io.IOException;
@@ -35,6 +37,7 @@ import org.teiid.common.buffer.BufferManager.TupleSourceType;
 import org.teiid.common.buffer.BufferManagerFactory;
 import org.teiid.common.buffer.FileStore;
 import org.teiid.common.buffer.TupleBuffer;
+import org.teiid.common.buffer.TupleBuffer.TupleBufferTupleSource;
 import org.teiid.common.buffer.impl.BufferManagerImpl.BatchManagerImpl;
 import org.teiid.core.TeiidComponentException;
 import org.teiid.core.types.DataTypeManager;
@@ -204,4 +207,54 @@ public class TestBufferManagerImpl {
         }
     }
 
+    @Test public void testWriteBehind() throws Exception {
+        BufferManagerImpl bufferManager = new BufferManagerImpl();
+        bufferManager.setMaxReserveKB(64);
+        bufferManager.setMaxProcessingKB(64);
+        bufferManager.setWriteBehind(true);
+        BufferManagerFactory.initBufferManager(bufferManager);
+        try {
+            TupleBuffer tb = bufferManager.createTupleBuffer(Arrays.asList(new ElementSymbol("x", null, String.class)), "x", TupleSourceType.PROCESSOR);
+            for (int i = 0; i < 20000; i++) {
+                tb.addTuple(Arrays.asList("value" + i));
+            }
+            tb.close();
+            for (int i = 0; i < 100 && bufferManager.getWriteBehindQueueSize() > 0; i++) {
+                Thread.sleep(10);
+            }
+            assertTrue(bufferManager.getWriteBehindCount() > 0);
+            assertEquals(0, bufferManager.getWriteBehindQueueBytes());
+            for (int i = 0; i < 20000; i++) {
+                assertEquals("value" + i, tb.getBatch(i + 1).getTuple(i + 1).get(0));
+            }
+        } finally {
+            bufferManager.shutdown();
+        }
+    }
+
+    @Test public void testReadAhead() throws Exception {
+        BufferManagerImpl bufferManager = new BufferManagerImpl();
+        bufferManager.setMaxReserveKB(64);
+        bufferManager.setMaxProcessingKB(64);
+        bufferManager.setReadAheadBatches(4);
+        BufferManagerFactory.initBufferManager(bufferManager);
+        try {
+            TupleBuffer tb = bufferManager.createTupleBuffer(Arrays.asList(new ElementSymbol("x", null, String.class)), "x", TupleSourceType.PROCESSOR);
+            assertEquals(4, tb.getReadAheadBatches());
+            for (int i = 0; i < 20000; i++) {
+                tb.addTuple(Arrays.asList("value" + i));
+            }
+            tb.close();
+            tb.setForwardOnly(true);
+            TupleBufferTupleSource ts = tb.createIndexedTupleSource(true);
+            for (int i = 0; i < 20000; i++) {
+                assertEquals("value" + i, ts.nextTuple().get(0));
+            }
+            assertNull(ts.nextTuple());
+            assertTrue(bufferManager.getPrefetchCount() > 0);
+        } finally {
+            bufferManager.shutdown();
+        }
+    }
+
 }
@@ -24,10 +24,12 @@ import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
 import java.util.Arrays;
 import java.util.Random;
 
 import org.junit.Test;
+import org.teiid.common.buffer.ExtensibleBufferedInputStream;
 import org.teiid.common.buffer.FileStore;
 import org.teiid.common.buffer.FileStore.FileStoreOutputStream;
 import org.teiid.core.TeiidComponentException;
@@ -205,4 +207,82 @@ public class TestFileStorageManager {
            in.close();
     }
 
+    @Test public void testMappedReadWrite() throws Exception {
+        MappedFileStorageManager sm = new MappedFileStorageManager();
+        sm.setStorageDirectory(UnitTestUtil.getTestScratchPath());
+        sm.initialize();
+        FileStore store = sm.createFileStore("0");
+        byte[] expectedBytes = writeBytes(store, 0);
+        assertEquals(1, sm.getMappedReads());
+        assertEquals(2048, sm.getUsedBufferSpace());
+
+        //overwrite existing space through the mapping
+        expectedBytes = writeBytes(store, 0);
+        assertEquals(1, sm.getMappedWrites());
+
+        ExtensibleBufferedInputStream is = store.createInputStream(0, 2048);
+        ByteBuffer bb = is.getBuffer();
+        assertTrue(bb.isDirect());
+        assertEquals(2048, bb.remaining());
+        byte[] bytesRead = new byte[2048];
+        bb.get(bytesRead);
+        assertArrayEquals(expectedBytes, bytesRead);
+        assertNull(is.getBuffer());
+
+        store.remove();
+        assertEquals(0, sm.getUsedBufferSpace());
+    }
+
+    @Test public void testMappedSetLength() throws Exception {
+        MappedFileStorageManager sm = new MappedFileStorageManager();
+        sm.setStorageDirectory(UnitTestUtil.getTestScratchPath());
+        sm.setRegionSize(1<<13);
+        sm.initialize();
+        FileStore store = sm.createFileStore("0");
+        writeBytes(store, 0);
+        writeBytes(store, 9000);
+        store.setLength(1000);
+        assertEquals(1000, sm.getUsedBufferSpace());
+        assertEquals(-1, store.read(1000, new byte[1], 0, 1));
+        byte[] expectedBytes = writeBytes(store, 9000);
+
+        //spans a region boundary
+        byte[] bytesRead = new byte[2048];
+        store.readFully(8000, bytesRead, 0, bytesRead.length);
+        assertArrayEquals(Arrays.copyOfRange(expectedBytes, 0, 1048), Arrays.copyOfRange(bytesRead, 1000, 2048));
+    }
+
+    @Test public void testMappedGrowth() throws Exception {
+        MappedFileStorageManager sm = new MappedFileStorageManager();
+        sm.setStorageDirectory(UnitTestUtil.getTestScratchPath());
+        sm.setRegionSize(1<<13);
+        sm.initialize();
+        FileStore store = sm.createFileStore("0");
+        for (int i = 0; i < 4; i++) {
+            writeBytes(store, i * 2048);
+        }
+        //the mapping is only replaced when it can double
+        assertEquals(3, sm.getMappedReads());
+        store.setLength(4096);
+        assertEquals(0, sm.getUnmapped());
+        store.remove();
+        assertEquals(3, sm.getUnmapped());
+        assertEquals(0, sm.getUsedBufferSpace());
+    }
+
+    @Test public void testMappedSplittableStream() throws Exception {
+        MappedFileStorageManager sm = new MappedFileStorageManager();
+        sm.setStorageDirectory(UnitTestUtil.getTestScratchPath());
+        sm.initialize();
+        SplittableStorageManager ssm = new SplittableStorageManager(sm);
+        ssm.setMaxFileSizeDirect(4096);
+        FileStore store = ssm.createFileStore("0");
+        byte[] expectedBytes = writeBytes(store, 4096);
+        ExtensibleBufferedInputStream is = store.createInputStream(4096, 2048);
+        assertTrue(is.getBuffer().isDirect());
+        byte[] bytesRead = new byte[2048];
+        is.getBuffer().get(bytesRead);
+        assertArrayEquals(expectedBytes, bytesRead);
+    }
+
 }
@@ -0,0 +1,109 @@
+/*
+ * Copyright Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags and
+ * the COPYRIGHT.txt file distributed with this work.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.teiid.common.buffer.impl;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+
+@SuppressWarnings("nls")
+public class TestLZ4BlockCodec {
+
+    private LZ4BlockCodec codec = new LZ4BlockCodec();
+
+    private byte[] roundTrip(byte[] bytes) throws IOException {
+        byte[] compressed = new byte[codec.maxCompressedLength(bytes.length)];
+        int length = codec.compress(bytes, 0, bytes.length, compressed, 0);
+        byte[] result = new byte[bytes.length];
+        codec.decompress(compressed, 0, length, result, 0, bytes.length);
+        assertArrayEquals(bytes, result);
+        return Arrays.copyOf(compressed, length);
+    }
+
+    @Test public void testRoundTrip() throws Exception {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 1000; i++) {
+            sb.append("row ").append(i).append(" some repeated text value,");
+        }
+        byte[] bytes = sb.toString().getBytes("UTF-8");
+        byte[] compressed = roundTrip(bytes);
+        assertTrue(compressed.length < bytes.length/3);
+    }
+
+    @Test public void testSmallAndEmpty() throws Exception {
+        assertEquals(1, roundTrip(new byte[0]).length);
+        roundTrip(new byte[] {1, 2, 3});
+        roundTrip(new byte[13]);
+    }
+
+    @Test public void testLongRuns() throws Exception {
+        byte[] bytes = new byte[100000];
+        Arrays.fill(bytes, 50000, 100000, (byte)1);
+        assertTrue(roundTrip(bytes).length < 1000);
+    }
+
+    @Test public void testIncompressible() throws Exception {
+        byte[] bytes = new byte[1 << 16];
+        new Random(1).nextBytes(bytes);
+        assertTrue(roundTrip(bytes).length <= codec.maxCompressedLength(bytes.length));
+    }
+
+    @Test(expected=IOException.class) public void testInvalid() throws Exception {
+        byte[] result = new byte[100];
+        codec.decompress(new byte[] {(byte)0x1f, 1, 1, 0, 0}, 0, 5, result, 0, 100);
+    }
+
+    @Test public void testStreams() throws Exception {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        CompressedOutputStream cos = new CompressedOutputStream(baos, codec);
+        Random r = new Random(1);
+        byte[] bytes = new byte[200000];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte)r.nextInt(4);
+        }
+        cos.write(bytes, 0, 1000);
+        for (int i = 1000; i < 2000; i++) {
+            cos.write(bytes[i]);
+        }
+        cos.write(bytes, 2000, bytes.length - 2000);
+        cos.close();
+        assertEquals(bytes.length, cos.getRawBytes());
+        assertEquals(baos.size(), cos.getStoredBytes());
+        assertTrue(cos.getStoredBytes() < bytes.length);
+
+        CompressedInputStream cis = new CompressedInputStream(new ByteArrayInputStream(baos.toByteArray()), codec);
+        byte[] result = new byte[bytes.length];
+        int read = 0;
+        int b = cis.read();
+        result[read++] = (byte)b;
+        while ((b = cis.read(result, read, result.length - read)) > 0) {
+            read += b;
+        }
+        assertEquals(bytes.length, read);
+        assertArrayEquals(bytes, result);
+        assertEquals(-1, cis.read());
+    }
+
+}
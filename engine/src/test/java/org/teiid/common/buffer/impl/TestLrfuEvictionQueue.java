@@ -60,4 +60,46 @@ public class TestLrfuEvictionQueue {
         assertNotNull(q.firstEntry(true));
     }
 
+    @Test public void testStriped() {
+        AtomicLong clock = new AtomicLong();
+        StripedLrfuEvictionQueue<BaseCacheEntry> q = new StripedLrfuEvictionQueue<BaseCacheEntry>(clock, 3);
+        assertEquals(4, q.getStripeCount());
+        for (long i = 0; i < 100; i++) {
+            //reverse the ordering relative to the ids
+            assertTrue(q.add(new BaseCacheEntry(new CacheKey(i, 0L, 100 - i))));
+        }
+        assertEquals(100, q.getSize());
+        assertEquals(100, q.getEvictionQueue().size());
+        int count = 0;
+        for (BaseCacheEntry entry : q.getEvictionQueue()) {
+            assertNotNull(entry);
+            count++;
+        }
+        assertEquals(100, count);
+        //all stripes are sampled, so the order should be exact
+        for (long i = 99; i >= 0; i--) {
+            assertEquals(Long.valueOf(i), q.firstEntry(true).getId());
+        }
+        assertNull(q.firstEntry(true));
+        assertEquals(0, q.getSize());
+    }
+
+    @Test public void testStripedTouch() {
+        AtomicLong clock = new AtomicLong();
+        StripedLrfuEvictionQueue<BaseCacheEntry> q = new StripedLrfuEvictionQueue<BaseCacheEntry>(clock, 2);
+        BaseCacheEntry value = new BaseCacheEntry(new CacheKey(5L, 0L, 0L));
+        BaseCacheEntry value1 = new BaseCacheEntry(new CacheKey(6L, 0L, 0L));
+        q.touch(value);
+        q.touch(value1);
+        clock.set(LrfuEvictionQueue.MIN_INTERVAL);
+        q.touch(value);
+        assertEquals(2, q.getSize());
+        assertSame(value1, q.firstEntry(false));
+        assertTrue(q.remove(value));
+        assertFalse(q.remove(value));
+        q.clear();
+        assertEquals(0, q.getSize());
+        assertNull(q.firstEntry(false));
+    }
+
 }
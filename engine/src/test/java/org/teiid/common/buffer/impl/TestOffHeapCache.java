@@ -0,0 +1,208 @@
+/*
+ * Copyright Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags and
+ * the COPYRIGHT.txt file distributed with this work.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.teiid.common.buffer.impl;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+import java.lang.ref.WeakReference;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Test;
+import org.teiid.common.buffer.BufferManager.TupleSourceType;
+import org.teiid.common.buffer.CacheEntry;
+import org.teiid.common.buffer.CacheKey;
+import org.teiid.common.buffer.Serializer;
+import org.teiid.common.buffer.TupleBuffer;
+import org.teiid.core.TeiidComponentException;
+import org.teiid.query.sql.symbol.ElementSymbol;
+
+@SuppressWarnings("nls")
+public class TestOffHeapCache {
+
+    private OffHeapCache<Long> cache;
+    private MemoryStorageManager delegate;
+
+    private static class SimpleSerializer implements Serializer<Integer> {
+        @Override
+        public Integer deserialize(ObjectInput ois)
+                throws IOException, ClassNotFoundException {
+            Integer result = ois.readInt();
+            for (int i = 0; i < result; i++) {
+                assertEquals(i, ois.readInt());
+            }
+            return result;
+        }
+
+        @Override
+        public Long getId() {
+            return 1L;
+        }
+
+        @Override
+        public void serialize(Integer obj, ObjectOutput oos)
+                throws IOException {
+            oos.writeInt(obj);
+            for (int i = 0; i < obj; i++) {
+                oos.writeInt(i);
+            }
+        }
+
+        @Override
+        public boolean useSoftCache() {
+            return false;
+        }
+
+        @Override
+        public String describe(Integer obj) {
+            return null;
+        }
+    }
+
+    @After public void teardown() {
+        if (this.cache != null) {
+            cache.shutdown();
+        }
+    }
+
+    private void createCache(long space) throws TeiidComponentException {
+        delegate = new MemoryStorageManager();
+        cache = new OffHeapCache<Long>(delegate);
+        cache.setMemoryBufferSpace(space);
+        cache.initialize();
+    }
+
+    private CacheEntry add(Serializer<Integer> s, long id, int value, long orderingValue) throws Exception {
+        CacheEntry ce = new CacheEntry(new CacheKey(id, orderingValue, orderingValue), value, Integer.valueOf(value), new WeakReference<Serializer<?>>(s), false);
+        cache.addToCacheGroup(s.getId(), ce.getId());
+        assertTrue(cache.add(ce, s));
+        return ce;
+    }
+
+    private CacheEntry get(Long oid, Serializer<Integer> s) throws TeiidComponentException {
+        Long o = cache.lockForLoad(oid, s);
+        try {
+            return cache.get(o, oid, new WeakReference<Serializer<?>>(s));
+        } finally {
+            cache.unlockForLoad(o);
+        }
+    }
+
+    @Test public void testAddGet() throws Exception {
+        createCache(1 << 20);
+        Serializer<Integer> s = new SimpleSerializer();
+        cache.createCacheGroup(s.getId());
+        add(s, 1, 100, 1);
+        add(s, 2, 3000, 1);
+        assertEquals(2, cache.getAdmissions());
+        //the delegate only holds the group membership
+        assertNull(delegate.get(1L, 1L, new WeakReference<Serializer<?>>(s)));
+
+        CacheEntry ce = get(2L, s);
+        assertEquals(Integer.valueOf(3000), ce.getObject());
+        assertEquals(1, cache.getHits());
+        assertEquals((1 << 13) + (1 << 14), cache.getMemoryInUseBytes());
+
+        assertEquals(Integer.valueOf(3000), cache.remove(s.getId(), 2L));
+        assertEquals(1 << 13, cache.getMemoryInUseBytes());
+        cache.removeCacheGroup(s.getId());
+        assertEquals(0, cache.getMemoryInUseBytes());
+    }
+
+    @Test public void testAdmission() throws Exception {
+        //only a single 32k object will fit
+        createCache(1 << 15);
+        Serializer<Integer> s = new SimpleSerializer();
+        cache.createCacheGroup(s.getId());
+        add(s, 1, 5000, 10);
+
+        //colder, goes to the delegate
+        add(s, 2, 5001, 5);
+        assertEquals(1, cache.getAdmissions());
+        assertEquals(1, cache.getRejections());
+        assertNotNull(delegate.get(2L, 2L, new WeakReference<Serializer<?>>(s)));
+
+        //hotter, demotes the first
+        add(s, 3, 5002, 20);
+        assertEquals(2, cache.getAdmissions());
+        assertEquals(1, cache.getDemotions());
+        assertNotNull(delegate.get(1L, 1L, new WeakReference<Serializer<?>>(s)));
+
+        assertEquals(Integer.valueOf(5000), get(1L, s).getObject());
+        assertEquals(Integer.valueOf(5001), get(2L, s).getObject());
+        assertEquals(Integer.valueOf(5002), get(3L, s).getObject());
+        assertEquals(1, cache.getHits());
+    }
+
+    @Test public void testReAddUpdatesOrdering() throws Exception {
+        createCache(1 << 15);
+        Serializer<Integer> s = new SimpleSerializer();
+        cache.createCacheGroup(s.getId());
+        CacheEntry ce = add(s, 1, 5000, 10);
+        //the buffer manager will re-add with a new key after a read
+        ce.setKey(new CacheKey(1L, 30, 30));
+        assertTrue(cache.add(ce, s));
+        assertEquals(1, cache.getAdmissions());
+
+        add(s, 2, 5001, 20);
+        assertEquals(1, cache.getRejections());
+        assertEquals(0, cache.getDemotions());
+    }
+
+    @Test public void testTupleBuffer() throws Exception {
+        BufferManagerImpl bufferManager = new BufferManagerImpl();
+        bufferManager.setMaxReserveKB(64);
+        bufferManager.setMaxProcessingKB(64);
+        bufferManager.initialize();
+        bufferManager.setUseWeakReferences(false);
+        BufferFrontedFileStoreCache fsc = new BufferFrontedFileStoreCache();
+        fsc.setBufferManager(bufferManager);
+        fsc.setDirect(false);
+        fsc.setMaxStorageObjectSize(1<<20);
+        fsc.setMemoryBufferSpace(1<<21);
+        fsc.setStorageManager(new SplittableStorageManager(new MemoryStorageManager()));
+        OffHeapCache<PhysicalInfo> offHeap = new OffHeapCache<PhysicalInfo>(fsc);
+        offHeap.setMemoryBufferSpace(1<<20);
+        offHeap.setMaxStorageObjectSize(1<<20);
+        offHeap.initialize();
+        bufferManager.setCache(offHeap);
+        try {
+            TupleBuffer tb = bufferManager.createTupleBuffer(Arrays.asList(new ElementSymbol("x", null, String.class)), "x", TupleSourceType.PROCESSOR);
+            for (int i = 0; i < 20000; i++) {
+                tb.addTuple(Arrays.asList("value" + i));
+            }
+            tb.close();
+            assertTrue(offHeap.getAdmissions() > 0);
+            for (int i = 0; i < 20000; i++) {
+                List<?> tuple = tb.getBatch(i + 1).getTuple(i + 1);
+                assertEquals("value" + i, tuple.get(0));
+            }
+            assertTrue(offHeap.getHits() > 0);
+            tb.remove();
+            assertEquals(0, offHeap.getMemoryInUseBytes());
+        } finally {
+            bufferManager.shutdown();
+        }
+    }
+
+}
@@ -0,0 +1,101 @@
+/*
+ * Copyright Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags and
+ * the COPYRIGHT.txt file distributed with this work.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.teiid.common.buffer.impl;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+@SuppressWarnings("nls")
+public class TestSizeClassAllocator {
+
+    @Test public void testSizeClasses() {
+        SizeClassAllocator allocator = new SizeClassAllocator(1 << 20, 13, 16, false);
+        assertEquals(0, allocator.getOrder(1));
+        assertEquals(0, allocator.getOrder(1 << 13));
+        assertEquals(1, allocator.getOrder((1 << 13) + 1));
+        assertEquals(3, allocator.getOrder(1 << 16));
+
+        SizeClassAllocator.Slice slice = allocator.allocate(10000);
+        assertEquals(1 << 14, slice.getCapacity());
+        assertEquals(1 << 14, allocator.getUsedBytes());
+        assertEquals(1 << 16, allocator.getReservedBytes());
+        assertNull(allocator.allocate((1 << 16) + 1));
+        allocator.free(slice);
+        assertEquals(0, allocator.getUsedBytes());
+    }
+
+    @Test public void testBudget() {
+        SizeClassAllocator allocator = new SizeClassAllocator(1 << 18, 13, 16, true);
+        assertEquals(1 << 18, allocator.getMaxBytes());
+        List<SizeClassAllocator.Slice> slices = new ArrayList<SizeClassAllocator.Slice>();
+        for (int i = 0; i < 32; i++) {
+            SizeClassAllocator.Slice slice = allocator.allocate(1 << 13);
+            assertNotNull(slice);
+            assertTrue(slice.getBuffer().isDirect());
+            slices.add(slice);
+        }
+        assertNull(allocator.allocate(1));
+        assertEquals(1, allocator.getFailedAllocations());
+        assertEquals(1 << 18, allocator.getUsedBytes());
+        assertEquals(1 << 18, allocator.getReservedBytes());
+        for (SizeClassAllocator.Slice slice : slices) {
+            allocator.free(slice);
+        }
+        assertEquals(0, allocator.getUsedBytes());
+    }
+
+    @Test public void testCoalesce() {
+        SizeClassAllocator allocator = new SizeClassAllocator(1 << 16, 13, 16, false);
+        List<SizeClassAllocator.Slice> slices = new ArrayList<SizeClassAllocator.Slice>();
+        for (int i = 0; i < 8; i++) {
+            slices.add(allocator.allocate(1));
+        }
+        assertNull(allocator.allocate(1 << 16));
+        //free in an interleaved order, the buddies should merge back to a single block
+        for (int i = 0; i < 8; i += 2) {
+            allocator.free(slices.get(i));
+        }
+        assertNull(allocator.allocate(1 << 14));
+        for (int i = 1; i < 8; i += 2) {
+            allocator.free(slices.get(i));
+        }
+        SizeClassAllocator.Slice slice = allocator.allocate(1 << 16);
+        assertNotNull(slice);
+        assertEquals(1 << 16, slice.getCapacity());
+    }
+
+    @Test public void testSlicesAreDistinct() {
+        SizeClassAllocator allocator = new SizeClassAllocator(1 << 16, 13, 16, false);
+        SizeClassAllocator.Slice a = allocator.allocate(1 << 13);
+        SizeClassAllocator.Slice b = allocator.allocate(1 << 14);
+        SizeClassAllocator.Slice c = allocator.allocate(1 << 13);
+        a.getBuffer().put(0, (byte)1);
+        b.getBuffer().put(0, (byte)2);
+        c.getBuffer().put(0, (byte)3);
+        assertEquals(1, a.getBuffer().get(0));
+        assertEquals(2, b.getBuffer().get(0));
+        assertEquals(3, c.getBuffer().get(0));
+        assertEquals(1 << 15, allocator.getUsedBytes());
+    }
+
+}
@@ -28,7 +28,9 @@ import java.util.concurrent.TimeUnit;
 
 import org.junit.After;
 import org.junit.Test;
+import org.teiid.adminapi.impl.SessionMetadata;
 import org.teiid.adminapi.impl.WorkerPoolStatisticsMetadata;
+import org.teiid.dqp.internal.process.DQPWorkContext;
 import org.teiid.dqp.internal.process.FutureWork;
 import org.teiid.dqp.internal.process.ThreadReuseExecutor;
 
@@ -61,6 +63,8 @@ public class TestThreadReuseExecutor {
         WorkerPoolStatisticsMetadata stats = pool.getStats();
         assertEquals(10, stats.getTotalCompleted());
         assertEquals("Expected threads to be maxed out", MAX_THREADS, stats.getHighestActiveThreads()); //$NON-NLS-1$
+        assertEquals(0, stats.getQueueWaitTimeMedian());
+        assertTrue(stats.getQueueWaitTime99() >= 31);
     }
 
     @Test public void testThreadReuse() throws Exception {
@@ -154,4 +158,66 @@ public class TestThreadReuseExecutor {
         assertEquals(Integer.valueOf(4), order.remove());
     }
 
+    @Test public void testFairShare() throws Exception {
+        pool = new ThreadReuseExecutor("test", 1); //$NON-NLS-1$
+        final ConcurrentLinkedQueue<String> order = new ConcurrentLinkedQueue<String>();
+        FutureWork<Boolean> work1 = createSessionWork("a", new Callable<Boolean>() { //$NON-NLS-1$
+            public Boolean call() throws Exception {
+                synchronized (pool) {
+                    while (pool.getSubmittedCount() < 4) {
+                        pool.wait();
+                    }
+                }
+                Thread.sleep(10);
+                return true;
+            }
+        });
+        FutureWork<Boolean> work2 = createSessionWork("a", new OrderedWork(order, "a2")); //$NON-NLS-1$ //$NON-NLS-2$
+        FutureWork<Boolean> work3 = createSessionWork("a", new OrderedWork(order, "a3")); //$NON-NLS-1$ //$NON-NLS-2$
+        FutureWork<Boolean> work4 = createSessionWork("b", new OrderedWork(order, "b1")); //$NON-NLS-1$ //$NON-NLS-2$
+        pool.execute(work1);
+        pool.execute(work2);
+        pool.execute(work3);
+        pool.execute(work4);
+        synchronized (pool) {
+            pool.notifyAll();
+        }
+        work1.get();
+        work2.get();
+        work3.get();
+        work4.get();
+        //session a has used the pool, so b goes first
+        assertEquals("b1", order.remove()); //$NON-NLS-1$
+        assertEquals("a2", order.remove()); //$NON-NLS-1$
+        assertEquals("a3", order.remove()); //$NON-NLS-1$
+    }
+
+    private static final class OrderedWork implements Callable<Boolean> {
+        private final ConcurrentLinkedQueue<String> order;
+        private final String name;
+
+        private OrderedWork(ConcurrentLinkedQueue<String> order, String name) {
+            this.order = order;
+            this.name = name;
+        }
+
+        public Boolean call() throws Exception {
+            order.add(name);
+            return true;
+        }
+    }
+
+    private FutureWork<Boolean> createSessionWork(String sessionId, Callable<Boolean> callable) {
+        DQPWorkContext context = new DQPWorkContext();
+        SessionMetadata session = new SessionMetadata();
+        session.setSessionId(sessionId);
+        context.setSession(session);
+        DQPWorkContext.setWorkContext(context);
+        try {
+            return new FutureWork<Boolean>(callable, 1);
+        } finally {
+            DQPWorkContext.setWorkContext(new DQPWorkContext());
+        }
+    }
+
 }
@@ -59,8 +59,11 @@ import org.teiid.dqp.internal.process.AbstractWorkItem.ThreadState;
 import org.teiid.dqp.service.AutoGenDataService;
 import org.teiid.dqp.service.FakeBufferService;
 import org.teiid.query.optimizer.TestOptimizer;
+import org.teiid.query.optimizer.TestOptimizer.ComparisonMode;
 import org.teiid.query.optimizer.capabilities.BasicSourceCapabilities;
+import org.teiid.query.optimizer.capabilities.DefaultCapabilitiesFinder;
 import org.teiid.query.optimizer.capabilities.SourceCapabilities.Capability;
+import org.teiid.query.processor.ProcessorPlan;
 import org.teiid.query.unittest.RealMetadataFactory;
 import org.teiid.translator.SourceSystemFunctions;
 
@@ -118,6 +121,17 @@ public class TestDQPCore {
         ConnectorManagerRepository repo = Mockito.mock(ConnectorManagerRepository.class);
         context.getVDB().addAttachment(ConnectorManagerRepository.class, repo);
         Mockito.stub(repo.getConnectorManager(Mockito.anyString())).toReturn(agds);
+
+        config = new DQPConfiguration();
+        config.setMaxActivePlans(1);
+        config.setUserRequestSourceConcurrency(2);
+        DefaultAuthorizationValidator daa = new DefaultAuthorizationValidator();
+        daa.setPolicyDecider(new DataRolePolicyDecider());
+        config.setAuthorizationValidator(daa);
+        startCore();
+    }
+
+    private void startCore() {
         BufferManagerImpl bm = BufferManagerFactory.createBufferManager();
         bm.setInlineLobs(false);
         FakeBufferService bs = new FakeBufferService(bm, bm);
@@ -126,13 +140,6 @@ public class TestDQPCore {
         core.setResultsetCache(new SessionAwareCache<CachedResults>("resultset", new DefaultCacheFactory(new CacheConfiguration()), SessionAwareCache.Type.RESULTSET, 0));
         core.setPreparedPlanCache(new SessionAwareCache<PreparedPlan>("preparedplan", new DefaultCacheFactory(new CacheConfiguration()), SessionAwareCache.Type.PREPAREDPLAN, 0));
         core.setTransactionService(new FakeTransactionService());
-
-        config = new DQPConfiguration();
-        config.setMaxActivePlans(1);
-        config.setUserRequestSourceConcurrency(2);
-        DefaultAuthorizationValidator daa = new DefaultAuthorizationValidator();
-        daa.setPolicyDecider(new DataRolePolicyDecider());
-        config.setAuthorizationValidator(daa);
         core.start(config);
         core.getPrepPlanCache().setModTime(1);
         core.getRsCache().setTupleBufferCache(bs.getBufferManager());
@@ -195,6 +202,106 @@ public class TestDQPCore {
         assertEquals(1, this.core.getMaxWaitingPlanWatermark());
     }
 
+    @Test public void testPlanReservationEstimate() throws Exception {
+        BufferManagerImpl bm = BufferManagerFactory.getStandaloneBufferManager();
+        ProcessorPlan plan = TestOptimizer.helpPlan("select e1 from pm1.g1 order by e1", RealMetadataFactory.example1Cached(), null, new DefaultCapabilitiesFinder(new BasicSourceCapabilities()), new String[] {"SELECT pm1.g1.e1 FROM pm1.g1"}, ComparisonMode.EXACT_COMMAND_STRING);
+        assertEquals(bm.getMaxProcessingSize(), DQPCore.estimatePlanReservation(plan, bm));
+
+        plan = TestOptimizer.helpPlan("select e1 from pm1.g1", RealMetadataFactory.example1Cached(), null, new DefaultCapabilitiesFinder(new BasicSourceCapabilities()), new String[] {"SELECT pm1.g1.e1 FROM pm1.g1"}, ComparisonMode.EXACT_COMMAND_STRING);
+        assertEquals(0, DQPCore.estimatePlanReservation(plan, bm));
+
+        //both sides of the join may be buffered
+        plan = TestOptimizer.helpPlan("select pm1.g1.e1 from pm1.g1, pm1.g2 where pm1.g1.e1 = pm1.g2.e1", RealMetadataFactory.example1Cached(), null, new DefaultCapabilitiesFinder(new BasicSourceCapabilities()), new String[] {"SELECT pm1.g1.e1 FROM pm1.g1", "SELECT pm1.g2.e1 FROM pm1.g2"}, ComparisonMode.EXACT_COMMAND_STRING);
+        assertEquals(2L * bm.getMaxProcessingSize(), DQPCore.estimatePlanReservation(plan, bm));
+    }
+
+    @Test public void testPlanAdmission() throws Exception {
+        //each sort plan reserves the full 1KB, so only one may be admitted at a time
+        core.stop();
+        config.setMaxActivePlans(2);
+        config.setPlanAdmissionMemoryKB(1);
+        startCore();
+        agds.setCaps(new BasicSourceCapabilities());
+        DQPWorkContext.getWorkContext().getSession().setSessionId("1");
+        DQPWorkContext.getWorkContext().getSession().setUserName("a");
+        String sortSql = "SELECT IntKey FROM BQT1.SmallA ORDER BY IntKey";
+
+        //the first plan is admitted and held at the source
+        CountDownLatch sourceLatch = new CountDownLatch(2);
+        agds.latch = sourceLatch;
+        RequestMessage first = exampleRequestMessage(sortSql);
+        Future<ResultsMessage> firstMessage = core.executeRequest(first.getExecutionId(), first);
+        for (int i = 0; i < 50 && (sourceLatch.getCount() != 1 || core.getReservedPlanMemoryKB() != 1); i++) {
+            Thread.sleep(100);
+        }
+        assertEquals(1, sourceLatch.getCount());
+        assertEquals(1, core.getReservedPlanMemoryKB());
+        agds.latch = null;
+
+        //the second does not fit and is deferred
+        RequestMessage second = exampleRequestMessage(sortSql);
+        Future<ResultsMessage> secondMessage = core.executeRequest(second.getExecutionId(), second);
+        RequestWorkItem secondItem = core.getRequestWorkItem(DQPWorkContext.getWorkContext().getRequestID(second.getExecutionId()));
+        waitForDeferral(secondItem, 1);
+        assertEquals(1, core.getActivePlanCount());
+        Thread.sleep(100);
+
+        //each plan that finishes resumes the deferred plan, which is deferred again
+        //until it has been deferred the max number of times
+        for (int i = 1; i <= DQPCore.MAX_ADMISSION_DEFERRALS; i++) {
+            ResultsMessage rm = execute("a", 1, exampleRequestMessage("SELECT IntKey FROM BQT1.SmallA"));
+            assertNull(rm.getException());
+            if (i < DQPCore.MAX_ADMISSION_DEFERRALS) {
+                waitForDeferral(secondItem, i + 1);
+            }
+        }
+
+        //forced admission while the first plan still holds its reservation
+        ResultsMessage rm = secondMessage.get(5000, TimeUnit.MILLISECONDS);
+        assertNull(rm.getException());
+        assertEquals(10, rm.getResultsList().size());
+        assertEquals(1, sourceLatch.getCount());
+        assertEquals(DQPCore.MAX_ADMISSION_DEFERRALS, secondItem.admissionDeferrals);
+        for (int i = 0; i < 50 && core.getReservedPlanMemoryKB() != 1; i++) {
+            Thread.sleep(100);
+        }
+        assertEquals(1, core.getReservedPlanMemoryKB());
+
+        //the wait until the first resume is counted
+        assertTrue(core.getMaxPlanWaitTime() >= 50);
+        assertTrue(core.getAveragePlanWaitTime() > 0);
+        assertTrue(core.getAveragePlanWaitTime() <= core.getMaxPlanWaitTime());
+
+        //a deferred plan that is cancelled is removed from the queue
+        RequestMessage third = exampleRequestMessage(sortSql);
+        Future<ResultsMessage> thirdMessage = core.executeRequest(third.getExecutionId(), third);
+        waitForDeferral(core.getRequestWorkItem(DQPWorkContext.getWorkContext().getRequestID(third.getExecutionId())), 1);
+        assertTrue(core.cancelRequest(third.getExecutionId()));
+        rm = thirdMessage.get(5000, TimeUnit.MILLISECONDS);
+        assertNotNull(rm.getException());
+        assertEquals(0, core.getWaitingPlanCount());
+        assertEquals(1, core.getReservedPlanMemoryKB());
+
+        //cancelling the active plan releases its reservation
+        assertTrue(core.cancelRequest(first.getExecutionId()));
+        sourceLatch.countDown();
+        rm = firstMessage.get(5000, TimeUnit.MILLISECONDS);
+        assertNotNull(rm.getException());
+        for (int i = 0; i < 50 && (core.getReservedPlanMemoryKB() != 0 || core.getActivePlanCount() != 0); i++) {
+            Thread.sleep(100);
+        }
+        assertEquals(0, core.getReservedPlanMemoryKB());
+        assertEquals(0, core.getActivePlanCount());
+    }
+
+    private void waitForDeferral(RequestWorkItem item, int deferrals) throws InterruptedException {
+        for (int i = 0; i < 50 && (core.getWaitingPlanCount() != 1 || item.admissionDeferrals != deferrals); i++) {
+            Thread.sleep(100);
+        }
+        assertEquals(1, core.getWaitingPlanCount());
+        assertEquals(deferrals, item.admissionDeferrals);
+    }
+
     @Test public void testHasRole() throws Exception {
         String sql = "SELECT hasRole('foo')"; //$NON-NLS-1$
         String userName = "logon"; //$NON-NLS-1$
@@ -315,6 +422,37 @@ public class TestDQPCore {
         helpTestVisibilityFails("select lookup('bqt3.smalla', 'intkey', 'stringkey', '?')"); //$NON-NLS-1$
     }
 
+    @Test public void testResultsWindow() throws Exception {
+        //the sql should return 400 rows
+        String sql = "SELECT A.IntKey FROM BQT1.SmallA as A, BQT1.SmallA as B, (select intkey from BQT1.SmallA limit 4) as C"; //$NON-NLS-1$
+
+        RequestMessage reqMsg = exampleRequestMessage(sql);
+        reqMsg.setCursorType(ResultSet.TYPE_FORWARD_ONLY);
+        reqMsg.setResultsWindow(1);
+        DQPWorkContext.getWorkContext().getSession().setSessionId("1");
+        DQPWorkContext.getWorkContext().getSession().setUserName("1");
+        ((BufferManagerImpl)core.getBufferManager()).setProcessorBatchSize(1);
+        Future<ResultsMessage> message = core.executeRequest(reqMsg.getExecutionId(), reqMsg);
+        ResultsMessage rm = message.get(500000, TimeUnit.MILLISECONDS);
+        assertNull(rm.getException());
+        RequestWorkItem item = core.getRequestWorkItem(DQPWorkContext.getWorkContext().getRequestID(reqMsg.getExecutionId()));
+        for (int i = 0; i < 10 && item.getThreadState() != ThreadState.IDLE; i++) {
+            Thread.sleep(100);
+        }
+        assertEquals(ThreadState.IDLE, item.getThreadState());
+        //only a single batch is held ahead of the client
+        assertTrue(item.resultsBuffer.getManagedRowCount() <= item.resultsBuffer.getBatchSize());
+
+        int start = rm.getResultsList().size() + 1;
+        while (rm.getFinalRow() != rm.getLastRow()) {
+            message = core.processCursorRequest(reqMsg.getExecutionId(), start, 8);
+            rm = message.get(5000, TimeUnit.MILLISECONDS);
+            assertNull(rm.getException());
+            start += rm.getResultsList().size();
+        }
+        assertEquals(401, start);
+    }
+
     @Test public void testCancel() throws Exception {
         assertFalse(this.core.cancelRequest(1L));
     }
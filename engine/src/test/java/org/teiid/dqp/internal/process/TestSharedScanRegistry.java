@@ -0,0 +1,212 @@
+/*
+ * Copyright Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags and
+ * the COPYRIGHT.txt file distributed with this work.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.teiid.dqp.internal.process;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.teiid.common.buffer.BlockedException;
+import org.teiid.common.buffer.BufferManagerFactory;
+import org.teiid.common.buffer.TupleSource;
+import org.teiid.core.TeiidComponentException;
+import org.teiid.core.TeiidProcessingException;
+import org.teiid.core.types.DataTypeManager;
+import org.teiid.query.processor.CollectionTupleSource;
+import org.teiid.query.sql.symbol.ElementSymbol;
+import org.teiid.query.sql.symbol.Expression;
+
+@SuppressWarnings("nls")
+public class TestSharedScanRegistry {
+
+    private static List<? extends Expression> schema() {
+        ElementSymbol x = new ElementSymbol("x");
+        x.setType(DataTypeManager.DefaultDataClasses.INTEGER);
+        return Arrays.asList(x);
+    }
+
+    private static TupleSource rows(int count) {
+        List<List<?>> rows = new ArrayList<List<?>>();
+        for (int i = 0; i < count; i++) {
+            rows.add(Arrays.asList(i));
+        }
+        return new CollectionTupleSource(rows.iterator());
+    }
+
+    private static class CountingFactory implements SharedScanRegistry.SourceFactory {
+        int created;
+        int count = 3;
+
+        @Override
+        public TupleSource createSource() throws TeiidComponentException,
+                TeiidProcessingException {
+            created++;
+            //a different order than the leader
+            List<List<?>> rows = new ArrayList<List<?>>();
+            for (int i = count - 1; i >= 0; i--) {
+                rows.add(Arrays.asList(i));
+            }
+            return new CollectionTupleSource(rows.iterator());
+        }
+    }
+
+    private static int readAll(TupleSource ts) throws Exception {
+        int count = 0;
+        while (ts.nextTuple() != null) {
+            count++;
+        }
+        ts.closeSource();
+        return count;
+    }
+
+    @Test public void testFollowerReadsLeaderResults() throws Exception {
+        SharedScanRegistry registry = new SharedScanRegistry(BufferManagerFactory.getStandaloneBufferManager());
+        RequestWorkItem leader = Mockito.mock(RequestWorkItem.class);
+        RequestWorkItem follower = Mockito.mock(RequestWorkItem.class);
+
+        assertNull(registry.attach("key", leader, new CountingFactory()));
+        TupleSource leaderTs = registry.register("key", leader, rows(3), schema(), "1");
+        CountingFactory factory = new CountingFactory();
+        TupleSource followerTs = registry.attach("key", follower, factory);
+        assertNotNull(followerTs);
+        //the leader may not follow while it has followers
+        assertNull(registry.attach("other", leader, factory));
+
+        try {
+            followerTs.nextTuple();
+            fail();
+        } catch (BlockedException e) {
+        }
+        assertEquals(3, readAll(leaderTs));
+        Mockito.verify(follower).moreWork();
+        assertEquals(0, registry.getScanCount());
+
+        assertEquals(3, readAll(followerTs));
+        assertEquals(0, factory.created);
+    }
+
+    @Test public void testLeaderClosesEarly() throws Exception {
+        SharedScanRegistry registry = new SharedScanRegistry(BufferManagerFactory.getStandaloneBufferManager());
+        RequestWorkItem leader = Mockito.mock(RequestWorkItem.class);
+        RequestWorkItem follower = Mockito.mock(RequestWorkItem.class);
+
+        TupleSource leaderTs = registry.register("key", leader, rows(3), schema(), "1");
+        CountingFactory factory = new CountingFactory();
+        TupleSource followerTs = registry.attach("key", follower, factory);
+        assertNotNull(leaderTs.nextTuple());
+        leaderTs.closeSource();
+        assertEquals(0, registry.getScanCount());
+
+        assertEquals(3, readAll(followerTs));
+        assertEquals(1, factory.created);
+    }
+
+    @Test public void testNoSharingOnceStarted() throws Exception {
+        SharedScanRegistry registry = new SharedScanRegistry(BufferManagerFactory.getStandaloneBufferManager());
+        RequestWorkItem leader = Mockito.mock(RequestWorkItem.class);
+        RequestWorkItem follower = Mockito.mock(RequestWorkItem.class);
+
+        TupleSource leaderTs = registry.register("key", leader, rows(3), schema(), "1");
+        assertNotNull(leaderTs.nextTuple());
+        assertNull(registry.attach("key", follower, new CountingFactory()));
+        assertEquals(2, readAll(leaderTs));
+    }
+
+    @Test public void testFollowerStreams() throws Exception {
+        SharedScanRegistry registry = new SharedScanRegistry(BufferManagerFactory.getTestBufferManager(1 << 20, 2));
+        RequestWorkItem leader = Mockito.mock(RequestWorkItem.class);
+        RequestWorkItem follower = Mockito.mock(RequestWorkItem.class);
+
+        TupleSource leaderTs = registry.register("key", leader, rows(1000), schema(), "1");
+        CountingFactory factory = new CountingFactory();
+        TupleSource followerTs = registry.attach("key", follower, factory);
+        int leaderCount = 0;
+        int followerCount = 0;
+        while (leaderTs.nextTuple() != null) {
+            leaderCount++;
+            try {
+                if (followerTs.nextTuple() != null) {
+                    followerCount++;
+                }
+            } catch (BlockedException e) {
+            }
+        }
+        leaderTs.closeSource();
+        assertEquals(1000, leaderCount);
+        //the follower did not have to wait for the leader to finish
+        assertTrue(followerCount > 0);
+        assertEquals(1000, followerCount + readAll(followerTs));
+        assertEquals(0, factory.created);
+    }
+
+    @Test public void testLeaderClosesMidStream() throws Exception {
+        SharedScanRegistry registry = new SharedScanRegistry(BufferManagerFactory.getTestBufferManager(1 << 20, 2));
+        RequestWorkItem leader = Mockito.mock(RequestWorkItem.class);
+        RequestWorkItem follower = Mockito.mock(RequestWorkItem.class);
+
+        TupleSource leaderTs = registry.register("key", leader, rows(1000), schema(), "1");
+        CountingFactory factory = new CountingFactory();
+        factory.count = 1000;
+        TupleSource followerTs = registry.attach("key", follower, factory);
+        Set<Object> values = new HashSet<Object>();
+        List<?> tuple = null;
+        while (tuple == null) {
+            assertNotNull(leaderTs.nextTuple());
+            try {
+                tuple = followerTs.nextTuple();
+            } catch (BlockedException e) {
+            }
+        }
+        values.add(tuple.get(0));
+        leaderTs.closeSource();
+        assertEquals(0, registry.getScanCount());
+
+        //the rows already returned are not returned again
+        while ((tuple = followerTs.nextTuple()) != null) {
+            assertTrue(values.add(tuple.get(0)));
+        }
+        followerTs.closeSource();
+        assertEquals(1000, values.size());
+        assertEquals(1, factory.created);
+    }
+
+    @Test public void testStalledLeader() throws Exception {
+        SharedScanRegistry registry = new SharedScanRegistry(BufferManagerFactory.getStandaloneBufferManager());
+        registry.setStallTimeout(0);
+        RequestWorkItem leader = Mockito.mock(RequestWorkItem.class);
+        RequestWorkItem follower = Mockito.mock(RequestWorkItem.class);
+
+        TupleSource leaderTs = registry.register("key", leader, rows(3), schema(), "1");
+        CountingFactory factory = new CountingFactory();
+        TupleSource followerTs = registry.attach("key", follower, factory);
+        assertEquals(3, readAll(followerTs));
+        assertEquals(1, factory.created);
+
+        //with no followers the leader no longer copies its results
+        assertEquals(3, readAll(leaderTs));
+        assertEquals(0, registry.getScanCount());
+    }
+
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags and
+ * the COPYRIGHT.txt file distributed with this work.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.teiid.dqp.internal.process;
+
+import static org.junit.Assert.*;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Test;
+import org.teiid.adminapi.impl.WorkerPoolStatisticsMetadata;
+
+@SuppressWarnings("nls")
+public class TestVirtualThreadExecutor {
+
+    @Test public void testExecute() throws Exception {
+        VirtualThreadExecutor executor = new VirtualThreadExecutor("test", Executors.newCachedThreadPool());
+        DQPWorkContext context = new DQPWorkContext();
+        DQPWorkContext.setWorkContext(context);
+        try {
+            final AtomicReference<DQPWorkContext> workContext = new AtomicReference<DQPWorkContext>();
+            final CountDownLatch latch = new CountDownLatch(2);
+            for (int i = 0; i < 2; i++) {
+                executor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        workContext.set(DQPWorkContext.getWorkContext());
+                        latch.countDown();
+                    }
+                });
+            }
+            assertTrue(latch.await(10, TimeUnit.SECONDS));
+            assertSame(context, workContext.get());
+        } finally {
+            DQPWorkContext.setWorkContext(new DQPWorkContext());
+        }
+        executor.shutdownNow();
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+        WorkerPoolStatisticsMetadata stats = executor.getStats();
+        assertEquals(2, stats.getTotalSubmitted());
+        assertEquals(2, stats.getTotalCompleted());
+        assertEquals(0, stats.getActiveThreads());
+    }
+
+    @Test public void testSourceExecutor() {
+        DQPConfiguration config = new DQPConfiguration();
+        TeiidExecutor processExecutor = config.getTeiidExecutor();
+        assertSame(processExecutor, config.getSourceExecutor(processExecutor));
+        config.setUseVirtualThreads(true);
+        TeiidExecutor sourceExecutor = config.getSourceExecutor(processExecutor);
+        if (VirtualThreadExecutor.newVirtualThreadPerTaskExecutor() == null) {
+            assertSame(processExecutor, sourceExecutor);
+        } else {
+            assertTrue(sourceExecutor instanceof VirtualThreadExecutor);
+            sourceExecutor.shutdownNow();
+        }
+    }
+
+}
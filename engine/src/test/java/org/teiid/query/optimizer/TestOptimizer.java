@@ -379,6 +379,8 @@ public class TestOptimizer {
                 }
             } else if (strategy instanceof NestedTableJoinStrategy) {
                 updateCounts(NestedTableJoinStrategy.class, counts, types);
+            } else if (strategy instanceof HashJoinStrategy) {
+                updateCounts(HashJoinStrategy.class, counts, types);
             }
             if (((JoinNode)relationalNode).isDependent()) {
                 updateCounts(DependentJoin.class, counts, types);
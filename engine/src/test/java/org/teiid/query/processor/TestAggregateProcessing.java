@@ -45,6 +45,7 @@ import org.teiid.core.types.DataTypeManager;
 import org.teiid.core.util.ObjectConverterUtil;
 import org.teiid.core.util.UnitTestUtil;
 import org.teiid.metadata.AggregateAttributes;
+import org.teiid.metadata.Column;
 import org.teiid.metadata.FunctionMethod;
 import org.teiid.metadata.FunctionParameter;
 import org.teiid.metadata.MetadataStore;
@@ -59,6 +60,9 @@ import org.teiid.query.optimizer.capabilities.CapabilitiesFinder;
 import org.teiid.query.optimizer.capabilities.DefaultCapabilitiesFinder;
 import org.teiid.query.optimizer.capabilities.FakeCapabilitiesFinder;
 import org.teiid.query.optimizer.capabilities.SourceCapabilities.Capability;
+import org.teiid.query.processor.relational.GroupingNode;
+import org.teiid.query.processor.relational.RelationalNode;
+import org.teiid.query.processor.relational.RelationalPlan;
 import org.teiid.query.resolver.TestResolver;
 import org.teiid.query.sql.lang.Command;
 import org.teiid.query.unittest.RealMetadataFactory;
@@ -1632,5 +1636,51 @@ public class TestAggregateProcessing {
         helpProcess(plan, TestProcessor.createCommandContext(), dataManager, expected);
     }
 
-}
+    @Test public void testHashAggregation() throws Exception {
+        TransformationMetadata metadata = RealMetadataFactory.exampleBQT();
+        RealMetadataFactory.setCardinality("bqt1.smalla", 1000, metadata);
+        Column intNum = metadata.getElementID("bqt1.smalla.intnum");
+        intNum.setDistinctValues(10);
+
+        String sql = "SELECT IntNum, COUNT(*) AS c, SUM(IntKey) FROM BQT1.SmallA GROUP BY IntNum ORDER BY c, IntNum"; //$NON-NLS-1$
+
+        HardcodedDataManager dataManager = new HardcodedDataManager();
+        dataManager.addData("SELECT BQT1.SmallA.IntNum, BQT1.SmallA.IntKey FROM BQT1.SmallA", new List<?>[] {
+                Arrays.asList(1, 1), Arrays.asList(2, 2), Arrays.asList(1, 3), Arrays.asList(null, 4), Arrays.asList(3, 5), Arrays.asList(1, 6)});
+
+        //not used by default
+        ProcessorPlan plan = helpGetPlan(sql, metadata, new DefaultCapabilitiesFinder());
+        assertFalse(findGroupingNode(((RelationalPlan)plan).getRootNode()).isHashAggregation());
 
+        CommandContext cc = TestProcessor.createCommandContext();
+        cc.setOptions(new Options().hashAggregation(true));
+        plan = helpGetPlan(helpParse(sql), metadata, new DefaultCapabilitiesFinder(), cc);
+        assertTrue(findGroupingNode(((RelationalPlan)plan).getRootNode()).isHashAggregation());
+
+        helpProcess(plan, dataManager, new List[] {
+                Arrays.asList(null, 1, 4L),
+                Arrays.asList(2, 1, 2L),
+                Arrays.asList(3, 1, 5L),
+                Arrays.asList(1, 3, 10L)});
+
+        //the grouping provides the order, so a hash is not used
+        plan = helpGetPlan(helpParse("SELECT IntNum, COUNT(*) FROM BQT1.SmallA GROUP BY IntNum ORDER BY IntNum"), metadata, new DefaultCapabilitiesFinder(), cc); //$NON-NLS-1$
+        assertFalse(findGroupingNode(((RelationalPlan)plan).getRootNode()).isHashAggregation());
+    }
+
+    private static GroupingNode findGroupingNode(RelationalNode node) {
+        if (node instanceof GroupingNode) {
+            return (GroupingNode)node;
+        }
+        for (RelationalNode child : node.getChildren()) {
+            if (child != null) {
+                GroupingNode result = findGroupingNode(child);
+                if (result != null) {
+                    return result;
+                }
+            }
+        }
+        return null;
+    }
+
+}
@@ -24,11 +24,18 @@ import java.util.Arrays;
 import java.util.List;
 
 import org.junit.Test;
+import org.teiid.common.buffer.BufferManager.TupleSourceType;
 import org.teiid.common.buffer.BufferManagerFactory;
+import org.teiid.common.buffer.ColumnarBatch;
+import org.teiid.common.buffer.TupleBatch;
+import org.teiid.common.buffer.TupleBuffer;
+import org.teiid.common.buffer.impl.BufferManagerImpl;
 import org.teiid.core.types.DataTypeManager;
+import org.teiid.query.processor.BatchCollector.BatchProducer;
 import org.teiid.query.processor.relational.FakeRelationalNode;
 import org.teiid.query.sql.symbol.ElementSymbol;
 import org.teiid.query.util.CommandContext;
+import org.teiid.query.util.Options;
 
 @SuppressWarnings("nls")
 public class TestBatchCollector {
@@ -46,4 +53,45 @@ public class TestBatchCollector {
         assertEquals(3, bc.collectTuples().getRowCount());
     }
 
+    @Test public void testLimitSaveLastRowColumnar() throws Exception {
+        BufferManagerImpl bm = BufferManagerFactory.createBufferManager();
+        bm.setOptions(new Options().columnarBatches(true));
+        final List<ElementSymbol> elements = Arrays.asList(new ElementSymbol("x", null, DataTypeManager.DefaultDataClasses.INTEGER));
+        TupleBuffer tb = bm.createTupleBuffer(elements, "x", TupleSourceType.PROCESSOR);
+        tb.setBatchSize(10);
+        for (int i = 0; i < 10; i++) {
+            tb.addTuple(Arrays.asList(i));
+        }
+        tb.close();
+        final TupleBatch batch = tb.getBatch(1);
+        assertTrue(batch.getTuples() instanceof ColumnarBatch);
+        BatchProducer producer = new BatchProducer() {
+            @Override
+            public TupleBatch nextBatch() {
+                return batch;
+            }
+            @Override
+            public List getOutputElements() {
+                return elements;
+            }
+            @Override
+            public TupleBuffer getBuffer(int maxRows) {
+                return null;
+            }
+            @Override
+            public boolean hasBuffer() {
+                return false;
+            }
+            @Override
+            public void close() {
+            }
+        };
+        BatchCollector bc = new BatchCollector(producer, bm, new CommandContext(), false);
+        bc.setRowLimit(10);
+        bc.setSaveLastRow(true);
+        TupleBuffer result = bc.collectTuples();
+        assertEquals(11, result.getRowCount());
+        assertEquals(Arrays.asList(9), result.getBatch(11).getTuple(11));
+    }
+
 }
@@ -31,8 +31,12 @@ import org.teiid.api.exception.query.QueryMetadataException;
 import org.teiid.common.buffer.BufferManagerFactory;
 import org.teiid.core.TeiidComponentException;
 import org.teiid.core.TeiidProcessingException;
+import org.teiid.core.types.BinaryType;
+import org.teiid.language.AndOr;
 import org.teiid.language.Array;
 import org.teiid.language.Comparison;
+import org.teiid.language.Condition;
+import org.teiid.language.Function;
 import org.teiid.language.Literal;
 import org.teiid.language.Parameter;
 import org.teiid.language.Select;
@@ -46,6 +50,8 @@ import org.teiid.query.optimizer.capabilities.DefaultCapabilitiesFinder;
 import org.teiid.query.optimizer.capabilities.FakeCapabilitiesFinder;
 import org.teiid.query.optimizer.capabilities.SourceCapabilities.Capability;
 import org.teiid.query.parser.QueryParser;
+import org.teiid.query.processor.relational.BloomFilter;
+import org.teiid.query.processor.relational.DependentAccessNode;
 import org.teiid.query.processor.relational.JoinNode;
 import org.teiid.query.processor.relational.RelationalNode;
 import org.teiid.query.processor.relational.RelationalPlan;
@@ -54,7 +60,9 @@ import org.teiid.query.sql.lang.Query;
 import org.teiid.query.sql.lang.SetCriteria;
 import org.teiid.query.unittest.RealMetadataFactory;
 import org.teiid.query.util.CommandContext;
+import org.teiid.query.util.Options;
 import org.teiid.translator.ExecutionFactory.NullOrder;
+import org.teiid.translator.SourceSystemFunctions;
 
 @SuppressWarnings({"rawtypes", "unchecked", "nls"})
 public class TestDependentJoins {
@@ -1273,6 +1281,92 @@ public class TestDependentJoins {
         assertNull(s.getDependentValues());
     }
 
+    @Test public void testPushdownMaxBloomFilter() throws Exception {
+        String sql = "SELECT pm1.g1.e1 FROM pm1.g1, pm2.g2 MAKEDEP(max:2) WHERE pm1.g1.e1 = pm2.g2.e1 AND pm1.g1.e2=pm2.g2.e2 order by pm1.g1.e1"; //$NON-NLS-1$
+
+        List<?>[] expected = new List<?>[] {
+            Arrays.asList("a"), //$NON-NLS-1$
+            Arrays.asList("c"), //$NON-NLS-1$
+        };
+
+        final List<?>[] dependentData = new List<?>[] {Arrays.asList("a", 1), Arrays.asList("b", 2), Arrays.asList("c", 1), Arrays.asList("d", 3), Arrays.asList(null, 1)};
+        HardcodedDataManager dataManager = new HardcodedDataManager(RealMetadataFactory.example1Cached()) {
+            @Override
+            protected List<?>[] getData(String commandString) {
+                if (commandString.startsWith("SELECT g_0.e1 AS c_0, g_0.e2 AS c_1 FROM g2 AS g_0 WHERE bloom_filter_contains(")) { //$NON-NLS-1$
+                    return dependentData;
+                }
+                return super.getData(commandString);
+            }
+        };
+        dataManager.addData("SELECT g_0.e1 AS c_0, g_0.e2 AS c_1 FROM g1 AS g_0 ORDER BY c_0, c_1", new List<?>[] {Arrays.asList("a", 1), Arrays.asList("b", 1), Arrays.asList("c", 1)});
+        dataManager.addData("SELECT g_0.e1 AS c_0, g_0.e2 AS c_1 FROM g2 AS g_0 ORDER BY c_0, c_1", dependentData);
+
+        BasicSourceCapabilities bsc = TestOptimizer.getTypicalCapabilities();
+        bsc.setCapabilitySupport(Capability.DEPENDENT_JOIN, true);
+        DefaultCapabilitiesFinder dcf = new DefaultCapabilitiesFinder(bsc);
+
+        //without the filter all of the dependent rows are returned
+        CommandContext cc = createCommandContext();
+        cc.setCollectNodeStatistics(true);
+        ProcessorPlan plan = TestProcessor.helpGetPlan(helpParse(sql), RealMetadataFactory.example1Cached(), dcf, cc);
+        TestOptimizer.checkDependentJoinCount(plan, 1);
+        TestProcessor.doProcess(plan, dataManager, expected, cc);
+        assertEquals(Long.valueOf(5), findDependentAccessNode(((RelationalPlan)plan).getRootNode()).getNodeStatistics().getNodeOutputRows());
+
+        //the filter is applied to the dependent results
+        cc = createCommandContext();
+        cc.setCollectNodeStatistics(true);
+        cc.setOptions(new Options().dependentJoinBloomFilter(true));
+        plan = TestProcessor.helpGetPlan(helpParse(sql), RealMetadataFactory.example1Cached(), dcf, cc);
+        TestProcessor.doProcess(plan, dataManager, expected, cc);
+        assertEquals(Long.valueOf(2), findDependentAccessNode(((RelationalPlan)plan).getRootNode()).getNodeStatistics().getNodeOutputRows());
+
+        //pushed to the source, which is expected to apply it
+        bsc.setCapabilitySupport(Capability.DEPENDENT_JOIN_BLOOM_FILTER, true);
+        cc = createCommandContext();
+        cc.setCollectNodeStatistics(true);
+        cc.setOptions(new Options().dependentJoinBloomFilter(true));
+        plan = TestProcessor.helpGetPlan(helpParse(sql), RealMetadataFactory.example1Cached(), dcf, cc);
+        TestProcessor.doProcess(plan, dataManager, expected, cc);
+        assertEquals(Long.valueOf(5), findDependentAccessNode(((RelationalPlan)plan).getRootNode()).getNodeStatistics().getNodeOutputRows());
+
+        Select s = (Select)dataManager.getPushdownCommands().get(dataManager.getPushdownCommands().size() - 1);
+        assertNull(s.getDependentValues());
+        //sized for the 3 independent rows
+        checkBloomFilterCriteria(s.getWhere(), new BloomFilter(3, .01));
+    }
+
+    private static void checkBloomFilterCriteria(Condition condition, BloomFilter expected) {
+        if (condition instanceof AndOr) {
+            checkBloomFilterCriteria(((AndOr)condition).getLeftCondition(), expected);
+            checkBloomFilterCriteria(((AndOr)condition).getRightCondition(), expected);
+            return;
+        }
+        Comparison comparison = (Comparison)condition;
+        assertEquals(Boolean.TRUE, ((Literal)comparison.getRightExpression()).getValue());
+        Function function = (Function)comparison.getLeftExpression();
+        assertEquals(SourceSystemFunctions.BLOOM_FILTER_CONTAINS, function.getName());
+        List<org.teiid.language.Expression> args = function.getParameters();
+        assertEquals(expected.getBytes().length, ((BinaryType)((Literal)args.get(0)).getValue()).getLength());
+        assertEquals(expected.getHashFunctions(), ((Literal)args.get(1)).getValue());
+    }
+
+    private static DependentAccessNode findDependentAccessNode(RelationalNode node) {
+        if (node instanceof DependentAccessNode) {
+            return (DependentAccessNode)node;
+        }
+        for (RelationalNode child : node.getChildren()) {
+            if (child != null) {
+                DependentAccessNode result = findDependentAccessNode(child);
+                if (result != null) {
+                    return result;
+                }
+            }
+        }
+        return null;
+    }
+
     @Test public void testFullDepJoin() throws Exception {
         BasicSourceCapabilities caps = TestOptimizer.getTypicalCapabilities();
         caps.setCapabilitySupport(Capability.FULL_DEPENDENT_JOIN, true);
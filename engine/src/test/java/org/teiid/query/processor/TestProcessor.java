@@ -76,6 +76,7 @@ import org.teiid.query.optimizer.capabilities.SourceCapabilities.Capability;
 import org.teiid.query.optimizer.relational.rules.RuleChooseDependent;
 import org.teiid.query.parser.QueryParser;
 import org.teiid.query.processor.proc.ProcedurePlan;
+import org.teiid.query.processor.relational.HashJoinStrategy;
 import org.teiid.query.processor.relational.JoinNode;
 import org.teiid.query.processor.relational.RelationalNode;
 import org.teiid.query.processor.relational.RelationalPlan;
@@ -93,6 +94,7 @@ import org.teiid.query.tempdata.TempTableStore.TransactionMode;
 import org.teiid.query.unittest.RealMetadataFactory;
 import org.teiid.query.unittest.TimestampUtil;
 import org.teiid.query.util.CommandContext;
+import org.teiid.query.util.Options;
 import org.teiid.query.validator.Validator;
 import org.teiid.query.validator.ValidatorReport;
 import org.teiid.translator.SourceSystemFunctions;
@@ -8151,5 +8153,81 @@ public class TestProcessor {
         helpProcess(plan, createCommandContext(), dataManager, null);
    }
 
+    @Test public void testHashJoin() throws Exception {
+        String sql = "SELECT pm1.g1.e1, pm2.g1.e1 FROM pm1.g1 LEFT OUTER JOIN pm2.g1 ON pm1.g1.e2 = pm2.g1.e2"; //$NON-NLS-1$
+
+        QueryMetadataInterface metadata = RealMetadataFactory.example1();
+        RealMetadataFactory.setCardinality("pm1.g1", 1000, metadata); //$NON-NLS-1$
+        RealMetadataFactory.setCardinality("pm2.g1", 1000, metadata); //$NON-NLS-1$
+
+        //not used by default
+        ProcessorPlan plan = helpGetPlan(sql, metadata, new DefaultCapabilitiesFinder(new BasicSourceCapabilities()));
+        checkNodeTypes(plan, new int[] {0}, new Class<?>[] {HashJoinStrategy.class});
+
+        //the sources can't sort, so a hash join is used rather than a sort merge
+        CommandContext cc = createCommandContext();
+        cc.setOptions(new Options().hashJoin(true));
+        plan = helpGetPlan(helpParse(sql), metadata, new DefaultCapabilitiesFinder(new BasicSourceCapabilities()), cc);
+        checkNodeTypes(plan, new int[] {1}, new Class<?>[] {HashJoinStrategy.class});
+
+        HardcodedDataManager dataManager = new HardcodedDataManager();
+        dataManager.addData("SELECT pm1.g1.e2, pm1.g1.e1 FROM pm1.g1", new List<?>[] { //$NON-NLS-1$
+                Arrays.asList(1, "a"), Arrays.asList(2, "b"), Arrays.asList(null, "c"), Arrays.asList(1, "d")}); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$
+        dataManager.addData("SELECT pm2.g1.e2, pm2.g1.e1 FROM pm2.g1", new List<?>[] { //$NON-NLS-1$
+                Arrays.asList(1, "x"), Arrays.asList(2, "y"), Arrays.asList(3, "z")}); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+
+        helpProcess(plan, dataManager, new List<?>[] {
+                Arrays.asList("a", "x"), //$NON-NLS-1$ //$NON-NLS-2$
+                Arrays.asList("b", "y"), //$NON-NLS-1$ //$NON-NLS-2$
+                Arrays.asList("c", null), //$NON-NLS-1$
+                Arrays.asList("d", "x")}); //$NON-NLS-1$ //$NON-NLS-2$
+    }
+
+    @Test public void testUnionAllExchange() throws Exception {
+        String sql = "SELECT concat(e1, 'x') AS c, e2 + 1 FROM pm1.g1 UNION ALL SELECT concat(e1, 'y'), e2 + 1 FROM pm1.g2 UNION ALL SELECT concat(e1, 'z'), e2 + 1 FROM pm1.g3 ORDER BY c"; //$NON-NLS-1$
+
+        ProcessorPlan plan = helpGetPlan(sql, RealMetadataFactory.example1Cached(), new DefaultCapabilitiesFinder(new BasicSourceCapabilities()));
+
+        HardcodedDataManager dataManager = new HardcodedDataManager();
+        dataManager.addData("SELECT pm1.g1.e1, pm1.g1.e2 FROM pm1.g1", new List<?>[] { //$NON-NLS-1$
+                Arrays.asList("a", 1), Arrays.asList("b", 2)}); //$NON-NLS-1$ //$NON-NLS-2$
+        dataManager.addData("SELECT pm1.g2.e1, pm1.g2.e2 FROM pm1.g2", new List<?>[] { //$NON-NLS-1$
+                Arrays.asList("c", 3)}); //$NON-NLS-1$
+        dataManager.addData("SELECT pm1.g3.e1, pm1.g3.e2 FROM pm1.g3", new List<?>[] { //$NON-NLS-1$
+                Arrays.asList("a", 4), Arrays.asList(null, 5)}); //$NON-NLS-1$
+
+        CommandContext cc = createCommandContext();
+        cc.setOptions(new Options().exchangeParallelism(2));
+        helpProcess(plan, cc, dataManager, new List<?>[] {
+                Arrays.asList(null, 6),
+                Arrays.asList("ax", 2), //$NON-NLS-1$
+                Arrays.asList("az", 5), //$NON-NLS-1$
+                Arrays.asList("bx", 3), //$NON-NLS-1$
+                Arrays.asList("cy", 4)}); //$NON-NLS-1$
+    }
+
+    @Test public void testCompiledExpressions() throws Exception {
+        String sql = "SELECT concat(e1, 'x'), CASE WHEN e2 > 1 THEN e2 ELSE 0 END FROM pm1.g1 WHERE upper(e1) <> 'B' OR e2 IS NULL"; //$NON-NLS-1$
+
+        ProcessorPlan plan = helpGetPlan(sql, RealMetadataFactory.example1Cached(), new DefaultCapabilitiesFinder(new BasicSourceCapabilities()));
+
+        HardcodedDataManager dataManager = new HardcodedDataManager();
+        dataManager.addData("SELECT pm1.g1.e1, pm1.g1.e2 FROM pm1.g1", new List<?>[] { //$NON-NLS-1$
+                Arrays.asList("a", 1), Arrays.asList("b", 2), Arrays.asList(null, 3), //$NON-NLS-1$ //$NON-NLS-2$
+                Arrays.asList("c", null), Arrays.asList("d", 5)}); //$NON-NLS-1$ //$NON-NLS-2$
+
+        List<?>[] expected = new List<?>[] {
+                Arrays.asList("ax", 0), //$NON-NLS-1$
+                Arrays.asList("cx", 0), //$NON-NLS-1$
+                Arrays.asList("dx", 5)}; //$NON-NLS-1$
+        //the compiled form is shared by the copies of the plan
+        for (int i = 0; i < 2; i++) {
+            CommandContext cc = createCommandContext();
+            cc.setOptions(new Options().compileExpressions(true));
+            helpProcess(plan.clone(), cc, dataManager, expected);
+        }
+    }
+
     private static final boolean DEBUG = false;
+
 }
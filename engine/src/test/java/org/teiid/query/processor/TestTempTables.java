@@ -59,6 +59,7 @@ import org.teiid.query.optimizer.TestOptimizer.ComparisonMode;
 import org.teiid.query.tempdata.GlobalTableStoreImpl;
 import org.teiid.query.tempdata.TempTableDataManager;
 import org.teiid.query.unittest.RealMetadataFactory;
+import org.teiid.query.util.Options;
 
 @SuppressWarnings({"nls", "unchecked"})
 public class TestTempTables extends TempTableTestHarness {
@@ -663,6 +664,16 @@ public class TestTempTables extends TempTableTestHarness {
         helpTestDelete();
     }
 
+    @Test public void testDeleteRemovingPageBPlusTree() throws Exception {
+        FakeDataManager fdm = new FakeDataManager();
+        TestProcessor.sampleData1(fdm);
+        BufferManagerImpl bm = BufferManagerFactory.getTestBufferManager(100000, 10);
+        bm.setOptions(new Options().bPlusTreeIndexes(true));
+        setUp(RealMetadataFactory.example1Cached(), fdm, bm);
+
+        helpTestDelete();
+    }
+
     private void helpTestDelete() throws Exception {
         execute("insert into #tmp_params "
                 + "select parsetimestamp('2016-04-01','yyyy-MM-dd') as starttime, parsetimestamp('2016-04-15','yyyy-MM-dd') as endtime", new List[] {Arrays.asList(1)});
@@ -410,6 +410,24 @@ public class TestTextTable {
         process(sql, expected);
     }
 
+    /**
+     * Lines spanning the read buffer with only some of the columns projected
+     */
+    @Test public void testLargeInput() throws Exception {
+        String sql = "select y, z from texttable(? COLUMNS z integer, x string, y string HEADER) x"; //$NON-NLS-1$
+
+        StringBuilder text = new StringBuilder("y, x, z\r\n"); //$NON-NLS-1$
+        List<List<?>> expected = new ArrayList<List<?>>();
+        for (int i = 0; i < 2000; i++) {
+            String y = i%3==0?"\"y,\"\"" + i + "\"":("y" + i); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+            text.append(y).append(",").append(new String(new char[i%50])).append(" ,").append(i).append(i%2==0?"\r\n":"\n"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$
+            expected.add(Arrays.asList(i%3==0?"y,\"" + i:("y" + i), i)); //$NON-NLS-1$ //$NON-NLS-2$
+        }
+
+        FakeDataManager dataManager = new FakeDataManager();
+        processPreparedStatement(sql, expected.toArray(new List<?>[expected.size()]), dataManager, new DefaultCapabilitiesFinder(), RealMetadataFactory.example1Cached(), Arrays.asList(new ClobType(new SerialClob(text.toString().toCharArray()))));
+    }
+
     public static void process(String sql, List<?>[] expectedResults) throws Exception {
         FakeDataManager dataManager = new FakeDataManager();
         sampleData1(dataManager);
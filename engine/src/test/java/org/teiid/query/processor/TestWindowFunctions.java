@@ -1390,4 +1390,63 @@ public class TestWindowFunctions {
         helpProcess(plan, dataManager, expected);
     }
 
+    @Test public void testSortedInputRows() throws Exception {
+        String sql = "select e1, e2, count(*) over (order by e1, e2 ROWS BETWEEN 1 PRECEDING AND 1 FOLLOWING) c, "
+                + "sum(e2) over (order by e1, e2 ROWS BETWEEN 1 PRECEDING AND 1 FOLLOWING) s from (select e1, e2 from pm1.g1 order by e1, e2 limit 100) x";
+
+        List<?>[] expected = new List[] {
+                Arrays.asList(null, 1, 2, 1L),
+                Arrays.asList("a", 0, 3, 1L),
+                Arrays.asList("a", 0, 3, 3L),
+                Arrays.asList("a", 3, 3, 5L),
+                Arrays.asList("b", 2, 3, 6L),
+                Arrays.asList("c", 1, 2, 3L),
+        };
+
+        FakeDataManager dataManager = new FakeDataManager();
+        sampleData1(dataManager);
+        ProcessorPlan plan = helpGetPlan(sql, RealMetadataFactory.example1Cached(), new DefaultCapabilitiesFinder(new BasicSourceCapabilities()));
+
+        helpProcess(plan, dataManager, expected);
+    }
+
+    @Test public void testSortedInputRange() throws Exception {
+        String sql = "select e1, sum(e2) over (order by e1) s from (select e1, e2 from pm1.g1 order by e1 limit 100) x";
+
+        List<?>[] expected = new List[] {
+                Arrays.asList(null, 1L),
+                Arrays.asList("a", 4L),
+                Arrays.asList("a", 4L),
+                Arrays.asList("a", 4L),
+                Arrays.asList("b", 6L),
+                Arrays.asList("c", 7L),
+        };
+
+        FakeDataManager dataManager = new FakeDataManager();
+        sampleData1(dataManager);
+        ProcessorPlan plan = helpGetPlan(sql, RealMetadataFactory.example1Cached(), new DefaultCapabilitiesFinder(new BasicSourceCapabilities()));
+
+        helpProcess(plan, dataManager, expected);
+    }
+
+    @Test public void testSortedInputPartitionedRows() throws Exception {
+        String sql = "select e1, e2, min(e2) over (partition by e1 order by e2 ROWS BETWEEN 1 PRECEDING AND CURRENT ROW) m, "
+                + "count(e1) over (partition by e1 order by e2 ROWS BETWEEN 1 PRECEDING AND CURRENT ROW) c from (select e1, e2 from pm1.g1 order by e1, e2 limit 100) x";
+
+        List<?>[] expected = new List[] {
+                Arrays.asList(null, 1, 1, 0),
+                Arrays.asList("a", 0, 0, 1),
+                Arrays.asList("a", 0, 0, 2),
+                Arrays.asList("a", 3, 0, 2),
+                Arrays.asList("b", 2, 2, 1),
+                Arrays.asList("c", 1, 1, 1),
+        };
+
+        FakeDataManager dataManager = new FakeDataManager();
+        sampleData1(dataManager);
+        ProcessorPlan plan = helpGetPlan(sql, RealMetadataFactory.example1Cached(), new DefaultCapabilitiesFinder(new BasicSourceCapabilities()));
+
+        helpProcess(plan, dataManager, expected);
+    }
+
 }
@@ -0,0 +1,167 @@
+/*
+ * Copyright Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags and
+ * the COPYRIGHT.txt file distributed with this work.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.teiid.query.processor.eval;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+import org.teiid.common.buffer.ColumnarBatch;
+import org.teiid.core.types.DataTypeManager;
+import org.teiid.query.eval.BatchEvaluator;
+import org.teiid.query.eval.BatchEvaluator.BatchCriteria;
+import org.teiid.query.eval.BatchEvaluator.BatchExpression;
+import org.teiid.query.eval.Evaluator;
+import org.teiid.query.resolver.TestResolver;
+import org.teiid.query.rewriter.QueryRewriter;
+import org.teiid.query.sql.lang.Query;
+import org.teiid.query.sql.symbol.Expression;
+import org.teiid.query.sql.util.SymbolMap;
+import org.teiid.query.unittest.RealMetadataFactory;
+
+@SuppressWarnings("nls")
+public class TestBatchEvaluator {
+
+    private static final List<List<?>> ROWS = Arrays.asList(
+            Arrays.asList("a", 1, true, 1.5),
+            Arrays.asList("b", null, false, 2.0),
+            Arrays.asList(null, 3, null, null),
+            Arrays.asList("abc", -2, true, -1.0),
+            Arrays.asList("ab", 7, false, 10.0));
+
+    private static final List<List<?>> OVERFLOW_ROWS = Arrays.asList(
+            Arrays.asList("a", 1, true, 1.5),
+            Arrays.asList("b", Integer.MAX_VALUE, false, 2.0));
+
+    private Query helpResolve(String sql, Map<Expression, Integer> elementMap) throws Exception {
+        Query query = (Query)TestResolver.helpResolve(sql, RealMetadataFactory.example1Cached());
+        query = (Query)QueryRewriter.rewrite(query, RealMetadataFactory.example1Cached(), null);
+        for (int i = 0; i < 4; i++) {
+            elementMap.put(SymbolMap.getExpression(query.getSelect().getSymbols().get(i)), i);
+        }
+        return query;
+    }
+
+    private void helpTestCriteria(String crit, List<List<?>> rows) throws Exception {
+        Map<Expression, Integer> elementMap = new HashMap<Expression, Integer>();
+        Query query = helpResolve("SELECT e1, e2, e3, e4 FROM pm1.g1 WHERE " + crit, elementMap);
+        BatchCriteria batchCriteria = BatchEvaluator.compile(query.getCriteria(), elementMap);
+        assertNotNull(batchCriteria);
+        List<Integer> expected = new ArrayList<Integer>();
+        Evaluator eval = new Evaluator(elementMap, null, null);
+        for (int i = 0; i < ROWS.size(); i++) {
+            if (eval.evaluate(query.getCriteria(), ROWS.get(i))) {
+                expected.add(i);
+            }
+        }
+        int[] selected = batchCriteria.select(rows);
+        List<Integer> actual = new ArrayList<Integer>();
+        for (int i : selected) {
+            actual.add(i);
+        }
+        assertEquals(expected, actual);
+    }
+
+    private void helpTestCriteria(String crit) throws Exception {
+        helpTestCriteria(crit, ROWS);
+        helpTestCriteria(crit, ColumnarBatch.create(new Class<?>[] {DataTypeManager.DefaultDataClasses.STRING,
+                DataTypeManager.DefaultDataClasses.INTEGER, DataTypeManager.DefaultDataClasses.BOOLEAN,
+                DataTypeManager.DefaultDataClasses.DOUBLE}, ROWS));
+    }
+
+    private void helpTestExpression(String expr) throws Exception {
+        Map<Expression, Integer> elementMap = new HashMap<Expression, Integer>();
+        Query query = helpResolve("SELECT e1, e2, e3, e4, " + expr + " FROM pm1.g1", elementMap);
+        Expression ex = SymbolMap.getExpression(query.getSelect().getSymbols().get(4));
+        BatchExpression batchExpression = BatchEvaluator.compile(ex, elementMap);
+        assertNotNull(batchExpression);
+        Object[] values = batchExpression.evaluate(ROWS);
+        Evaluator eval = new Evaluator(elementMap, null, null);
+        for (int i = 0; i < ROWS.size(); i++) {
+            assertEquals(eval.evaluate(ex, ROWS.get(i)), values[i]);
+        }
+    }
+
+    @Test public void testCompare() throws Exception {
+        helpTestCriteria("e2 > 1");
+        helpTestCriteria("e2 <> 3");
+        helpTestCriteria("e4 <= 2.0");
+        helpTestCriteria("e1 = 'ab'");
+        helpTestCriteria("e1 < 'b'");
+        helpTestCriteria("e3 = true");
+    }
+
+    @Test public void testCompound() throws Exception {
+        helpTestCriteria("e2 > 1 AND e1 LIKE 'a%'");
+        helpTestCriteria("NOT (e2 > 1 OR e3 = true)");
+        helpTestCriteria("e2 IS NULL OR e4 IS NOT NULL");
+        helpTestCriteria("e1 NOT LIKE '_b%' AND (e2 < 5 OR e4 > 1)");
+    }
+
+    @Test public void testIn() throws Exception {
+        helpTestCriteria("e2 IN (1, 3, 7)");
+        helpTestCriteria("e2 NOT IN (1, 3)");
+        helpTestCriteria("e2 NOT IN (1, null)");
+        helpTestCriteria("e1 IN ('a', 'abc')");
+        helpTestCriteria("e4 IN (1.5, 10.0)");
+    }
+
+    @Test public void testArithmetic() throws Exception {
+        helpTestCriteria("e2 * 2 - 1 >= e2");
+        helpTestCriteria("e4 / 2 < 1");
+        helpTestExpression("e2 * 3 + 1");
+        helpTestExpression("e2 / 2");
+        helpTestExpression("e4 * 2");
+    }
+
+    @Test public void testCase() throws Exception {
+        helpTestExpression("CASE WHEN e2 > 1 THEN e2 * 2 ELSE 0 END");
+        helpTestExpression("CASE e1 WHEN 'a' THEN 1 WHEN 'b' THEN 2 END");
+        helpTestCriteria("CASE WHEN e3 THEN e2 ELSE -e2 END > 0");
+    }
+
+    @Test public void testOverflowFallback() throws Exception {
+        Map<Expression, Integer> elementMap = new HashMap<Expression, Integer>();
+        Query query = helpResolve("SELECT e1, e2, e3, e4 FROM pm1.g1 WHERE e2 * e2 > 0", elementMap);
+        BatchCriteria batchCriteria = BatchEvaluator.compile(query.getCriteria(), elementMap);
+        assertNotNull(batchCriteria.select(ROWS));
+        assertNull(batchCriteria.select(OVERFLOW_ROWS));
+    }
+
+    @Test public void testDivideByZeroFallback() throws Exception {
+        Map<Expression, Integer> elementMap = new HashMap<Expression, Integer>();
+        Query query = helpResolve("SELECT e1, e2, e3, e4, 1 / (e2 - 1) FROM pm1.g1", elementMap);
+        BatchExpression batchExpression = BatchEvaluator.compile(SymbolMap.getExpression(query.getSelect().getSymbols().get(4)), elementMap);
+        assertNull(batchExpression.evaluate(ROWS));
+    }
+
+    @Test public void testUnsupported() throws Exception {
+        Map<Expression, Integer> elementMap = new HashMap<Expression, Integer>();
+        Query query = helpResolve("SELECT e1, e2, e3, e4 FROM pm1.g1 WHERE e1 IN (SELECT e1 FROM pm1.g2)", elementMap);
+        assertNull(BatchEvaluator.compile(query.getCriteria(), elementMap));
+        query = helpResolve("SELECT e1, e2, e3, e4 FROM pm1.g1 WHERE concat(e1, 'x') = 'ax'", elementMap);
+        assertNull(BatchEvaluator.compile(query.getCriteria(), elementMap));
+    }
+
+}
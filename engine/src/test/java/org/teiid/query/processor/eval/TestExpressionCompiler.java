@@ -0,0 +1,128 @@
+/*
+ * Copyright Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags and
+ * the COPYRIGHT.txt file distributed with this work.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.teiid.query.processor.eval;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+import org.teiid.api.exception.query.ExpressionEvaluationException;
+import org.teiid.query.eval.Evaluator;
+import org.teiid.query.eval.ExpressionCompiler;
+import org.teiid.query.eval.ExpressionCompiler.CompiledCriteria;
+import org.teiid.query.eval.ExpressionCompiler.CompiledExpression;
+import org.teiid.query.resolver.TestResolver;
+import org.teiid.query.rewriter.QueryRewriter;
+import org.teiid.query.sql.lang.Query;
+import org.teiid.query.sql.symbol.Expression;
+import org.teiid.query.sql.util.SymbolMap;
+import org.teiid.query.unittest.RealMetadataFactory;
+
+@SuppressWarnings("nls")
+public class TestExpressionCompiler {
+
+    private static final List<List<?>> ROWS = Arrays.asList(
+            Arrays.asList("a", 1, true, 1.5),
+            Arrays.asList("b", null, false, 2.0),
+            Arrays.asList(null, 3, null, null),
+            Arrays.asList("abc", -2, true, -1.0),
+            Arrays.asList("ab", 7, false, 10.0));
+
+    private Query helpResolve(String sql, Map<Expression, Integer> elementMap) throws Exception {
+        Query query = (Query)TestResolver.helpResolve(sql, RealMetadataFactory.example1Cached());
+        query = (Query)QueryRewriter.rewrite(query, RealMetadataFactory.example1Cached(), null);
+        for (int i = 0; i < 4; i++) {
+            elementMap.put(SymbolMap.getExpression(query.getSelect().getSymbols().get(i)), i);
+        }
+        return query;
+    }
+
+    private void helpTestCriteria(String crit) throws Exception {
+        Map<Expression, Integer> elementMap = new HashMap<Expression, Integer>();
+        Query query = helpResolve("SELECT e1, e2, e3, e4 FROM pm1.g1 WHERE " + crit, elementMap);
+        CompiledCriteria compiled = ExpressionCompiler.compile(query.getCriteria());
+        Evaluator eval = new Evaluator(elementMap, null, null);
+        for (List<?> row : ROWS) {
+            assertEquals(eval.evaluateTVL(query.getCriteria(), row), compiled.evaluateTVL(eval, row));
+        }
+    }
+
+    private void helpTestExpression(String expr, List<?>... rows) throws Exception {
+        Map<Expression, Integer> elementMap = new HashMap<Expression, Integer>();
+        Query query = helpResolve("SELECT e1, e2, e3, e4, " + expr + " FROM pm1.g1", elementMap);
+        Expression ex = SymbolMap.getExpression(query.getSelect().getSymbols().get(4));
+        CompiledExpression compiled = ExpressionCompiler.compile(ex);
+        Evaluator eval = new Evaluator(elementMap, null, null);
+        for (List<?> row : rows.length > 0?Arrays.asList(rows):ROWS) {
+            Object expected = null;
+            String expectedMessage = null;
+            try {
+                expected = eval.evaluate(ex, row);
+            } catch (ExpressionEvaluationException e) {
+                expectedMessage = e.getMessage();
+            }
+            try {
+                assertEquals(expected, compiled.evaluate(eval, row));
+                assertNull(expectedMessage);
+            } catch (ExpressionEvaluationException e) {
+                assertEquals(expectedMessage, e.getMessage());
+            }
+        }
+    }
+
+    @Test public void testFunctions() throws Exception {
+        helpTestExpression("concat(e1, 'x')");
+        helpTestExpression("upper(e1) || e2");
+        helpTestExpression("substring(e1, 1, 2)");
+        helpTestExpression("e2 * 3 + 1");
+        helpTestExpression("e4 / 2");
+        helpTestExpression("ifnull(e1, 'none')");
+        helpTestExpression("cast(e2 as string)");
+    }
+
+    @Test public void testFunctionException() throws Exception {
+        helpTestExpression("1 / (e2 - 1)");
+        helpTestExpression("e2 * e2", Arrays.asList("a", Integer.MAX_VALUE, true, 1.0));
+    }
+
+    @Test public void testCase() throws Exception {
+        helpTestExpression("CASE WHEN e2 > 1 THEN e2 * 2 WHEN e3 THEN 0 END");
+        helpTestExpression("CASE WHEN e1 IS NULL THEN 'x' ELSE e1 END");
+        helpTestExpression("CASE e1 WHEN 'a' THEN 1 WHEN 'b' THEN 2 END");
+    }
+
+    @Test public void testCriteria() throws Exception {
+        helpTestCriteria("e2 > 1");
+        helpTestCriteria("e1 = 'ab'");
+        helpTestCriteria("e2 > 1 AND e1 LIKE 'a%'");
+        helpTestCriteria("NOT (e2 > 1 OR e3 = true)");
+        helpTestCriteria("e2 IS NULL OR e4 IS NOT NULL");
+        helpTestCriteria("e2 IN (1, 3) OR e1 IS NULL OR e4 > 1");
+        helpTestCriteria("e3 = false AND e2 < 7 AND e4 > 0");
+    }
+
+    @Test public void testCriteriaExpression() throws Exception {
+        helpTestExpression("e2 > 1 OR e3");
+    }
+
+}
@@ -0,0 +1,81 @@
+/*
+ * Copyright Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags and
+ * the COPYRIGHT.txt file distributed with this work.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.teiid.query.processor.relational;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+import org.teiid.core.types.DataTypeManager;
+import org.teiid.query.sql.symbol.ElementSymbol;
+
+@SuppressWarnings("nls")
+public class TestBloomFilter {
+
+    @Test public void testNoFalseNegatives() {
+        BloomFilter bf = new BloomFilter(10000, .01);
+        for (int i = 0; i < 10000; i++) {
+            bf.add(i);
+        }
+        for (int i = 0; i < 10000; i++) {
+            assertTrue(bf.mightContain(i));
+        }
+        int falsePositives = 0;
+        for (int i = 10000; i < 20000; i++) {
+            if (bf.mightContain(i)) {
+                falsePositives++;
+            }
+        }
+        assertTrue(String.valueOf(falsePositives), falsePositives < 300);
+    }
+
+    @Test public void testCompositeKey() {
+        BloomFilter bf = new BloomFilter(2, .01);
+        bf.add(Arrays.asList("a", 1));
+        bf.add(Arrays.asList("ab", null));
+        assertTrue(bf.mightContain(Arrays.asList("a", 1)));
+        assertFalse(bf.mightContain(Arrays.asList("a1")));
+        assertFalse(bf.mightContain(Arrays.asList("ab", null)));
+        assertFalse(bf.mightContain(null));
+    }
+
+    @Test public void testArrayKeyType() {
+        ElementSymbol x = new ElementSymbol("x");
+        x.setType(DataTypeManager.getArrayType(DataTypeManager.DefaultDataClasses.INTEGER));
+        ElementSymbol y = new ElementSymbol("y");
+        y.setType(x.getType());
+        //an array value would be hashed by its string form on the probe side
+        assertFalse(DependentCriteriaProcessor.isBloomFilterType(x, y));
+        y.setType(DataTypeManager.DefaultDataClasses.INTEGER);
+        x.setType(DataTypeManager.DefaultDataClasses.INTEGER);
+        assertTrue(DependentCriteriaProcessor.isBloomFilterType(x, y));
+    }
+
+    @Test public void testSize() {
+        BloomFilter bf = new BloomFilter(1000, .01);
+        assertEquals(9592, bf.getBitCount());
+        assertEquals(7, bf.getHashFunctions());
+        assertEquals(1199, bf.getBytes().length);
+        bf = new BloomFilter(Long.MAX_VALUE, .01);
+        assertEquals(BloomFilter.MAX_BITS, bf.getBitCount());
+        assertEquals(1, bf.getHashFunctions());
+    }
+
+}
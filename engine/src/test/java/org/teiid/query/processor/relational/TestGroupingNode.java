@@ -504,4 +504,56 @@ public class TestGroupingNode {
         assertTrue(pn.toString().contains("agg0=count(*)"));
     }
 
+    @Test public void testHashAggregation() throws Exception {
+        BufferManagerImpl mgr = BufferManagerFactory.getTestBufferManager(20000, 10);
+        long reserve = mgr.getReserveBatchBytes();
+
+        GroupingNode node = new GroupingNode(1);
+        ElementSymbol col1 = new ElementSymbol("col1"); //$NON-NLS-1$
+        col1.setType(Integer.class);
+        ElementSymbol col2 = new ElementSymbol("col2"); //$NON-NLS-1$
+        col2.setType(Integer.class);
+        node.setElements(Arrays.asList(col1, new AggregateSymbol("COUNT", false, null), new AggregateSymbol("SUM", false, col2))); //$NON-NLS-1$ //$NON-NLS-2$
+        node.setOrderBy(new OrderBy(Arrays.asList(col1)).getOrderByItems());
+        node.setHashAggregation(true);
+
+        int groups = 1000;
+        List[] tuples = new List[5 * groups];
+        Map<Integer, List<?>> expected = new HashMap<Integer, List<?>>();
+        for (int i = 0; i < tuples.length; i++) {
+            Integer key = i % groups == 0 ? null : i % groups;
+            tuples[i] = Arrays.asList(key, i);
+            List<?> row = expected.get(key);
+            if (row == null) {
+                expected.put(key, Arrays.asList(key, 1, (long)i));
+            } else {
+                expected.put(key, Arrays.asList(key, (Integer)row.get(1) + 1, (Long)row.get(2) + i));
+            }
+        }
+        FakeTupleSource dataSource = new FakeTupleSource(Arrays.asList(col1, col2), tuples);
+        RelationalNode dataNode = new FakeRelationalNode(0, dataSource, mgr.getProcessorBatchSize());
+        dataNode.setElements(dataSource.getSchema());
+        node.addChild(dataNode);
+        node.initialize(new CommandContext("pid", "test", null, null, 1), mgr, null); //$NON-NLS-1$ //$NON-NLS-2$
+        node.open();
+
+        Map<Integer, List<?>> actual = new HashMap<Integer, List<?>>();
+        while (true) {
+            try {
+                TupleBatch batch = node.nextBatch();
+                for (List<?> tuple : batch.getTuples()) {
+                    assertNull(actual.put((Integer)tuple.get(0), tuple));
+                }
+                if (batch.getTerminationFlag()) {
+                    break;
+                }
+            } catch (BlockedException e) {
+                //ignore
+            }
+        }
+        assertEquals(expected, actual);
+        node.close();
+        assertEquals(reserve, mgr.getReserveBatchBytes());
+    }
+
 }
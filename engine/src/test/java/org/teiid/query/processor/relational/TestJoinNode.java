@@ -62,6 +62,7 @@ public class TestJoinNode {
     private static final int FUNCTION_CRITERIA = 2;
 
     private int criteriaType = EQUAL_CRITERIA;
+    private boolean hashJoin;
 
     protected JoinType joinType;
 
@@ -213,7 +214,11 @@ public class TestJoinNode {
 
             case EQUAL_CRITERIA :
                 join.setJoinExpressions(Arrays.asList(es1), Arrays.asList(es2));
-                joinStrategy = new MergeJoinStrategy(SortOption.SORT, SortOption.SORT, false);
+                if (hashJoin) {
+                    joinStrategy = new HashJoinStrategy();
+                } else {
+                    joinStrategy = new MergeJoinStrategy(SortOption.SORT, SortOption.SORT, false);
+                }
                 join.setJoinStrategy(joinStrategy);
                 break;
 
@@ -269,12 +274,18 @@ public class TestJoinNode {
             throws TeiidComponentException, TeiidProcessingException {
         join.open();
 
+        List<List<?>> actual = new ArrayList<List<?>>();
         int currentRow = 1;
         while(true) {
             try {
                 TupleBatch batch = join.nextBatch();
                 for(;currentRow <= batch.getEndRow(); currentRow++) {
                     List tuple = batch.getTuple(currentRow);
+                    if (hashJoin) {
+                        //the hash join output is not ordered
+                        actual.add(tuple);
+                        continue;
+                    }
                     assertEquals("Rows don't match at " + currentRow, expectedResults[currentRow-1], tuple); //$NON-NLS-1$
                 }
                 if(batch.getTerminationFlag()) {
@@ -285,9 +296,21 @@ public class TestJoinNode {
             }
         }
         assertEquals(expectedResults.length, currentRow - 1);
+        if (hashJoin) {
+            assertEquals(sortRows(Arrays.asList(expectedResults)), sortRows(actual));
+        }
         join.close();
     }
 
+    private static List<String> sortRows(List<? extends List> rows) {
+        List<String> result = new ArrayList<String>();
+        for (List<?> row : rows) {
+            result.add(String.valueOf(row));
+        }
+        Collections.sort(result);
+        return result;
+    }
+
     @Test public void testNoRows() throws Exception {
         leftTuples = new List[0];
         rightTuples = new List[0];
@@ -1231,4 +1254,79 @@ public class TestJoinNode {
         TestProcessor.helpProcess(plan, context, hdm, results);
     }
 
+    @Test public void testHashInnerJoin() throws Exception {
+        hashJoin = true;
+        testInnerJoin();
+    }
+
+    @Test public void testHashLeftOuterJoin() throws Exception {
+        hashJoin = true;
+        testLeftOuterJoin();
+    }
+
+    @Test public void testHashFullOuterJoin() throws Exception {
+        hashJoin = true;
+        testFullOuterJoin();
+    }
+
+    @Test public void testHashFullOuterJoinNoRows() throws Exception {
+        hashJoin = true;
+        testFullOuterJoinNoRows();
+    }
+
+    @Test public void testHashSemiJoin() throws Exception {
+        hashJoin = true;
+        joinType = JoinType.JOIN_SEMI;
+        expected = new List[] {
+            Arrays.asList(2, 2),
+            Arrays.asList(4, 4),
+            Arrays.asList(1, 1),
+            Arrays.asList(4, 4),
+        };
+        expectedReversed = new List[] {
+            Arrays.asList(1, 1),
+            Arrays.asList(4, 4),
+            Arrays.asList(2, 2),
+            Arrays.asList(2, 2),
+            Arrays.asList(4, 4),
+        };
+        helpTestJoin();
+    }
+
+    @Test public void testHashAntiSemiJoin() throws Exception {
+        hashJoin = true;
+        joinType = JoinType.JOIN_ANTI_SEMI;
+        expected = new List[] {
+            Arrays.asList(5, null),
+            Arrays.asList(3, null),
+            Arrays.asList(10, null),
+            Arrays.asList(11, null),
+            Arrays.asList(11, null),
+        };
+        expectedReversed = new List[] {
+            Arrays.asList(null, null),
+            Arrays.asList(7, null),
+            Arrays.asList(7, null),
+            Arrays.asList(6, null),
+        };
+        helpTestJoin();
+    }
+
+    @Test public void testHashJoinPartitioned() throws Exception {
+        hashJoin = true;
+        joinType = JoinType.JOIN_LEFT_OUTER;
+        leftTuples = createTuples(0, 2000);
+        rightTuples = new List[1000];
+        for (int i = 0; i < rightTuples.length; i++) {
+            rightTuples[i] = Arrays.asList(i * 2);
+        }
+        expected = new List[leftTuples.length];
+        for (int i = 0; i < expected.length; i++) {
+            expected[i] = Arrays.asList(i, i % 2 == 0 ? i : null);
+        }
+        helpCreateJoin();
+        helpTestJoinDirect(expected, 10, 20000);
+        assertEquals("HASH JOIN RAN PARTITIONED", join.getJoinStrategy().toString());
+    }
+
 }
@@ -42,6 +42,7 @@ import org.teiid.query.processor.FakeDataManager;
 import org.teiid.query.processor.ProcessorDataManager;
 import org.teiid.query.processor.QueryProcessor;
 import org.teiid.query.sql.lang.CompareCriteria;
+import org.teiid.query.sql.lang.CompoundCriteria;
 import org.teiid.query.sql.lang.Criteria;
 import org.teiid.query.sql.symbol.Constant;
 import org.teiid.query.sql.symbol.ElementSymbol;
@@ -49,6 +50,7 @@ import org.teiid.query.sql.symbol.Expression;
 import org.teiid.query.sql.symbol.Function;
 import org.teiid.query.unittest.RealMetadataFactory;
 import org.teiid.query.util.CommandContext;
+import org.teiid.query.util.Options;
 
 @SuppressWarnings("unchecked")
 public class TestSelectNode {
@@ -59,16 +61,19 @@ public class TestSelectNode {
 
     public void helpTestSelect(List elements, Criteria criteria, List childElements, ProcessorDataManager dataMgr, List[] expected, RelationalNode child) throws TeiidComponentException, TeiidProcessingException {
         SelectNode selectNode = new SelectNode(1);
-        helpTestSelect(elements, criteria, childElements, dataMgr, expected, child, selectNode);
+        helpTestSelect(elements, criteria, childElements, dataMgr, expected, child, selectNode, null);
     }
 
     private void helpTestSelect(List elements, Criteria criteria, List childElements,
             ProcessorDataManager dataMgr, List[] expected,
             RelationalNode child,
-            SelectNode selectNode) throws TeiidComponentException,
+            SelectNode selectNode, Options options) throws TeiidComponentException,
             TeiidProcessingException {
         BufferManager mgr = BufferManagerFactory.getStandaloneBufferManager();
         CommandContext context = new CommandContext("pid", "test", null, null, 1);               //$NON-NLS-1$ //$NON-NLS-2$
+        if (options != null) {
+            context.setOptions(options);
+        }
 
         child.setElements(childElements);
         child.initialize(context, mgr, dataMgr);
@@ -169,7 +174,7 @@ public class TestSelectNode {
                 };
             }
 
-        });
+        }, null);
     }
 
     @Test public void testNoRows() throws TeiidComponentException, TeiidProcessingException {
@@ -274,4 +279,54 @@ public class TestSelectNode {
         helpTestSelect(elements, crit, data, childElements, dataMgr, expected);
 
     }
+
+    @Test public void testBatchEvaluationConjunctOrder() throws TeiidComponentException, TeiidProcessingException {
+        ElementSymbol es1 = new ElementSymbol("e1"); //$NON-NLS-1$
+        es1.setType(DataTypeManager.DefaultDataClasses.INTEGER);
+
+        ElementSymbol es2 = new ElementSymbol("e2"); //$NON-NLS-1$
+        es2.setType(DataTypeManager.DefaultDataClasses.STRING);
+
+        List elements = Arrays.asList(es1);
+        List childElements = Arrays.asList(es1, es2);
+
+        Function func = new Function("lookup", new Expression[] { new Constant("pm1.g1"), new Constant("e2"), new Constant("e1"), es1 }); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$
+        FunctionDescriptor desc = RealMetadataFactory.SFM.getSystemFunctionLibrary().findFunction("lookup", new Class[] { String.class, String.class, String.class, Integer.class } ); //$NON-NLS-1$
+        func.setFunctionDescriptor(desc);
+        func.setType(DataTypeManager.DefaultDataClasses.INTEGER);
+        CompareCriteria lookupCrit = new CompareCriteria(func, CompareCriteria.EQ, new Constant(new Integer(1)));
+        CompareCriteria batchCrit = new CompareCriteria(es1, CompareCriteria.LE, new Constant(new Integer(1)));
+
+        List[] data = new List[20];
+        for(int i=0; i<20; i++) {
+            data[i] = Arrays.asList(new Integer((i*51) % 11), String.valueOf(i));
+        }
+
+        List[] expected = new List[] {
+            Arrays.asList(new Object[] { new Integer(0) }),
+            Arrays.asList(new Object[] { new Integer(0) })
+        };
+
+        FakeDataManager dataMgr = new FakeDataManager();
+        Map valueMap = new HashMap();
+        valueMap.put(new Integer(0), new Integer(1));
+        valueMap.put(new Integer(1), new Integer(2));
+        dataMgr.defineCodeTable("pm1.g1", "e1", "e2", valueMap); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+
+        //the leading conjunct can be batched, the rest is checked a row at a time
+        SelectNode selectNode = new SelectNode(1);
+        helpTestSelect(elements, new CompoundCriteria(Arrays.asList(batchCrit, lookupCrit)), childElements, dataMgr, expected, new FakeRelationalNode(2, data), selectNode, new Options().batchEvaluation(true));
+        assertNotNull(selectNode.getBatchCriteria());
+
+        //a conjunct after one that can't be batched is not moved ahead of it
+        selectNode = new SelectNode(1);
+        helpTestSelect(elements, new CompoundCriteria(Arrays.asList(lookupCrit, batchCrit)), childElements, dataMgr, expected, new FakeRelationalNode(2, data), selectNode, new Options().batchEvaluation(true));
+        assertNull(selectNode.getBatchCriteria());
+
+        //off by default
+        selectNode = new SelectNode(1);
+        helpTestSelect(elements, new CompoundCriteria(Arrays.asList(batchCrit, lookupCrit)), childElements, dataMgr, expected, new FakeRelationalNode(2, data), selectNode, null);
+        assertNull(selectNode.getBatchCriteria());
+    }
+
 }
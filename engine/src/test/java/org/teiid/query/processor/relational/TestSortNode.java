@@ -21,15 +21,19 @@ package org.teiid.query.processor.relational;
 import static org.junit.Assert.*;
 import static org.teiid.query.optimizer.TestOptimizer.*;
 
+import java.sql.Timestamp;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.Random;
 import java.util.TreeSet;
 
 import org.junit.Test;
+import org.teiid.adminapi.impl.SessionMetadata;
 import org.teiid.common.buffer.BlockedException;
 import org.teiid.common.buffer.BufferManager;
+import org.teiid.common.buffer.BufferManager.BufferReserveMode;
 import org.teiid.common.buffer.BufferManager.TupleSourceType;
 import org.teiid.common.buffer.BufferManagerFactory;
 import org.teiid.common.buffer.TupleBatch;
@@ -54,6 +58,7 @@ import org.teiid.query.sql.lang.OrderBy;
 import org.teiid.query.sql.symbol.ElementSymbol;
 import org.teiid.query.unittest.RealMetadataFactory;
 import org.teiid.query.util.CommandContext;
+import org.teiid.query.util.Options;
 
 @SuppressWarnings({"rawtypes", "nls"})
 public class TestSortNode {
@@ -377,4 +382,151 @@ public class TestSortNode {
         assertNull(ts.nextTuple());
     }
 
+    @Test public void testSortKeyOrdering() {
+        Class<?>[] types = new Class<?>[] {DataTypeManager.DefaultDataClasses.STRING, DataTypeManager.DefaultDataClasses.INTEGER,
+                DataTypeManager.DefaultDataClasses.DOUBLE, DataTypeManager.DefaultDataClasses.TIMESTAMP, DataTypeManager.DefaultDataClasses.SHORT};
+        List<ElementSymbol> elements = new ArrayList<ElementSymbol>();
+        for (int i = 0; i < types.length; i++) {
+            ElementSymbol es = new ElementSymbol("e" + i);
+            es.setType(types[i]);
+            elements.add(es);
+        }
+        Random r = new Random(1);
+        String[] strings = new String[] {"", "a", "ab", "a\u0000", "b", "\u00e9", "\uffff", "\u0100b"};
+        double[] doubles = new double[] {-0.0, 0.0, Double.NaN, Double.NEGATIVE_INFINITY, -1.5, 2, Double.MAX_VALUE};
+        List<List<?>> data = new ArrayList<List<?>>();
+        for (int i = 0; i < 500; i++) {
+            Timestamp ts = new Timestamp(r.nextInt(3) - 1);
+            ts.setNanos(r.nextInt(3));
+            data.add(Arrays.asList(r.nextInt(10) == 0 ? null : strings[r.nextInt(strings.length)],
+                    r.nextInt(10) == 0 ? null : r.nextInt(5) - 2,
+                    doubles[r.nextInt(doubles.length)], ts, (short)(r.nextInt(5) - 2)));
+        }
+        for (int i = 0; i < 8; i++) {
+            ListNestedSortComparator comparator = new ListNestedSortComparator(new int[] {0, 1, 2, 3, 4}, Arrays.asList((i&1)==0, (i&2)==0, (i&4)==0, (i&1)!=0, (i&2)!=0));
+            comparator.setNullOrdering(Arrays.asList(i < 4 ? null : NullOrdering.LAST, i < 4 ? NullOrdering.FIRST : null, null, null, null));
+            SortKeyEncoder encoder = SortKeyEncoder.create(comparator, elements);
+            assertNotNull(encoder);
+            for (List<?> row1 : data) {
+                for (int j = 0; j < 20; j++) {
+                    List<?> row2 = data.get(r.nextInt(data.size()));
+                    assertEquals(row1 + " " + row2, Integer.signum(comparator.compare(row1, row2)), Integer.signum(encoder.encode(row1).compareTo(encoder.encode(row2))));
+                }
+            }
+        }
+        ElementSymbol es = new ElementSymbol("x");
+        es.setType(DataTypeManager.DefaultDataClasses.BIG_DECIMAL);
+        assertNull(SortKeyEncoder.create(new ListNestedSortComparator(new int[] {0}), Arrays.asList(es)));
+    }
+
+    @Test public void testNormalizedSortKeysOption() throws Exception {
+        ElementSymbol es1 = new ElementSymbol("e1"); //$NON-NLS-1$
+        es1.setType(DataTypeManager.DefaultDataClasses.INTEGER);
+        BufferManagerImpl bm = BufferManagerFactory.getTestBufferManager(10000, 50);
+        List<ElementSymbol> schema = Arrays.asList(es1);
+        SortUtility su = new SortUtility(null, schema, Arrays.asList(Boolean.TRUE), Mode.SORT, bm, "test", schema); //$NON-NLS-1$
+        assertNotNull(su.getKeyEncoder());
+        bm.setOptions(new Options().normalizedSortKeys(false));
+        su = new SortUtility(null, schema, Arrays.asList(Boolean.TRUE), Mode.SORT, bm, "test", schema); //$NON-NLS-1$
+        assertNull(su.getKeyEncoder());
+    }
+
+    @Test public void testParallelSort() throws Exception {
+        ElementSymbol es1 = new ElementSymbol("e1"); //$NON-NLS-1$
+        es1.setType(DataTypeManager.DefaultDataClasses.INTEGER);
+        ElementSymbol es2 = new ElementSymbol("e2"); //$NON-NLS-1$
+        es2.setType(DataTypeManager.DefaultDataClasses.STRING);
+        BufferManagerImpl bm = BufferManagerFactory.getTestBufferManager(100000, 50);
+        long reserve = bm.getReserveBatchBytes();
+        TupleBuffer tsid = bm.createTupleBuffer(Arrays.asList(es1, es2), "test", TupleSourceType.PROCESSOR); //$NON-NLS-1$
+        Random r = new Random(0);
+        List<List<?>> expected = new ArrayList<List<?>>();
+        for (int i = 0; i < 20000; i++) {
+            List<?> row = Arrays.asList(r.nextInt(5000), String.valueOf(i));
+            tsid.addTuple(row);
+            expected.add(row);
+        }
+        tsid.close();
+        Collections.sort(expected, new ListNestedSortComparator(new int[] {0, 1}, Arrays.asList(false, true)));
+        SortUtility su = new SortUtility(tsid.createIndexedTupleSource(), Arrays.asList(es1, es2), Arrays.asList(Boolean.FALSE, Boolean.TRUE), Mode.SORT, bm, "test", tsid.getSchema()); //$NON-NLS-1$
+        su.setParallelism(4);
+        //the helpers run with the calling context
+        CommandContext cc = new CommandContext("pid", "test", null, null, 1); //$NON-NLS-1$ //$NON-NLS-2$
+        cc.setSession(new SessionMetadata());
+        CommandContext.pushThreadLocalContext(cc);
+        TupleBuffer out = null;
+        try {
+            out = su.sort();
+        } finally {
+            CommandContext.popThreadLocalContext();
+        }
+        //all of the request threads have been released
+        assertTrue(cc.acquireExchangeThread(1));
+        assertEquals(expected.size(), out.getRowCount());
+        TupleSource ts = out.createIndexedTupleSource();
+        for (List<?> row : expected) {
+            assertEquals(row, ts.nextTuple());
+        }
+        assertNull(ts.nextTuple());
+        assertTrue(su.isDistinct());
+        out.remove();
+        assertEquals(reserve, bm.getReserveBatchBytes());
+    }
+
+    @Test public void testTopNSort() throws Exception {
+        ElementSymbol es1 = new ElementSymbol("e1"); //$NON-NLS-1$
+        es1.setType(DataTypeManager.DefaultDataClasses.INTEGER);
+        ElementSymbol es2 = new ElementSymbol("e2"); //$NON-NLS-1$
+        es2.setType(DataTypeManager.DefaultDataClasses.INTEGER);
+        BufferManagerImpl bm = BufferManagerFactory.getTestBufferManager(100000, 50);
+        long reserve = bm.getReserveBatchBytes();
+        TupleBuffer tsid = bm.createTupleBuffer(Arrays.asList(es1, es2), "test", TupleSourceType.PROCESSOR); //$NON-NLS-1$
+        Random r = new Random(0);
+        List<List<?>> expected = new ArrayList<List<?>>();
+        for (int i = 0; i < 5000; i++) {
+            List<?> row = Arrays.asList(r.nextInt(10) == 0 ? null : r.nextInt(100), i);
+            tsid.addTuple(row);
+            expected.add(row);
+        }
+        tsid.close();
+        //ties should remain in input order
+        Collections.sort(expected, new ListNestedSortComparator(new int[] {0}, Arrays.asList(false)));
+        for (int limit : new int[] {1, 75, 5000, 6000}) {
+            SortUtility su = new SortUtility(tsid.createIndexedTupleSource(), Arrays.asList(es1), Arrays.asList(Boolean.FALSE), Mode.SORT, bm, "test", tsid.getSchema()); //$NON-NLS-1$
+            su.setTopNMaxRows(limit);
+            TupleBuffer out = su.sort(limit);
+            assertEquals(Math.min(limit, expected.size()), out.getRowCount());
+            TupleSource ts = out.createIndexedTupleSource();
+            for (List<?> row : expected.subList(0, (int)out.getRowCount())) {
+                assertEquals(row, ts.nextTuple());
+            }
+            assertNull(ts.nextTuple());
+            out.remove();
+        }
+        assertEquals(reserve, bm.getReserveBatchBytes());
+    }
+
+    @Test public void testTopNSortWithoutReserve() throws Exception {
+        ElementSymbol es1 = new ElementSymbol("e1"); //$NON-NLS-1$
+        es1.setType(DataTypeManager.DefaultDataClasses.INTEGER);
+        BufferManagerImpl bm = BufferManagerFactory.getTestBufferManager(100000, 50);
+        long reserve = bm.getReserveBatchBytes();
+        TupleBuffer tsid = bm.createTupleBuffer(Arrays.asList(es1), "test", TupleSourceType.PROCESSOR); //$NON-NLS-1$
+        for (int i = 0; i < 5000; i++) {
+            tsid.addTuple(Arrays.asList(4999 - i));
+        }
+        tsid.close();
+        //nothing is left for the heap, so the normal sort must be used
+        int held = bm.reserveBuffers((int)reserve, BufferReserveMode.FORCE);
+        SortUtility su = new SortUtility(tsid.createIndexedTupleSource(), Arrays.asList(es1), Arrays.asList(Boolean.TRUE), Mode.SORT, bm, "test", tsid.getSchema()); //$NON-NLS-1$
+        TupleBuffer out = su.sort(75);
+        TupleSource ts = out.createIndexedTupleSource();
+        for (int i = 0; i < 75; i++) {
+            assertEquals(Arrays.asList(i), ts.nextTuple());
+        }
+        out.remove();
+        bm.releaseBuffers(held);
+        assertEquals(reserve, bm.getReserveBatchBytes());
+    }
+
 }
@@ -45,6 +45,8 @@ public class EmbeddedAdminFactory {
         stats.setActivePlanCount(dqp.getActivePlanCount());
         stats.setWaitPlanCount(dqp.getWaitingPlanCount());
         stats.setMaxWaitPlanWaterMark(dqp.getMaxWaitingPlanWatermark());
+        stats.setAveragePlanWaitTime(dqp.getAveragePlanWaitTime());
+        stats.setMaxPlanWaitTime(dqp.getMaxPlanWaitTime());
         return stats;
     }
 
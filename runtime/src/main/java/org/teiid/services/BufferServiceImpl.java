@@ -29,7 +29,10 @@ import org.teiid.common.buffer.impl.BufferFrontedFileStoreCache;
 import org.teiid.common.buffer.impl.BufferManagerImpl;
 import org.teiid.common.buffer.impl.EncryptedStorageManager;
 import org.teiid.common.buffer.impl.FileStorageManager;
+import org.teiid.common.buffer.impl.LZ4BlockCodec;
+import org.teiid.common.buffer.impl.MappedFileStorageManager;
 import org.teiid.common.buffer.impl.MemoryStorageManager;
+import org.teiid.common.buffer.impl.OffHeapCache;
 import org.teiid.common.buffer.impl.SplittableStorageManager;
 import org.teiid.core.TeiidComponentException;
 import org.teiid.core.TeiidRuntimeException;
@@ -62,18 +65,24 @@ public class BufferServiceImpl implements BufferService, Serializable {
     private int maxStorageObjectSize = BufferFrontedFileStoreCache.DEFAULT_MAX_OBJECT_SIZE;
     private BufferFrontedFileStoreCache fsc;
     private FileStorageManager fsm;
+    private OffHeapCache<?> offHeapCache;
 
     //reserve / heap properties
     private int maxProcessingKb = BufferManager.DEFAULT_MAX_PROCESSING_KB;
     private int maxReservedHeapKb = BufferManager.DEFAULT_RESERVE_BUFFER_KB;
+    private boolean writeBehind;
+    private int readAheadBatches;
 
     //fixed memory properties
     private long fixedMemoryBufferSpaceMb = -1;
     private boolean fixedMemoryBufferOffHeap;
+    private long offHeapBufferSpaceMb;
 
     //disk properties
     private File bufferDir;
     private boolean encryptFiles = false;
+    private boolean memoryMappedFiles = false;
+    private boolean compressBuffers = false;
     private int maxOpenFiles = FileStorageManager.DEFAULT_MAX_OPEN_FILES;
     private long maxFileSize = SplittableStorageManager.DEFAULT_MAX_FILESIZE; // 2GB
     private long maxDiskBufferSpace = FileStorageManager.DEFAULT_MAX_BUFFERSPACE>>20;
@@ -97,6 +106,11 @@ public class BufferServiceImpl implements BufferService, Serializable {
             this.bufferMgr.setMaxReserveKB(this.maxReservedHeapKb);
             this.bufferMgr.setMaxProcessingKB(this.maxProcessingKb);
             this.bufferMgr.setInlineLobs(inlineLobs);
+            this.bufferMgr.setWriteBehind(writeBehind);
+            if (useDisk) {
+                //there's no benefit to reading ahead from memory storage
+                this.bufferMgr.setReadAheadBatches(readAheadBatches);
+            }
             this.bufferMgr.setSessionService(sessionService);
             this.bufferMgr.initialize();
 
@@ -110,7 +124,11 @@ public class BufferServiceImpl implements BufferService, Serializable {
                 // wise FileStorageManager is smart enough to clean up after itself
                 cleanDirectory(bufferDir);
                 // Get the properties for FileStorageManager and create.
-                fsm = new FileStorageManager();
+                if (memoryMappedFiles) {
+                    fsm = new MappedFileStorageManager();
+                } else {
+                    fsm = new FileStorageManager();
+                }
                 fsm.setStorageDirectory(bufferDir.getCanonicalPath());
                 fsm.setMaxOpenFiles(maxOpenFiles);
                 fsm.setMaxBufferSpace(maxDiskBufferSpace*MB);
@@ -124,6 +142,9 @@ public class BufferServiceImpl implements BufferService, Serializable {
                 fsc.setBufferManager(this.bufferMgr);
                 fsc.setMaxStorageObjectSize(maxStorageObjectSize);
                 fsc.setDirect(fixedMemoryBufferOffHeap);
+                if (compressBuffers) {
+                    fsc.setBlockCodec(new LZ4BlockCodec());
+                }
                 if (fixedMemoryBufferSpaceMb < 0) {
                     //use approximately 40% of what's set aside for the reserved accounting for conversion from kb to bytes
                     long autoMaxBufferSpace = 4*(((long)this.bufferMgr.getMaxReserveKB())<<10)/10;
@@ -150,8 +171,16 @@ public class BufferServiceImpl implements BufferService, Serializable {
                     }
                 }
                 fsc.setStorageManager(sm);
-                fsc.initialize();
-                this.bufferMgr.setCache(fsc);
+                if (offHeapBufferSpaceMb > 0) {
+                    //estimate the per object overhead, the memory itself is not on the heap
+                    this.bufferMgr.setMaxReserveKB((int)Math.max(0, this.bufferMgr.getMaxReserveKB() - ((offHeapBufferSpaceMb << 20)>>19)));
+                    offHeapCache = createOffHeapCache(fsc);
+                    offHeapCache.initialize();
+                    this.bufferMgr.setCache(offHeapCache);
+                } else {
+                    fsc.initialize();
+                    this.bufferMgr.setCache(fsc);
+                }
             } else {
                 MemoryStorageManager msm = new MemoryStorageManager();
                 SplittableStorageManager ssm = new SplittableStorageManager(msm);
@@ -167,6 +196,14 @@ public class BufferServiceImpl implements BufferService, Serializable {
         }
     }
 
+    @SuppressWarnings({ "rawtypes", "unchecked" })
+    private OffHeapCache<?> createOffHeapCache(BufferFrontedFileStoreCache cache) {
+        OffHeapCache<?> result = new OffHeapCache(cache);
+        result.setMemoryBufferSpace(offHeapBufferSpaceMb << 20);
+        result.setMaxStorageObjectSize(maxStorageObjectSize);
+        return result;
+    }
+
     public void stop() {
         LogManager.logDetail(LogConstants.CTX_DQP, "Stopping BufferManager using", bufferDir); //$NON-NLS-1$
         if (bufferMgr != null) {
@@ -316,6 +353,31 @@ public class BufferServiceImpl implements BufferService, Serializable {
         return 0;
     }
 
+    public long getMappedReadCount() {
+        if (fsm instanceof MappedFileStorageManager) {
+            return ((MappedFileStorageManager)fsm).getMappedReads();
+        }
+        return 0;
+    }
+
+    public long getMappedWriteCount() {
+        if (fsm instanceof MappedFileStorageManager) {
+            return ((MappedFileStorageManager)fsm).getMappedWrites();
+        }
+        return 0;
+    }
+
+    /**
+     * @return the ratio of serialized to stored bytes for the memory buffer and disk,
+     * or 1 if compression is not in use
+     */
+    public double getBufferCompressionRatio() {
+        if (fsc != null && fsc.getBytesAfterCompression() > 0) {
+            return (double)fsc.getBytesBeforeCompression() / fsc.getBytesAfterCompression();
+        }
+        return 1;
+    }
+
     public long getMemoryBufferUsedKb() {
         if (fsc != null) {
             return fsc.getMemoryInUseBytes() >> 10;
@@ -323,6 +385,36 @@ public class BufferServiceImpl implements BufferService, Serializable {
         return 0;
     }
 
+    public long getOffHeapBufferUsedKb() {
+        if (offHeapCache != null) {
+            return offHeapCache.getMemoryInUseBytes() >> 10;
+        }
+        return 0;
+    }
+
+    public long getOffHeapBufferHitCount() {
+        if (offHeapCache != null) {
+            return offHeapCache.getHits();
+        }
+        return 0;
+    }
+
+    public int getWriteBehindQueueSize() {
+        return bufferMgr.getWriteBehindQueueSize();
+    }
+
+    public long getWriteBehindQueueKb() {
+        return bufferMgr.getWriteBehindQueueBytes() >> 10;
+    }
+
+    public double getAverageWriteBehindLatency() {
+        return bufferMgr.getAverageWriteBehindLatency();
+    }
+
+    public long getPrefetchCount() {
+        return bufferMgr.getPrefetchCount();
+    }
+
     public long getStorageReadCount() {
         return bufferMgr.getReadCount();
     }
@@ -347,6 +439,43 @@ public class BufferServiceImpl implements BufferService, Serializable {
         return fixedMemoryBufferOffHeap;
     }
 
+    public long getOffHeapBufferSpaceMb() {
+        return offHeapBufferSpaceMb;
+    }
+
+    /**
+     * Set the size of the direct memory tier held ahead of the fixed memory buffer, see {@link OffHeapCache}.
+     * 0 or less disables the tier.
+     * @param offHeapBufferSpaceMb
+     */
+    public void setOffHeapBufferSpaceMb(long offHeapBufferSpaceMb) {
+        this.offHeapBufferSpaceMb = offHeapBufferSpaceMb;
+    }
+
+    public boolean isWriteBehind() {
+        return writeBehind;
+    }
+
+    /**
+     * Write batches evicted by processing threads to storage on a background thread
+     * @param writeBehind
+     */
+    public void setWriteBehind(boolean writeBehind) {
+        this.writeBehind = writeBehind;
+    }
+
+    public int getReadAheadBatches() {
+        return readAheadBatches;
+    }
+
+    /**
+     * Set the number of batches to asynchronously load ahead of sequential reads of spilled buffers
+     * @param readAheadBatches
+     */
+    public void setReadAheadBatches(int readAheadBatches) {
+        this.readAheadBatches = readAheadBatches;
+    }
+
     public boolean isEncryptFiles() {
         return encryptFiles;
     }
@@ -355,6 +484,30 @@ public class BufferServiceImpl implements BufferService, Serializable {
         this.encryptFiles = encryptFiles;
     }
 
+    public boolean isMemoryMappedFiles() {
+        return memoryMappedFiles;
+    }
+
+    /**
+     * Use memory mapped buffer files, see {@link MappedFileStorageManager}
+     * @param memoryMappedFiles
+     */
+    public void setMemoryMappedFiles(boolean memoryMappedFiles) {
+        this.memoryMappedFiles = memoryMappedFiles;
+    }
+
+    public boolean isCompressBuffers() {
+        return compressBuffers;
+    }
+
+    /**
+     * Compress the serialized form of batches held in the memory buffer and on disk
+     * @param compressBuffers
+     */
+    public void setCompressBuffers(boolean compressBuffers) {
+        this.compressBuffers = compressBuffers;
+    }
+
     public void setBufferManager(BufferManagerImpl bufferManager) {
         this.bufferMgr = bufferManager;
     }
@@ -50,9 +50,13 @@ import org.teiid.api.exception.query.QueryParserException;
 import org.teiid.client.BatchSerializer;
 import org.teiid.common.buffer.BlockedException;
 import org.teiid.common.buffer.BufferManager;
+import org.teiid.common.buffer.BufferManager.BufferReserveMode;
+import org.teiid.common.buffer.BufferManager.TupleSourceType;
 import org.teiid.common.buffer.STree;
 import org.teiid.common.buffer.STree.InsertMode;
 import org.teiid.common.buffer.TupleBatch;
+import org.teiid.common.buffer.TupleBrowser;
+import org.teiid.common.buffer.TupleBuffer;
 import org.teiid.common.buffer.impl.BufferFrontedFileStoreCache;
 import org.teiid.common.buffer.impl.BufferManagerImpl;
 import org.teiid.common.buffer.impl.FileStorageManager;
@@ -562,6 +566,53 @@ public class TestEnginePerformance {
         runTask(iterations, threads, task);
     }
 
+    /**
+     * Many concurrent buffers under memory pressure to measure contention in
+     * reservation, eviction, and the reference caches
+     */
+    private void helpTestBufferContention(int iterations, int threads, final int rows) throws InterruptedException, Exception {
+        ElementSymbol elem1 = new ElementSymbol("e1");
+        elem1.setType(DataTypeManager.DefaultDataClasses.INTEGER);
+        ElementSymbol elem2 = new ElementSymbol("e2");
+        elem2.setType(DataTypeManager.DefaultDataClasses.STRING);
+        final List<ElementSymbol> elems = Arrays.asList(elem1, elem2);
+        final List<?>[] data = sampleData(rows);
+
+        final Task task = new Task() {
+            @Override
+            public Void call() throws Exception {
+                TupleBuffer tb = bm.createTupleBuffer(elems, "test", TupleSourceType.PROCESSOR);
+                int reserved = bm.reserveBuffers(tb.getBatchSize() * 64, BufferReserveMode.NO_WAIT);
+                try {
+                    for (int i = 0; i < rows; i++) {
+                        tb.addTuple(data[i]);
+                    }
+                    tb.close();
+                    for (int i = 1; i <= rows; i += tb.getBatchSize()) {
+                        assertNotNull(tb.getBatch(i));
+                    }
+                } finally {
+                    bm.releaseBuffers(reserved);
+                    tb.remove();
+                }
+                return null;
+            }
+        };
+        runTask(iterations, threads, task);
+    }
+
+    @Test public void runBufferContention_4_50000() throws Exception {
+        helpTestBufferContention(20, 4, 50000);
+    }
+
+    @Test public void runBufferContention_16_50000() throws Exception {
+        helpTestBufferContention(20, 16, 50000);
+    }
+
+    @Test public void runBufferContention_64_50000() throws Exception {
+        helpTestBufferContention(20, 64, 50000);
+    }
+
     @Test public void runWideSort_1_100000() throws Exception {
         helpTestLargeSort(4, 1, 100000);
     }
@@ -603,6 +654,63 @@ public class TestEnginePerformance {
         assertEquals(0, bm.getActiveBatchBytes());
     }
 
+    /**
+     * Bulk load a sorted index then perform random point lookups and short range scans
+     * to compare the skip list and B+tree index layouts
+     */
+    private void helpTestIndexLookup(final boolean bplus, int iterations, int threads, final int rows) throws InterruptedException, Exception {
+        ElementSymbol e1 = new ElementSymbol("x");
+        e1.setType(Integer.class);
+        ElementSymbol e2 = new ElementSymbol("y");
+        e2.setType(String.class);
+        final List<ElementSymbol> elements = Arrays.asList(e1, e2);
+
+        final Task task = new Task() {
+            @Override
+            public Void call() throws Exception {
+                STree map = bplus?bm.createBPlusTree(elements, "1", 1):bm.createSTree(elements, "1", 1);
+                try {
+                    map.setBatchInsert(true);
+                    for (int i = 0; i < rows; i++) {
+                        map.insert(Arrays.asList(i, String.valueOf(i)), InsertMode.ORDERED, -1);
+                    }
+                    map.setBatchInsert(false);
+                    Random random = new Random(0);
+                    for (int i = 0; i < rows; i++) {
+                        assertNotNull(map.find(Arrays.asList(random.nextInt(rows))));
+                    }
+                    for (int i = 0; i < rows/100; i++) {
+                        int start = random.nextInt(rows - 100);
+                        TupleBrowser tb = new TupleBrowser(map, new ArrayList<Object>(Arrays.asList(start)), Arrays.asList(start + 99), true, true);
+                        for (int j = 0; j < 100; j++) {
+                            assertNotNull(tb.nextTuple());
+                        }
+                    }
+                } finally {
+                    map.remove();
+                }
+                return null;
+            }
+        };
+        runTask(iterations, threads, task);
+    }
+
+    @Test public void runIndexLookupSTree_1_500000() throws Exception {
+        helpTestIndexLookup(false, 4, 1, 500000);
+    }
+
+    @Test public void runIndexLookupBPlusTree_1_500000() throws Exception {
+        helpTestIndexLookup(true, 4, 1, 500000);
+    }
+
+    @Test public void runIndexLookupSTree_4_100000() throws Exception {
+        helpTestIndexLookup(false, 8, 4, 100000);
+    }
+
+    @Test public void runIndexLookupBPlusTree_4_100000() throws Exception {
+        helpTestIndexLookup(true, 8, 4, 100000);
+    }
+
     private static void showStats() {
         System.out.println(bm.getBatchesAdded());
         System.out.println(bm.getReferenceHits());